@@ -24,6 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Contains the Servers, Dbs, Collections, Endpoints and Actions that make up a REST API.
@@ -74,8 +75,15 @@ public final class Api {
 
     protected transient Linker linker = new Linker();
 
+    /**
+     * Incremented whenever the Api registered Actions change so that an Op's precomputed {@code ActionPlan} can be discarded.
+     */
+    transient final AtomicLong modCount = new AtomicLong(0);
+
     protected transient List<Op> ops = new ArrayList();
 
+    protected transient volatile Router router = null;
+
     protected           String  name     = null;
     transient protected String  hash     = null;
     protected           boolean debug    = false;
@@ -452,12 +460,14 @@ public final class Api {
         for (Action action : actions)
             if (!this.actions.contains(action))
                 this.actions.add(action);
+        modCount.incrementAndGet();
         return this;
     }
 
     public Api withAction(Action action) {
         if (!this.actions.contains(action))
             this.actions.add(action);
+        modCount.incrementAndGet();
         return this;
     }
 
@@ -554,6 +564,18 @@ public final class Api {
         return ops;
     }
 
+    /**
+     * @return the compiled routing index for this Api's Ops, built from the current Ops if startup has not already done so
+     */
+    public Router getRouter() {
+        Router router = this.router;
+        if (router == null || router.getOps() != ops) {
+            router = new Router(ops);
+            this.router = router;
+        }
+        return router;
+    }
+
     public Op getOp(String name) {
         for (Op op : ops) {
             if (name.equalsIgnoreCase(op.getName()))
@@ -642,6 +664,9 @@ public final class Api {
         System.out.println("\r\n--------------------------------------------");
 
         this.ops = Collections.unmodifiableList(ops);
+        this.router = new Router(this.ops);
+        for (Op op : this.ops)
+            op.getActionPlan();
         return new ArrayList(ops);
     }
 
@@ -30,83 +30,100 @@ public final class Chain {
 
     public static final Set<String> APPEND_PARAMS = Collections.unmodifiableSet(Utils.add(new HashSet(), "include", "exclude", "collapse"));
 
-    static          ThreadLocal<Stack<Chain>> chainLocal         = new ThreadLocal<>();
     protected final Engine                    engine;
     protected final List<ActionMatch>         actions            = new ArrayList<>();
     protected final Request                   request;
     protected final Response                  response;
+    protected final RequestScope              scope;
     protected final LinkedCaseInsensitiveMap<Object> vars               = new LinkedCaseInsensitiveMap<>();
     protected       int                                next               = 0;
     protected       boolean                            canceled           = false;
     protected       User                               user               = null;
     protected       Chain                              parent             = null;
     protected       Set<String>                        pathParamsToRemove = new HashSet();
+    protected       boolean                            debug              = true;
 
-    private Chain(Engine engine, Request req, Response res) {
+    private Chain(Engine engine, Request req, Response res, RequestScope scope) {
         this.engine = engine;
         this.request = req;
         this.response = res;
+        this.scope = scope;
     }
 
+    /**
+     * Discards the {@link RequestScope}, and therefore the Chain stack, bound to every thread.
+     */
     public static void resetAll() {
-        chainLocal = new ThreadLocal<>();
-    }
-
-    protected static Stack<Chain> get() {
-        Stack<Chain> stack = chainLocal.get();
-        if (stack == null) {
-            stack = new Stack<>();
-            chainLocal.set(stack);
-        }
-        return stack;
+        RequestScope.resetAll();
     }
 
     public static int getDepth() {
-        return get().size();
+        RequestScope scope = RequestScope.peek();
+        return scope == null ? 0 : scope.getDepth();
     }
 
     public static boolean isRoot() {
-        Stack<Chain> stack = get();
-        return stack.isEmpty() || stack.size() == 1;
+        return getDepth() < 2;
     }
 
     public static Chain first() {
-        Stack<Chain> stack = get();
-        if (!stack.empty()) {
-            return stack.get(0);
-        }
-        return null;
+        RequestScope scope = RequestScope.peek();
+        return scope == null ? null : scope.firstChain();
     }
 
     public static Chain top() throws ApiException {
-        Stack<Chain> stack = get();
-        if (!stack.empty())
-            return stack.peek();
-        throw ApiException.new500InternalServerError("Attempting to call Chain.top() when there is no Chain on the ThreadLocal.");
+        Chain chain = peek();
+        if (chain != null)
+            return chain;
+        throw ApiException.new500InternalServerError("Attempting to call Chain.top() when there is no Chain on the RequestScope.");
     }
 
     public static Chain peek() {
-        Stack<Chain> stack = get();
-        if (!stack.empty())
-            return stack.peek();
-        return null;
+        RequestScope scope = RequestScope.peek();
+        return scope == null ? null : scope.peekChain();
     }
 
+    /**
+     * Pushes a new Chain onto the {@link RequestScope} bound to the current thread, creating the scope if necessary.
+     *
+     * @param engine the Engine servicing the request
+     * @param req    the Request
+     * @param res    the Response
+     * @return the new Chain
+     */
     public static Chain push(Engine engine, Request req, Response res) {
-        Chain child = new Chain(engine, req, res);
+        return push(RequestScope.current(), engine, req, res);
+    }
+
+    /**
+     * Pushes a new Chain onto <code>scope</code>.
+     *
+     * @param scope  the scope of the request being serviced
+     * @param engine the Engine servicing the request
+     * @param req    the Request
+     * @param res    the Response
+     * @return the new Chain
+     */
+    public static Chain push(RequestScope scope, Engine engine, Request req, Response res) {
+        Chain child = new Chain(engine, req, res, scope);
 
-        Chain parent = peek();
+        Chain parent = scope.peekChain();
         if (parent != null)
             child.setParent(parent);
+        else if (engine != null)
+            child.withDebug(engine.isDebug(req));
 
         req.withChain(child);
-        get().push(child);
+        scope.push(child);
 
         return child;
     }
 
     public static Chain pop() {
-        return get().pop();
+        RequestScope scope = RequestScope.peek();
+        if (scope == null || scope.getDepth() == 0)
+            throw new EmptyStackException();
+        return scope.pop();
     }
 
     public static User getUser() {
@@ -122,26 +139,39 @@ public final class Chain {
     }
 
     public static int size() {
-        return get().size();
+        return getDepth();
+    }
+
+    /**
+     * Checks if debug output is being collected for the current request.
+     * <p>
+     * Callers that need to do non trivial work to build a debug message should
+     * check this first so that the work is skipped when debug output is off.
+     *
+     * @return true if there is a Chain on the current RequestScope and its root is collecting debug output
+     */
+    public static boolean isDebugEnabled() {
+        Chain root = first();
+        return root != null && root.debug;
     }
 
     public static void debug(String format, Object... args) {
 
-        if (format == null || format.trim().length() == 0)
+        RequestScope scope = RequestScope.peek();
+        Chain        root  = scope == null ? null : scope.firstChain();
+        if (root == null || !root.debug)
             return;
 
-        Stack<Chain> stack = get();
-        if (stack.size() < 1) {
+        if (format == null || format.trim().length() == 0)
             return;
-        }
 
-        StringBuilder prefix = new StringBuilder("[" + stack.size() + "]: ");
-        for (int i = 1; i < stack.size(); i++)
+        int           depth  = scope.getDepth();
+        StringBuilder prefix = new StringBuilder("[" + depth + "]: ");
+        for (int i = 1; i < depth; i++)
             prefix.append("   ");
 
         format = prefix.toString() + format;
 
-        Chain root = stack.get(0);
         root.response.debug(format, args);
     }
 
@@ -187,6 +217,41 @@ public final class Chain {
         return this;
     }
 
+    /**
+     * Turns debug output collection on or off for this Chain.
+     * <p>
+     * Only the root Chain's value is consulted, child Chains
+     * write debug output to the root Chain's Response.
+     *
+     * @param debug true if debug output should be collected
+     * @return this
+     */
+    public Chain withDebug(boolean debug) {
+        this.debug = debug;
+        return this;
+    }
+
+    /**
+     * @return the scope of the request this Chain is running in
+     */
+    public RequestScope getScope() {
+        return scope;
+    }
+
+    /**
+     * Returns the {@link Loader} shared by every Chain in this Chain's scope, creating it if necessary.
+     *
+     * @return the Loader for the request
+     */
+    public Loader getLoader() {
+        Loader loader = (Loader) scope.getAttribute(Loader.class);
+        if (loader == null) {
+            loader = new Loader();
+            scope.withAttribute(Loader.class, loader);
+        }
+        return loader;
+    }
+
     public Chain getParent() {
         return parent;
     }
@@ -22,6 +22,7 @@ import org.apache.commons.text.StringEscapeUtils;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -75,6 +76,14 @@ public class Collection extends Rule<Collection> implements Serializable {
      * The backend storage adapter that probably generated this Collection and associated Indexes and Relationships.
      */
     transient protected Db                      db            = null;
+    /**
+     * Cache of {@link RowMapper} plans keyed by column list, discarded whenever properties or indexes change.
+     */
+    transient volatile  Map<String, RowMapper>  rowMappers    = null;
+    /**
+     * Incremented whenever properties, indexes, relationships or the table name change so caches built from this Collection can tell they are stale.
+     */
+    transient volatile  int                     version       = 0;
     /**
      * The backend datasource name that this Collection operates on.
      * <p>
@@ -265,6 +274,7 @@ public class Collection extends Rule<Collection> implements Serializable {
      */
     public Collection withTableName(String name) {
         this.tableName = name;
+        changed();
         return this;
     }
 
@@ -322,6 +332,7 @@ public class Collection extends Rule<Collection> implements Serializable {
             if (prop.getCollection() != this)
                 prop.withCollection(this);
         }
+        changed();
         return this;
     }
 
@@ -352,6 +363,7 @@ public class Collection extends Rule<Collection> implements Serializable {
 
     public void removeProperty(Property prop) {
         properties.remove(prop);
+        changed();
     }
 
     /**
@@ -438,7 +450,7 @@ public class Collection extends Rule<Collection> implements Serializable {
             if (index.getCollection() != this)
                 index.withCollection(this);
         }
-
+        changed();
         return this;
     }
 
@@ -524,6 +536,28 @@ public class Collection extends Rule<Collection> implements Serializable {
 
     public void removeIndex(Index index) {
         indexes.remove(index);
+        changed();
+    }
+
+    Map<String, RowMapper> getRowMappers() {
+        Map<String, RowMapper> rowMappers = this.rowMappers;
+        if (rowMappers == null) {
+            rowMappers = new ConcurrentHashMap<>();
+            this.rowMappers = rowMappers;
+        }
+        return rowMappers;
+    }
+
+    /**
+     * @return a counter that changes whenever properties, indexes, relationships or the table name change
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    void changed() {
+        rowMappers = null;
+        version++;
     }
 
     public boolean isExclude() {
@@ -556,6 +590,7 @@ public class Collection extends Rule<Collection> implements Serializable {
 
     public void removeRelationship(Relationship relationship) {
         relationships.remove(relationship);
+        changed();
     }
 
     /**
@@ -584,6 +619,8 @@ public class Collection extends Rule<Collection> implements Serializable {
 
             if (relationship.getCollection() != this)
                 relationship.withCollection(this);
+
+            changed();
         }
         return this;
     }
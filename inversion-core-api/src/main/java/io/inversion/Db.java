@@ -22,12 +22,14 @@ import io.inversion.json.JSNode;
 import io.inversion.json.JSParser;
 import io.inversion.rql.Rql;
 import io.inversion.rql.Term;
+import io.inversion.rql.TermCache;
 import io.inversion.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
@@ -98,6 +100,18 @@ public class Db<T extends Db> extends Rule<T> {
      * When set to true the Db will do everything it can to "work offline" logging commands it would have run but not actually running them.
      */
     protected boolean dryRun       = false;
+    /**
+     * OPTIONAL process wide cache that answers resource key lookups without calling {@link #doSelect(Collection, List)} for rows it already holds.
+     * <p>
+     * It must be set before the Db is started so it can evict written rows when each request finishes.
+     */
+    protected EntityCache entityCache = null;
+    /**
+     * The max number of distinct select params whose parsed and column mapped terms are cached for each collection.
+     */
+    protected int selectTermCacheSize = 1000;
+    transient final Map<Collection, TermCache<SelectTerm>> selectTermCaches     = new IdentityHashMap<>();
+    transient final ReentrantLock                          selectTermCachesLock = new ReentrantLock();
     transient boolean firstStartup = true;
     transient boolean shutdown     = false;
 
@@ -237,6 +251,10 @@ public class Db<T extends Db> extends Rule<T> {
 
         runningApis.add(api);
         doStartup(api);
+        clearSelectTermCaches();
+
+        if (entityCache != null)
+            api.withApiListener(entityCache);
 
         return (T) this;
     }
@@ -308,10 +326,155 @@ public class Db<T extends Db> extends Rule<T> {
         //default implementation does nothing, subclass can override if they need to close resources on shutdown
     }
 
+    public EntityCache getEntityCache() {
+        return entityCache;
+    }
+
+    public T withEntityCache(EntityCache entityCache) {
+        this.entityCache = entityCache;
+        return (T) this;
+    }
+
     public boolean isRunning(Api api) {
         return runningApis.contains(api);
     }
 
+    /**
+     * A select param parsed into its json named form, used to order the terms, and its column mapped form that is passed to {@link #doSelect(Collection, List)}.
+     * <p>
+     * Instances are cached and shared across requests so their terms must be copied, never modified.
+     */
+    public static class SelectTerm {
+        static final SelectTerm IGNORED = new SelectTerm(null, null);
+
+        final Term       term;
+        final List<Term> mappedTerms;
+
+        public SelectTerm(Term term, List<Term> mappedTerms) {
+            this.term = term;
+            this.mappedTerms = mappedTerms;
+        }
+
+        /**
+         * @return the json named term or null if the param is not passed on to the Db
+         */
+        public Term getTerm() {
+            return term;
+        }
+
+        public List<Term> getMappedTerms() {
+            return mappedTerms;
+        }
+    }
+
+    /**
+     * Parses a single select param and maps it to column names.
+     * <p>
+     * The result is cached per collection by {@link #select(Collection, Map)} so it must only depend on the collection, the name and the value.
+     *
+     * @param collection the collection being queried, may be null
+     * @param key        the param name
+     * @param value      the param value
+     * @return the json named and column mapped forms of the param or a SelectTerm with a null term if the param should not be passed on to {@link #doSelect(Collection, List)}
+     */
+    protected SelectTerm parseSelectTerm(Collection collection, String key, String value) {
+        Term term = Rql.parse(key, value);
+
+        List<Term> illegalTerms = term.stream().filter(t -> t.isLeaf() && reservedParams.contains(t.getToken())).collect(Collectors.toList());
+        if (illegalTerms.size() > 0) {
+            //Chain.debug("Ignoring RQL terms with reserved tokens: " + illegalTerms);
+            return SelectTerm.IGNORED;
+        }
+
+        if (term.hasToken("eq") && term.getTerm(0).hasToken("include")) {
+            //THIS IS AN OPTIMIZATION...the rest action can pull stuff OUT of the results based on
+            //dotted path expressions.  If you don't use dotted path expressions the includes values
+            //can be used to limit the sql select clause...however if any of the columns are actually
+            //dotted paths, don't pass on to the Query the extra stuff will be removed by the rest action.
+            boolean dottedInclude = false;
+            for (int i = 1; i < term.size(); i++) {
+                String str = term.getToken(i);
+                if (str.contains(".")) {
+                    dottedInclude = true;
+                    break;
+                }
+            }
+            if (dottedInclude)
+                return SelectTerm.IGNORED;
+
+            //-- if the users requests eq(includes, href...) you have to replace "href" with the primary index column names
+            for (Term child : term.getTerms()) {
+                if (child.hasToken("href") && collection != null) {
+                    Index pk = collection.getResourceIndex();
+                    if (pk != null) {
+                        term.removeTerm(child);
+                        for (int i = 0; i < pk.size(); i++) {
+                            Property c             = pk.getProperty(i);
+                            boolean  includesPkCol = false;
+                            for (Term col : term.getTerms()) {
+                                if (col.hasToken(c.getColumnName())) {
+                                    includesPkCol = true;
+                                    break;
+                                }
+                            }
+                            if (!includesPkCol)
+                                term.withTerm(Term.term(term, c.getColumnName()));
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+
+        return new SelectTerm(term, new ArrayList<>(mapToColumnNames(collection, term.copy())));
+    }
+
+    /**
+     * Returns the cache of parsed and column mapped select params for <code>collection</code>.
+     *
+     * @param collection the collection being queried
+     * @return the collection's cache or null if caching is disabled or collection is null
+     */
+    public TermCache<SelectTerm> getSelectTermCache(Collection collection) {
+        if (collection == null || selectTermCacheSize < 1)
+            return null;
+
+        selectTermCachesLock.lock();
+        try {
+            return selectTermCaches.computeIfAbsent(collection, c -> new TermCache<>(selectTermCacheSize));
+        } finally {
+            selectTermCachesLock.unlock();
+        }
+    }
+
+    public int getSelectTermCacheSize() {
+        return selectTermCacheSize;
+    }
+
+    /**
+     * @param selectTermCacheSize the max number of distinct params cached per collection, 0 disables the cache
+     * @return this
+     */
+    public T withSelectTermCacheSize(int selectTermCacheSize) {
+        this.selectTermCacheSize = selectTermCacheSize;
+        clearSelectTermCaches();
+        return (T) this;
+    }
+
+    /**
+     * Discards all cached select params.
+     * <p>
+     * Cached params are keyed by {@link Collection#getVersion()} so changes to a collection's properties or relationships are picked up without calling this.
+     */
+    public void clearSelectTermCaches() {
+        selectTermCachesLock.lock();
+        try {
+            selectTermCaches.clear();
+        } finally {
+            selectTermCachesLock.unlock();
+        }
+    }
+
     /**
      * Finds all records that match the supplied RQL query terms.
      * <p>
@@ -325,71 +488,41 @@ public class Db<T extends Db> extends Rule<T> {
      */
     public final Results select(Collection collection, Map<String, String> params) throws ApiException {
 
-        List<Term> terms = new ArrayList<>();
+        TermCache<SelectTerm> cache       = getSelectTermCache(collection);
+        List<SelectTerm>      selectTerms = new ArrayList<>();
 
         for (String key : params.keySet()) {
             String value = params.get(key);
-            Term   term  = Rql.parse(key, value);
 
-            List<Term> illegalTerms = term.stream().filter(t -> t.isLeaf() && reservedParams.contains(t.getToken())).collect(Collectors.toList());
-            if (illegalTerms.size() > 0) {
-                //Chain.debug("Ignoring RQL terms with reserved tokens: " + illegalTerms);
-                continue;
-            }
+            //-- null and empty values parse the same so they share a key, the name length keeps "a=b"+"c" and "a"+"b=c" apart
+            //-- the collection's version retires terms mapped with properties that have since changed
+            String     cacheKey   = cache == null ? null : collection.getVersion() + "|" + key.length() + ":" + key + "=" + (value == null ? "" : value);
+            SelectTerm selectTerm = cacheKey == null || cacheKey.length() > Rql.MAX_CACHED_LENGTH ? null : cache.get(cacheKey);
 
-            if (term.hasToken("eq") && term.getTerm(0).hasToken("include")) {
-                //THIS IS AN OPTIMIZATION...the rest action can pull stuff OUT of the results based on
-                //dotted path expressions.  If you don't use dotted path expressions the includes values
-                //can be used to limit the sql select clause...however if any of the columns are actually
-                //dotted paths, don't pass on to the Query the extra stuff will be removed by the rest action.
-                boolean dottedInclude = false;
-                for (int i = 1; i < term.size(); i++) {
-                    String str = term.getToken(i);
-                    if (str.contains(".")) {
-                        dottedInclude = true;
-                        break;
-                    }
-                }
-                if (dottedInclude)
-                    continue;
-
-                //-- if the users requests eq(includes, href...) you have to replace "href" with the primary index column names
-                for (Term child : term.getTerms()) {
-                    if (child.hasToken("href") && collection != null) {
-                        Index pk = collection.getResourceIndex();
-                        if (pk != null) {
-                            term.removeTerm(child);
-                            for (int i = 0; i < pk.size(); i++) {
-                                Property c             = pk.getProperty(i);
-                                boolean  includesPkCol = false;
-                                for (Term col : term.getTerms()) {
-                                    if (col.hasToken(c.getColumnName())) {
-                                        includesPkCol = true;
-                                        break;
-                                    }
-                                }
-                                if (!includesPkCol)
-                                    term.withTerm(Term.term(term, c.getColumnName()));
-                            }
-                        }
-                        break;
-                    }
-                }
+            if (selectTerm == null) {
+                selectTerm = parseSelectTerm(collection, key, value);
+                if (cacheKey != null && cacheKey.length() <= Rql.MAX_CACHED_LENGTH)
+                    cache.put(cacheKey, selectTerm);
             }
 
-            terms.add(term);
+            if (selectTerm.term != null)
+                selectTerms.add(selectTerm);
         }
 
         //-- this sort is not strictly necessary but it makes the order of terms in generated
         //-- query text dependable so you can write better tests.
-        Collections.sort(terms);
+        selectTerms.sort((a, b) -> a.term.compareTo(b.term));
 
+        //-- cached terms are templates, whoever consumes the mapped terms is free to modify their copies
         List<Term> mappedTerms = new ArrayList<>();
-        terms.forEach(term -> mappedTerms.addAll(mapToColumnNames(collection, term.copy())));
+        selectTerms.forEach(selectTerm -> selectTerm.mappedTerms.forEach(term -> mappedTerms.add(term.copy())));
 
-        Results results = doSelect(collection, mappedTerms);
+        Results results = entityCache != null && !isDryRun() ? entityCache.select(this, collection, mappedTerms) : null;
+        if (results == null)
+            results = doSelect(collection, mappedTerms);
 
-        if (results.size() > 0) {
+        //-- rows from a RowMapper are already json named and cast
+        if (results.size() > 0 && !results.isMapped()) {
 
             for (int i = 0; i < results.size(); i++) {
                 //convert the map into a JSNode
@@ -453,7 +586,7 @@ public class Db<T extends Db> extends Rule<T> {
                 }
             }
 
-        } // end if results.size() > 0
+        } // end if results.size() > 0 && !results.isMapped()
 
         //------------------------------------------------
         //the "next" params come from the db encoded with db col names
@@ -480,7 +613,15 @@ public class Db<T extends Db> extends Rule<T> {
 
 
     public final List<String> upsert(Collection collection, List<Map<String, Object>> records) throws ApiException {
-        return doUpsert(collection, mapToColumnNames(collection, records));
+        invalidateLoader(collection);
+        List<Map<String, Object>> rows = mapToColumnNames(collection, records);
+        List<String>              keys = null;
+        try {
+            keys = doUpsert(collection, rows);
+            return keys;
+        } finally {
+            invalidateEntityCache(collection, rows, keys);
+        }
     }
 
 
@@ -521,7 +662,15 @@ public class Db<T extends Db> extends Rule<T> {
      */
     //TODO: all rows need to be have a resourceKey
     public List<String> patch(Collection collection, List<Map<String, Object>> records) throws ApiException {
-        return doPatch(collection, mapToColumnNames(collection, records));
+        invalidateLoader(collection);
+        List<Map<String, Object>> rows = mapToColumnNames(collection, records);
+        List<String>              keys = null;
+        try {
+            keys = doPatch(collection, rows);
+            return keys;
+        } finally {
+            invalidateEntityCache(collection, rows, keys);
+        }
     }
 
     public List<String> doPatch(Collection collection, List<Map<String, Object>> rows) throws ApiException {
@@ -541,7 +690,55 @@ public class Db<T extends Db> extends Rule<T> {
      * @param indexValues the identifiers for the records to delete
      */
     public final void delete(Collection collection, List<Map<String, Object>> indexValues) throws ApiException {
-        doDelete(collection, mapToColumnNames(collection, indexValues));
+        invalidateLoader(collection);
+        List<Map<String, Object>> rows = mapToColumnNames(collection, indexValues);
+        try {
+            doDelete(collection, rows);
+        } finally {
+            invalidateEntityCache(collection, rows, null);
+        }
+    }
+
+    /**
+     * Discards any records of <code>collection</code> the current request's {@link Loader} has remembered.
+     *
+     * @param collection the collection being modified
+     */
+    protected void invalidateLoader(Collection collection) {
+        Loader loader = Loader.peek();
+        if (loader != null)
+            loader.invalidate(collection);
+    }
+
+    /**
+     * Evicts the written rows from the {@link EntityCache}, or every row of <code>collection</code> if
+     * any written row can not be identified by its resource key.
+     *
+     * @param collection the collection being modified
+     * @param rows       the column name mapped rows, or index values, that were written
+     * @param keys       the resource keys returned by the write or null if it failed or did not return any
+     */
+    protected void invalidateEntityCache(Collection collection, List<Map<String, Object>> rows, List<String> keys) {
+        if (entityCache == null)
+            return;
+
+        Set<String> written = new HashSet<>();
+        if (keys != null) {
+            for (String key : keys) {
+                if (key != null)
+                    written.add(key);
+            }
+        }
+        for (Map<String, Object> row : rows) {
+            String key = collection.encodeKeyFromColumnNames(row);
+            if (key != null) {
+                written.add(key);
+            } else if (keys == null) {
+                entityCache.invalidate(collection);
+                return;
+            }
+        }
+        entityCache.invalidate(collection, written);
     }
 
     public void doDelete(Collection collection, List<Map<String, Object>> indexValues) throws ApiException{
@@ -124,6 +124,7 @@ public final class Endpoint extends Rule<Endpoint> {
         if (!inserted)
             actions.add(action);
 
+        ruleChanged();
         return this;
     }
 
@@ -25,6 +25,7 @@ import io.inversion.context.Context;
 import io.inversion.context.Includer;
 import io.inversion.context.InversionNamer;
 import io.inversion.context.codec.ToStringCodec;
+import io.inversion.json.JSCursor;
 import io.inversion.json.JSList;
 import io.inversion.json.JSMap;
 import io.inversion.json.JSNode;
@@ -40,6 +41,10 @@ import java.io.File;
 import java.lang.reflect.Type;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 /**
@@ -79,9 +84,17 @@ public class Engine {
      */
     protected transient volatile Response             lastResponse = null;
     /**
-     * The {@code Api}s being service by this Engine
+     * The {@code Api}s being service by this Engine.
+     * <p>
+     * This is an immutable copy-on-write snapshot.  {@link #withApi(Api)} and {@link #removeApi(Api)}
+     * publish a new list so request time lookups never need to lock.
+     */
+    protected volatile           List<Api>            apis         = Collections.emptyList();
+
+    /**
+     * Case insensitive index of <code>apis</code> by name, rebuilt whenever a new <code>apis</code> snapshot is published.
      */
-    protected                    List<Api>            apis         = new Vector<>();
+    transient volatile ApiIndex apiIndex = null;
 
     protected final List<Action> filters = new ArrayList();
 
@@ -95,6 +108,43 @@ public class Engine {
      */
     protected String corsAllowHeaders = "accept,accept-encoding,accept-language,access-control-request-headers,access-control-request-method,authorization,connection,content-type,host,user-agent,x-auth-token";
 
+    /**
+     * Controls when debug output is collected into the root {@code Response}.
+     * <p>
+     * When debug output is not collected, calls to {@link Chain#debug(String, Object...)}
+     * return immediately and components such as Db query builders skip building their debug strings.
+     *
+     * @see DebugMode
+     */
+    protected DebugMode debugMode = DebugMode.ON_REQUEST;
+
+    /**
+     * When true, requests submitted through {@link #serviceAsync(Request, Response)} are each run on their own virtual thread.
+     * <p>
+     * Most of the time spent servicing a request is blocked on Db or ApiClient I/O.  A parked virtual thread does not
+     * tie up a platform thread so many more requests can be in flight at once than with a fixed thread pool.
+     * <p>
+     * Virtual threads require a Java 21+ runtime.  On older runtimes a cached platform thread pool is used instead.
+     */
+    protected boolean virtualThreads = false;
+
+    /**
+     * Compression of response bodies negotiated from the request "Accept-Encoding" header.
+     * <p>
+     * Disabled by default.  Applied by the servlet, AWS Lambda and Azure Function adapters when writing responses.
+     */
+    protected ResponseCompression compression = new ResponseCompression();
+
+    /**
+     * Lazily built executor that runs requests submitted through {@link #serviceAsync(Request, Response)}.
+     */
+    transient protected ExecutorService executor = null;
+
+    /**
+     * True if <code>executor</code> was created by {@link #buildExecutor()} and so is owned, and shut down, by this Engine.
+     */
+    transient protected boolean ownsExecutor = false;
+
     transient volatile boolean started  = false;
     transient volatile boolean starting = false;
 
@@ -197,6 +247,17 @@ public class Engine {
             }
         }
 
+        //-- an executor supplied via withExecutor belongs to the caller and is left running
+        synchronized (this) {
+            if (ownsExecutor) {
+                ExecutorService executor = this.executor;
+                this.executor = null;
+                ownsExecutor = false;
+                if (executor != null)
+                    executor.shutdown();
+            }
+        }
+
         started = false;
         starting = false;
 
@@ -424,11 +485,113 @@ public class Engine {
      *   <li>v1/library/books?ISBN=1234567890
      * </ul>
      *
+     * <p>
+     * The request runs in the {@link RequestScope} carried by <code>req</code>, or the scope already bound to the
+     * current thread for nested calls, or a new scope.  The scope is bound to the current thread only for the duration of this call.
+     *
      * @param req the api Request
      * @param res the api Response
      * @return the Chain representing all of the actions executed in populating the Response
      */
     public Chain service(Request req, Response res) {
+        RequestScope previous = RequestScope.peek();
+        RequestScope scope    = req.getScope();
+        if (scope == null) {
+            scope = previous != null ? previous : new RequestScope();
+            req.withScope(scope);
+        }
+
+        if (scope == previous)
+            return service(scope, req, res);
+
+        scope.bind();
+        try {
+            return service(scope, req, res);
+        } finally {
+            RequestScope.restore(previous);
+        }
+    }
+
+    /**
+     * Services <code>req</code> on this Engine's executor when {@link #isVirtualThreads()} is true, otherwise synchronously on the calling thread.
+     * <p>
+     * Each request gets its own {@link RequestScope} (unless it already carries one), so no request state is tied to the calling thread.
+     *
+     * @param req the api Request
+     * @param res the api Response
+     * @return a future that completes with the Chain once the Response has been populated
+     * @see #service(Request, Response)
+     */
+    public CompletableFuture<Chain> serviceAsync(Request req, Response res) {
+        if (req.getScope() == null)
+            req.withScope(new RequestScope());
+
+        if (!virtualThreads)
+            return CompletableFuture.completedFuture(service(req, res));
+
+        return CompletableFuture.supplyAsync(() -> service(req, res), getExecutor());
+    }
+
+    /**
+     * Runs <code>task</code> on the calling thread as a nested request of <code>parent</code> that has its own {@link RequestScope}.
+     * <p>
+     * This lets an Action split the work for one request across threads, one branch per thread.  Each branch has its own Chain stack
+     * and scope attributes, so per request resources such as Db connections are never shared between threads, while
+     * {@link Chain#getUser()} and {@link Chain#get(String)} still resolve through <code>parent</code>.
+     * ApiListeners are notified when <code>task</code> completes, just as they are for any nested request, so those resources are released.
+     *
+     * @param parent the Chain of the request being split
+     * @param req    describes the branch to ApiListeners, its Api defaults to the Api of <code>parent</code>
+     * @param task   the work to do
+     * @param <T>    the result type
+     * @return the result of <code>task</code>
+     * @throws Exception when <code>task</code> throws
+     */
+    public <T> T callBranch(Chain parent, Request req, Callable<T> task) throws Exception {
+        RequestScope scope = new RequestScope();
+        Response     res   = new Response().withRequest(req);
+        req.withEngine(this);
+        req.withScope(scope);
+        if (req.getApi() == null)
+            req.withApi(parent.getRequest().getApi());
+
+        RequestScope previous = scope.bind();
+        try {
+            Chain.push(scope, this, req, res).setParent(parent);
+            try {
+                T result = task.call();
+                for (ApiListener listener : getApiListeners(req))
+                    listener.onAfterRequest(req, res);
+                return result;
+            } catch (Exception ex) {
+                res.withError(ex);
+                for (ApiListener listener : getApiListeners(req)) {
+                    try {
+                        listener.onAfterError(req, res);
+                    } catch (Exception ex2) {
+                        log.warn("Error notifying EngineListener.onAfterError", ex2);
+                    }
+                }
+                throw ex;
+            } finally {
+                try {
+                    for (ApiListener listener : getApiListeners(req)) {
+                        try {
+                            listener.onBeforeFinally(req, res);
+                        } catch (Exception ex) {
+                            log.warn("Error notifying EngineListener.onFinally", ex);
+                        }
+                    }
+                } finally {
+                    scope.pop();
+                }
+            }
+        } finally {
+            RequestScope.restore(previous);
+        }
+    }
+
+    Chain service(RequestScope scope, Request req, Response res) {
         Chain chain = null;
         if (res.getRequest() == null)
             res.withRequest(req);
@@ -436,7 +599,7 @@ public class Engine {
             if (!started)
                 startup();
 
-            chain = Chain.push(this, req, res);
+            chain = Chain.push(scope, this, req, res);
             req.withEngine(this);
             req.withChain(chain);
 
@@ -495,7 +658,7 @@ public class Engine {
             }
 
             //-- remove any RQL terms that functions with leading "_" as these are internal/restricted
-            if (Chain.getDepth() < 2) {
+            if (scope.getDepth() < 2) {
                 Map<String, String> urlParams = req.getUrl().getParams();
                 for (String key : urlParams.keySet()) {
 
@@ -547,7 +710,8 @@ public class Engine {
             if (outError)
                 ex.printStackTrace();
 
-            Chain.debug("Uncaught Exception: " + Utils.getShortCause(ex));
+            if (Chain.isDebugEnabled())
+                Chain.debug("Uncaught Exception: " + Utils.getShortCause(ex));
 
             JSNode json = buildErrorJson(ex);
             res.withStatus(json.getString("status"));
@@ -564,7 +728,7 @@ public class Engine {
 
         } finally {
 
-            if (Chain.isRoot()) {
+            if (scope.getDepth() < 2) {
                 exclude(req, res);
             }
 
@@ -578,7 +742,11 @@ public class Engine {
                 }
             } finally {
                 if (chain != null)
-                    Chain.pop();
+                    scope.pop();
+
+                //-- a scope bound to a thread may be reused by the next request, it must not see this request's records
+                if (scope.getDepth() == 0)
+                    scope.removeAttribute(Loader.class);
 
                 lastResponse = res;
             }
@@ -595,7 +763,10 @@ public class Engine {
             throw ApiException.new400BadRequest("No API or Endpoint was found matching your request '{}':'{}'", req.getMethod(), requestUrl);
         }
 
-        if (req.isDebug()) {
+        if (chain.getParent() == null)
+            chain.withDebug(isDebug(req));
+
+        if (Chain.isDebugEnabled()) {
             res.debug("");
             res.debug("");
             res.debug(">> request --------------");
@@ -711,30 +882,32 @@ public class Engine {
         if (api == null)
             return false;
 
-        Map<String, String> pathParams = new HashMap<>();
-        Path                remainder  = req.getOperationPath().copy();
+        Path remainder = req.getOperationPath().copy();
 
         if (api != null) {
-            for (Op op : api.getOps()) {
-
-                boolean matched = op.matches(req, remainder);
-
-                if (matched) {
-                    //TODO: need to revalidate for exclude rules...or remove the concept
-                    req.withOp(op);
-                    req.withEndpoint(op.getEndpoint());
-                    req.withDb(op.getDb());
-                    req.withCollection(op.getCollection());
-
-                    Path dbPath         = op.getDbPathMatch() != null ? op.getDbPathMatch().extract(pathParams, remainder.copy()) : null;
-                    Path endpointPath   = op.getEndpointPathMatch().extract(pathParams, remainder);
-                    Path collectionPath = op.getCollectionPathMatch() != null ? op.getCollectionPathMatch().extract(pathParams, remainder.copy()) : null;
-
-                    req.withEndpointPath(endpointPath);
-                    req.withActionPath(remainder);
-                    req.withDbPath(dbPath);
-                    req.withCollectionPath(collectionPath);
-                    req.withPathParams(pathParams);
+            Router.Route route = api.getRouter().match(req, remainder);
+            if (route != null) {
+                Op op = route.getOp();
+
+                //TODO: need to revalidate for exclude rules...or remove the concept
+                req.withOp(op);
+                req.withEndpoint(op.getEndpoint());
+                req.withDb(op.getDb());
+                req.withCollection(op.getCollection());
+
+                //-- the router already validated the path against the op so the
+                //-- slices are cut by length and the params come from the route
+                int  endpointLength = Router.getMatchLength(op.getEndpointPathMatch(), remainder.size());
+                Path endpointPath   = remainder.subpath(0, endpointLength);
+                Path actionPath     = remainder.subpath(endpointLength, remainder.size());
+                Path dbPath         = op.getDbPathMatch() != null ? remainder.subpath(0, Router.getMatchLength(op.getDbPathMatch(), remainder.size())) : null;
+                Path collectionPath = op.getCollectionPathMatch() != null ? actionPath.subpath(0, Router.getMatchLength(op.getCollectionPathMatch(), actionPath.size())) : null;
+
+                req.withEndpointPath(endpointPath);
+                req.withActionPath(actionPath);
+                req.withDbPath(dbPath);
+                req.withCollectionPath(collectionPath);
+                req.withPathParams(route.getPathParams());
 
 //                pathParams.clear();
 //                for(Parameter param : op.getParameters()){
@@ -746,42 +919,53 @@ public class Engine {
 //                }
 
 
-                    String method  = req.getMethod();
-                    Path   path    = req.getPath();
-                    Path   subpath = req.getSubpath();
-
-                    //this will get all actions specifically configured on the endpoint
-                    List<ActionMatch> actions = new ArrayList<>();
-
-                    for (Action action : req.getEndpoint().getActions()) {
-                        Path actionPath = action.match(method, subpath);
-                        if (actionPath != null) {
-                            actions.add(new ActionMatch(actionPath, new Path(subpath), action));
-                        }
-                    }
-
-                    //this matches for actions that can run across multiple endpoints.
-                    //this might be something like an authorization or logging action
-                    //that acts like a filter
-                    for (Action action : req.getApi().getActions()) {
-                        Path actionPath = action.match(method, path);
-                        if (actionPath != null) {
-                            actions.add(new ActionMatch(actionPath, new Path(path), action));
-                        }
-                    }
+                String method  = req.getMethod();
+                Path   path    = req.getPath();
+                Path   subpath = req.getSubpath();
 
-                    Collections.sort(actions);
-                    req.withActionMatches(actions);
+                //-- the op's action plan holds the endpoint actions and the api actions, such as
+                //-- authorization or logging actions that act like filters across multiple endpoints,
+                //-- that could match this op, presorted.  Only actions whose rules depend on the
+                //-- concrete request path are re-evaluated here.
+                List<ActionMatch> actions = op.getActionPlan().match(method, path, subpath);
+                req.withActionMatches(actions);
 
-                    //System.out.println("SELECTING OPERATION: " + op.getMethod() + " " + op.getPath());
+                //System.out.println("SELECTING OPERATION: " + op.getMethod() + " " + op.getPath());
 
-                    return true;
-                }
+                return true;
             }
         }
         return false;
     }
 
+    /**
+     * Finds the engine filters and Op actions that would run if <code>req</code> were serviced, without running any of them.
+     * <p>
+     * This lets Actions decide if a nested request can safely be handled in-process instead of
+     * through a full {@link #service(Request, Response)} call.
+     *
+     * @param req the request to match, its Api, Op, Collection and path properties are populated as a side effect
+     * @return the engine filters followed by the Op's actions or null if no Endpoint matches <code>req</code>
+     */
+    public List<ActionMatch> matchActions(Request req) {
+        if (!started)
+            startup();
+
+        List<ActionMatch> actions = new ArrayList<>();
+        for (Action filter : filters) {
+            Path path  = req.getUrl().getPath().copy();
+            Path match = filter.match(req.getMethod(), path);
+            if (match != null)
+                actions.add(new ActionMatch(match, path, filter));
+        }
+
+        if (!matchRequest(req) || req.getEndpoint() == null)
+            return null;
+
+        actions.addAll(req.getActionMatches());
+        return actions;
+    }
+
 
     public static JSNode buildErrorJson(Throwable ex) {
         String status  = "500 Internal Server Error";
@@ -839,18 +1023,54 @@ public class Engine {
         return new ArrayList<>(apis);
     }
 
-    public synchronized Api getApi(String apiName) {
+    /**
+     * Finds the Api with the case insensitive name <code>apiName</code> without locking.
+     *
+     * @param apiName the name of the Api to find
+     * @return the matching Api or null
+     */
+    public Api getApi(String apiName) {
         if (apiName == null)
             return null;
-        //only one api will have a name version pair so return the first one.
-        for (Api api : apis) {
-            if (apiName.equalsIgnoreCase(api.getName()))
-                return api;
 
+        List<Api> apis  = this.apis;
+        ApiIndex  index = this.apiIndex;
+        if (index == null || index.apis != apis) {
+            index = new ApiIndex(apis);
+            this.apiIndex = index;
+        }
+
+        Api api = index.byName.get(apiName.toLowerCase());
+        if (api != null && apiName.equalsIgnoreCase(api.getName()))
+            return api;
+
+        //-- an Api may have been renamed after it was registered
+        //only one api will have a name version pair so return the first one.
+        for (Api candidate : apis) {
+            if (apiName.equalsIgnoreCase(candidate.getName()))
+                return candidate;
         }
         return null;
     }
 
+    /**
+     * An immutable name to Api index over one <code>apis</code> snapshot.
+     */
+    static final class ApiIndex {
+        final List<Api>        apis;
+        final Map<String, Api> byName;
+
+        ApiIndex(List<Api> apis) {
+            this.apis = apis;
+            Map<String, Api> byName = new HashMap<>();
+            for (Api api : apis) {
+                if (api.getName() != null)
+                    byName.putIfAbsent(api.getName().toLowerCase(), api);
+            }
+            this.byName = Collections.unmodifiableMap(byName);
+        }
+    }
+
     public synchronized Engine withApi(Api api) {
         if (apis.contains(api))
             return this;
@@ -871,7 +1091,7 @@ public class Engine {
         if (existingApi != api && isStarted())
             api.startup(this);
 
-        apis = newList;
+        apis = Collections.unmodifiableList(newList);
 
         if (existingApi != null && existingApi != api) {
             existingApi.shutdown(this);
@@ -906,7 +1126,7 @@ public class Engine {
     public synchronized void removeApi(Api api) {
         List<Api> newList = new ArrayList<>(apis);
         newList.remove(api);
-        apis = newList;
+        apis = Collections.unmodifiableList(newList);
         shutdownApi(api);
     }
 
@@ -929,6 +1149,100 @@ public class Engine {
     }
 
 
+    public DebugMode getDebugMode() {
+        return debugMode;
+    }
+
+    public Engine withDebugMode(DebugMode debugMode) {
+        this.debugMode = debugMode == null ? DebugMode.ON_REQUEST : debugMode;
+        return this;
+    }
+
+    /**
+     * Determines if debug output should be collected while servicing <code>req</code>.
+     *
+     * @param req the inbound Request
+     * @return true if debug output should be collected for this request
+     */
+    public boolean isDebug(Request req) {
+        switch (debugMode) {
+            case OFF:
+                return false;
+            case ALWAYS:
+                return true;
+            default:
+                return req != null && (req.isExplain() || req.isDebug());
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public Engine withVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * @return lazy constructs <code>executor</code> if necessary.
+     */
+    public ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    executor = buildExecutor();
+                    ownsExecutor = true;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Supplies the executor used by {@link #serviceAsync(Request, Response)}.
+     * <p>
+     * The caller remains responsible for shutting it down, {@link #shutdown()} only shuts down an executor the Engine built itself.
+     *
+     * @param executor the executor to run async requests on
+     * @return this
+     */
+    public synchronized Engine withExecutor(ExecutorService executor) {
+        if (ownsExecutor && this.executor != null && this.executor != executor)
+            this.executor.shutdown();
+        this.executor = executor;
+        this.ownsExecutor = false;
+        return this;
+    }
+
+    /**
+     * Build an executor if one was not wired in.
+     * <p>
+     * When {@link #isVirtualThreads()} is true this is a thread per task virtual thread executor if the runtime supports it.
+     * Virtual threads are looked up reflectively so Inversion can still be built and run on Java 17.
+     *
+     * @return a new ExecutorService
+     */
+    protected ExecutorService buildExecutor() {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (Exception ex) {
+                log.warn("Virtual threads are not supported by this JVM, falling back to a cached thread pool.");
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    public ResponseCompression getCompression() {
+        return compression;
+    }
+
+    public Engine withCompression(ResponseCompression compression) {
+        this.compression = compression == null ? new ResponseCompression() : compression;
+        return this;
+    }
+
     public Engine withAllowHeaders(String allowHeaders) {
         this.corsAllowHeaders = allowHeaders;
         return this;
@@ -1023,6 +1337,25 @@ public class Engine {
         return this;
     }
 
+    /**
+     * Determines when an Engine collects debug output.
+     */
+    public enum DebugMode {
+        /**
+         * Debug output is never collected.
+         */
+        OFF,
+        /**
+         * Debug output is collected when the request asks for it via an "explain" param or header,
+         * or when {@link Request#isDebug()} is true.
+         */
+        ON_REQUEST,
+        /**
+         * Debug output is collected for every request.
+         */
+        ALWAYS
+    }
+
     /**
      * Receives {@code Engine} and {@code Api} lifecycle,
      * per request and per error callback notifications.
@@ -1075,6 +1408,15 @@ public class Engine {
         Set<String> excludes = getXcludesSet(req.getUrl().getParam("exclude"));
 
         if ((includes != null && includes.size() > 0) || (excludes != null && excludes.size() > 0)) {
+            if (data instanceof JSCursor) {
+                //-- streamed records are trimmed one at a time as they are written
+                ((JSCursor) data).onEach(node -> {
+                    if (node instanceof JSMap)
+                        exclude((JSMap) node, includes, excludes, null);
+                });
+                return;
+            }
+
             for (JSMap node : data.asMapList()) {
                 exclude(node, includes, excludes, null);
             }
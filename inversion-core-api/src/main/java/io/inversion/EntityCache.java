@@ -0,0 +1,575 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.json.JSMap;
+import io.inversion.rql.Term;
+import io.inversion.utils.LruCache;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A process wide, read through cache of the rows a {@link Db} returns for primary key lookups.
+ * <p>
+ * Set one on a Db with {@link Db#withEntityCache(EntityCache)} and any select whose only term is a
+ * <code>_key</code>, <code>eq</code> or <code>in</code> filter on the Collection's resource index, for example
+ * <code>GET /customers/ALFKI</code> or the many-to-one lookups DbGetAction makes while expanding, is answered from
+ * the cache with only the missing keys selected from {@link Db#doSelect(Collection, List)}.  Every other select
+ * goes straight to the Db.
+ * <p>
+ * Rows are cached by (Collection, resource key) exactly as doSelect returned them, with column name keys or, for Dbs
+ * such as JdbcDb whose doSelect returns {@link Results#isMapped()} rows, with json name keys.  The cache
+ * is bounded by the approximate weight of the rows it holds, evicting the least recently used rows first, and
+ * rows can expire after a per Collection time to live.
+ * <p>
+ * Upserts, patches and deletes through the Db evict the rows they write right away.  Because the write may not be
+ * committed until the request ends, the same rows are evicted again when the request finishes and a row selected
+ * while any eviction was in progress is not cached at all.  Writes that bypass the Db, for example from another
+ * process, are only seen once the rows expire so configure a TTL if you have them.
+ */
+public class EntityCache implements Api.ApiListener {
+
+    static class Node {
+        final Collection          collection;
+        final String              key;
+        final Map<String, Object> row;
+        final boolean             mapped;
+        final long                weight;
+
+        Node(Collection collection, String key, Map<String, Object> row, boolean mapped, long weight) {
+            this.collection = collection;
+            this.key = key;
+            this.row = row;
+            this.mapped = mapped;
+            this.weight = weight;
+        }
+
+        /**
+         * @return a copy of the row that the caller is free to modify
+         */
+        Map<String, Object> copy() {
+            return mapped ? new JSMap(row) : new LinkedHashMap<>(row);
+        }
+    }
+
+    static class Key {
+        final Collection collection;
+        final String     key;
+
+        Key(Collection collection, String key) {
+            this.collection = collection;
+            this.key = key;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return collection == other.collection && key.equals(other.key);
+        }
+
+        public int hashCode() {
+            return 31 * System.identityHashCode(collection) + key.hashCode();
+        }
+    }
+
+    /**
+     * The maximum total weight, approximately bytes, of the cached rows.
+     */
+    protected long maxWeight = 16 * 1024 * 1024;
+
+    /**
+     * Milliseconds until a row expires for Collections without their own TTL, 0 means rows live until they are evicted.
+     */
+    protected long defaultTtl = 0;
+
+    /**
+     * Collection name to milliseconds until a row of that Collection expires.
+     */
+    protected final Map<String, Long> ttls = new HashMap<>();
+
+    final transient Map<Collection, Set<String>> byCollection = new IdentityHashMap<>();
+    /**
+     * Keeps <code>byCollection</code> and <code>version</code> consistent with <code>nodes</code>.
+     */
+    final transient ReentrantLock                lock         = new ReentrantLock();
+    final transient AtomicLong                   version      = new AtomicLong();
+
+    /**
+     * Built on first use so <code>maxWeight</code> can still be configured.
+     */
+    transient volatile LruCache<Key, Node> nodes = null;
+
+    public EntityCache() {
+    }
+
+    public EntityCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Finds the resource keys <code>terms</code> select if they are nothing more than a resource key lookup.
+     * <p>
+     * Keys are returned in the canonical form {@link Collection#encodeKeyFromColumnNames(Map)} gives the selected rows
+     * so, for example, <code>eq(id,007)</code> on an integer column and a row with <code>id</code> 7 have the same key.
+     *
+     * @param collection the collection being selected from
+     * @param terms      the column name mapped select terms
+     * @return the requested resource keys or null if the terms are anything other than a single resource key filter
+     */
+    public static List<String> findKeys(Collection collection, List<Term> terms) {
+        if (collection == null || collection.getDb() == null)
+            return null;
+
+        Index index = collection.getResourceIndex();
+        if (index == null)
+            return null;
+
+        //-- path params such as eq(_collection,books) are ignored by Query as invalid columns
+        List<Term> filters = new ArrayList<>();
+        for (Term term : terms) {
+            if (!(term.size() > 0 && term.isLeaf(0) && term.getToken(0).startsWith("_") && collection.getPropertyByColumnName(term.getToken(0)) == null))
+                filters.add(term);
+        }
+        if (filters.size() != 1)
+            return null;
+
+        Term term = filters.get(0);
+        boolean encoded;
+        if (term.hasToken("_key") && term.size() > 1 && index.getName().equalsIgnoreCase(term.getToken(0)))
+            encoded = true;
+        else if ((term.hasToken("eq") && term.size() == 2 || term.hasToken("in") && term.size() > 1) //
+                && index.size() == 1 && term.isLeaf(0) && index.getColumnName(0).equalsIgnoreCase(term.getToken(0)))
+            encoded = false;
+        else
+            return null;
+
+        List<String> keys = new ArrayList<>();
+        try {
+            for (int i = 1; i < term.size(); i++) {
+                if (!term.isLeaf(i))
+                    return null;
+
+                Map<String, Object> values = encoded //
+                        ? collection.decodeKeyToColumnNames(index, term.getToken(i)) //
+                        : Collections.singletonMap(index.getColumnName(0), collection.getDb().castJsonInput(index.getProperty(0), term.getToken(i)));
+
+                String key = collection.encodeKeyFromColumnNames(values);
+                if (key == null)
+                    return null;
+                keys.add(key);
+            }
+        } catch (Exception ex) {
+            //-- a malformed key, let the Db report it
+            return null;
+        }
+        return keys;
+    }
+
+    /**
+     * Answers a resource key lookup from the cache, selecting only the missing keys from <code>db</code>.
+     * <p>
+     * Rows are returned in the order their keys were requested.  Selected rows are not cached if the
+     * current request has written to the collection because they may not have been committed yet.
+     *
+     * @param db         the db to select misses from
+     * @param collection the collection being selected from
+     * @param terms      the column name mapped select terms
+     * @return the rows, keyed the way doSelect returned them, or null if <code>terms</code> are not a resource key lookup that can be cached
+     * @throws ApiException if selecting the misses fails
+     */
+    public Results select(Db db, Collection collection, List<Term> terms) throws ApiException {
+        List<String> keys = findKeys(collection, terms);
+        if (keys == null)
+            return null;
+
+        Map<String, Node> found  = lookup(collection, keys);
+        List<String>      misses = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            if (!found.containsKey(key))
+                misses.add(key);
+        }
+
+        if (misses.size() > 0) {
+            long    version = getVersion();
+            Results fetched = fetch(db, collection, misses);
+            boolean mapped  = fetched.isMapped();
+
+            Set<String> written = getWritten(collection, false);
+            for (Map<String, Object> row : (List<Map<String, Object>>) fetched.getRows()) {
+                String key = mapped ? collection.encodeKeyFromJsonNames(row) : collection.encodeKeyFromColumnNames(row);
+                if (key == null)
+                    continue;
+                Node node = new Node(collection, key, new LinkedHashMap<>(row), mapped, weigh(key, row));
+                found.put(key, node);
+                if (written == null)
+                    put(node, version);
+            }
+        }
+
+        Boolean mapped = null;
+        for (Node node : found.values()) {
+            if (mapped != null && mapped != node.mapped)
+                return null; //-- the Db has changed how it returns rows, let it answer
+            mapped = node.mapped;
+        }
+
+        Results results = new Results(new io.inversion.query.Query(db, collection, terms));
+        for (String key : new LinkedHashSet<>(keys)) {
+            Node node = found.get(key);
+            if (node != null)
+                results.withRow(node.copy());
+        }
+        results.withMapped(mapped != null && mapped);
+        results.withTestQuery("EntityCache: " + collection.getName() + " keys=" + keys + " misses=" + misses);
+        return results;
+    }
+
+    /**
+     * Selects the rows for <code>keys</code> from the Db.
+     * <p>
+     * The lookup is never streamed, even if the calling Action asked for a streaming Results, so the rows can be cached.
+     */
+    Results fetch(Db db, Collection collection, List<String> keys) throws ApiException {
+        RequestScope scope     = RequestScope.peek();
+        Object       threshold = scope == null ? null : scope.removeAttribute(Results.STREAM_THRESHOLD);
+        try {
+            return db.doSelect(collection, Collections.singletonList(Term.term(null, "_key", collection.getResourceIndex().getName(), keys)));
+        } finally {
+            if (threshold != null)
+                scope.withAttribute(Results.STREAM_THRESHOLD, threshold);
+        }
+    }
+
+    /**
+     * Returns copies of the cached rows for <code>keys</code>, counting a hit or miss for each distinct key.
+     *
+     * @param collection the collection
+     * @param keys       the resource keys
+     * @return the cached rows by resource key, keys that are not cached are absent
+     */
+    public Map<String, Map<String, Object>> get(Collection collection, java.util.Collection<String> keys) {
+        Map<String, Map<String, Object>> found = new LinkedHashMap<>();
+        for (Node node : lookup(collection, keys).values())
+            found.put(node.key, node.copy());
+        return found;
+    }
+
+    Map<String, Node> lookup(Collection collection, java.util.Collection<String> keys) {
+        Map<String, Node> found = new LinkedHashMap<>();
+
+        lock.lock();
+        try {
+            LruCache<Key, Node> nodes = getNodes();
+            for (String key : new LinkedHashSet<>(keys)) {
+                Node node = nodes.get(new Key(collection, key));
+                if (node != null)
+                    found.put(key, node);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return found;
+    }
+
+    /**
+     * Caches a copy of <code>row</code> unless anything has been evicted since <code>version</code> was read.
+     * <p>
+     * Rows heavier than <code>maxWeight</code> by themselves are not cached.
+     *
+     * @param collection the collection
+     * @param key        the resource key of the row
+     * @param row        the row as returned by doSelect
+     * @param mapped     true if the row has json name keys, see {@link Results#isMapped()}
+     * @param version    the value of {@link #getVersion()} read before the row was selected
+     */
+    public void put(Collection collection, String key, Map<String, Object> row, boolean mapped, long version) {
+        put(new Node(collection, key, new LinkedHashMap<>(row), mapped, weigh(key, row)), version);
+    }
+
+    /**
+     * Caches a copy of a <code>row</code> with column name keys.
+     *
+     * @see #put(Collection, String, Map, boolean, long)
+     */
+    public void put(Collection collection, String key, Map<String, Object> row, long version) {
+        put(collection, key, row, false, version);
+    }
+
+    void put(Node node, long version) {
+        if (node.weight > maxWeight)
+            return;
+
+        lock.lock();
+        try {
+            if (version != this.version.get())
+                return;
+
+            if (getNodes().put(new Key(node.collection, node.key), node, getTtl(node.collection)))
+                byCollection.computeIfAbsent(node.collection, c -> new HashSet<>()).add(node.key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts the rows for <code>keys</code> now and again when the current request finishes.
+     *
+     * @param collection the collection that was written to
+     * @param keys       the resource keys of the written rows
+     */
+    public void invalidate(Collection collection, java.util.Collection<String> keys) {
+        evict(collection, keys);
+        Set<String> written = getWritten(collection, true);
+        if (written != null)
+            written.addAll(keys);
+    }
+
+    /**
+     * Evicts every row of <code>collection</code> now and again when the current request finishes.
+     * <p>
+     * Used when the written rows can not be identified by resource key, for example a delete by a different unique index.
+     *
+     * @param collection the collection that was written to
+     */
+    public void invalidate(Collection collection) {
+        evict(collection, null);
+        Set<String> written = getWritten(collection, true);
+        if (written != null)
+            written.add(null);
+    }
+
+    /**
+     * Evicts every cached row.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            version.incrementAndGet();
+            getNodes().clear();
+            byCollection.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts the rows written during the request again now that its transaction has been committed or rolled back.
+     * <p>
+     * The written keys are forgotten once the outermost request finishes so a scope that is reused by the next request does not carry them over.
+     */
+    @Override
+    public void onBeforeFinally(Request req, Response res) {
+        RequestScope scope = RequestScope.peek();
+        Map<Collection, Set<String>> written = scope == null ? null : (Map<Collection, Set<String>>) scope.getAttribute(this);
+        if (written == null)
+            return;
+
+        if (scope.getDepth() <= 1)
+            scope.removeAttribute(this);
+
+        for (Map.Entry<Collection, Set<String>> entry : written.entrySet())
+            evict(entry.getKey(), entry.getValue().contains(null) ? null : entry.getValue());
+    }
+
+    /**
+     * @param collection the collection
+     * @param create     true to start tracking writes to <code>collection</code> if the current request has not written to it yet
+     * @return the keys written to <code>collection</code> during the current request, null if nothing has been written or there is no request
+     */
+    Set<String> getWritten(Collection collection, boolean create) {
+        RequestScope scope = RequestScope.peek();
+        if (scope == null)
+            return null;
+
+        Map<Collection, Set<String>> written = (Map<Collection, Set<String>>) scope.getAttribute(this);
+        if (written == null && create) {
+            written = new IdentityHashMap<>();
+            scope.withAttribute(this, written);
+        }
+        if (written == null)
+            return null;
+        return create ? written.computeIfAbsent(collection, c -> new HashSet<>()) : written.get(collection);
+    }
+
+    /**
+     * @param keys the keys to evict or null to evict the whole collection
+     */
+    void evict(Collection collection, java.util.Collection<String> keys) {
+        lock.lock();
+        try {
+            version.incrementAndGet();
+            if (keys == null) {
+                Set<String> cached = byCollection.get(collection);
+                keys = cached == null ? Collections.emptySet() : new ArrayList<>(cached);
+            }
+            LruCache<Key, Node> nodes = getNodes();
+            for (String key : keys)
+                nodes.remove(new Key(collection, key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    LruCache<Key, Node> getNodes() {
+        LruCache<Key, Node> nodes = this.nodes;
+        if (nodes == null) {
+            lock.lock();
+            try {
+                nodes = this.nodes;
+                if (nodes == null) {
+                    nodes = new LruCache<>(maxWeight, 1, (key, node) -> node.weight, (key, node) -> unindex(node));
+                    this.nodes = nodes;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Called by <code>nodes</code>, while the lock is held, after <code>node</code> has been evicted, expired, replaced or removed.
+     */
+    void unindex(Node node) {
+        Set<String> keys = byCollection.get(node.collection);
+        if (keys != null) {
+            keys.remove(node.key);
+            if (keys.isEmpty())
+                byCollection.remove(node.collection);
+        }
+    }
+
+    /**
+     * Estimates the memory used by a row, roughly two bytes per character plus a fixed overhead per field.
+     *
+     * @param key the resource key
+     * @param row the row
+     * @return the weight of the row
+     */
+    protected long weigh(String key, Map<String, Object> row) {
+        long weight = 64 + 2L * key.length();
+        for (Map.Entry<String, Object> field : row.entrySet()) {
+            weight += 32 + 2L * field.getKey().length();
+            Object value = field.getValue();
+            if (value instanceof byte[])
+                weight += ((byte[]) value).length;
+            else if (value != null)
+                weight += 2L * value.toString().length();
+        }
+        return weight;
+    }
+
+    /**
+     * @return the value to pass to {@link #put(Collection, String, Map, boolean, long)}, it changes every time rows are evicted by a write
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public long getTtl(Collection collection) {
+        Long ttl = collection == null ? null : ttls.get(collection.getName());
+        return ttl != null ? ttl : defaultTtl;
+    }
+
+    /**
+     * @param collectionName the name of the collection
+     * @param ttl            milliseconds until a row of the collection expires, 0 means never
+     * @return this
+     */
+    public EntityCache withTtl(String collectionName, long ttl) {
+        ttls.put(collectionName, ttl);
+        return this;
+    }
+
+    public long getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    public EntityCache withDefaultTtl(long defaultTtl) {
+        this.defaultTtl = defaultTtl;
+        return this;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Changing the max weight evicts every cached row.
+     *
+     * @param maxWeight the maximum total weight, approximately bytes, of the cached rows
+     * @return this
+     */
+    public EntityCache withMaxWeight(long maxWeight) {
+        lock.lock();
+        try {
+            if (maxWeight != this.maxWeight) {
+                this.maxWeight = maxWeight;
+                this.nodes = null;
+                version.incrementAndGet();
+                byCollection.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public int size() {
+        return getNodes().size();
+    }
+
+    /**
+     * @return the total weight of the cached rows
+     */
+    public long getWeight() {
+        return getNodes().getWeight();
+    }
+
+    /**
+     * @return the number of requested keys that were found in the cache
+     */
+    public long getHits() {
+        return getNodes().getHits();
+    }
+
+    /**
+     * @return the number of requested keys that had to be selected from the Db
+     */
+    public long getMisses() {
+        return getNodes().getMisses();
+    }
+
+    /**
+     * @return hits / (hits + misses) or 0 if nothing has been requested
+     */
+    public double getHitRate() {
+        long hits  = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of rows removed to keep the cache under <code>maxWeight</code>
+     */
+    public long getEvictions() {
+        return getNodes().getEvictions();
+    }
+}
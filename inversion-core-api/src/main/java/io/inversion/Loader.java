@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.json.JSMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Batches and caches key lookups for the lifetime of a {@link RequestScope}, in the style of a "dataloader".
+ * <p>
+ * Callers {@link #load(Fetcher, Collection, Index, java.util.Collection) queue} the keys they will need and later
+ * {@link #get(Fetcher, Collection, Index, java.util.Collection) get} the matching records.  The first <code>get</code>
+ * that needs a queued key dispatches every queued lookup, issuing one select per (Fetcher, Collection, Index) group
+ * no matter how many callers queued keys for it.  Keys are deduplicated and records are remembered so a key is
+ * only ever selected once per request.
+ * <p>
+ * Any upsert, patch or delete through {@link Db} discards the remembered records for the modified Collection.
+ * <p>
+ * Like the RequestScope it lives in, a Loader is only ever used by one thread at a time and is intentionally unsynchronized.
+ * Branches started with {@link Engine#callBranch(Chain, Request, java.util.concurrent.Callable)} get their own scope and therefore their own Loader.
+ *
+ * @see Chain#getLoader()
+ */
+public class Loader {
+
+    /**
+     * Selects the records of <code>collection</code> whose <code>index</code> values match the encoded keys.
+     */
+    public interface Fetcher {
+
+        /**
+         * @param collection the collection to select from
+         * @param index      the index the keys are encoded from
+         * @param keys       the distinct encoded keys to select
+         * @return the matching records or null if the user is not allowed to read <code>collection</code>
+         * @throws ApiException if the select fails
+         */
+        List<JSMap> fetch(Collection collection, Index index, List<String> keys) throws ApiException;
+    }
+
+    final Map<Group, Group> groups = new LinkedHashMap<>();
+
+    int selects = 0;
+    int hits    = 0;
+
+    /**
+     * @return the Loader of the RequestScope bound to the current thread or null if one has not been created
+     */
+    public static Loader peek() {
+        RequestScope scope = RequestScope.peek();
+        return scope == null ? null : (Loader) scope.getAttribute(Loader.class);
+    }
+
+    /**
+     * Queues <code>keys</code> to be selected on the next dispatch.
+     * <p>
+     * Keys that have already been loaded or queued are ignored.
+     *
+     * @param fetcher    selects the records, lookups are only batched together when they share a Fetcher
+     * @param collection the collection to select from
+     * @param index      the index the keys are encoded from
+     * @param keys       the encoded keys
+     * @return this
+     */
+    public Loader load(Fetcher fetcher, Collection collection, Index index, java.util.Collection<String> keys) {
+        Group group = getGroup(fetcher, collection, index);
+        for (String key : keys) {
+            if (!group.loaded.containsKey(key))
+                group.pending.add(key);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the records for <code>keys</code>, dispatching all queued lookups if any of <code>keys</code> have not been loaded yet.
+     * <p>
+     * Records are returned in <code>keys</code> order, keys that match nothing are skipped.  Each call gets its own
+     * shallow copy of the remembered records so callers are free to add properties to them.
+     *
+     * @param fetcher    selects the records
+     * @param collection the collection to select from
+     * @param index      the index the keys are encoded from
+     * @param keys       the encoded keys
+     * @return the matching records or null if <code>fetcher</code> reported that the user is not allowed to read <code>collection</code>
+     * @throws ApiException if a select fails
+     */
+    public List<JSMap> get(Fetcher fetcher, Collection collection, Index index, java.util.Collection<String> keys) throws ApiException {
+        load(fetcher, collection, index, keys);
+
+        Group group = getGroup(fetcher, collection, index);
+        if (group.pending.size() > 0)
+            dispatch();
+        else
+            hits += 1;
+
+        if (group.denied)
+            return null;
+
+        List<JSMap> found = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            List<JSMap> rows = group.loaded.get(key);
+            if (rows != null) {
+                for (JSMap row : rows)
+                    found.add(new JSMap(row));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Selects the queued keys of every group, one select per group.
+     *
+     * @throws ApiException if a select fails
+     */
+    public void dispatch() throws ApiException {
+        for (Group group : new ArrayList<>(groups.values())) {
+            if (group.pending.size() == 0)
+                continue;
+
+            List<String> keys = new ArrayList<>(group.pending);
+            group.pending.clear();
+
+            selects += 1;
+            List<JSMap> rows = group.fetcher.fetch(group.collection, group.index, keys);
+            if (rows == null) {
+                group.denied = true;
+                continue;
+            }
+
+            for (String key : keys)
+                group.loaded.put(key, null);
+
+            for (JSMap row : rows) {
+                String key = group.collection.encodeKeyFromJsonNames(row, group.index);
+                if (key == null)
+                    continue;
+
+                List<JSMap> matches = group.loaded.get(key);
+                if (matches == null) {
+                    matches = new ArrayList<>();
+                    group.loaded.put(key, matches);
+                }
+                matches.add(row);
+            }
+        }
+    }
+
+    /**
+     * Forgets the records and queued keys for <code>collection</code>.
+     *
+     * @param collection the collection that was modified
+     * @return this
+     */
+    public Loader invalidate(Collection collection) {
+        groups.keySet().removeIf(group -> group.collection == collection);
+        return this;
+    }
+
+    /**
+     * Forgets all records and queued keys.
+     *
+     * @return this
+     */
+    public Loader clear() {
+        groups.clear();
+        return this;
+    }
+
+    /**
+     * @return the number of selects that have been dispatched
+     */
+    public int getSelects() {
+        return selects;
+    }
+
+    /**
+     * @return the number of calls to get that were answered without a select
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    Group getGroup(Fetcher fetcher, Collection collection, Index index) {
+        Group key   = new Group(fetcher, collection, index);
+        Group group = groups.get(key);
+        if (group == null) {
+            group = key;
+            groups.put(group, group);
+        }
+        return group;
+    }
+
+    static class Group {
+        final Fetcher    fetcher;
+        final Collection collection;
+        final Index      index;
+
+        final Set<String>              pending = new LinkedHashSet<>();
+        final Map<String, List<JSMap>> loaded  = new HashMap<>();
+        boolean                        denied  = false;
+
+        Group(Fetcher fetcher, Collection collection, Index index) {
+            this.fetcher = fetcher;
+            this.collection = collection;
+            this.index = index;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Group))
+                return false;
+            Group other = (Group) o;
+            return fetcher == other.fetcher && collection == other.collection && index == other.index;
+        }
+
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(fetcher), System.identityHashCode(collection), System.identityHashCode(index));
+        }
+    }
+}
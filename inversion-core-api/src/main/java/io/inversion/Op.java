@@ -40,6 +40,11 @@ public final class Op implements Comparable<Op> {
 
     List<Param> params = new ArrayList();
 
+    /**
+     * Lazily built by {@link #getActionPlan()} and rebuilt when any Rule configuration changes.
+     */
+    transient volatile ActionPlan actionPlan = null;
+
 //    public Op copy() {
 //        Op op = new Op();
 //        op.method = method;
@@ -204,6 +209,23 @@ public final class Op implements Comparable<Op> {
         return actions;
     }
 
+    /**
+     * Gets the precomputed, sorted, list of Actions that may run for a Request routed to this Op.
+     * <p>
+     * The plan is built from the Endpoint and Api Actions the first time it is requested and is reused
+     * until the Actions of the Op's Endpoint or Api, or the include/exclude configuration of one of those Actions, change.
+     *
+     * @return the action plan for this Op
+     */
+    ActionPlan getActionPlan() {
+        ActionPlan plan = actionPlan;
+        if (plan == null || !plan.isCurrent()) {
+            plan = new ActionPlan(this);
+            actionPlan = plan;
+        }
+        return plan;
+    }
+
     public boolean hasParams(Param.In in, String... keys) {
         for (String key : keys) {
             boolean found = false;
@@ -658,4 +680,197 @@ public final class Op implements Comparable<Op> {
         return false;
     }
 
-}
\ No newline at end of file
+    /**
+     * The Endpoint and Api Actions that could possibly run for a Request routed to an Op, presorted by Action order.
+     * <p>
+     * Actions whose rules can not match any path this Op services are dropped when the plan is built.  When an
+     * Action's rule outcome is the same for every path this Op services, the matched rule path is cached so that
+     * only Actions whose rules depend on the concrete request path are re-evaluated by {@link #match(String, Path, Path)}.
+     */
+    static final class ActionPlan {
+        final Api      api;
+        final long     apiModCount;
+        /**
+         * The Endpoint and every Endpoint and Api Action the plan was built from, including those that were dropped.
+         */
+        final Rule[]   sources;
+        final long[]   sourceModCounts;
+        final Action[] actions;
+        /**
+         * True if the action at the same index is an Endpoint Action matched against the Endpoint relative subpath.
+         */
+        final boolean[] endpointActions;
+        /**
+         * The rule path to use without re-evaluating the Action's rules or null if the Action must be matched per request.
+         */
+        final Path[] rules;
+
+        ActionPlan(Op op) {
+            Endpoint endpoint = op.getEndpoint();
+            api = op.getApi();
+
+            //-- counts are read before the Actions so a concurrent change can only make the plan look stale
+            //-- and lazy config happens before a count is read so it can never make the plan look stale
+            if (endpoint != null)
+                endpoint.checkLazyConfig();
+            apiModCount = api != null ? api.modCount.get() : 0;
+            long endpointModCount = endpoint != null ? endpoint.getModCount() : 0;
+
+            List<Action> endpointList = endpoint != null ? endpoint.getActions() : Collections.emptyList();
+            List<Action> apiList      = api != null ? api.getActions() : Collections.emptyList();
+
+            List<Rule> sourceList = new ArrayList<>();
+            if (endpoint != null)
+                sourceList.add(endpoint);
+            sourceList.addAll(endpointList);
+            sourceList.addAll(apiList);
+            sources = sourceList.toArray(new Rule[0]);
+            sourceModCounts = new long[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i].checkLazyConfig();
+                sourceModCounts[i] = sources[i] == endpoint ? endpointModCount : sources[i].getModCount();
+            }
+
+            String      method     = op.getMethod();
+            List<Entry> candidates = new ArrayList<>();
+
+            //-- without an action path match any endpoint relative path is possible
+            Path subpath = op.getActionPathMatch() != null ? op.getActionPathMatch() : new Path("*");
+            for (Action action : endpointList)
+                addCandidate(candidates, action, method, subpath, true);
+            for (Action action : apiList)
+                addCandidate(candidates, action, method, op.getPath(), false);
+
+            //-- stable sort so Endpoint Actions precede Api Actions of the same order just as when sorting per request
+            candidates.sort((e1, e2) -> e1.action.compareTo(e2.action));
+
+            int size = candidates.size();
+            actions = new Action[size];
+            endpointActions = new boolean[size];
+            rules = new Path[size];
+            for (int i = 0; i < size; i++) {
+                Entry entry = candidates.get(i);
+                actions[i] = entry.action;
+                endpointActions[i] = entry.endpointAction;
+                rules[i] = entry.rule;
+            }
+        }
+
+        /**
+         * @return true if none of the Rules the plan was built from have changed
+         */
+        boolean isCurrent() {
+            if (api != null && api.modCount.get() != apiModCount)
+                return false;
+            for (int i = 0; i < sources.length; i++) {
+                if (sources[i].getModCount() != sourceModCounts[i])
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Selects the Actions that match the concrete request paths.
+         *
+         * @param method  the request method
+         * @param path    the Endpoint path plus the subpath
+         * @param subpath the Endpoint relative request path
+         * @return the sorted ActionMatches for the request
+         */
+        List<Chain.ActionMatch> match(String method, Path path, Path subpath) {
+            List<Chain.ActionMatch> matches     = new ArrayList<>(actions.length);
+            Path                    pathCopy    = null;
+            Path                    subpathCopy = null;
+            for (int i = 0; i < actions.length; i++) {
+                boolean endpointAction = endpointActions[i];
+                Path    rule           = rules[i];
+                if (rule == null)
+                    rule = actions[i].match(method, endpointAction ? subpath : path);
+
+                if (rule != null) {
+                    if (endpointAction) {
+                        subpathCopy = subpathCopy != null ? subpathCopy : new Path(subpath);
+                        matches.add(new Chain.ActionMatch(rule, subpathCopy, actions[i]));
+                    } else {
+                        pathCopy = pathCopy != null ? pathCopy : new Path(path);
+                        matches.add(new Chain.ActionMatch(rule, pathCopy, actions[i]));
+                    }
+                }
+            }
+            return matches;
+        }
+
+        int size() {
+            return actions.length;
+        }
+
+        static void addCandidate(List<Entry> candidates, Action action, String method, Path opPath, boolean endpointAction) {
+            List<Rule.RuleMatcher> excludes = action.getExcludeMatchers();
+            List<Rule.RuleMatcher> includes = action.getIncludeMatchers();
+
+            boolean excludable = false;
+            for (Rule.RuleMatcher excluder : excludes) {
+                if (excluder.hasMethod(method) && excluder.paths.size() > 0) {
+                    excludable = true;
+                    break;
+                }
+            }
+
+            int includePathCount = 0;
+            for (Rule.RuleMatcher includer : includes) {
+                includePathCount += includer.paths.size();
+
+                if (!includer.hasMethod(method))
+                    continue;
+
+                for (Path includePath : includer.paths) {
+                    if (includePath.isWildcard()) {
+                        //-- every path this op services will match here
+                        candidates.add(new Entry(action, endpointAction, excludable ? null : includePath));
+                        return;
+                    }
+                    if (couldMatch(includePath, opPath)) {
+                        candidates.add(new Entry(action, endpointAction, null));
+                        return;
+                    }
+                }
+            }
+
+            //-- mirrors Rule.match where no include paths means an implicit "*" include
+            if (includePathCount == 0)
+                candidates.add(new Entry(action, endpointAction, excludable ? null : new Path("*")));
+        }
+
+        /**
+         * Conservatively checks if <code>rulePath</code> could match any concrete path that <code>opPath</code> matches.
+         * <p>
+         * Optional segments allow the concrete path to be shorter than either path so in that case
+         * the rule is always considered a possible match and left for the request time check.
+         */
+        static boolean couldMatch(Path rulePath, Path opPath) {
+            Path.Compiled rule = rulePath.compile();
+            Path.Compiled op   = opPath.compile();
+            for (int i = 0; i < rule.size(); i++) {
+                if (rule.isOptional(i))
+                    return true;
+            }
+            for (int i = 0; i < op.size(); i++) {
+                if (op.isOptional(i))
+                    return true;
+            }
+            return rulePath.matches(opPath, true);
+        }
+
+        static final class Entry {
+            final Action  action;
+            final boolean endpointAction;
+            final Path    rule;
+
+            Entry(Action action, boolean endpointAction, Path rule) {
+                this.action = action;
+                this.endpointAction = endpointAction;
+                this.rule = rule;
+            }
+        }
+    }
+}
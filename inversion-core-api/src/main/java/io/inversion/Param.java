@@ -16,6 +16,8 @@
  */
 package io.inversion;
 
+import io.inversion.utils.Path;
+
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -122,7 +124,7 @@ public class Param {
 
     public Param withRegex(String regex) {
         if (regex != null && !regexes.contains(regex)) {
-            Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+            Pattern pattern = Path.compileRegex(regex);
             patterns.add(pattern);
             regexes.add(regex);
         }
@@ -132,6 +132,7 @@ public final class Property implements Serializable {
      */
     public Property withColumnName(String name) {
         this.columnName = name;
+        changed();
         return this;
     }
 
@@ -152,11 +153,13 @@ public final class Property implements Serializable {
      */
     public Property withJsonName(String name) {
         this.name = name;
+        changed();
         return this;
     }
 
     public Property withName(String name) {
         this.name = name;
+        changed();
         return this;
     }
 
@@ -174,9 +177,15 @@ public final class Property implements Serializable {
     public Property withType(String type) {
         if (!Utils.empty(type) && !"null".equalsIgnoreCase(type))
             this.type = type;
+        changed();
         return this;
     }
 
+    void changed() {
+        if (collection != null)
+            collection.changed();
+    }
+
     /**
      * @return the collection that owns this property
      */
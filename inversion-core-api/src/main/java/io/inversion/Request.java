@@ -21,7 +21,9 @@ import io.inversion.utils.Path;
 import io.inversion.utils.Utils;
 import io.inversion.utils.ListMap;
 
+import java.io.InputStream;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class Request implements Headers, JSFind {
 
@@ -41,6 +43,7 @@ public class Request implements Headers, JSFind {
 
     Engine             engine          = null;
     Chain              chain           = null;
+    RequestScope       scope           = null;
     String             method          = null;
     Url                url             = null;
     Server             server          = null;
@@ -64,6 +67,12 @@ public class Request implements Headers, JSFind {
     String body = null;
     JSNode json = null;
 
+    /**
+     * An unread request body that will be parsed directly into {@link #json} without first being buffered to {@link #body}.
+     */
+    InputStream bodyStream   = null;
+    boolean     bodyStreamed = false;
+
     Uploader uploader = null;
 
 
@@ -424,8 +433,15 @@ public class Request implements Headers, JSFind {
         return false;
     }
 
+    /**
+     * @return true if an "explain" url param was supplied or an "explain" header with a value of "true" was sent
+     */
     public boolean isExplain() {
-        return explain;
+        if (explain)
+            return true;
+
+        String header = getHeader("explain");
+        return header != null && "true".equalsIgnoreCase(header.trim());
     }
 
     public Request withExplain(boolean explain) {
@@ -434,18 +450,105 @@ public class Request implements Headers, JSFind {
     }
 
     public String getBody() {
+        if (body == null) {
+            if (bodyStream != null)
+                body = Utils.read(takeBodyStream());
+            else if (bodyStreamed)
+                body = json.toString();
+        }
         return body;
     }
 
     public Request withBody(String body) {
         this.body = body;
+        this.bodyStream = null;
+        this.bodyStreamed = false;
         return this;
     }
 
+    /**
+     * Supplies the request body as a stream so that {@link #getJson()} can parse it directly
+     * without holding a full String copy of the body in memory at the same time as the parsed JSON.
+     * <p>
+     * The stream is read at most once.  If {@link #getBody()} is called before {@link #getJson()}
+     * the stream is read into a String and the request behaves as if {@link #withBody(String)} had been called.
+     *
+     * @param bodyStream the unread request body
+     * @return this
+     */
+    public Request withBodyStream(InputStream bodyStream) {
+        this.bodyStream = bodyStream;
+        this.bodyStreamed = false;
+        this.body = null;
+        this.json = null;
+        return this;
+    }
+
+    /**
+     * @return true if the body is an unread stream
+     */
+    public boolean hasBodyStream() {
+        return bodyStream != null;
+    }
+
+    InputStream takeBodyStream() {
+        InputStream in = bodyStream;
+        bodyStream = null;
+        return in;
+    }
+
+    /**
+     * Incrementally consumes a JSON array body in batches of up to <code>batchSize</code> records
+     * so that the full array never has to be materialized.
+     * <p>
+     * Only an unread body stream can be consumed incrementally.  If the body has already been read, or if
+     * its root element is not an array, nothing is passed to <code>consumer</code> and the parsed body
+     * is returned, and is also available from {@link #getJson()}, so the caller can process it normally.
+     * <p>
+     * After an array has been consumed, the records are not retained so {@link #getJson()} and {@link #getBody()} return null.
+     *
+     * @param batchSize the maximum number of records passed to each call to <code>consumer</code>
+     * @param consumer  receives each batch of records
+     * @return null if the body was consumed in batches, otherwise the parsed body
+     * @throws ApiException 400 if the body is not parsable JSON
+     */
+    public JSNode streamData(int batchSize, Consumer<JSList> consumer) throws ApiException {
+        if (bodyStream == null)
+            return getJson();
+
+        RuntimeException[] consumerEx = new RuntimeException[1];
+        try {
+            json = JSParser.parseJsonArray(takeBodyStream(), batchSize, batch -> {
+                try {
+                    consumer.accept(batch);
+                } catch (RuntimeException ex) {
+                    consumerEx[0] = ex;
+                    throw ex;
+                }
+            });
+        } catch (RuntimeException ex) {
+            if (consumerEx[0] != null)
+                throw consumerEx[0];
+            throw ApiException.new400BadRequest("Unparsable JSON body");
+        }
+        bodyStreamed = json != null;
+        return json;
+    }
+
     public JSNode getJson() throws ApiException {
         if (json != null)
             return json;
 
+        if (body == null && bodyStream != null) {
+            try {
+                json = JSParser.asJSNode(takeBodyStream());
+            } catch (Exception ex) {
+                throw ApiException.new400BadRequest("Unparsable JSON body");
+            }
+            bodyStreamed = json != null;
+            return json;
+        }
+
         String body = getBody();
         if (Utils.empty(body))
             return null;
@@ -551,6 +654,26 @@ public class Request implements Headers, JSFind {
         return this;
     }
 
+    /**
+     * @return the scope this request is, or will be, serviced in
+     */
+    public RequestScope getScope() {
+        return scope;
+    }
+
+    /**
+     * Sets the scope the Engine will service this request in.
+     * <p>
+     * Integrations that hand a request off to a different thread can use this to carry existing request state along.
+     *
+     * @param scope the scope to service this request in
+     * @return this
+     */
+    public Request withScope(RequestScope scope) {
+        this.scope = scope;
+        return this;
+    }
+
     public Url getUrl() {
         return url;
     }
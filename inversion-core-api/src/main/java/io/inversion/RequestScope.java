@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Holds the state of a single inbound request as it is serviced by an {@code Engine}, including nested
+ * Engine calls made by Actions while servicing that request.
+ * <p>
+ * A RequestScope owns the stack of {@link Chain}s for the request and a map of attributes that components such as
+ * Db connection managers or servlet integrations can use to store per request state.
+ * <p>
+ * A RequestScope is only ever used by one thread at a time so it is intentionally unsynchronized.  It is not pinned
+ * to a thread either.  The scope travels with the {@code Request} and {@code Chain} and is bound to whatever thread is
+ * currently running the request, which allows a request to hop between threads or be run one request per virtual thread.
+ * <p>
+ * For compatibility with code that does not have a reference to the Request, the scope that is currently bound to
+ * a thread is also available through a ThreadLocal via {@link #peek()} and {@link #current()}.
+ */
+public final class RequestScope {
+
+    static ThreadLocal<RequestScope> scopeLocal = new ThreadLocal<>();
+
+    final List<Chain>         chains     = new ArrayList<>();
+    final Map<Object, Object> attributes = new HashMap<>();
+
+    /**
+     * Discards the scopes bound to every thread.
+     * <p>
+     * This is primarily a cleanup step for test cases.
+     */
+    public static void resetAll() {
+        scopeLocal = new ThreadLocal<>();
+    }
+
+    /**
+     * @return the scope bound to the current thread or null if there is not one
+     */
+    public static RequestScope peek() {
+        return scopeLocal.get();
+    }
+
+    /**
+     * Returns the scope bound to the current thread creating and binding a new one if there is not one.
+     *
+     * @return the scope bound to the current thread
+     */
+    public static RequestScope current() {
+        RequestScope scope = scopeLocal.get();
+        if (scope == null) {
+            scope = new RequestScope();
+            scopeLocal.set(scope);
+        }
+        return scope;
+    }
+
+    /**
+     * Binds this scope to the current thread.
+     *
+     * @return the scope that was previously bound to the current thread, possibly null, so it can be passed to {@link #restore(RequestScope)}
+     */
+    public RequestScope bind() {
+        RequestScope previous = scopeLocal.get();
+        scopeLocal.set(this);
+        return previous;
+    }
+
+    /**
+     * Rebinds <code>previous</code> to the current thread, or clears the binding if <code>previous</code> is null.
+     *
+     * @param previous the value returned from {@link #bind()}
+     */
+    public static void restore(RequestScope previous) {
+        if (previous == null)
+            scopeLocal.remove();
+        else
+            scopeLocal.set(previous);
+    }
+
+    /**
+     * Runs <code>task</code> with this scope bound to the current thread, restoring the previous binding afterwards.
+     * <p>
+     * This is what lets a request continue on a different thread than it started on.
+     *
+     * @param task the work to do
+     * @param <T>  the result type
+     * @return the result of <code>task</code>
+     * @throws Exception when <code>task</code> throws
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        RequestScope previous = bind();
+        try {
+            return task.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Runs <code>task</code> with this scope bound to the current thread, restoring the previous binding afterwards.
+     *
+     * @param task the work to do
+     */
+    public void run(Runnable task) {
+        RequestScope previous = bind();
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    void push(Chain chain) {
+        chains.add(chain);
+    }
+
+    Chain pop() {
+        return chains.remove(chains.size() - 1);
+    }
+
+    /**
+     * @return the most recently pushed Chain or null if there are none
+     */
+    public Chain peekChain() {
+        int size = chains.size();
+        return size == 0 ? null : chains.get(size - 1);
+    }
+
+    /**
+     * @return the root Chain of the request or null if there are none
+     */
+    public Chain firstChain() {
+        return chains.isEmpty() ? null : chains.get(0);
+    }
+
+    /**
+     * @return the number of Chains currently being run
+     */
+    public int getDepth() {
+        return chains.size();
+    }
+
+    public Object getAttribute(Object key) {
+        return attributes.get(key);
+    }
+
+    public RequestScope withAttribute(Object key, Object value) {
+        attributes.put(key, value);
+        return this;
+    }
+
+    public Object removeAttribute(Object key) {
+        return attributes.remove(key);
+    }
+}
@@ -23,6 +23,7 @@ import io.inversion.utils.Utils;
 import io.inversion.utils.ListMap;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -75,6 +76,7 @@ public class Response implements JSFind {
      * @return this
      */
     public Response withJson(JSNode json) {
+        releaseCursor(json);
         this.json = json;
         this.text = null;
         this.stream = null;
@@ -90,6 +92,7 @@ public class Response implements JSFind {
     }
 
     public Response withText(String text) {
+        releaseCursor(null);
         this.text = text;
         this.json = null;
         this.stream = null;
@@ -103,6 +106,7 @@ public class Response implements JSFind {
     }
 
     public Response withBody(StreamBuffer stream) {
+        releaseCursor(null);
         this.text = null;
         this.json = null;
         this.stream = stream;
@@ -156,15 +160,51 @@ public class Response implements JSFind {
     }
 
     public StreamBuffer getBody() {
-        boolean explain = false;
-        Request req     = getRequest();
+        return getBody(isExplain());
+    }
+
+    /**
+     * @return true if the body should be the debug "explain" output instead of the response content
+     */
+    public boolean isExplain() {
+        Request req = getRequest();
         if (req == null && Chain.getDepth() > 0)
             req = Chain.peek().getRequest();
 
-        if (req != null)
-            explain = req.isDebug() && req.isExplain();
+        return req != null && req.isDebug() && req.isExplain();
+    }
+
+    /**
+     * Checks if {@link #writeBody(OutputStream)} will stream the body without buffering it first.
+     * <p>
+     * When true, the length of the body is not known until it has been written so callers should
+     * not set a Content-Length and instead let the transport use chunked encoding.
+     *
+     * @return true if the body is a JSON document and this is not an explain response
+     */
+    public boolean isStreamable() {
+        return stream == null && text == null && json != null && !isExplain();
+    }
 
-        return getBody(explain);
+    /**
+     * Writes the body to <code>out</code>.
+     * <p>
+     * JSON documents are streamed node by node straight to <code>out</code> instead of being converted to a String,
+     * then a byte[], then a StreamBuffer as {@link #getBody()} does.  Other bodies, and explain output, go through the buffered path.
+     * <code>out</code> is flushed but not closed.
+     *
+     * @param out where to write the body
+     * @throws IOException if writing to <code>out</code> fails
+     */
+    public void writeBody(OutputStream out) throws IOException {
+        if (isStreamable()) {
+            JSWriter.writeJson(json, out, true, false);
+        } else {
+            StreamBuffer buffer = getBody();
+            if (buffer != null)
+                Utils.pipe(buffer.getInputStream(), out, true, false);
+        }
+        out.flush();
     }
 
     public StreamBuffer getBody(boolean explain) {
@@ -528,6 +568,42 @@ public class Response implements JSFind {
         return this;
     }
 
+    /**
+     * Sets <code>cursor</code> as the "data" array so records are streamed from it as the body is written
+     * instead of being held in memory.
+     * <p>
+     * The cursor is closed once it has been written, or if it is replaced by a call to {@link #withJson(JSNode)}.
+     *
+     * @param cursor the records to stream
+     * @return this
+     * @see Results#isStreaming()
+     */
+    public Response withCursor(JSCursor cursor) {
+        if (json == null || json instanceof JSList)
+            withJson(new JSMap("meta", new JSMap(), "data", cursor));
+        else
+            json.put("data", cursor);
+        return this;
+    }
+
+    /**
+     * A cursor that is being replaced, for example by error json, will never be written so it is closed here.
+     */
+    void releaseCursor(JSNode replacement) {
+        JSCursor cursor = getCursor();
+        if (cursor != null && (replacement == null || replacement.get("data") != cursor))
+            cursor.close();
+    }
+
+    /**
+     * @return the streaming "data" array set via {@link #withCursor(JSCursor)} or null
+     */
+    public JSCursor getCursor() {
+        if (json instanceof JSMap && json.get("data") instanceof JSCursor)
+            return (JSCursor) json.get("data");
+        return null;
+    }
+
     //----------------------------------------------------------------------------------------------------------------------
     //----------------------------------------------------------------------------------------------------------------------
     //Status & Headers
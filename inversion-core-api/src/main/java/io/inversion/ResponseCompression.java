@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.utils.GzipCompressingInputStream;
+import io.inversion.utils.MimeTypes;
+import io.inversion.utils.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Negotiates and applies compression of response bodies based on the request "Accept-Encoding" header.
+ * <p>
+ * This is shared by the servlet, AWS Lambda and Azure Function adapters so responses are compressed the same way
+ * regardless of how the Engine is hosted.
+ * <p>
+ * Only "gzip" and "deflate" are produced because the JDK has no Brotli encoder.  Clients that prefer "br" still
+ * receive gzip or deflate if they also accept one of those, following the q-value rules of RFC 9110.
+ * <p>
+ * A response is compressed only when:
+ * <ul>
+ *   <li>compression is enabled
+ *   <li>the response does not already have a Content-Encoding
+ *   <li>the response has a body, meaning it is not a HEAD or OPTIONS request and not a 204 or 304 status
+ *   <li>the content type matches one of <code>contentTypes</code>
+ *   <li>the body length is unknown (streamed) or is at least <code>minSize</code> bytes
+ * </ul>
+ */
+public class ResponseCompression {
+
+    public static final String GZIP    = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    protected boolean enabled = false;
+
+    /**
+     * Bodies smaller than this many bytes are not worth the CPU and header overhead of compressing.
+     */
+    protected int minSize = 1024;
+
+    /**
+     * Content types that may be compressed.  A trailing "*" matches any subtype, for example "text/*".
+     * Content type parameters such as "; charset=utf-8" are ignored when matching.
+     */
+    protected Set<String> contentTypes = new LinkedHashSet<>(Utils.asList(MimeTypes.TYPE_APPLICATION_JSON, "application/hal+json", "application/problem+json", "application/javascript", "application/xml", "image/svg+xml", "text/*"));
+
+    /**
+     * Encodings this server can produce in order of preference when the client weights them equally.
+     */
+    protected String[] encodings = {GZIP, DEFLATE};
+
+    /**
+     * Picks the encoding to use for the response.
+     *
+     * @param req    the request being serviced
+     * @param res    the response being written
+     * @param length the uncompressed body length or -1 if it is not known in advance because the body is streamed
+     * @return "gzip", "deflate" or null if the response should not be compressed
+     */
+    public String negotiate(Request req, Response res, long length) {
+        if (!enabled)
+            return null;
+
+        if (res.getHeader("Content-Encoding") != null)
+            return null;
+
+        if (req.isMethod("HEAD", "OPTIONS"))
+            return null;
+
+        int status = res.getStatusCode();
+        if (status == 204 || status == 304)
+            return null;
+
+        if (length >= 0 && length < minSize)
+            return null;
+
+        if (!isCompressible(res.getContentType()))
+            return null;
+
+        return selectEncoding(req.getHeader("Accept-Encoding"));
+    }
+
+    /**
+     * Negotiates the encoding and records it on the response headers.
+     * <p>
+     * Compressible responses get "Vary: Accept-Encoding" so caches key on the header even when the
+     * body is not compressed.  If an encoding is selected, "Content-Encoding" is also set and the encoding is
+     * appended to any ETag, see {@link #encodeEtag(String, String)}.
+     * <p>
+     * Call this before the response headers are copied to the wire.
+     *
+     * @param req    the request being serviced
+     * @param res    the response being written
+     * @param length the uncompressed body length or -1 if it is not known in advance because the body is streamed
+     * @return "gzip", "deflate" or null if the response should not be compressed
+     */
+    public String apply(Request req, Response res, long length) {
+        if (!enabled || !isCompressible(res.getContentType()))
+            return null;
+
+        res.withHeader("Vary", "Accept-Encoding");
+        String encoding = negotiate(req, res, length);
+        if (encoding != null) {
+            res.getHeaders().remove("Content-Length");
+            res.withHeader("Content-Encoding", encoding);
+
+            String etag = res.getHeader("ETag");
+            if (etag != null) {
+                res.getHeaders().remove("ETag");
+                res.withHeader("ETag", encodeEtag(etag, encoding));
+            }
+        }
+        return encoding;
+    }
+
+    /**
+     * A strong ETag identifies one exact representation so the gzip and deflate bodies can not share the
+     * tag of the uncompressed body.  The encoding is added inside the quotes, <code>"abc"</code> becomes
+     * <code>"abc-gzip"</code>.
+     *
+     * @param etag     the ETag of the uncompressed body
+     * @param encoding the Content-Encoding of the body being sent
+     * @return <code>etag</code> with <code>encoding</code> appended
+     */
+    public static String encodeEtag(String etag, String encoding) {
+        if (etag == null || encoding == null || !etag.endsWith("\"") || etag.length() < 2)
+            return etag;
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    /**
+     * Reverses {@link #encodeEtag(String, String)} so an <code>If-None-Match</code> tag sent back by a client that
+     * received a compressed body can be compared to the ETag of the uncompressed body.
+     *
+     * @param etag an ETag that may end with "-gzip" or "-deflate" inside its quotes
+     * @return <code>etag</code> without the encoding suffix
+     */
+    public static String decodeEtag(String etag) {
+        if (etag == null || !etag.endsWith("\""))
+            return etag;
+        for (String encoding : new String[]{GZIP, DEFLATE}) {
+            String suffix = "-" + encoding + "\"";
+            if (etag.endsWith(suffix))
+                return etag.substring(0, etag.length() - suffix.length()) + "\"";
+        }
+        return etag;
+    }
+
+    /**
+     * @param contentType the response content type
+     * @return true if <code>contentType</code> matches one of <code>contentTypes</code>
+     */
+    public boolean isCompressible(String contentType) {
+        if (contentType == null)
+            return false;
+
+        int semi = contentType.indexOf(';');
+        if (semi > -1)
+            contentType = contentType.substring(0, semi);
+        contentType = contentType.trim().toLowerCase();
+
+        for (String allowed : contentTypes) {
+            allowed = allowed.toLowerCase();
+            if (allowed.endsWith("*")) {
+                if (contentType.startsWith(allowed.substring(0, allowed.length() - 1)))
+                    return true;
+            } else if (contentType.equals(allowed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chooses the supported encoding with the highest q-value from an Accept-Encoding header.
+     * <p>
+     * Ties are broken by the order of <code>encodings</code>.  A "*" entry applies to any supported encoding not
+     * explicitly listed and an encoding with "q=0" is never selected.
+     *
+     * @param acceptEncoding the Accept-Encoding request header value
+     * @return the selected encoding or null if none of <code>encodings</code> are acceptable
+     */
+    public String selectEncoding(String acceptEncoding) {
+        if (Utils.empty(acceptEncoding))
+            return null;
+
+        String best  = null;
+        double bestQ = 0;
+        for (String encoding : encodings) {
+            double q = qValue(acceptEncoding, encoding);
+            if (q > bestQ) {
+                best = encoding;
+                bestQ = q;
+            }
+        }
+        return best;
+    }
+
+    static double qValue(String acceptEncoding, String encoding) {
+        double wildcard = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] pieces = part.split(";");
+            String   name   = pieces[0].trim().toLowerCase();
+            double   q      = 1;
+            for (int i = 1; i < pieces.length; i++) {
+                String param = pieces[i].trim().toLowerCase();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException ex) {
+                        q = 0;
+                    }
+                }
+            }
+
+            if (name.equals(encoding))
+                return q;
+            if (name.equals("*"))
+                wildcard = q;
+        }
+        return wildcard > 0 ? wildcard : 0;
+    }
+
+    /**
+     * Wraps <code>out</code> so that everything written to it is compressed.
+     * <p>
+     * The caller must close the returned stream to write the compression trailer.
+     *
+     * @param out      the destination stream
+     * @param encoding the value returned from {@link #negotiate(Request, Response, long)}
+     * @return a compressing stream or <code>out</code> if <code>encoding</code> is null
+     * @throws IOException if the compressing stream can not be created
+     */
+    public OutputStream compress(OutputStream out, String encoding) throws IOException {
+        if (GZIP.equalsIgnoreCase(encoding))
+            return new GZIPOutputStream(out, 8192);
+        if (DEFLATE.equalsIgnoreCase(encoding))
+            return new DeflaterOutputStream(out);
+        return out;
+    }
+
+    /**
+     * Wraps <code>in</code> so that reading it produces the compressed form of its content.
+     *
+     * @param in       the uncompressed content, for example from a {@code StreamBuffer}
+     * @param encoding the value returned from {@link #negotiate(Request, Response, long)}
+     * @return a compressing stream or <code>in</code> if <code>encoding</code> is null
+     * @throws IOException if the compressing stream can not be created
+     */
+    public InputStream compress(InputStream in, String encoding) throws IOException {
+        if (GZIP.equalsIgnoreCase(encoding))
+            return new GzipCompressingInputStream(in, 8192);
+        if (DEFLATE.equalsIgnoreCase(encoding))
+            return new DeflaterInputStream(in);
+        return in;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ResponseCompression withEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public ResponseCompression withMinSize(int minSize) {
+        this.minSize = minSize;
+        return this;
+    }
+
+    public Set<String> getContentTypes() {
+        return contentTypes;
+    }
+
+    public ResponseCompression withContentTypes(String... contentTypes) {
+        this.contentTypes = new LinkedHashSet<>(Utils.asList(contentTypes));
+        return this;
+    }
+
+    public String[] getEncodings() {
+        return encodings;
+    }
+
+    public ResponseCompression withEncodings(String... encodings) {
+        this.encodings = encodings;
+        return this;
+    }
+}
@@ -16,6 +16,7 @@
  */
 package io.inversion;
 
+import io.inversion.json.JSCursor;
 import io.inversion.query.Query;
 import io.inversion.rql.Term;
 
@@ -23,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Results are returned by a Db and transformed by Actions into Response content.
@@ -31,7 +33,22 @@ import java.util.Map;
  * and terms will use column names until they are potentially transformed by an Action.
  */
 public final class Results<M extends Map<String, ?>> implements Iterable<M> {
-    public static String LAST_QUERY = null;
+    /**
+     * The test query of the most recently built Results, see {@link #getLastQuery()}.
+     */
+    static volatile Supplier<String> lastQuery = null;
+
+    /**
+     * {@link RequestScope} attribute an Action sets to an Integer row count, for the duration of a call to
+     * {@link Db#select(Collection, Map)}, to let the Db return a streaming Results when the query would
+     * return at least that many rows.
+     * <p>
+     * Dbs that do not support streaming simply ignore it.
+     *
+     * @see #isStreaming()
+     */
+    public static final String STREAM_THRESHOLD = Results.class.getName() + ".streamThreshold";
+
     /**
      * The RQL terms that will get the next page of results the DB things there are more results.
      * <p>
@@ -60,8 +77,16 @@ public final class Results<M extends Map<String, ?>> implements Iterable<M> {
      * For paginated listings, foundRows generally be greater than rows.size()
      */
     protected int    foundRows  = -1;
+    /**
+     * True when the Db has already mapped <code>rows</code> to json property names and cast their values,
+     * for example via a {@link RowMapper}, so {@link Db#select(Collection, Map)} can pass them through untouched.
+     */
+    protected boolean mapped    = false;
     protected String debugQuery = null;
-    protected String testQuery  = null;
+    /**
+     * Only rendered when {@link #getTestQuery()} is called so building it costs nothing when nobody reads it.
+     */
+    protected Supplier<String> testQuery = null;
 
     public Results(Query query) {
         this.query = query;
@@ -84,9 +109,14 @@ public final class Results<M extends Map<String, ?>> implements Iterable<M> {
 
     @Override
     public Iterator<M> iterator() {
+        if (rows instanceof JSCursor)
+            return (Iterator) ((JSCursor) rows).open();
         return rows.iterator();
     }
 
+    /**
+     * @return the number of rows held in memory which is always 0 for a streaming Results
+     */
     public int size() {
         return rows.size();
     }
@@ -129,6 +159,41 @@ public final class Results<M extends Map<String, ?>> implements Iterable<M> {
         return this;
     }
 
+    /**
+     * Replaces the rows with a one pass cursor of already mapped rows that are read from the Db
+     * only as the response is written.
+     * <p>
+     * The row count, foundRows and next page terms are unknown for a streaming Results.
+     *
+     * @param cursor the json named, type cast rows
+     * @return this
+     */
+    public Results withCursor(JSCursor cursor) {
+        this.rows = cursor;
+        this.mapped = true;
+        return this;
+    }
+
+    /**
+     * @return the cursor if this is a streaming Results otherwise null
+     */
+    public JSCursor getCursor() {
+        return rows instanceof JSCursor ? (JSCursor) rows : null;
+    }
+
+    public boolean isStreaming() {
+        return rows instanceof JSCursor;
+    }
+
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    public Results withMapped(boolean mapped) {
+        this.mapped = mapped;
+        return this;
+    }
+
     public int getFoundRows() {
         return foundRows;
     }
@@ -139,13 +204,59 @@ public final class Results<M extends Map<String, ?>> implements Iterable<M> {
     }
 
     public String getTestQuery() {
-        return testQuery;
+        return testQuery == null ? null : testQuery.get();
     }
 
     public Results withTestQuery(String testQuery) {
-        LAST_QUERY = testQuery;
-        this.testQuery = testQuery;
+        return withTestQuery(testQuery == null ? null : () -> testQuery);
+    }
+
+    /**
+     * Sets a test query that is built the first time it is read.
+     * <p>
+     * Dbs can describe every select this way without paying for the description when debug output is off.
+     *
+     * @param testQuery builds the test query
+     * @return this
+     */
+    public Results withTestQuery(Supplier<String> testQuery) {
+        Supplier<String> lazy = testQuery == null ? null : new Lazy(testQuery);
+        lastQuery = lazy;
+        this.testQuery = lazy;
         return this;
     }
 
+    /**
+     * @return the test query of the most recently built Results or null
+     */
+    public static String getLastQuery() {
+        Supplier<String> lastQuery = Results.lastQuery;
+        return lastQuery == null ? null : lastQuery.get();
+    }
+
+    public static void clearLastQuery() {
+        lastQuery = null;
+    }
+
+    /**
+     * Builds the value once and then remembers it.
+     */
+    static class Lazy implements Supplier<String> {
+        Supplier<String> supplier;
+        String           value;
+
+        Lazy(Supplier<String> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public synchronized String get() {
+            if (supplier != null) {
+                value = supplier.get();
+                supplier = null;
+            }
+            return value;
+        }
+    }
+
 }
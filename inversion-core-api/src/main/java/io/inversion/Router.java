@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.utils.Path;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled routing index used by the Engine to select the {@code Op} that will service a Request.
+ * <p>
+ * The Router is built once, when the Api is started, from the Api's sorted Op list.  Each http method gets its own
+ * trie where each level corresponds to a path segment.  Literal segments are resolved with a single case insensitive
+ * map lookup, variable segments (optionally constrained by a precompiled regex) are tried next, and
+ * wildcard/optional segments terminate the traversal.
+ * <p>
+ * The trie only narrows the candidate Ops, it does not change matching semantics.  Candidates are re-checked
+ * with {@link Op#matches(Request, Path)} in the original Op order so the first Op to match is exactly the
+ * same Op that a linear scan of {@link Api#getOps()} would have selected.
+ */
+public final class Router {
+
+    final List<Op>          ops;
+    final Map<String, Node> roots = new HashMap<>();
+
+    /**
+     * @param ops the sorted Ops to index, the list is retained and should not be modified after construction
+     */
+    public Router(List<Op> ops) {
+        this.ops = ops;
+        for (int i = 0; i < this.ops.size(); i++) {
+            Op op = this.ops.get(i);
+            if (op.getMethod() == null || op.getPath() == null)
+                continue;
+
+            Node root = roots.computeIfAbsent(op.getMethod().toUpperCase(), k -> new Node());
+            root.add(new Entry(i, op), op.getPath(), 0, false);
+        }
+    }
+
+    /**
+     * Finds the first Op that matches the method and path of <code>req</code>.
+     *
+     * @param req  the request being routed
+     * @param path the operation path, relative to the matched Server, of the request
+     * @return the selected Op along with the values of its path params or null if no Op matched
+     */
+    public Route match(Request req, Path path) {
+        String method = req.getMethod();
+        if (method == null)
+            return null;
+
+        Node root = roots.get(method.toUpperCase());
+        if (root == null)
+            return null;
+
+        Path.Compiled compiled   = path.compile();
+        List<Entry>   candidates = new ArrayList<>();
+        root.collect(compiled, 0, candidates);
+        if (candidates.size() > 1)
+            candidates.sort(null);
+
+        Entry last = null;
+        for (Entry candidate : candidates) {
+            if (candidate == last)//an op can be registered on more than one branch
+                continue;
+            last = candidate;
+
+            if (candidate.op.matches(req, path))
+                return new Route(candidate.op, compiled);
+        }
+        return null;
+    }
+
+    /**
+     * The number of leading segments of a path of <code>size</code> segments that {@link Path#extract(Map, Path)} would
+     * consume for <code>match</code>, that is the segments before the first optional or wildcard segment.
+     *
+     * @param match the endpoint, db or collection path the Op was matched with
+     * @param size  the number of segments in the concrete path
+     * @return the length of the concrete path prefix that <code>match</code> consumes
+     */
+    static int getMatchLength(Path match, int size) {
+        Path.Compiled compiled = match.compile();
+        int           length   = 0;
+        while (length < compiled.size() && length < size && !compiled.isOptional(length) && !compiled.isWildcard(length))
+            length++;
+        return length;
+    }
+
+    /**
+     * @return the Ops indexed by this Router in their original order
+     */
+    public List<Op> getOps() {
+        return ops;
+    }
+
+    /**
+     * The result of a successful {@link #match(Request, Path)}.
+     */
+    public static final class Route {
+        final Op            op;
+        final Path.Compiled path;
+        Map<String, String> pathParams = null;
+
+        Route(Op op, Path.Compiled path) {
+            this.op = op;
+            this.path = path;
+        }
+
+        public Op getOp() {
+            return op;
+        }
+
+        /**
+         * The values of the variables in the Op's endpoint, db and collection path matches, the params that were
+         * previously extracted by calling {@link Path#extract(Map, Path)} with each of those paths.
+         * <p>
+         * The map is built on first call from the segments already compiled for routing.  Variables in optional segments
+         * missing from the path are present with a null value so they clear any url param of the same name.
+         *
+         * @return the path param values keyed by variable name
+         */
+        public Map<String, String> getPathParams() {
+            if (pathParams == null) {
+                Map<String, String> params = new HashMap<>();
+                putVars(params, op.getDbPathMatch(), 0);
+                putVars(params, op.getEndpointPathMatch(), 0);
+                if (op.getCollectionPathMatch() != null && op.getEndpointPathMatch() != null)
+                    putVars(params, op.getCollectionPathMatch(), getMatchLength(op.getEndpointPathMatch(), path.size()));
+                pathParams = params;
+            }
+            return pathParams;
+        }
+
+        void putVars(Map<String, String> params, Path match, int offset) {
+            if (match == null)
+                return;
+
+            Path.Compiled compiled = match.compile();
+            for (int i = 0; i < compiled.size(); i++) {
+                if (compiled.isVar(i))
+                    params.put(compiled.getVarName(i), offset + i < path.size() ? path.getValue(offset + i) : null);
+            }
+        }
+    }
+
+    static final class Entry implements Comparable<Entry> {
+        final int order;
+        final Op  op;
+
+        Entry(int order, Op op) {
+            this.order = order;
+            this.op = op;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            return Integer.compare(order, o.order);
+        }
+    }
+
+    static class Node {
+        final Map<String, Node> literals  = new HashMap<>();
+        final List<VarNode>     vars      = new ArrayList<>();
+        final List<Entry>       terminals = new ArrayList<>();
+        /**
+         * Ops that match any remaining segments, including none, because of a trailing wildcard or an earlier optional segment.
+         */
+        final List<Entry>       rest      = new ArrayList<>();
+
+        void add(Entry entry, Path path, int index, boolean optional) {
+            if (index >= path.size()) {
+                terminals.add(entry);
+                if (optional)
+                    rest.add(entry);
+                return;
+            }
+
+            String part = path.get(index);
+            if (Path.isWildcard(part)) {
+                rest.add(entry);
+                return;
+            }
+
+            if (Path.isOptional(part)) {
+                //-- the path may end right before the first optional segment
+                optional = true;
+                part = Path.unwrapOptional(part);
+            }
+            if (optional)
+                terminals.add(entry);
+
+            Node child;
+            if (Path.isVar(part)) {
+                String regex = Path.getRegex(part);
+                child = null;
+                for (VarNode var : vars) {
+                    if (Objects.equals(regex, var.regex)) {
+                        child = var;
+                        break;
+                    }
+                }
+                if (child == null) {
+                    VarNode var = new VarNode(regex);
+                    vars.add(var);
+                    child = var;
+                }
+            } else {
+                child = literals.computeIfAbsent(part.toLowerCase(), k -> new Node());
+            }
+            child.add(entry, path, index + 1, optional);
+        }
+
+        void collect(Path.Compiled path, int index, List<Entry> candidates) {
+            candidates.addAll(rest);
+
+            if (index >= path.size()) {
+                candidates.addAll(terminals);
+                return;
+            }
+
+            Node literal = literals.get(path.getLowercase(index));
+            if (literal != null)
+                literal.collect(path, index + 1, candidates);
+
+            String part = path.getValue(index);
+            for (VarNode var : vars) {
+                if (var.pattern == null || var.pattern.matcher(part).matches())
+                    var.collect(path, index + 1, candidates);
+            }
+        }
+    }
+
+    static final class VarNode extends Node {
+        final String  regex;
+        final Pattern pattern;
+
+        VarNode(String regex) {
+            this.regex = regex;
+            this.pattern = regex != null ? Path.compileRegex(regex) : null;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.json.JSMap;
+
+import java.util.*;
+
+/**
+ * A precomputed plan for turning a row of column values, in the order returned by the Db, into a JSMap
+ * keyed by Property json names with values cast via {@link Db#castDbOutput(Property, Object)}.
+ * <p>
+ * The output has the same shape {@link Db#select(Collection, Map)} has always produced:
+ * <ol>
+ *   <li>resource key properties first, in index order
+ *   <li>then the remaining Collection properties in definition order
+ *   <li>then any unmapped columns sorted by name, excluding "href"
+ * </ol>
+ * <p>
+ * Working that out once per distinct column list, instead of once per row, lets a Db build each output row directly
+ * from its native cursor, for example a JDBC ResultSet, with a single JSMap allocation and no intermediate row copy.
+ * <p>
+ * Plans are cached on the Collection and discarded when its properties or indexes change.
+ *
+ * @see Results#isMapped()
+ */
+public class RowMapper {
+
+    /**
+     * Cached plans are keyed by column list which can vary with client supplied "include" params so the cache is bounded.
+     */
+    static final int MAX_CACHED_PLANS = 64;
+
+    /**
+     * Reads the value of a column from the current row of a native cursor.
+     *
+     * @param <E> the exception type the cursor throws
+     */
+    @FunctionalInterface
+    public interface ColumnReader<E extends Exception> {
+        /**
+         * @param column the zero based column index
+         * @return the value of the column in the current row
+         * @throws E if the cursor can not be read
+         */
+        Object read(int column) throws E;
+    }
+
+    final Db         db;
+    final String[]   names;
+    final int[]      columns;
+    final Property[] properties;
+
+    RowMapper(Db db, String[] names, int[] columns, Property[] properties) {
+        this.db = db;
+        this.names = names;
+        this.columns = columns;
+        this.properties = properties;
+    }
+
+    /**
+     * Gets the, possibly cached, plan for mapping rows with <code>columns</code> into <code>collection</code> json property names.
+     *
+     * @param db         the db used to cast values
+     * @param collection the collection the rows belong to, may be null in which case columns are copied as is in order
+     * @param columns    the column labels in the order they will be read
+     * @return the plan
+     */
+    public static RowMapper of(Db db, Collection collection, List<String> columns) {
+        if (collection == null)
+            return build(db, null, columns);
+
+        String                 key   = String.join(",", columns);
+        Map<String, RowMapper> cache = collection.getRowMappers();
+        RowMapper              plan  = cache.get(key);
+        if (plan == null) {
+            plan = build(db, collection, columns);
+            if (cache.size() >= MAX_CACHED_PLANS)
+                cache.clear();
+            cache.put(key, plan);
+        }
+        return plan;
+    }
+
+    static RowMapper build(Db db, Collection collection, List<String> columns) {
+        List<String>   names      = new ArrayList<>();
+        List<Integer>  indexes    = new ArrayList<>();
+        List<Property> properties = new ArrayList<>();
+
+        if (collection == null) {
+            for (int i = 0; i < columns.size(); i++) {
+                names.add(columns.get(i));
+                indexes.add(i);
+                properties.add(null);
+            }
+        } else {
+            Map<String, Integer> positions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 0; i < columns.size(); i++)
+                positions.putIfAbsent(columns.get(i), i);
+
+            boolean[]   consumed = new boolean[columns.size()];
+            Set<String> mapped   = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+            //-- defined properties first with resource key properties moved to the top
+            List<Property> ordered = new ArrayList<>(collection.getProperties());
+            Index          pk      = collection.getResourceIndex();
+            if (pk != null) {
+                for (int i = pk.size() - 1; i >= 0; i--) {
+                    Property prop = pk.getProperty(i);
+                    if (ordered.remove(prop))
+                        ordered.add(0, prop);
+                }
+            }
+
+            for (Property prop : ordered) {
+                Integer idx = positions.get(prop.getColumnName());
+                if (idx == null || consumed[idx] || mapped.contains(prop.getJsonName()))
+                    continue;
+
+                consumed[idx] = true;
+                mapped.add(prop.getJsonName());
+                names.add(prop.getJsonName());
+                indexes.add(idx);
+                properties.add(prop);
+            }
+
+            //-- then any extra columns the select returned
+            List<Integer> extras = new ArrayList<>();
+            for (int i = 0; i < columns.size(); i++) {
+                if (!consumed[i])
+                    extras.add(i);
+            }
+            extras.sort(Comparator.comparing(columns::get));
+            for (int idx : extras) {
+                String column = columns.get(idx);
+                if ("href".equalsIgnoreCase(column) || mapped.contains(column))
+                    continue;
+
+                mapped.add(column);
+                names.add(column);
+                indexes.add(idx);
+                properties.add(null);
+            }
+        }
+
+        int[] columnIdxs = new int[indexes.size()];
+        for (int i = 0; i < columnIdxs.length; i++)
+            columnIdxs[i] = indexes.get(i);
+
+        return new RowMapper(db, names.toArray(new String[0]), columnIdxs, properties.toArray(new Property[0]));
+    }
+
+    /**
+     * Builds the output row for the current position of a native cursor.
+     *
+     * @param reader reads column values from the cursor
+     * @param <E>    the exception type the cursor throws
+     * @return the mapped row
+     * @throws E if the cursor can not be read
+     */
+    public <E extends Exception> JSMap map(ColumnReader<E> reader) throws E {
+        JSMap row = new JSMap();
+        for (int i = 0; i < names.length; i++) {
+            Object   value = reader.read(columns[i]);
+            Property prop  = properties[i];
+            if (prop != null && db != null)
+                value = db.castDbOutput(prop, value);
+            row.put(names[i], value);
+        }
+        return row;
+    }
+
+    /**
+     * @return the output property names in order
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+}
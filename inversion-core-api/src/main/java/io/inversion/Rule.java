@@ -24,6 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Matches against an HTTP method and URL path to determine if the object
@@ -73,6 +74,16 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
 
     transient boolean lazyConfiged = false;
 
+    /**
+     * Incremented whenever the matchers or order of this Rule, or the Actions assigned to an Endpoint, change
+     * so that state derived from Rule matching, such as an Op's precomputed {@code ActionPlan}, can be discarded.
+     * <p>
+     * Changes made by {@link #doLazyConfig()} are not counted.
+     */
+    transient final AtomicLong modCount = new AtomicLong(0);
+
+    transient boolean lazyConfiguring = false;
+
     static List<Path> asPathsList(String... paths) {
         List<Path> pathsList = new ArrayList<>();
         for (String path : Utils.explode(",", paths)) {
@@ -101,12 +112,37 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
             synchronized (this) {
                 if (!lazyConfiged) {
                     lazyConfiged = true;
-                    doLazyConfig();
+                    lazyConfiguring = true;
+                    try {
+                        doLazyConfig();
+                    } finally {
+                        lazyConfiguring = false;
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Records a configuration change unless it was made by {@link #doLazyConfig()}.
+     */
+    protected void ruleChanged() {
+        if (!lazyConfiguring)
+            modCount.incrementAndGet();
+    }
+
+    /**
+     * @return a count that changes whenever the matchers or order of this Rule change
+     */
+    long getModCount() {
+        long mod = modCount.get();
+        for (int i = 0; i < includeMatchers.size(); i++)
+            mod += includeMatchers.get(i).modCount.get();
+        for (int i = 0; i < excludeMatchers.size(); i++)
+            mod += excludeMatchers.get(i).modCount.get();
+        return mod;
+    }
+
     protected void doLazyConfig() {
         if (includeOn != null)
             withIncludeOn(includeOn);
@@ -236,6 +272,7 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
 
     public R withIncludeOn(RuleMatcher matcher) {
         includeMatchers.add(matcher);
+        ruleChanged();
         return (R) this;
     }
 
@@ -277,6 +314,7 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
      */
     public R withExcludeOn(RuleMatcher matcher) {
         excludeMatchers.add(matcher);
+        ruleChanged();
         return (R) this;
     }
 
@@ -316,6 +354,7 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
 
     public R withOrder(int order) {
         this.order = order;
+        ruleChanged();
         return (R) this;
     }
 
@@ -404,6 +443,8 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
         protected final TreeSet<String>   methods = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
         protected final LinkedHashSet<Path> paths   = new LinkedHashSet<>();
 
+        transient final AtomicLong modCount = new AtomicLong(0);
+
         public RuleMatcher() {
         }
 
@@ -456,11 +497,13 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
 
         public RuleMatcher clearPaths() {
             paths.clear();
+            modCount.incrementAndGet();
             return this;
         }
 
         public RuleMatcher clearMethods() {
             methods.clear();
+            modCount.incrementAndGet();
             return this;
         }
 
@@ -478,6 +521,7 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
                     this.methods.add(method);
                 }
             }
+            modCount.incrementAndGet();
         }
 
         public RuleMatcher withPaths(Path... paths) {
@@ -485,6 +529,7 @@ public abstract class Rule<R extends Rule> implements Comparable<R> {
                 if (paths[i] != null)
                     this.paths.add(paths[i]);
             }
+            modCount.incrementAndGet();
             return this;
         }
 
@@ -30,6 +30,8 @@ public interface Status {
     String SC_202_ACCEPTED   = "202 Accepted";
     String SC_204_NO_CONTENT = "204 No Content";
 
+    String SC_304_NOT_MODIFIED = "304 Not Modified";
+
     //@see https://developer.mozilla.org/en-US/docs/Web/HTTP/Redirections
     // String         SC_302_FOUND                 = "302 Found";
 
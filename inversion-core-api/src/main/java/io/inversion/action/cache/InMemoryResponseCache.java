@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.action.cache;
+
+import io.inversion.utils.LruCache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A least recently used {@link ResponseCache} bounded by the total size of the cached bodies instead of the number of entries.
+ * <p>
+ * Each collection name maps to the keys of the entries tagged with it so invalidating a collection
+ * does not have to scan the whole cache.
+ */
+public class InMemoryResponseCache implements ResponseCache {
+
+    static class Node {
+        final String      key;
+        final Entry       entry;
+        final Set<String> collections;
+        final long        size;
+
+        Node(String key, Entry entry, Set<String> collections) {
+            this.key = key;
+            this.entry = entry;
+            this.collections = collections;
+            this.size = entry.getSize() + key.length();
+        }
+    }
+
+    final long                     maxBytes;
+    final LruCache<String, Node>   nodes;
+    final Map<String, Set<String>> byCollection = new HashMap<>();
+    /**
+     * Keeps <code>byCollection</code> consistent with <code>nodes</code>.
+     */
+    final ReentrantLock            lock         = new ReentrantLock();
+
+    public InMemoryResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.nodes = new LruCache<>(maxBytes, 1, (key, node) -> node.size, (key, node) -> unindex(node));
+    }
+
+    @Override
+    public Entry get(String key) {
+        Node node;
+        lock.lock();
+        try {
+            node = nodes.get(key);
+        } finally {
+            lock.unlock();
+        }
+        return node == null ? null : node.entry;
+    }
+
+    /**
+     * Adds the entry and then evicts the least recently used entries until the cache fits in <code>maxBytes</code>.
+     * <p>
+     * An entry larger than <code>maxBytes</code> by itself is not cached.
+     */
+    @Override
+    public void put(String key, Entry entry, Set<String> collections, long ttl) {
+        Node node = new Node(key, entry, new HashSet<>(collections));
+        lock.lock();
+        try {
+            if (nodes.put(key, node, ttl)) {
+                for (String collection : node.collections)
+                    byCollection.computeIfAbsent(collection, c -> new HashSet<>()).add(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(String collection) {
+        lock.lock();
+        try {
+            Set<String> keys = byCollection.remove(collection);
+            if (keys != null) {
+                for (String key : keys)
+                    nodes.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            nodes.clear();
+            byCollection.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by <code>nodes</code>, while the lock is held, after <code>node</code> has been evicted, expired, replaced or removed.
+     */
+    void unindex(Node node) {
+        for (String collection : node.collections) {
+            Set<String> keys = byCollection.get(collection);
+            if (keys != null) {
+                keys.remove(node.key);
+                if (keys.isEmpty())
+                    byCollection.remove(collection);
+            }
+        }
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return the approximate number of bytes currently cached
+     */
+    public long getBytes() {
+        return nodes.getWeight();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHits() {
+        return nodes.getHits();
+    }
+
+    public long getMisses() {
+        return nodes.getMisses();
+    }
+
+    /**
+     * @return the number of entries removed to make room for new ones
+     */
+    public long getEvictions() {
+        return nodes.getEvictions();
+    }
+}
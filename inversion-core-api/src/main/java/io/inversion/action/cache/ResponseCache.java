@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.action.cache;
+
+import java.util.Set;
+
+/**
+ * The store behind a {@link ResponseCacheAction}.
+ * <p>
+ * Entries are tagged with the names of the collections their content was read from so that a write
+ * to a collection can evict exactly the entries that may now be stale.
+ *
+ * @see InMemoryResponseCache
+ */
+public interface ResponseCache {
+
+    /**
+     * @param key the cache key
+     * @return the entry or null if there is no entry or it has expired
+     */
+    Entry get(String key);
+
+    /**
+     * @param key         the cache key
+     * @param entry       the response to cache
+     * @param collections the names of the collections <code>entry</code> was built from
+     * @param ttl         milliseconds until the entry expires or 0 for no expiration
+     */
+    void put(String key, Entry entry, Set<String> collections, long ttl);
+
+    /**
+     * Evicts every entry tagged with <code>collection</code>.
+     *
+     * @param collection the name of the collection that was written to
+     */
+    void invalidate(String collection);
+
+    void clear();
+
+    /**
+     * A cached response body along with the metadata needed to replay it.
+     */
+    class Entry {
+        final int    statusCode;
+        final String contentType;
+        final String etag;
+        final byte[] body;
+
+        public Entry(int statusCode, String contentType, String etag, byte[] body) {
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return the quoted strong entity tag of the body
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return the approximate number of bytes the entry occupies
+         */
+        public int getSize() {
+            return body.length + (contentType == null ? 0 : contentType.length()) + etag.length() + 16;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.action.cache;
+
+import io.inversion.*;
+import io.inversion.Collection;
+import io.inversion.utils.StreamBuffer;
+import io.inversion.utils.Task;
+import io.inversion.utils.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the bodies of successful root level collection GET responses and answers conditional requests.
+ * <p>
+ * The cache key is the url, with its query params sorted, plus the identity, roles, permissions, groups
+ * and scopes of the {@link User}.  Those are everything an {@link io.inversion.action.security.AclRule}
+ * can match on so a cached response is only replayed to a request that would have been authorized to
+ * build it, even when this filter runs before an AclFilter.  It does need to run after the AuthFilter.
+ * <p>
+ * Every response that passes through gets a strong ETag computed from the exact bytes of its body.  A request
+ * whose <code>If-None-Match</code> header matches the ETag is answered with a 304 and no body.
+ * <p>
+ * Entries are tagged with the collection being read and the collections of the relationships in the url and in any
+ * "expand" param.  POST/PUT/PATCH/DELETE requests serviced by DbPostAction, DbPatchAction and DbDeleteAction call
+ * {@link #invalidate(Engine, Collection)} for each collection they write to, evicting just the entries tagged with it.
+ * Because the write may not be committed until the request ends, {@link #AFTER_COMMIT} evicts the same entries again
+ * once the request's transaction has been committed or rolled back.  Writes that bypass those actions are only
+ * reflected once entries expire, see {@link #withTtl(long)}.
+ * <p>
+ * Adding the <code>nocache</code> param to a url skips the lookup and replaces the entry.
+ *
+ * @see ResponseCache
+ * @see InMemoryResponseCache
+ */
+public class ResponseCacheAction extends Filter<ResponseCacheAction> {
+
+    public static final int RESPONSE_CACHE_ACTION_DEFAULT_ORDER_IS_900 = 900;
+
+    /**
+     * The size of the default {@link InMemoryResponseCache}.
+     */
+    protected long maxBytes = 32 * 1024 * 1024;
+
+    /**
+     * Responses with bodies larger than this are not cached.
+     */
+    protected int maxEntryBytes = 1024 * 1024;
+
+    /**
+     * Milliseconds until an entry expires, 0 means entries live until they are invalidated or evicted.
+     */
+    protected long ttl = 0;
+
+    protected String nocacheParam = "nocache";
+
+    protected transient volatile ResponseCache cache = null;
+
+    /**
+     * Incremented by every invalidation so a response built while its collection was being written is not cached.
+     */
+    transient final AtomicLong invalidations = new AtomicLong();
+
+    public ResponseCacheAction() {
+        withOrder(RESPONSE_CACHE_ACTION_DEFAULT_ORDER_IS_900);
+    }
+
+    @Override
+    protected List<RuleMatcher> getDefaultIncludeMatchers() {
+        return Utils.asList(new RuleMatcher("GET", "{" + Request.COLLECTION_KEY + "}/[{" + Request.RESOURCE_KEY + "}]/[{" + Request.RELATIONSHIP_KEY + "}]"));
+    }
+
+    /**
+     * Registered with the Engine when a ResponseCacheAction is configured for an Op, evicts the collections
+     * written during a request again after the Db's ApiListeners have committed or rolled back the request's
+     * transaction, so a GET that read between the write and the commit can not leave an uncommitted or stale
+     * response in the cache.  Engine filters are not configured for an Op so an Engine that only uses
+     * ResponseCacheAction as a filter needs to call <code>withEngineListener(AFTER_COMMIT)</code> itself.
+     */
+    public static final Engine.EngineListener AFTER_COMMIT = new Engine.EngineListener() {
+        @Override
+        public void onBeforeFinally(Request req, Response res) {
+            RequestScope scope = RequestScope.peek();
+            if (scope == null || scope.getDepth() > 1)
+                return;
+
+            Set<Collection> written = (Set<Collection>) scope.removeAttribute(ResponseCacheAction.class);
+            if (written != null) {
+                for (Collection collection : written)
+                    evict(req.getEngine(), collection);
+            }
+        }
+    };
+
+    /**
+     * Evicts the cached responses built from <code>collection</code> from every ResponseCacheAction
+     * registered with the <code>engine</code>, its Apis or their Endpoints, now and again when the current request finishes.
+     *
+     * @param engine     the engine servicing the write
+     * @param collection the collection that was written to
+     */
+    public static void invalidate(Engine engine, Collection collection) {
+        if (engine == null || collection == null || collection.getName() == null)
+            return;
+
+        evict(engine, collection);
+
+        RequestScope scope = RequestScope.peek();
+        if (scope != null && scope.getDepth() > 0) {
+            Set<Collection> written = (Set<Collection>) scope.getAttribute(ResponseCacheAction.class);
+            if (written == null) {
+                written = Collections.newSetFromMap(new IdentityHashMap<>());
+                scope.withAttribute(ResponseCacheAction.class, written);
+            }
+            written.add(collection);
+        }
+    }
+
+    static void evict(Engine engine, Collection collection) {
+        if (engine == null)
+            return;
+
+        List<Action> actions = new ArrayList<>(engine.getFilters());
+        for (Api api : engine.getApis()) {
+            actions.addAll(api.getActions());
+            for (Endpoint endpoint : api.getEndpoints())
+                actions.addAll(endpoint.getActions());
+        }
+
+        Set<ResponseCache> invalidated = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Action action : actions) {
+            if (action instanceof ResponseCacheAction)
+                ((ResponseCacheAction) action).invalidate(collection.getName(), invalidated);
+        }
+    }
+
+    void invalidate(String collection, Set<ResponseCache> invalidated) {
+        invalidations.incrementAndGet();
+        if (cache != null && invalidated.add(cache)) {
+            Chain.debug("ResponseCacheAction: INVALIDATE " + collection);
+            cache.invalidate(collection);
+        }
+    }
+
+    @Override
+    public void configureOp(Task task, Op op) {
+        super.configureOp(task, op);
+        if (op.getEngine() != null)
+            op.getEngine().withEngineListener(AFTER_COMMIT);
+    }
+
+    @Override
+    public void run(Request req, Response res) throws ApiException {
+        if (!isCacheable(req))
+            return;
+
+        boolean refresh = req.getUrl().getParam(nocacheParam) != null;
+        if (refresh)
+            req.getUrl().clearParams(nocacheParam);
+
+        String              key   = buildKey(req);
+        ResponseCache.Entry entry = refresh ? null : getCache().get(key);
+
+        if (entry != null) {
+            Chain.debug("ResponseCacheAction: HIT " + key);
+            req.getChain().cancel();
+            res.withStatus(Status.SC_200_OK);
+            res.withBody(toBuffer(entry));
+        } else {
+            Set<String> collections = getCollections(req);
+            long        version     = invalidations.get();
+
+            req.getChain().go();
+
+            entry = buildEntry(res);
+            if (entry == null)
+                return;
+
+            //-- the body is replaced with the bytes the ETag was computed from so a miss and a hit are byte for byte identical
+            res.withBody(toBuffer(entry));
+            if (version == invalidations.get())
+                getCache().put(key, entry, collections, ttl);
+        }
+
+        res.getHeaders().remove("Cache-Control");
+        res.withHeader("Cache-Control", "private, no-cache");
+        res.withHeader("ETag", entry.getEtag());
+
+        if (matches(req.getAllHeaders("If-None-Match"), entry.getEtag())) {
+            res.withStatus(Status.SC_304_NOT_MODIFIED);
+            res.withText(null);
+        }
+    }
+
+    /**
+     * Only root level collection GETs that are not asking for "explain" output are cached.  Nested requests made by
+     * other actions, for example while servicing a write, always see the Db directly.
+     *
+     * @param req the request
+     * @return true if the response to <code>req</code> can be served from, and stored in, the cache
+     */
+    protected boolean isCacheable(Request req) {
+        return Chain.isRoot() && req.isGet() && req.getCollection() != null && !(req.isDebug() && req.isExplain());
+    }
+
+    /**
+     * @param req the request
+     * @return a SHA-256 hash of the request's method, normalized url, and user's access context
+     */
+    protected String buildKey(Request req) {
+        Url           url  = req.getUrl();
+        StringBuilder buff = new StringBuilder(req.getMethod().toUpperCase());
+        buff.append(" ").append(url.getProtocol()).append("://").append(url.getHost()).append(":").append(url.getPort()).append("/").append(url.getPath());
+
+        String sep = "?";
+        for (Map.Entry<String, String> param : new TreeMap<>(url.getParams()).entrySet()) {
+            buff.append(sep).append(param.getKey());
+            if (param.getValue() != null)
+                buff.append("=").append(param.getValue());
+            sep = "&";
+        }
+
+        User user = Chain.getUser();
+        if (user != null) {
+            buff.append("\nsubject=").append(user.getSubject());
+            buff.append("\naccount=").append(user.getAccount());
+            buff.append("\nissuer=").append(user.getIssuer());
+            buff.append("\nroles=").append(new TreeSet<>(Utils.explode(",", user.getRoles())));
+            buff.append("\npermissions=").append(new TreeSet<>(Utils.explode(",", user.getPermissions())));
+            buff.append("\ngroups=").append(new TreeSet<>(Utils.explode(",", user.getGroups())));
+            buff.append("\nscopes=").append(new TreeSet<>(Utils.explode(",", user.getScopes())));
+        }
+
+        return Utils.hash(buff.toString().getBytes(StandardCharsets.UTF_8), "SHA-256");
+    }
+
+    /**
+     * @param req the request
+     * @return the names of the collections the response to <code>req</code> is built from
+     */
+    protected Set<String> getCollections(Request req) {
+        Set<String> collections = new HashSet<>();
+        Collection  coll        = req.getCollection();
+        collections.add(coll.getName());
+
+        Relationship rel = req.getRelationship();
+        if (rel != null) {
+            addRelationship(collections, rel);
+            coll = rel.getRelated();
+        }
+
+        for (String path : Utils.explode(",", req.getUrl().getParam("expand"))) {
+            Collection parent = coll;
+            for (String name : Utils.explode(".", path)) {
+                rel = parent.getRelationship(name);
+                if (rel == null)
+                    break;
+                addRelationship(collections, rel);
+                parent = rel.getRelated();
+            }
+        }
+        return collections;
+    }
+
+    /**
+     * Adds the related collection and, for many-to-many relationships, the collection holding the link records.
+     */
+    void addRelationship(Set<String> collections, Relationship rel) {
+        if (rel.getRelated() != null)
+            collections.add(rel.getRelated().getName());
+        if (rel.getFkIndex1() != null && rel.getFkIndex1().getCollection() != null)
+            collections.add(rel.getFkIndex1().getCollection().getName());
+    }
+
+    /**
+     * @param res the response
+     * @return the entry to cache or null if the response is not a cacheable 200
+     */
+    protected ResponseCache.Entry buildEntry(Response res) {
+        if (res.getStatusCode() != 200 || res.getError() != null || res.getCursor() != null)
+            return null;
+
+        StreamBuffer body = res.getBody(false);
+        if (body == null)
+            return null;
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Utils.pipe(body.getInputStream(), out, true, true);
+            byte[] bytes = out.toByteArray();
+            if (bytes.length > maxEntryBytes)
+                return null;
+
+            String contentType = res.getContentType() != null ? res.getContentType() : body.getContentType();
+            return new ResponseCache.Entry(res.getStatusCode(), contentType, "\"" + Utils.hash(bytes, "SHA-256") + "\"", bytes);
+        } catch (IOException ex) {
+            throw new ApiException(ex);
+        }
+    }
+
+    StreamBuffer toBuffer(ResponseCache.Entry entry) {
+        try {
+            StreamBuffer buffer = new StreamBuffer();
+            buffer.write(entry.getBody());
+            buffer.withContentType(entry.getContentType());
+            return buffer;
+        } catch (IOException ex) {
+            throw new ApiException(ex);
+        }
+    }
+
+    /**
+     * Compares with the weak comparison function required for <code>If-None-Match</code>.  Tags carrying the
+     * content encoding suffix added by {@link ResponseCompression#encodeEtag(String, String)} match the uncompressed tag.
+     *
+     * @param ifNoneMatch the If-None-Match header values
+     * @param etag        the current ETag
+     * @return true if any of the listed tags, or "*", matches <code>etag</code>
+     */
+    protected boolean matches(List ifNoneMatch, String etag) {
+        for (Object header : ifNoneMatch) {
+            for (String tag : Utils.explode(",", header + "")) {
+                if (tag.startsWith("W/"))
+                    tag = tag.substring(2);
+                tag = ResponseCompression.decodeEtag(tag);
+                if (tag.equals("*") || tag.equals(etag))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    public ResponseCache getCache() {
+        if (cache == null) {
+            synchronized (this) {
+                if (cache == null)
+                    cache = new InMemoryResponseCache(maxBytes);
+            }
+        }
+        return cache;
+    }
+
+    public ResponseCacheAction withCache(ResponseCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public ResponseCacheAction withMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public ResponseCacheAction withMaxEntryBytes(int maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+        return this;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public ResponseCacheAction withTtl(long ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    public String getNocacheParam() {
+        return nocacheParam;
+    }
+
+    public ResponseCacheAction withNocacheParam(String nocacheParam) {
+        this.nocacheParam = nocacheParam;
+        return this;
+    }
+}
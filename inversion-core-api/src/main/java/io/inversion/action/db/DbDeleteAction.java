@@ -18,6 +18,7 @@ package io.inversion.action.db;
 
 import io.inversion.*;
 import io.inversion.Collection;
+import io.inversion.action.cache.ResponseCacheAction;
 import io.inversion.json.JSMap;
 import io.inversion.Url;
 import io.inversion.utils.Utils;
@@ -84,6 +85,7 @@ public class DbDeleteAction<A extends DbDeleteAction> extends Action<A> {
                 rows.add(node);
             }
             collection.getDb().delete(collection, rows);
+            ResponseCacheAction.invalidate(engine, collection);
             deleted += res.data().size();
         }
 
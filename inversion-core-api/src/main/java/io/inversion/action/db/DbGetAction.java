@@ -18,6 +18,10 @@ package io.inversion.action.db;
 
 import io.inversion.Collection;
 import io.inversion.*;
+import io.inversion.Chain.ActionMatch;
+import io.inversion.action.hateoas.HATEOASFilter;
+import io.inversion.action.security.AclFilter;
+import io.inversion.action.security.AuthFilter;
 import io.inversion.json.JSList;
 import io.inversion.json.JSMap;
 import io.inversion.json.JSNode;
@@ -32,11 +36,54 @@ import org.apache.commons.collections4.map.MultiKeyMap;
 import io.inversion.utils.ListMap;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DbGetAction<A extends DbGetAction> extends Action<A>  {
 
     protected int maxRows = 100;
 
+    /**
+     * When greater than zero, root level collection listings without an "expand" param whose page limit is at least
+     * this many rows are streamed from the Db to the response body instead of being loaded into memory, for Dbs
+     * that support it.
+     * <p>
+     * Streamed responses do not include "foundRows", "lastKey" or a "next" link.
+     *
+     * @see Results#STREAM_THRESHOLD
+     */
+    protected int streamThreshold = 0;
+
+    /**
+     * When true, related records for "expand" params are selected straight from the related Collection's Db,
+     * after running any AuthFilter and AclFilter checks in-process, instead of through a nested Engine request.
+     * <p>
+     * Expansions still fall back to a nested Engine request when any other Action would have handled it.
+     *
+     * @see #isDirectExpandable(Action)
+     */
+    protected boolean directExpand = true;
+
+    /**
+     * When greater than 1, sibling relationships in an "expand" param, such as <code>expand=orders,customer,employee</code>,
+     * are fetched concurrently on up to this many threads shared by all requests to this action.
+     * <p>
+     * When the Engine uses virtual threads, each sibling is fetched on its own virtual thread instead.
+     * Expansions that start on one of the shared threads, such as those run by a nested request, are run sequentially.
+     *
+     * @see #expandConcurrently(Request, List, List, Set, MultiKeyMap)
+     */
+    protected int expandThreads = 1;
+
+    /**
+     * Selects related records for the request's {@link Loader} with {@link #getRelated(Collection, java.util.Collection)}.
+     */
+    protected final transient Loader.Fetcher relatedFetcher = (collection, index, keys) -> getRelated(collection, keys);
+
+    transient volatile ExecutorService expandExecutor = null;
+
     public DbGetAction() {
 //        Param expand = new Param();
 //        expand.withDescription("An optional comma separated lists of relationship names that should be expanded in the response. You can reference any number of nesting using 'dot' path notation.");
@@ -275,6 +322,14 @@ public class DbGetAction<A extends DbGetAction> extends Action<A>  {
 
         Results results = select(req, req.getCollection(), req.getApi());
 
+        if (results.isStreaming()) {
+            res.withCursor(results.getCursor());
+            Page page = results.getQuery().getPage();
+            res.withPageSize(page.getPageSize());
+            res.withPageNum(page.getPageNum());
+            return;
+        }
+
         if (results.size() == 0 && req.getResourceKey() != null && req.getCollectionKey() != null) {
             res.withJson((JSNode)null);
             res.withStatus(Status.SC_404_NOT_FOUND);
@@ -375,7 +430,16 @@ public class DbGetAction<A extends DbGetAction> extends Action<A>  {
 
             results = db.select(null, req.getUrl().getParams());
         } else {
-            results = collection.getDb().select(collection, req.getUrl().getParams());
+            RequestScope scope  = RequestScope.peek();
+            boolean      stream = scope != null && isStreamable(req, collection);
+            if (stream)
+                scope.withAttribute(Results.STREAM_THRESHOLD, streamThreshold);
+            try {
+                results = collection.getDb().select(collection, req.getUrl().getParams());
+            } finally {
+                if (stream)
+                    scope.removeAttribute(Results.STREAM_THRESHOLD);
+            }
         }
 
         if (results.size() > 0) {
@@ -387,6 +451,22 @@ public class DbGetAction<A extends DbGetAction> extends Action<A>  {
     }
 
 
+    /**
+     * Streaming is only possible when nothing needs to post process the rows as a whole, the response
+     * will be written straight to the client and the request is for a page of a collection not specific resources.
+     *
+     * @param req        the request being serviced
+     * @param collection the collection being queried
+     * @return true if the Db may return a streaming Results
+     */
+    protected boolean isStreamable(Request req, Collection collection) {
+        return streamThreshold > 0 //
+                && Chain.isRoot() //
+                && collection != null //
+                && Utils.empty(req.getResourceKey()) //
+                && req.getUrl().getParam("expand") == null;
+    }
+
     /**
      * This is more complicated than it seems like it would need to be because
      * it attempts to retrieve all values of a relationship at a time for the whole
@@ -394,6 +474,8 @@ public class DbGetAction<A extends DbGetAction> extends Action<A>  {
      * which could mean hundreds and hundreds of queries per document.  This should
      * result in number of queries proportional to the number of expands terms that does
      * not increase with the number of results at any level of the expansion.
+     * <p>
+     * When <code>expandThreads</code> is greater than 1, sibling relationships are fetched concurrently, see {@link #expandConcurrently(Request, List, List, Set, MultiKeyMap)}.
      *
      * @param request     the request being serviced
      * @param collection  the collection being queried
@@ -417,6 +499,7 @@ public class DbGetAction<A extends DbGetAction> extends Action<A>  {
         if (expandsPath == null)
             expandsPath = "";
 
+        List<Expansion> expansions = new ArrayList<>();
         for (Relationship rel : collection.getRelationships()) {
             boolean shouldExpand = shouldExpand(expands, expandsPath, rel);
 
@@ -437,125 +520,289 @@ public class DbGetAction<A extends DbGetAction> extends Action<A>  {
                         pkCache.put(collection, getResourceKey(collection, node), node);
                     }
                 }
+                expansions.add(new Expansion(collection, rel, expandPath(expandsPath, rel.getName())));
+            }
+        }
 
-                //ONE_TO_MANY - Location.id <- Player.locationId
-                //MANY_TO_ONE - Player.locationId -> Location.id (one playe
-                //MANY_TO_MANY, ex going from Category(id)->CategoryBooks(categoryId, bookId)->Book(id)
+        //-- a branch that expands again, through an Engine.get fallback for example, runs inline
+        //-- because waiting on the same fixed pool it is running on could deadlock the pool
+        if (expandThreads > 1 && expansions.size() > 1 && !(Thread.currentThread() instanceof ExpandThread)) {
+            expandConcurrently(request, parentObjs, expansions, expands, pkCache);
+            return;
+        }
 
-                final Collection relatedCollection = rel.getRelated();
-                //            Column toMatchCol = null;
-                //            Column toRetrieveCol = null;
+        //-- every sibling's keys are queued before any are read so that relationships
+        //-- to the same collection are selected together by the request's Loader
+        Loader loader = Chain.peek().getLoader();
+        for (Expansion expansion : expansions) {
+            Relationship rel = expansion.rel;
+            prepare(expansion, parentObjs);
+            if (expansion.relatedEks == null)
+                expansion.relatedEks = getRelatedKeys(rel, expansion.idxToMatch, expansion.idxToRetrieve, expansion.toMatchEks);
 
-                Index          idxToMatch    = null;
-                Index          idxToRetrieve = null;
-                List<KeyValue> relatedEks    = null;
+            loader.load(relatedFetcher, rel.getRelated(), rel.getRelated().getResourceIndex(), getUnfetchedKeys(expansion, pkCache));
+        }
 
-                if (rel.isManyToOne()) {
-                    idxToMatch = collection.getResourceIndex();
-                    idxToRetrieve = rel.getFkIndex1();
+        for (Expansion expansion : expansions) {
+            Relationship rel = expansion.rel;
 
-                    //NOTE: expands() is only getting the paired up related keys.  For a MANY_TO_ONE
-                    //relationship that data is already in the parent object you are trying to expand
-                    //so we don't need to query the db to find those relationships as we do for the
-                    //MANY_TO relationships.
-                    //
-                    //However if you were to comment out the following block, the output of the algorithm
-                    //would be exactly the same you would just end up running an extra db query
-
-                    relatedEks = new ArrayList<>();
-                    for (JSMap parentObj : parentObjs) {
-                        String parentEk = getResourceKey(collection, parentObj);
-                        String childEk  = getForeignKey(rel, parentObj);
-                        if (childEk != null) {
-                            relatedEks.add(new KeyValue(parentEk, childEk));
-                        }
-                    }
-                } else if (rel.isOneToMany()) {
-                    idxToMatch = rel.getFkIndex1();
-                    idxToRetrieve = rel.getRelated().getResourceIndex();
-                } else if (rel.isManyToMany()) {
-                    idxToMatch = rel.getFkIndex1();
-                    idxToRetrieve = rel.getFkIndex2();
-                } else if(rel.isOneToOneParent()){
-                    relatedEks = new ArrayList<>();
-                    for (JSMap parentObj : parentObjs) {
-                        String parentEk = getResourceKey(collection, parentObj);
-                        String childEk  = parentEk; //TODO: this will not work if the columns are not in the same order
-                        if (childEk != null) {
-                            relatedEks.add(new KeyValue(parentEk, childEk));
-                        }
-                    }
-                }
-                else if(rel.isOneToOneChild()){
-                    relatedEks = new ArrayList<>();
-                    for (JSMap parentObj : parentObjs) {
-                        String parentEk = getResourceKey(collection, parentObj);
-                        String childEk  = parentEk; //TODO: this will not work if the columns are not in the same order
-                        if (childEk != null) {
-                            relatedEks.add(new KeyValue(parentEk, childEk));
-                        }
-                    }
-                }
+            //this recursive call populates the pkCache
+            List<JSMap> newChildObjs = recursiveGet(pkCache, rel.getRelated(), getUnfetchedKeys(expansion, pkCache), expansion.path);
+            if (newChildObjs == null)//-- the user is not allowed to see the related collection
+                continue;
 
+            stitch(expansion, pkCache);
 
-                if (relatedEks == null) {
-                    List toMatchEks = new ArrayList<>();
-                    for (JSMap parentObj : parentObjs) {
-                        String parentEk = getResourceKey(collection, parentObj);
-                        if (!toMatchEks.contains(parentEk)) {
-                            if (parentObj.get(rel.getName()) instanceof JSList)
-                                throw ApiException.new500InternalServerError("This relationship seems to have already been expanded.");//-- this is an implementation logic error. If it ever happens...FIX IT.
+            if (newChildObjs.size() > 0) {
+                expand(request, rel.getRelated(), newChildObjs, expands, expansion.path, pkCache);
+            }
+        }
+    }
 
-                            toMatchEks.add(parentEk);
+    /**
+     * Expands sibling relationships concurrently.
+     * <p>
+     * Each relationship's keys and records are fetched on its own thread with {@link Engine#callBranch(Chain, Request, java.util.concurrent.Callable)}
+     * so each branch gets its own Chain and Db connections.  Records are stitched into <code>parentObjs</code>, and
+     * the next level is expanded, on the calling thread in relationship order so the resulting document does not
+     * depend on which branch finishes first.
+     *
+     * @param request    the request being serviced
+     * @param parentObjs the records that were just selected
+     * @param expansions the sibling relationships to expand
+     * @param expands    the definition of which properties should be expanded
+     * @param pkCache    a cache of things already looked up
+     */
+    protected void expandConcurrently(Request request, List<JSMap> parentObjs, List<Expansion> expansions, Set expands, MultiKeyMap pkCache) {
+        for (Expansion expansion : expansions)
+            prepare(expansion, parentObjs);
+
+        //-- pkCache is only read while the branches run
+        Chain                  parent   = Chain.peek();
+        Engine                 engine   = parent.getEngine();
+        ExecutorService        executor = getExpandExecutor(engine);
+        List<Future<List<JSMap>>> futures  = new ArrayList<>();
+        for (Expansion expansion : expansions) {
+            Request branch = new Request("GET", Chain.buildLink(expansion.rel.getRelated()), null);
+            branch.withApi(request.getApi());
+            futures.add(executor.submit(() -> engine.callBranch(parent, branch, () -> {
+                if (expansion.relatedEks == null)
+                    expansion.relatedEks = getRelatedKeys(expansion.rel, expansion.idxToMatch, expansion.idxToRetrieve, expansion.toMatchEks);
+                return getRelated(expansion.rel.getRelated(), getUnfetchedKeys(expansion, pkCache));
+            })));
+        }
 
-                            if (rel.isManyToOne()) {
-                                parentObj.remove(rel.getName());
-                            } else {
-                                parentObj.put(rel.getName(), new JSList());
-                            }
-                        }
-                    }
-                    relatedEks = getRelatedKeys(rel, idxToMatch, idxToRetrieve, toMatchEks);
+        List<List<JSMap>> fetched = new ArrayList<>();
+        Throwable         error   = null;
+        for (Future<List<JSMap>> future : futures) {
+            try {
+                fetched.add(future.get());
+            } catch (ExecutionException ex) {
+                fetched.add(null);
+                if (error == null)
+                    error = ex.getCause();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                fetched.add(null);
+                if (error == null)
+                    error = ex;
+            }
+        }
+        if (error != null)
+            Utils.rethrow(error);
+
+        List<List<JSMap>> newChildObjs = new ArrayList<>();
+        for (int i = 0; i < expansions.size(); i++) {
+            Expansion   expansion = expansions.get(i);
+            List<JSMap> nodes     = fetched.get(i);
+            if (nodes == null) {//-- the user is not allowed to see the related collection
+                newChildObjs.add(Collections.EMPTY_LIST);
+                continue;
+            }
+
+            //-- a sibling relationship to the same collection may have already fetched some of the same records
+            Collection  related = expansion.rel.getRelated();
+            List<JSMap> added   = new ArrayList<>();
+            for (JSMap node : nodes) {
+                Object resourceKey = getResourceKey(related, node);
+                if (!pkCache.containsKey(related, resourceKey)) {
+                    pkCache.put(related, resourceKey, node);
+                    added.add(node);
                 }
+            }
+            newChildObjs.add(added);
 
-                List                          unfetchedChildEks = new ArrayList<>();
-                ListMap<String, String> fkCache           = new ListMap<>();
+            stitch(expansion, pkCache);
+        }
 
-                for (KeyValue<String, String> row : relatedEks) {
-                    //the values in the many_to_many link table may have different names than the target columns so you have to
-                    //use the index not the name to build the child resource key.
+        for (int i = 0; i < expansions.size(); i++) {
+            Expansion expansion = expansions.get(i);
+            if (newChildObjs.get(i).size() > 0)
+                expand(request, expansion.rel.getRelated(), newChildObjs.get(i), expands, expansion.path, pkCache);
+        }
+    }
 
-                    String parentEk  = row.getKey();
-                    String relatedEk = row.getValue();
+    /**
+     * A thread in the fixed expand pool.  Expansions that start on one of these are run sequentially.
+     */
+    static class ExpandThread extends Thread {
+        ExpandThread(Runnable task) {
+            super(task, "DbGetAction-expand");
+            setDaemon(true);
+        }
+    }
 
-                    fkCache.put(relatedEk, parentEk);
+    /**
+     * The keys that pair up parent records with the related records for one relationship in an expansion.
+     */
+    protected static class Expansion {
+        final Collection   collection;
+        final Relationship rel;
+        final String       path;
+
+        Index                          idxToMatch    = null;
+        Index                          idxToRetrieve = null;
+        List                           toMatchEks    = null;
+        List<KeyValue<String, String>> relatedEks    = null;
+
+        public Expansion(Collection collection, Relationship rel, String path) {
+            this.collection = collection;
+            this.rel = rel;
+            this.path = path;
+        }
+    }
 
-                    if (!pkCache.containsKey(relatedCollection, relatedEk)) {
-                        unfetchedChildEks.add(relatedEk);
-                    }
+    /**
+     * Works out which index values need to be queried to expand <code>expansion.rel</code> for
+     * <code>parentObjs</code> and resets the relationship property of each parent.
+     * <p>
+     * When the related keys are already in the parent records, <code>expansion.relatedEks</code> is set
+     * directly, otherwise <code>expansion.toMatchEks</code> is set for {@link #getRelatedKeys(Relationship, Index, Index, List)}.
+     *
+     * @param expansion  the relationship being expanded
+     * @param parentObjs the records being expanded
+     */
+    protected void prepare(Expansion expansion, List<JSMap> parentObjs) {
+        Collection   collection = expansion.collection;
+        Relationship rel        = expansion.rel;
+
+        //ONE_TO_MANY - Location.id <- Player.locationId
+        //MANY_TO_ONE - Player.locationId -> Location.id (one playe
+        //MANY_TO_MANY, ex going from Category(id)->CategoryBooks(categoryId, bookId)->Book(id)
+
+        Index          idxToMatch    = null;
+        Index          idxToRetrieve = null;
+        List<KeyValue> relatedEks    = null;
+
+        if (rel.isManyToOne()) {
+            idxToMatch = collection.getResourceIndex();
+            idxToRetrieve = rel.getFkIndex1();
+
+            //NOTE: expands() is only getting the paired up related keys.  For a MANY_TO_ONE
+            //relationship that data is already in the parent object you are trying to expand
+            //so we don't need to query the db to find those relationships as we do for the
+            //MANY_TO relationships.
+            //
+            //However if you were to comment out the following block, the output of the algorithm
+            //would be exactly the same you would just end up running an extra db query
+
+            relatedEks = new ArrayList<>();
+            for (JSMap parentObj : parentObjs) {
+                String parentEk = getResourceKey(collection, parentObj);
+                String childEk  = getForeignKey(rel, parentObj);
+                if (childEk != null) {
+                    relatedEks.add(new KeyValue(parentEk, childEk));
                 }
+            }
+        } else if (rel.isOneToMany()) {
+            idxToMatch = rel.getFkIndex1();
+            idxToRetrieve = rel.getRelated().getResourceIndex();
+        } else if (rel.isManyToMany()) {
+            idxToMatch = rel.getFkIndex1();
+            idxToRetrieve = rel.getFkIndex2();
+        } else if(rel.isOneToOneParent()){
+            relatedEks = new ArrayList<>();
+            for (JSMap parentObj : parentObjs) {
+                String parentEk = getResourceKey(collection, parentObj);
+                String childEk  = parentEk; //TODO: this will not work if the columns are not in the same order
+                if (childEk != null) {
+                    relatedEks.add(new KeyValue(parentEk, childEk));
+                }
+            }
+        }
+        else if(rel.isOneToOneChild()){
+            relatedEks = new ArrayList<>();
+            for (JSMap parentObj : parentObjs) {
+                String parentEk = getResourceKey(collection, parentObj);
+                String childEk  = parentEk; //TODO: this will not work if the columns are not in the same order
+                if (childEk != null) {
+                    relatedEks.add(new KeyValue(parentEk, childEk));
+                }
+            }
+        }
 
-                //this recursive call populates the pkCache
-                List<JSMap> newChildObjs = recursiveGet(pkCache, relatedCollection, unfetchedChildEks, expandPath(expandsPath, rel.getName()));
 
-                for (KeyValue<String, String> row : relatedEks) {
-                    String parentEk  = row.getKey();
-                    String relatedEk = row.getValue();
+        if (relatedEks == null) {
+            List toMatchEks = new ArrayList<>();
+            for (JSMap parentObj : parentObjs) {
+                String parentEk = getResourceKey(collection, parentObj);
+                if (!toMatchEks.contains(parentEk)) {
+                    if (parentObj.get(rel.getName()) instanceof JSList)
+                        throw ApiException.new500InternalServerError("This relationship seems to have already been expanded.");//-- this is an implementation logic error. If it ever happens...FIX IT.
 
-                    JSNode parentObj = (JSNode) pkCache.get(collection, parentEk);
-                    JSNode childObj  = (JSNode) pkCache.get(relatedCollection, relatedEk);
+                    toMatchEks.add(parentEk);
 
-                    if (rel.isManyToOne() || rel.isOneToOneParent() || rel.isOneToOneChild()) {
-                        parentObj.put(rel.getName(), childObj);
+                    if (rel.isManyToOne()) {
+                        parentObj.remove(rel.getName());
                     } else {
-                        if (childObj != null) {
-                            parentObj.getList(rel.getName()).add(childObj);
-                        }
+                        parentObj.put(rel.getName(), new JSList());
                     }
                 }
+            }
+            expansion.toMatchEks = toMatchEks;
+        }
 
-                if (newChildObjs.size() > 0) {
-                    expand(request, relatedCollection, newChildObjs, expands, expandPath(expandsPath, rel.getName()), pkCache);
+        expansion.idxToMatch = idxToMatch;
+        expansion.idxToRetrieve = idxToRetrieve;
+        expansion.relatedEks = (List) relatedEks;
+    }
+
+    /**
+     * @return the related resource keys from <code>expansion.relatedEks</code> that are not already in <code>pkCache</code>
+     */
+    protected List getUnfetchedKeys(Expansion expansion, MultiKeyMap pkCache) {
+        Collection  relatedCollection = expansion.rel.getRelated();
+        Set<String> unfetchedChildEks = new LinkedHashSet<>();
+
+        for (KeyValue<String, String> row : expansion.relatedEks) {
+            //the values in the many_to_many link table may have different names than the target columns so you have to
+            //use the index not the name to build the child resource key.
+            String relatedEk = row.getValue();
+
+            if (!pkCache.containsKey(relatedCollection, relatedEk)) {
+                unfetchedChildEks.add(relatedEk);
+            }
+        }
+        return new ArrayList<>(unfetchedChildEks);
+    }
+
+    /**
+     * Puts the related records from <code>pkCache</code> into their parent records.
+     */
+    protected void stitch(Expansion expansion, MultiKeyMap pkCache) {
+        Relationship rel = expansion.rel;
+        for (KeyValue<String, String> row : expansion.relatedEks) {
+            String parentEk  = row.getKey();
+            String relatedEk = row.getValue();
+
+            JSNode parentObj = (JSNode) pkCache.get(expansion.collection, parentEk);
+            JSNode childObj  = (JSNode) pkCache.get(rel.getRelated(), relatedEk);
+
+            if (rel.isManyToOne() || rel.isOneToOneParent() || rel.isOneToOneChild()) {
+                parentObj.put(rel.getName(), childObj);
+            } else {
+                if (childObj != null) {
+                    parentObj.getList(rel.getName()).add(childObj);
                 }
             }
         }
@@ -576,10 +823,16 @@ public class DbGetAction<A extends DbGetAction> extends Action<A>  {
         Term sort     = Term.term(null, "sort", columns);
         Term notNull  = Term.term(null, "nn", columns);
 
-        String   link = Chain.buildLink(idxToRetrieve.getCollection());
-        Response res  = Chain.peek().getEngine().get(link, Arrays.asList(termKeys, includes, sort, notNull)).assertOk();
+        Map<String, String> params = new LinkedHashMap<>();
+        for (Term term : Arrays.asList(termKeys, includes, sort, notNull))
+            params.put(term.toString(), null);
+
+        String      link = Chain.buildLink(idxToRetrieve.getCollection());
+        List<JSMap> rows = directExpand ? directSelect(idxToRetrieve.getCollection(), link, params) : null;
+        if (rows == null)
+            rows = Chain.peek().getEngine().get(link, params).assertOk().data().asMapList();
 
-        for (JSNode node : res.data().asMapList()) {
+        for (JSNode node : rows) {
             List idxToMatchVals = new ArrayList<>();
 
             for (String property : idxToMatch.getJsonNames()) {
@@ -619,6 +872,51 @@ public class DbGetAction<A extends DbGetAction> extends Action<A>  {
     }
 
     protected List<JSMap> recursiveGet(MultiKeyMap pkCache, Collection collection, java.util.Collection resourceKeys, String expandsPath) throws ApiException {
+        List<JSMap> nodes = loadRelated(collection, resourceKeys);
+        if (nodes == null)
+            return null;
+
+        for (JSMap node : nodes) {
+            Object resourceKey = getResourceKey(collection, node);
+            if (pkCache.containsKey(collection, resourceKey)) {
+                throw ApiException.new500InternalServerError("The requested resource has already been retrieved.");//-- logic error...fix me if found.
+            }
+
+            pkCache.put(collection, resourceKey, node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Gets the records of <code>collection</code> with the given resource keys through the request's {@link Loader},
+     * which selects them with {@link #getRelated(Collection, java.util.Collection)} along with any other keys
+     * that have been queued for <code>collection</code>.
+     *
+     * @param collection   the collection to select from
+     * @param resourceKeys the encoded resource keys to select
+     * @return the records or null if the user is not allowed to read <code>collection</code>
+     * @throws ApiException if the select fails
+     */
+    protected List<JSMap> loadRelated(Collection collection, java.util.Collection resourceKeys) throws ApiException {
+        if (resourceKeys.size() == 0)
+            return Collections.EMPTY_LIST;
+
+        Chain chain = Chain.peek();
+        if (chain == null)
+            return getRelated(collection, resourceKeys);
+
+        return chain.getLoader().get(relatedFetcher, collection, collection.getResourceIndex(), resourceKeys);
+    }
+
+    /**
+     * Selects the records of <code>collection</code> with the given resource keys as a nested GET request would.
+     *
+     * @param collection   the collection to select from
+     * @param resourceKeys the encoded resource keys to select
+     * @return the records or null if the user is not allowed to read <code>collection</code>
+     * @throws ApiException if the select fails
+     */
+    protected List<JSMap> getRelated(Collection collection, java.util.Collection resourceKeys) throws ApiException {
         if (resourceKeys.size() == 0)
             return Collections.EMPTY_LIST;
 
@@ -649,31 +947,109 @@ public class DbGetAction<A extends DbGetAction> extends Action<A>  {
         //         }
         //      }
 
-        Response res = Chain.peek().getEngine().get(url);
-        int      sc  = res.getStatusCode();
-        if (sc == 401 || sc == 403)//unauthorized || forbidden
+        List<JSMap> nodes = null;
+        if (directExpand) {
+            try {
+                nodes = directSelect(collection, url, null);
+            } catch (ApiException ex) {
+                int sc = ex.getStatusCode();
+                if (sc == 401 || sc == 403)//unauthorized || forbidden
+                    return null;
+                throw ex;
+            }
+        }
+
+        if (nodes == null) {
+            Response res = Chain.peek().getEngine().get(url);
+            int      sc  = res.getStatusCode();
+            if (sc == 401 || sc == 403)//unauthorized || forbidden
+                return null;
+
+            if (sc == 404)
+                return Collections.EMPTY_LIST;
+
+            if (sc != 200)
+                res.rethrow();
+
+            nodes = res.data().asMapList();
+        }
+        return nodes;
+    }
+
+    /**
+     * Selects the records a nested GET of <code>url</code> would return, without running the nested request through the Engine.
+     * <p>
+     * The request is matched to its Op like any other but, instead of running the matched Actions, the AuthFilter and AclFilter
+     * checks are run in-process and the rows are selected straight from the Collection's Db.  This skips
+     * the nested request's JSON response, its RQL re-parsing and its per request Db listeners.
+     * <p>
+     * If any matched Action is not {@link #isDirectExpandable(Action) direct expandable}, this returns null and the
+     * caller should run the request through the Engine so that Action is not skipped.
+     *
+     * @param collection the collection being selected
+     * @param url        the url of the nested GET
+     * @param params     additional query terms, may be null
+     * @return the selected records or null if the request needs to be run through the Engine
+     * @throws ApiException a 401 or 403 if an AuthFilter or AclFilter would have rejected the nested request
+     */
+    protected List<JSMap> directSelect(Collection collection, String url, Map<String, String> params) throws ApiException {
+        Chain parent = Chain.peek();
+        if (parent == null || collection == null || collection.getDb() == null)
             return null;
 
-        if (sc == 404) {
-            return Collections.EMPTY_LIST;
-        } else if (sc == 500) {
-            res.rethrow();
-        } else if (sc == 200) {
-            List<JSMap> nodes = res.data().asMapList();
+        Engine  engine = parent.getEngine();
+        Request req    = new Request("GET", url, null);
+        req.withEngine(engine);
+        if (params != null) {
+            for (String key : params.keySet())
+                req.getUrl().withParam(key, params.get(key));
+        }
 
-            for (JSMap node : nodes) {
-                Object resourceKey = getResourceKey(collection, node);
-                if (pkCache.containsKey(collection, resourceKey)) {
-                    throw ApiException.new500InternalServerError("The requested resource has already been retrieved.");//-- logic error...fix me if found.
-                }
+        List<ActionMatch> actions = engine.matchActions(req);
+        if (actions == null || req.getCollection() != collection || req.getRelationshipKey() != null)
+            return null;
 
-                pkCache.put(collection, resourceKey, node);
+        for (ActionMatch match : actions) {
+            if (!isDirectExpandable(match.getAction()))
+                return null;
+        }
+
+        if (!Utils.empty(req.getResourceKey())) {
+            List<String> resourceKeys = Utils.explode(",", req.getResourceKey());
+            Term         term         = Term.term(null, "_key", collection.getResourceIndex().getName(), resourceKeys.toArray());
+            req.getUrl().withParams(term.toString(), null);
+        }
+
+        RequestScope scope = RequestScope.current();
+        Response     res   = new Response().withRequest(req);
+        req.withScope(scope);
+        Chain.push(scope, engine, req, res);
+        try {
+            for (ActionMatch match : actions) {
+                Action action = match.getAction();
+                if (action instanceof AuthFilter || action instanceof AclFilter)
+                    action.run(req, res);
             }
-            return nodes;
+
+            return (List<JSMap>) collection.getDb().select(collection, req.getUrl().getParams()).getRows();
+        } finally {
+            Chain.pop();
         }
+    }
 
-        res.rethrow();
-        return null;
+    /**
+     * @param action an Action that would have run for a nested expansion request
+     * @return true if {@link #directSelect(Collection, String, Map)} produces the same records as running <code>action</code> would
+     */
+    protected boolean isDirectExpandable(Action action) {
+        if (action == null)
+            return false;
+
+        return action instanceof AuthFilter //
+                || action instanceof AclFilter //
+                || action instanceof HATEOASFilter //hateoas links are added to expanded records by the root request
+                || action.getClass() == DbGetAction.class //
+                || (action.getClass() == DbAction.class && isDirectExpandable(((DbAction) action).getGetAction()));
     }
 
     public int getMaxRows() {
@@ -714,4 +1090,53 @@ public class DbGetAction<A extends DbGetAction> extends Action<A>  {
         return this;
     }
 
+    public int getStreamThreshold() {
+        return streamThreshold;
+    }
+
+    public DbGetAction withStreamThreshold(int streamThreshold) {
+        this.streamThreshold = streamThreshold;
+        return this;
+    }
+
+    /**
+     * @param engine the Engine servicing the request
+     * @return the Engine's executor if it uses virtual threads, otherwise a lazily built pool of <code>expandThreads</code> daemon {@link ExpandThread}s
+     */
+    protected ExecutorService getExpandExecutor(Engine engine) {
+        if (engine.isVirtualThreads())
+            return engine.getExecutor();
+
+        if (expandExecutor == null) {
+            synchronized (this) {
+                if (expandExecutor == null) {
+                    expandExecutor = Executors.newFixedThreadPool(expandThreads, ExpandThread::new);
+                }
+            }
+        }
+        return expandExecutor;
+    }
+
+    public int getExpandThreads() {
+        return expandThreads;
+    }
+
+    public synchronized DbGetAction withExpandThreads(int expandThreads) {
+        this.expandThreads = expandThreads;
+        if (expandExecutor != null) {
+            expandExecutor.shutdown();
+            expandExecutor = null;
+        }
+        return this;
+    }
+
+    public boolean isDirectExpand() {
+        return directExpand;
+    }
+
+    public DbGetAction withDirectExpand(boolean directExpand) {
+        this.directExpand = directExpand;
+        return this;
+    }
+
 }
@@ -18,6 +18,10 @@ package io.inversion.action.db;
 
 import io.inversion.Collection;
 import io.inversion.*;
+import io.inversion.action.cache.ResponseCacheAction;
+import io.inversion.action.hateoas.HATEOASFilter;
+import io.inversion.action.security.AclFilter;
+import io.inversion.action.security.AuthFilter;
 import io.inversion.json.*;
 import io.inversion.rql.Term;
 import io.inversion.utils.Utils;
@@ -36,6 +40,26 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
     protected boolean strictRest     = false;
     protected boolean getResponse    = true;
 
+    /**
+     * When greater than zero, a POST of a JSON array that arrives as an unread body stream
+     * (see {@link Request#withBodyStream(java.io.InputStream)}) is parsed and upserted <code>streamBatchSize</code>
+     * records at a time instead of materializing the entire array first.
+     * <p>
+     * $ref and duplicate reference resolution only applies within a batch.
+     */
+    protected int     streamBatchSize = 0;
+
+    /**
+     * When true, a posted document with nested related records is upserted in-process, one Db call per collection
+     * per depth, instead of POSTing each child generation back through the Engine.
+     * <p>
+     * Documents fall back to the Engine when a related collection would be handled by any Action other than
+     * a plain DbPostAction, so custom per collection Actions still run.
+     *
+     * @see #upsertGraph(Request, Collection, JSList)
+     */
+    protected boolean graphUpsert = true;
+
     @Override
     protected List<Rule.RuleMatcher> getDefaultIncludeMatchers(){
         return Utils.asList(new RuleMatcher("POST", "{" + Request.COLLECTION_KEY + "}"));
@@ -96,6 +120,7 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
         }
 
         List<String> resourceKeys = req.getCollection().getDb().patch(req.getCollection(), req.getJson().asMapList());
+        invalidateResponseCaches(req, req.getCollection());
 
         if (resourceKeys.size() == req.getJson().asMapList().size()) {
             res.withStatus(Status.SC_201_CREATED);
@@ -123,51 +148,24 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
                 throw ApiException.new404NotFound("You are trying to PUT to a collection url.  Set 'strictRest' to false to interpret PUT vs POST intention based on presense of 'href' property in passed in JSON");
         }
 
-        Collection   collection = req.getCollection();
-        List<Change> changes    = new ArrayList<>();
-        List         resourceKeys;
-        JSNode       body        = req.getJson();
-
-        swapRefsWithActualReferences(body);
-
-        JSList bodyArr = body.asList();
-        Map visited = new HashMap();
-        for(int i=0; i<bodyArr.size(); i++){
-            swapLogicalDuplicateReferences(collection, (JSNode)bodyArr.get(i), bodyArr, i + "0", visited);
-        }
-
-
-        //if the caller posted back an Inversion GET style envelope with meta/data sections, unwrap to get to the real body
-        if(body.find("meta") instanceof JSNode && body.find("data") instanceof  JSList)
-            body = body.findNode("data");
-
-        //if a single cell array was passed in, unwrap to get to the real body
-        if(body instanceof JSList && ((JSList)body).size() == 1 && ((JSList)body).get(0) instanceof JSNode)
-            body = ((JSList)body).getNode(0);
-
-
-        boolean     collapseAll = "true".equalsIgnoreCase(req.getUrl().getParam("collapseAll"));
-        String collapseStr = req.getUrl().getParam("collapse");
-        Set<String> collapses   = collapseStr == null ? new HashSet<>() : Utils.asSet(Utils.explode(",", collapseStr));
-
-        if (collapseAll || collapses.size() > 0) {
-            body = JSParser.asJSNode(body.toString());
-            collapse(body, collapseAll, collapses, "");
+        Collection   collection   = req.getCollection();
+        List<Change> changes      = new ArrayList<>();
+        List         resourceKeys = null;
+
+        //-- upserts a streamed array body in batches as it is parsed.  If the body
+        //-- turns out not to be an array, it falls through to the normal path
+        if (isStreamBatch(req)) {
+            List<String> keys = new ArrayList<>();
+            JSNode notArray = req.streamData(streamBatchSize, batch -> {
+                swapReferences(collection, batch);
+                keys.addAll(upsert(req, collection, batch));
+            });
+            if (notArray == null)
+                resourceKeys = keys;
         }
 
-        if (body instanceof JSList) {
-            if (!Utils.empty(req.getResourceKey())) {
-                throw ApiException.new400BadRequest("You can't batch '{}' an array of objects to a specific resource url.  You must '{}' them to a collection.", req.getMethod(), req.getMethod());
-            }
-            resourceKeys = upsert(req, collection, (JSList) body);
-        } else {
-            String href = body.getString("href");
-            if (req.isPut() && href != null && req.getResourceKey() != null && !req.getUrl().toString().startsWith(href)) {
-                throw ApiException.new400BadRequest("You are PUT-ing an resource with a different href property than the resource URL you are PUT-ing to.");
-            }
-
-            resourceKeys = upsert(req, collection, new JSList(body));
-        }
+        if (resourceKeys == null)
+            resourceKeys = upsertJson(req, collection);
 
         res.withChanges(changes);
 
@@ -213,6 +211,73 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
         }
     }
 
+    /**
+     * Upserts the fully parsed request body.
+     *
+     * @param req        the request being serviced
+     * @param collection the collection be modified
+     * @return the entity keys of all upserted records
+     */
+    protected List<String> upsertJson(Request req, Collection collection) {
+        List<String> resourceKeys;
+        JSNode       body = req.getJson();
+
+        swapReferences(collection, body);
+
+        //if the caller posted back an Inversion GET style envelope with meta/data sections, unwrap to get to the real body
+        if(body.find("meta") instanceof JSNode && body.find("data") instanceof  JSList)
+            body = body.findNode("data");
+
+        //if a single cell array was passed in, unwrap to get to the real body
+        if(body instanceof JSList && ((JSList)body).size() == 1 && ((JSList)body).get(0) instanceof JSNode)
+            body = ((JSList)body).getNode(0);
+
+
+        boolean     collapseAll = "true".equalsIgnoreCase(req.getUrl().getParam("collapseAll"));
+        String collapseStr = req.getUrl().getParam("collapse");
+        Set<String> collapses   = collapseStr == null ? new HashSet<>() : Utils.asSet(Utils.explode(",", collapseStr));
+
+        if (collapseAll || collapses.size() > 0) {
+            body = JSParser.asJSNode(body.toString());
+            collapse(body, collapseAll, collapses, "");
+        }
+
+        if (body instanceof JSList) {
+            if (!Utils.empty(req.getResourceKey())) {
+                throw ApiException.new400BadRequest("You can't batch '{}' an array of objects to a specific resource url.  You must '{}' them to a collection.", req.getMethod(), req.getMethod());
+            }
+            resourceKeys = upsert(req, collection, (JSList) body);
+        } else {
+            String href = body.getString("href");
+            if (req.isPut() && href != null && req.getResourceKey() != null && !req.getUrl().toString().startsWith(href)) {
+                throw ApiException.new400BadRequest("You are PUT-ing an resource with a different href property than the resource URL you are PUT-ing to.");
+            }
+
+            resourceKeys = upsert(req, collection, new JSList(body));
+        }
+
+        return resourceKeys;
+    }
+
+    protected boolean isStreamBatch(Request req) {
+        return streamBatchSize > 0//
+                && req.isPost()//
+                && req.hasBodyStream()//
+                && Utils.empty(req.getResourceKey())//
+                && !"true".equalsIgnoreCase(req.getUrl().getParam("collapseAll"))//
+                && req.getUrl().getParam("collapse") == null;
+    }
+
+    protected void swapReferences(Collection collection, JSNode body) {
+        swapRefsWithActualReferences(body);
+
+        JSList bodyArr = body.asList();
+        Map visited = new HashMap();
+        for(int i=0; i<bodyArr.size(); i++){
+            swapLogicalDuplicateReferences(collection, (JSNode)bodyArr.get(i), bodyArr, i + "0", visited);
+        }
+    }
+
     /**
      * README README README README
      * <p>
@@ -246,6 +311,12 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
      * @return the entity keys of all upserted records
      */
     protected List<String> upsert(Request req, Collection collection, JSList nodes) {
+        if (graphUpsert) {
+            List<String> resourceKeys = upsertGraph(req, collection, nodes);
+            if (resourceKeys != null)
+                return resourceKeys;
+        }
+
         //--
         //--
         //-- Step 1. Upsert this generation including many-to-one relationships where the fk is known
@@ -253,6 +324,7 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
 
         //System.out.println("UPSERT: " + collection.getName() + ":\r\n" + nodes);
         List<String> returnList = collection.getDb().upsert(collection, nodes);
+        invalidateResponseCaches(req, collection);
 
         for (int i = 0; i < nodes.size(); i++) {
             //-- new records need their newly assigned autogenerated key fields assigned back on them
@@ -372,10 +444,25 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
                 if (patches.size() > 0) {
                     //-- don't need to "go back through the front door and PATCH to the engine because we are updating our own collection.
                     collection.getDb().patch(collection, patches);
+                    invalidateResponseCaches(req, collection);
                 }
             }
         }
 
+        updateRelationships(req, collection, nodes);
+
+        return returnList;
+    }
+
+    /**
+     * Steps 4 and 5 of {@link #upsert(Request, Collection, JSList)}, links the upserted <code>nodes</code>
+     * to the related records they were posted with and unlinks the related records they were not.
+     *
+     * @param req        the request being serviced
+     * @param collection the collection of <code>nodes</code>
+     * @param nodes      the records that were upserted
+     */
+    protected void updateRelationships(Request req, Collection collection, JSList nodes) {
         //--
         //--
         //-- Step 4: Now find all key values to KEEP for one-to-many and many-to-many relationships
@@ -467,6 +554,7 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
                 //TODO: go through front door?
                 System.out.println("updating relationship: " + rel + " -> " + coll + " -> " + upserts);
                 coll.getDb().upsert(coll, upserts);
+                invalidateResponseCaches(req, coll);
             }
 
             //-- now find all relationships that are NOT in the group that we just upserted
@@ -523,8 +611,300 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
                     break;
             }
         }
+    }
 
-        return returnList;
+    /**
+     * Evicts cached responses built from <code>collection</code> after it has been written to.
+     *
+     * @param req        the request being serviced
+     * @param collection the collection that was written to
+     * @see ResponseCacheAction#invalidate(Engine, Collection)
+     */
+    protected void invalidateResponseCaches(Request req, Collection collection) {
+        ResponseCacheAction.invalidate(req.getEngine(), collection);
+    }
+
+    /**
+     * Upserts <code>nodes</code> and every related record nested in them without POSTing each child generation back through the Engine.
+     * <p>
+     * Algorithm:
+     * <p>
+     * Step 1: Find every record in the document and the records that must be written before it.  A record
+     * with a many-to-one relationship depends on the related record, the children of a one-to-many
+     * relationship depend on their parent and many-to-many relationships have no write order.
+     * <p>
+     * Step 2: Order the records so each comes after the records it depends on.  Records of the same
+     * collection at the same depth are upserted together in a single Db call, with the foreign keys
+     * they need copied from the already written records they depend on and their generated keys
+     * set back on them afterwards.
+     * <p>
+     * Step 3: Link and unlink the one-to-many and many-to-many relationships of each collection
+     * with {@link #updateRelationships(Request, Collection, JSList)}.
+     * <p>
+     * The plan is only used when the document contains related records, the relationships can be ordered and
+     * every related collection would be handled by a DbPostAction, or DbAction, with no other Actions other than
+     * AuthFilters, AclFilters and HATEOASFilters, which are run in-process.  Otherwise this returns null and the
+     * caller POSTs each child generation through the Engine so those Actions are not skipped.
+     *
+     * @param req        the request being serviced
+     * @param collection the collection be modified
+     * @param nodes      the records to update
+     * @return the entity keys of <code>nodes</code> or null if the document needs to be upserted through the Engine
+     */
+    protected List<String> upsertGraph(Request req, Collection collection, JSList nodes) {
+        //--
+        //-- Step 1. find every record and its dependencies
+        Map<JSMap, GraphNode> graph = new IdentityHashMap<>();
+        List<GraphNode>       found = new ArrayList<>();
+        List<GraphNode>       roots = new ArrayList<>();
+        for (JSMap node : nodes.asMapList()) {
+            GraphNode root = plan(collection, node, graph, found);
+            if (root == null)
+                return null;
+            roots.add(root);
+        }
+
+        Set<Collection> collections = new LinkedHashSet<>();
+        found.forEach(node -> collections.add(node.collection));
+        if (collections.size() == 1 && found.size() == roots.size())
+            return null;//-- there are no nested records to plan
+
+        for (Collection related : collections) {
+            if (related != collection && !isDirectUpsertable(req, related))
+                return null;
+        }
+
+        //--
+        //-- Step 2. upsert each depth, one Db call per collection
+        List<GraphNode> ordered = new ArrayList<>();
+        for (GraphNode node : found) {
+            if (order(node, ordered) < 0)
+                return null;//-- circular dependency, the Engine path patches the foreign keys afterwards
+        }
+
+        //-- when the collections themselves can be ordered, all of a collection's records are upserted together,
+        //-- otherwise, for example when a collection relates to itself, records are grouped by their own depth
+        Map<Collection, Integer> collectionDepths = orderCollections(collections, ordered);
+
+        Map<Integer, Map<Collection, List<GraphNode>>> generations = new TreeMap<>();
+        for (GraphNode node : ordered) {
+            int depth = collectionDepths != null ? collectionDepths.get(node.collection) : node.depth;
+            generations.computeIfAbsent(depth, d -> new LinkedHashMap<>()).computeIfAbsent(node.collection, c -> new ArrayList<>()).add(node);
+        }
+
+        for (Map<Collection, List<GraphNode>> generation : generations.values()) {
+            for (Map.Entry<Collection, List<GraphNode>> group : generation.entrySet()) {
+                Collection coll = group.getKey();
+                JSList     rows = new JSList();
+                for (GraphNode node : group.getValue()) {
+                    for (KeyValue<Relationship, GraphNode> dependency : node.dependsOn) {
+                        Map<String, Object> foreignKey = dependency.getKey().buildForeignKeyFromPrimaryKey(dependency.getValue().node);
+                        if (foreignKey == null)
+                            throw new ApiException("Foreign key should not be null at this point");
+                        node.node.putAll(foreignKey);
+                    }
+                    rows.add(node.node);
+                }
+
+                List<String> keys = coll.getDb().upsert(coll, rows);
+                invalidateResponseCaches(req, coll);
+                for (int i = 0; i < rows.size(); i++) {
+                    //-- new records need their newly assigned autogenerated key fields assigned back on them
+                    GraphNode           node = group.getValue().get(i);
+                    Map<String, Object> row  = coll.decodeKeyToJsonNames(keys.get(i));
+                    node.node.putAll(row);
+                    node.resourceKey = keys.get(i);
+                }
+            }
+        }
+
+        //--
+        //-- Step 3. link and unlink one-to-many and many-to-many relationships
+        Map<Collection, JSList> upserted = new LinkedHashMap<>();
+        for (GraphNode node : ordered)
+            upserted.computeIfAbsent(node.collection, c -> new JSList()).add(node.node);
+
+        for (Map.Entry<Collection, JSList> entry : upserted.entrySet())
+            updateRelationships(req, entry.getKey(), entry.getValue());
+
+        List<String> resourceKeys = new ArrayList<>();
+        for (GraphNode root : roots)
+            resourceKeys.add(root.resourceKey);
+        return resourceKeys;
+    }
+
+    /**
+     * Adds <code>node</code> and the related records nested in it to <code>graph</code> and, in document order, to <code>found</code>.
+     *
+     * @return the GraphNode for <code>node</code> or null if it has a relationship that can not be planned
+     */
+    GraphNode plan(Collection collection, JSMap node, Map<JSMap, GraphNode> graph, List<GraphNode> found) {
+        GraphNode graphNode = graph.get(node);
+        if (graphNode != null)
+            return graphNode;
+
+        graphNode = new GraphNode(collection, node);
+        graph.put(node, graphNode);
+        found.add(graphNode);
+
+        for (Relationship rel : collection.getRelationships()) {
+            Object value = node.get(rel.getName());
+            if (!(value instanceof JSNode))
+                continue;
+
+            if (!(rel.isManyToOne() || rel.isOneToMany() || rel.isManyToMany()))
+                return null;
+
+            Relationship inverse = rel.getInverse();
+            if (rel.isOneToMany() && inverse == null)
+                return null;
+
+            for (JSMap child : ((JSNode) value).asMapList()) {
+                GraphNode related = plan(rel.getRelated(), child, graph, found);
+                if (related == null)
+                    return null;
+
+                if (rel.isManyToOne())
+                    graphNode.dependsOn.add(new KeyValue<>(rel, related));
+                else if (rel.isOneToMany())
+                    related.dependsOn.add(new KeyValue<>(inverse, graphNode));
+            }
+        }
+        return graphNode;
+    }
+
+    /**
+     * Sets the depth of <code>node</code> to one more than the deepest record it depends on, adding it to <code>ordered</code>
+     * after those records.
+     *
+     * @return the depth or -1 if <code>node</code> depends on itself
+     */
+    int order(GraphNode node, List<GraphNode> ordered) {
+        if (node.depth >= 0)
+            return node.depth;
+
+        if (node.visiting)
+            return -1;
+
+        node.visiting = true;
+        int depth = 0;
+        for (KeyValue<Relationship, GraphNode> dependency : node.dependsOn) {
+            int parentDepth = order(dependency.getValue(), ordered);
+            if (parentDepth < 0)
+                return -1;
+            depth = Math.max(depth, parentDepth + 1);
+        }
+        node.visiting = false;
+        node.depth = depth;
+        ordered.add(node);
+        return depth;
+    }
+
+    /**
+     * Finds the depth of each collection so that every record is upserted after the records it depends on.
+     *
+     * @return the collection depths or null if the dependencies between the collections are circular
+     */
+    Map<Collection, Integer> orderCollections(Set<Collection> collections, List<GraphNode> ordered) {
+        Map<Collection, Integer> depths = new HashMap<>();
+        collections.forEach(c -> depths.put(c, 0));
+
+        for (int pass = 0; pass <= collections.size(); pass++) {
+            boolean changed = false;
+            for (GraphNode node : ordered) {
+                for (KeyValue<Relationship, GraphNode> dependency : node.dependsOn) {
+                    Collection parent = dependency.getValue().collection;
+                    if (parent == node.collection)
+                        return null;
+
+                    int depth = depths.get(parent) + 1;
+                    if (depth > depths.get(node.collection)) {
+                        depths.put(node.collection, depth);
+                        changed = true;
+                    }
+                }
+            }
+            if (!changed)
+                return depths;
+        }
+        return null;
+    }
+
+    /**
+     * Checks that a POST to <code>collection</code> would only run Actions that {@link #upsertGraph(Request, Collection, JSList)}
+     * can stand in for, running any AuthFilter and AclFilter checks in-process.
+     *
+     * @param req        the request being serviced
+     * @param collection a related collection in the posted document
+     * @return true if records of <code>collection</code> can be upserted in-process
+     * @throws ApiException a 401 or 403 if an AuthFilter or AclFilter would have rejected a POST to <code>collection</code>
+     */
+    protected boolean isDirectUpsertable(Request req, Collection collection) throws ApiException {
+        Engine engine = req.getEngine();
+        String url    = Chain.buildLink(collection);
+        if (engine == null || url == null || collection.getDb() == null)
+            return false;
+
+        Request childReq = new Request("POST", url, null);
+        childReq.withEngine(engine);
+
+        List<Chain.ActionMatch> actions = engine.matchActions(childReq);
+        if (actions == null || childReq.getCollection() != collection)
+            return false;
+
+        for (Chain.ActionMatch match : actions) {
+            if (!isDirectUpsertable(match.getAction()))
+                return false;
+        }
+
+        RequestScope scope = RequestScope.current();
+        childReq.withScope(scope);
+        Response childRes = new Response().withRequest(childReq);
+        Chain.push(scope, engine, childReq, childRes);
+        try {
+            for (Chain.ActionMatch match : actions) {
+                Action action = match.getAction();
+                if (action instanceof AuthFilter || action instanceof AclFilter)
+                    action.run(childReq, childRes);
+            }
+        } finally {
+            Chain.pop();
+        }
+        return true;
+    }
+
+    /**
+     * @param action an Action that would have run for a child generation POST
+     * @return true if upserting the child records in-process has the same effect as running <code>action</code>
+     */
+    protected boolean isDirectUpsertable(Action action) {
+        if (action == null)
+            return false;
+
+        return action instanceof AuthFilter //
+                || action instanceof AclFilter //
+                || action instanceof HATEOASFilter //
+                || action.getClass() == DbPostAction.class //
+                || (action instanceof DbAction && isDirectUpsertable(((DbAction) action).getPostAction()));
+    }
+
+    /**
+     * A record in a posted document and the records that must be upserted before it.
+     */
+    static class GraphNode {
+        final Collection collection;
+        final JSMap      node;
+
+        final List<KeyValue<Relationship, GraphNode>> dependsOn = new ArrayList<>();
+
+        int     depth       = -1;
+        boolean visiting    = false;
+        String  resourceKey = null;
+
+        GraphNode(Collection collection, JSMap node) {
+            this.collection = collection;
+            this.node = node;
+        }
     }
 
     LinkedHashMap<String,Object> buildKey(JSNode node, Index index){
@@ -572,7 +952,7 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
                 if(ref.startsWith("#")){
                     Object found = root.find(ref);
                     if(found == null)
-                        throw ApiException.new400BadRequest("Unable to find $ref ''", ref);
+                        throw ApiException.new400BadRequest("Unable to find $ref '{}'", ref);
                     path.getParent().getNode().put(path.getProperty(), found);
                 }
             }
@@ -657,6 +1037,24 @@ class DbPostAction<A extends DbPostAction> extends Action<A>  {
         return this;
     }
 
+    public int getStreamBatchSize() {
+        return streamBatchSize;
+    }
+
+    public DbPostAction withStreamBatchSize(int streamBatchSize) {
+        this.streamBatchSize = streamBatchSize;
+        return this;
+    }
+
+    public boolean isGraphUpsert() {
+        return graphUpsert;
+    }
+
+    public DbPostAction withGraphUpsert(boolean graphUpsert) {
+        this.graphUpsert = graphUpsert;
+        return this;
+    }
+
     public boolean isGetResponse() {
         return getResponse;
     }
@@ -18,6 +18,7 @@ package io.inversion.action.hateoas;
 
 import io.inversion.Collection;
 import io.inversion.*;
+import io.inversion.json.JSCursor;
 import io.inversion.json.JSMap;
 import io.inversion.json.JSNode;
 
@@ -36,7 +37,14 @@ public class LinksFilter extends HATEOASFilter<LinksFilter> {
 
             if (res.isSuccess() && res.getJson() != null){
                 Collection coll = req.getRelationship() != null ? req.getRelationship().getRelated() : req.getCollection();
-                res.data().stream().filter(node -> node instanceof JSMap).forEach(node -> addLinks(coll, (JSMap) node));
+                JSCursor cursor = res.getCursor();
+                if (cursor != null)
+                    cursor.onEach(node -> {
+                        if (node instanceof JSMap)
+                            addLinks(coll, (JSMap) node);
+                    });
+                else
+                    res.data().stream().filter(node -> node instanceof JSMap).forEach(node -> addLinks(coll, (JSMap) node));
             }
         }
     }
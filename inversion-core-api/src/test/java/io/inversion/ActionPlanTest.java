@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.Chain.ActionMatch;
+import io.inversion.utils.Path;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ActionPlanTest {
+
+    static Op op(Api api, Endpoint ep, String method, String path, String actionPath) {
+        return new Op().withMethod(method).withPath(new Path(path)).withEndpoint(ep).withApi(api).withActionPathMatch(new Path(actionPath));
+    }
+
+    /**
+     * The per request matching that Engine performed before action plans were introduced.
+     */
+    static List<ActionMatch> linearMatch(Api api, Endpoint ep, String method, Path path, Path subpath) {
+        List<ActionMatch> actions = new ArrayList<>();
+        for (Action action : ep.getActions()) {
+            Path actionPath = action.match(method, subpath);
+            if (actionPath != null)
+                actions.add(new ActionMatch(actionPath, new Path(subpath), action));
+        }
+        for (Action action : api.getActions()) {
+            Path actionPath = action.match(method, path);
+            if (actionPath != null)
+                actions.add(new ActionMatch(actionPath, new Path(path), action));
+        }
+        Collections.sort(actions);
+        return actions;
+    }
+
+    static List<Action> actions(List<ActionMatch> matches) {
+        List<Action> actions = new ArrayList<>();
+        matches.forEach(m -> actions.add(m.getAction()));
+        return actions;
+    }
+
+    @Test
+    public void test_plan_selects_same_actions_as_linear_match() {
+        Endpoint ep = new Endpoint("GET,books/*");
+        ep.withAction(new MockActionA("*").withName("all").withOrder(200));
+        ep.withAction(new MockActionA("{bookId:[0-9]+}").withName("numericIds").withOrder(100));
+        ep.withAction(new MockActionA("{bookId}/author").withName("author").withOrder(300));
+        ep.withAction(new MockActionA("*").withExcludeOn("42").withName("not42").withOrder(50));
+
+        Api api = new Api("bookstore").withEndpoint(ep);
+        api.withAction(new MockActionB("*").withName("logging").withOrder(10));
+        api.withAction(new MockActionB("books/*").withName("books").withOrder(200));
+        api.withAction(new MockActionB("authors/*").withName("authors").withOrder(1));
+
+        Op op = op(api, ep, "GET", "books/{bookId}", "{bookId}");
+
+        for (String subpath : new String[]{"123", "abc", "42"}) {
+            Path path = new Path("books", subpath);
+            List<ActionMatch> expected = linearMatch(api, ep, "GET", path, new Path(subpath));
+            List<ActionMatch> actual   = op.getActionPlan().match("GET", path, new Path(subpath));
+            assertEquals(actions(expected), actions(actual), "Action plan disagrees with linear match for " + path);
+            for (int i = 0; i < expected.size(); i++)
+                assertEquals(expected.get(i).getRule(), actual.get(i).getRule());
+        }
+
+        //-- "author" and "authors" can never match this op
+        assertEquals(5, op.getActionPlan().size());
+    }
+
+    @Test
+    public void test_plan_is_rebuilt_when_rules_change() {
+        Endpoint ep  = new Endpoint("GET,books/*", new MockActionA("*").withName("first"));
+        Api      api = new Api("bookstore").withEndpoint(ep);
+        Op       op  = op(api, ep, "GET", "books/{bookId}", "{bookId}");
+
+        Op.ActionPlan plan = op.getActionPlan();
+        assertSame(plan, op.getActionPlan());
+        assertEquals(1, plan.size());
+
+        ep.withAction(new MockActionA("*").withName("second"));
+        assertNotSame(plan, op.getActionPlan());
+        assertEquals(2, op.getActionPlan().size());
+
+        plan = op.getActionPlan();
+        api.withAction(new MockActionB("*").withName("third"));
+        assertEquals(3, op.getActionPlan().size());
+
+        plan = op.getActionPlan();
+        ep.getActions().get(0).withExcludeOn("*");
+        assertNotSame(plan, op.getActionPlan());
+        assertEquals(2, op.getActionPlan().match("GET", new Path("books/1"), new Path("1")).size());
+    }
+
+    @Test
+    public void test_plan_is_not_rebuilt_by_other_apis_or_lazy_config() {
+        Endpoint ep  = new Endpoint("GET,books/*", new MockActionA().withName("lazy"));
+        Api      api = new Api("bookstore").withEndpoint(ep);
+        Op       op  = op(api, ep, "GET", "books/{bookId}", "{bookId}");
+
+        //-- the action has no matchers until lazy config adds its defaults while the plan is built
+        Op.ActionPlan plan = op.getActionPlan();
+        assertEquals(1, plan.size());
+        assertSame(plan, op.getActionPlan());
+
+        Endpoint otherEp  = new Endpoint("GET,authors/*", new MockActionA("*"));
+        Api      otherApi = new Api("authors").withEndpoint(otherEp);
+        otherApi.withAction(new MockActionB("*").withOrder(1));
+        otherEp.getActions().get(0).withIncludeOn("GET,{authorId}");
+        assertSame(plan, op.getActionPlan());
+    }
+}
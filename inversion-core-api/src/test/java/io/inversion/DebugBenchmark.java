@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.action.misc.MockAction;
+import io.inversion.json.JSMap;
+
+/**
+ * Compares the cost of servicing a GET with {@link Engine.DebugMode#OFF} vs {@link Engine.DebugMode#ALWAYS}.
+ * <p>
+ * This is not run as part of the test suite, run the main method directly.
+ */
+public class DebugBenchmark {
+
+    public static void main(String[] args) {
+        int requests = 200_000;
+        System.out.println("mode, ns/request");
+        for (int round = 0; round < 2; round++) {
+            for (Engine.DebugMode mode : new Engine.DebugMode[]{Engine.DebugMode.OFF, Engine.DebugMode.ALWAYS}) {
+                Engine engine = new Engine()//
+                        .withDebugMode(mode)//
+                        .withApi(new Api()//
+                                .withEndpoint("books/*", new MockAction().withJson(new JSMap("title", "Inversion", "author", "Wells"))));
+
+                //-- warmup
+                for (int i = 0; i < requests / 10; i++)
+                    get(engine, i);
+
+                long start = System.nanoTime();
+                for (int i = 0; i < requests; i++)
+                    get(engine, i);
+                long elapsed = System.nanoTime() - start;
+
+                System.out.println(mode + ", " + (elapsed / requests));
+            }
+        }
+    }
+
+    static void get(Engine engine, int i) {
+        Response res = engine.get("http://myhost/books/" + (i % 1000) + "?title=Inversion");
+        if (res.getStatusCode() != 200)
+            throw new IllegalStateException("Request failed: " + res.getStatus());
+    }
+}
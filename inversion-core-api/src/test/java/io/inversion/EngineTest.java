@@ -27,6 +27,8 @@ import io.inversion.utils.Utils;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -879,6 +881,95 @@ public class EngineTest {
 
         assertEquals(expected, actual);
     }
-}
 
+    @Test
+    public void test_debugMode() {
+        Engine engine = new Engine()//
+                .withApi(new Api()//
+                        .withEndpoint("test/*", new MockAction().withJson(new JSMap("name", "value"))));
+
+        //-- a non local host that is not asking to explain gets no debug output
+        assertFalse(engine.get("http://myhost/test").debug.toString().contains(">> request"));
+        assertTrue(engine.get("http://myhost/test?explain=true").debug.toString().contains(">> request"));
+
+        Response res = new Response();
+        engine.service(new Request("GET", "http://myhost/test").withHeaders("explain", "true"), res);
+        assertTrue(res.debug.toString().contains(">> request"));
+
+        engine.withDebugMode(Engine.DebugMode.ALWAYS);
+        assertTrue(engine.get("http://myhost/test").debug.toString().contains(">> request"));
 
+        engine.withDebugMode(Engine.DebugMode.OFF);
+        assertEquals("", engine.get("http://127.0.0.1/test?explain=true").debug.toString());
+    }
+
+    @Test
+    public void test_serviceAsync() throws Exception {
+        Engine engine = new Engine()//
+                .withApi(new Api()//
+                        .withEndpoint("test/*", new MockAction().withJson(new JSMap("name", "value"))));
+
+        Response res = new Response();
+        engine.serviceAsync(new Request("GET", "test"), res).get();
+        assertEquals("value", res.getJson().getString("name"));
+
+        engine.withVirtualThreads(true);
+        try {
+            res = new Response();
+            Chain chain = engine.serviceAsync(new Request("GET", "test"), res).get();
+            assertEquals("value", res.getJson().getString("name"));
+            assertNotNull(chain.getScope());
+            assertNull(RequestScope.peek());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void test_shutdown_leaves_injected_executor_running() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Engine engine = new Engine()//
+                    .withApi(new Api()//
+                            .withEndpoint("test/*", new MockAction().withJson(new JSMap("name", "value"))))//
+                    .withExecutor(executor);
+
+            Response res = new Response();
+            engine.serviceAsync(new Request("GET", "test"), res).get();
+            engine.shutdown();
+
+            assertFalse(executor.isShutdown());
+            assertSame(executor, engine.getExecutor());
+        } finally {
+            executor.shutdown();
+        }
+
+        Engine          engine = new Engine();
+        ExecutorService built  = engine.getExecutor();
+        engine.shutdown();
+        assertTrue(built.isShutdown());
+        assertNotSame(built, engine.getExecutor());
+        engine.shutdown();
+    }
+
+    @Test
+    public void test_getApi_is_copy_on_write() {
+        Api    northwind = new Api("northwind");
+        Api    library   = new Api("library");
+        Engine engine    = new Engine(northwind, library);
+
+        List<Api> before = engine.apis;
+        assertSame(northwind, engine.getApi("NorthWind"));
+        assertSame(library, engine.getApi("library"));
+        assertNull(engine.getApi("missing"));
+
+        engine.removeApi(library);
+        assertNotSame(before, engine.apis);
+        assertEquals(2, before.size());
+        assertNull(engine.getApi("library"));
+
+        northwind.withName("renamed");
+        assertSame(northwind, engine.getApi("renamed"));
+        assertNull(engine.getApi("northwind"));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.action.db.DbAction;
+import io.inversion.json.JSMap;
+import io.inversion.json.JSNode;
+import io.inversion.query.Query;
+import io.inversion.rql.Term;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityCacheTest {
+
+    /**
+     * Stores rows in memory, answers resource key lookups, ignoring includes, and records the keys of every lookup that reaches it.
+     */
+    static class KeyValueDb extends MockDb {
+        final Map<String, Map<String, Object>> rows    = new TreeMap<>();
+        final List<List<String>>               lookups = new ArrayList<>();
+
+        @Override
+        public Results doSelect(Collection table, List<Term> columnMappedTerms) throws ApiException {
+            Results results = new Results(new Query(this, table, columnMappedTerms));
+            List<Term>   filters = new ArrayList<>(columnMappedTerms);
+            filters.removeIf(term -> term.hasToken("include"));
+            List<String> keys = EntityCache.findKeys(table, filters);
+            if (keys == null)
+                keys = new ArrayList<>(rows.keySet());
+            else
+                lookups.add(keys);
+
+            for (String key : keys) {
+                if (rows.containsKey(key))
+                    results.withRow(new LinkedHashMap<>(rows.get(key)));
+            }
+            return results;
+        }
+
+        @Override
+        public List<String> doUpsert(Collection table, List<Map<String, Object>> rows) throws ApiException {
+            List<String> keys = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                String key = table.encodeKeyFromColumnNames(row);
+                this.rows.computeIfAbsent(key, k -> new LinkedHashMap<>()).putAll(row);
+                keys.add(key);
+            }
+            return keys;
+        }
+
+        @Override
+        public void doDelete(Collection table, List<Map<String, Object>> indexValues) throws ApiException {
+            for (Map<String, Object> values : indexValues)
+                rows.remove(table.encodeKeyFromColumnNames(values));
+        }
+    }
+
+    /**
+     * Returns json named rows, as JdbcDb does, so Db.select does not map them again.
+     */
+    static class MappedDb extends KeyValueDb {
+        @Override
+        public Results doSelect(Collection table, List<Term> columnMappedTerms) throws ApiException {
+            Results results = super.doSelect(table, columnMappedTerms);
+            for (int i = 0; i < results.size(); i++)
+                results.setRow(i, new JSMap(results.getRow(i)));
+            return results.withMapped(true);
+        }
+    }
+
+    static Engine buildEngine(KeyValueDb db, EntityCache cache) {
+        Collection books = new Collection("books").withProperty("id", "integer", false).withProperty("title", "string").withIndex("primaryIndex", Index.TYPE_RESOURCE_KEY, true, "id");
+        db.withCollections(books).withEntityCache(cache);
+        for (int i = 1; i <= 3; i++)
+            db.rows.put(i + "", new LinkedHashMap<>(new JSMap("id", i, "title", "book" + i)));
+        return new Engine(new Api("api").withDb(db).withEndpoint(new Endpoint().withAction(new DbAction())));
+    }
+
+    static String title(Response res, int row) {
+        return ((JSNode) res.data().get(row)).getString("title");
+    }
+
+    @Test
+    public void test_lookups_only_select_misses() {
+        KeyValueDb  db     = new KeyValueDb();
+        EntityCache cache  = new EntityCache();
+        Engine      engine = buildEngine(db, cache);
+
+        assertEquals("book1", title(engine.get("books/1").assertOk(), 0));
+        assertEquals("book1", title(engine.get("books/1").assertOk(), 0));
+        assertEquals(1, db.lookups.size());
+        assertEquals(1, cache.getHits());
+
+        Response res = engine.get("books?in(id,3,01,2)").assertOk();
+        assertEquals(3, res.data().size());
+        assertEquals("book3", title(res, 0), "rows are returned in key order");
+        assertEquals(Arrays.asList("3", "2"), db.lookups.get(1), "keys are normalized and only misses are selected");
+
+        engine.get("books/2,3").assertOk();
+        assertEquals(2, db.lookups.size());
+        assertEquals(4, cache.getHits());
+        assertEquals(4.0 / 7, cache.getHitRate(), 0.0001);
+
+        engine.get("books?title=book1").assertOk();
+        assertEquals(7, cache.getHits() + cache.getMisses(), "non key queries skip the cache");
+    }
+
+    @Test
+    public void test_mapped_rows_are_cached() {
+        KeyValueDb  db     = new MappedDb();
+        EntityCache cache  = new EntityCache();
+        Engine      engine = buildEngine(db, cache);
+
+        assertEquals("book1", title(engine.get("books/1").assertOk(), 0));
+        assertEquals("book1", title(engine.get("books/1").assertOk(), 0));
+        assertEquals(1, db.lookups.size(), "each miss is selected once and then cached");
+        assertEquals(1, cache.getHits());
+
+        engine.get("books?in(id,1,2)").assertOk();
+        assertEquals(Arrays.asList("2"), db.lookups.get(1));
+    }
+
+    @Test
+    public void test_writes_evict() {
+        KeyValueDb  db     = new KeyValueDb();
+        EntityCache cache  = new EntityCache();
+        Engine      engine = buildEngine(db, cache);
+
+        engine.get("books?in(id,1,2)").assertOk();
+        assertEquals(2, cache.size());
+
+        engine.post("books", new JSMap("id", 1, "title", "updated")).assertStatus(201);
+        assertEquals(1, cache.size(), "only the written row is evicted");
+        assertEquals("updated", title(engine.get("books/1").assertOk(), 0));
+
+        engine.delete("books/2").assertStatus(204);
+        assertEquals(1, cache.size());
+
+        RequestScope scope = new RequestScope();
+        Response     res   = new Response();
+        engine.service(new Request("POST", "books", new JSMap("id", 3, "title", "book3").toString()).withScope(scope), res);
+        res.assertStatus(201);
+        assertNull(scope.getAttribute(cache), "the written keys are not left in the scope");
+    }
+
+    @Test
+    public void test_ttl_and_weight() throws Exception {
+        KeyValueDb  db     = new KeyValueDb();
+        EntityCache cache  = new EntityCache().withTtl("books", 1);
+        Engine      engine = buildEngine(db, cache);
+
+        engine.get("books/1").assertOk();
+        Thread.sleep(5);
+        engine.get("books/1").assertOk();
+        assertEquals(2, db.lookups.size(), "the expired row is selected again");
+
+        Collection books = db.getCollection("books");
+        EntityCache small = new EntityCache(400);
+        small.put(books, "1", db.rows.get("1"), small.getVersion());
+        small.put(books, "2", db.rows.get("2"), small.getVersion());
+        small.get(books, Collections.singletonList("1"));
+        small.put(books, "3", db.rows.get("3"), small.getVersion());
+
+        assertTrue(small.getWeight() <= 400);
+        assertEquals(1, small.getEvictions());
+        assertTrue(small.get(books, Collections.singletonList("2")).isEmpty(), "the least recently used row is evicted");
+
+        long version = small.getVersion();
+        small.invalidate(books, Collections.singletonList("1"));
+        small.put(books, "2", db.rows.get("2"), version);
+        assertTrue(small.get(books, Collections.singletonList("2")).isEmpty(), "rows selected before an eviction are not cached");
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.json.JSMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoaderTest {
+
+    static Collection buildCollection(String name) {
+        Collection collection = new Collection(name).withProperty("id", "integer").withProperty("name", "varchar");
+        collection.withIndex("pk", Index.TYPE_RESOURCE_KEY, true, "id");
+        return collection;
+    }
+
+    /**
+     * Returns a record for every requested key except "404" and records each batch of keys it was asked for.
+     */
+    static Loader.Fetcher recordingFetcher(List<List<String>> log) {
+        return (collection, index, keys) -> {
+            log.add(keys);
+            List<JSMap> rows = new ArrayList<>();
+            for (String key : keys) {
+                if (!key.equals("404"))
+                    rows.add(new JSMap("id", Integer.parseInt(key), "name", collection.getName() + key));
+            }
+            return rows;
+        };
+    }
+
+    @Test
+    public void test_queued_keys_are_selected_together() {
+        List<List<String>> log       = new ArrayList<>();
+        Loader.Fetcher     fetcher   = recordingFetcher(log);
+        Collection         customers = buildCollection("customers");
+        Collection         employees = buildCollection("employees");
+        Index              pk        = customers.getResourceIndex();
+        Loader             loader    = new Loader();
+
+        loader.load(fetcher, customers, pk, Arrays.asList("1", "2"));
+        loader.load(fetcher, customers, pk, Arrays.asList("2", "3"));
+        loader.load(fetcher, employees, employees.getResourceIndex(), Arrays.asList("1"));
+
+        List<JSMap> rows = loader.get(fetcher, customers, pk, Arrays.asList("3", "404", "1"));
+        assertEquals(2, log.size(), "one select per collection");
+        assertEquals(Arrays.asList("1", "2", "3", "404"), log.get(0), "keys are deduplicated");
+        assertEquals(2, rows.size());
+        assertEquals("customers3", rows.get(0).get("name"), "records are returned in key order");
+
+        rows.get(0).put("orders", new JSMap());
+        assertNull(loader.get(fetcher, customers, pk, Arrays.asList("3")).get(0).get("orders"), "each caller gets a copy");
+
+        loader.get(fetcher, employees, employees.getResourceIndex(), Arrays.asList("1"));
+        loader.get(fetcher, customers, pk, Arrays.asList("404"));
+        assertEquals(2, loader.getSelects(), "loaded and missing keys are not selected again");
+        assertEquals(3, loader.getHits());
+    }
+
+    @Test
+    public void test_invalidate_and_denied() {
+        List<List<String>> log       = new ArrayList<>();
+        Loader.Fetcher     fetcher   = recordingFetcher(log);
+        Loader.Fetcher     denied    = (collection, index, keys) -> null;
+        Collection         customers = buildCollection("customers");
+        Index              pk        = customers.getResourceIndex();
+        Loader             loader    = new Loader();
+
+        loader.get(fetcher, customers, pk, Arrays.asList("1"));
+        loader.invalidate(customers);
+        loader.get(fetcher, customers, pk, Arrays.asList("1"));
+        assertEquals(2, log.size());
+
+        assertNull(loader.get(denied, customers, pk, Arrays.asList("1")), "a Fetcher can deny access to a collection");
+    }
+}
@@ -227,6 +227,61 @@ public class PathTest {
         assertTrue(new Path("{collection:players|locations|ads}/[{resource:[0-9]{1,12}}]/{relationship:[a-z]*}").matches("Locations/698/players"));
     }
 
+    @Test
+    public void compile_classifiesSegments() {
+        Path.Compiled c = new Path("Books/{bookId:[0-9]+}/[{Relationship}]/*").compile();
+
+        assertEquals(4, c.size());
+        assertFalse(c.isVar(0));
+        assertEquals("Books", c.getValue(0));
+        assertEquals("books", c.getLowercase(0));
+
+        assertTrue(c.isVar(1));
+        assertEquals("bookId", c.getVarName(1));
+        assertTrue(c.getPattern(1).matcher("123").matches());
+
+        assertTrue(c.isVar(2));
+        assertTrue(c.isOptional(2));
+        assertEquals("Relationship", c.getVarName(2));
+        assertNull(c.getPattern(2));
+
+        assertTrue(c.isWildcard(3));
+    }
+
+    @Test
+    public void compile_isReusedUntilModified() {
+        Path          path     = new Path("books/{bookId:[0-9]+}");
+        Path.Compiled compiled = path.compile();
+        assertSame(compiled, path.compile());
+        assertSame(compiled, path.copy().compile());
+        assertTrue(path.matches("books/123"));
+
+        path.set(1, "{bookId:[a-z]+}");
+        assertNotSame(compiled, path.compile());
+        assertFalse(path.matches("books/123"));
+        assertTrue(path.matches("books/abc"));
+
+        path.add("author");
+        assertTrue(path.matches("books/abc/author"));
+
+        path.remove(0);
+        assertTrue(path.matches("abc/author"));
+    }
+
+    @Test
+    public void compileRegex_reusesPatterns() {
+        assertSame(Path.compileRegex("[0-9]+"), Path.compileRegex("[0-9]+"));
+        assertSame(new Path("{a:[0-9]+}").compile().getPattern(0), new Path("x/{b:[0-9]+}").compile().getPattern(1));
+    }
+
+    @Test
+    public void match_bidirectional() {
+        assertTrue(new Path("books/123").matches(new Path("books/{id:[0-9]+}"), true));
+        assertFalse(new Path("books/abc").matches(new Path("books/{id:[0-9]+}"), true));
+        assertFalse(new Path("books/123").matches(new Path("books/{id:[0-9]+}"), false));
+        assertTrue(new Path("[books]/[{id}]").matches(new Path("BOOKS"), true));
+    }
+
 //    @Test
 //    public void mergePaths() {
 //
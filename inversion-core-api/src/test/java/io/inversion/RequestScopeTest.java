@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.action.misc.MockAction;
+import io.inversion.json.JSMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestScopeTest {
+
+    @AfterEach
+    public void afterEach() {
+        RequestScope.resetAll();
+    }
+
+    @Test
+    public void test_bind_and_restore() {
+        assertNull(RequestScope.peek());
+
+        RequestScope outer    = new RequestScope();
+        RequestScope previous = outer.bind();
+        assertNull(previous);
+        assertSame(outer, RequestScope.peek());
+
+        RequestScope inner = new RequestScope();
+        inner.run(() -> assertSame(inner, RequestScope.peek()));
+        assertSame(outer, RequestScope.peek());
+
+        RequestScope.restore(previous);
+        assertNull(RequestScope.peek());
+    }
+
+    @Test
+    public void test_engine_service_does_not_leave_a_scope_bound() {
+        Engine engine = new Engine()//
+                .withApi(new Api()//
+                        .withEndpoint("test/*", new MockAction().withJson(new JSMap("name", "value"))));
+
+        Response res = engine.get("test");
+        assertEquals(200, res.getStatusCode());
+        assertNull(RequestScope.peek());
+        assertEquals(0, Chain.getDepth());
+    }
+
+    @Test
+    public void test_nested_requests_share_the_scope() {
+        RequestScope[] scopes = new RequestScope[2];
+        Engine engine = new Engine()//
+                .withApi(new Api()//
+                        .withEndpoint("inner/*", new MockAction() {
+                            public void run(Request req, Response res) throws ApiException {
+                                scopes[1] = req.getChain().getScope();
+                                assertEquals(2, Chain.getDepth());
+                                super.run(req, res);
+                            }
+                        }.withJson(new JSMap("name", "value")))//
+                        .withEndpoint("outer/*", new MockAction() {
+                            public void run(Request req, Response res) throws ApiException {
+                                scopes[0] = req.getChain().getScope();
+                                res.withJson(req.getEngine().get("inner").getJson());
+                            }
+                        }));
+
+        Response res = engine.get("outer");
+        assertEquals("value", res.getJson().getString("name"));
+        assertNotNull(scopes[0]);
+        assertSame(scopes[0], scopes[1]);
+    }
+
+    @Test
+    public void test_request_scope_can_change_threads() throws Exception {
+        Engine engine = new Engine()//
+                .withApi(new Api()//
+                        .withEndpoint("test/*", new MockAction().withJson(new JSMap("name", "value"))));
+
+        RequestScope scope = new RequestScope().withAttribute("key", "value");
+        Request      req   = new Request("GET", "test").withScope(scope);
+        Response     res   = new Response();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Chain chain = executor.submit(() -> engine.service(req, res)).get();
+            assertSame(scope, chain.getScope());
+            assertEquals("value", chain.getScope().getAttribute("key"));
+            assertEquals(200, res.getStatusCode());
+        } finally {
+            executor.shutdown();
+        }
+        assertNull(RequestScope.peek());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.json.JSMap;
+import io.inversion.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCompressionTest {
+
+    @Test
+    public void test_selectEncoding() {
+        ResponseCompression c = new ResponseCompression();
+        assertNull(c.selectEncoding(null));
+        assertNull(c.selectEncoding("identity"));
+        assertNull(c.selectEncoding("br"));
+        assertEquals("gzip", c.selectEncoding("gzip, deflate, br"));
+        assertEquals("gzip", c.selectEncoding("br;q=1.0, gzip;q=0.8, *;q=0.1"));
+        assertEquals("deflate", c.selectEncoding("gzip;q=0.5, deflate"));
+        assertEquals("deflate", c.selectEncoding("gzip;q=0, *"));
+        assertEquals("gzip", c.selectEncoding("*"));
+        assertNull(c.selectEncoding("gzip;q=0, deflate;q=0"));
+    }
+
+    @Test
+    public void test_negotiate() {
+        ResponseCompression c   = new ResponseCompression().withMinSize(100);
+        Request             req = new Request("GET", "http://localhost/test");
+        req.addHeader("Accept-Encoding", "gzip");
+        Response res = new Response().withJson(new JSMap("name", "value"));
+
+        assertNull(c.negotiate(req, res, 1000), "compression is disabled by default");
+
+        c.withEnabled(true);
+        assertEquals("gzip", c.negotiate(req, res, 1000));
+        assertEquals("gzip", c.negotiate(req, res, -1));
+        assertNull(c.negotiate(req, res, 99));
+
+        res.withContentType("image/png");
+        assertNull(c.negotiate(req, res, 1000));
+
+        res.withContentType("text/html; charset=utf-8");
+        assertEquals("gzip", c.apply(req, res, 1000));
+        assertEquals("gzip", res.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", res.getHeader("Vary"));
+        assertNull(c.negotiate(req, res, 1000), "already encoded");
+    }
+
+    @Test
+    public void test_etag_includes_encoding() {
+        ResponseCompression c   = new ResponseCompression().withEnabled(true).withMinSize(0);
+        Request             req = new Request("GET", "http://localhost/test");
+        req.addHeader("Accept-Encoding", "deflate");
+        Response res = new Response().withJson(new JSMap("name", "value"));
+        res.withHeader("ETag", "\"abc\"");
+
+        assertEquals("deflate", c.apply(req, res, 1000));
+        assertEquals("\"abc-deflate\"", res.getHeader("ETag"));
+        assertEquals("\"abc\"", ResponseCompression.decodeEtag(res.getHeader("ETag")));
+        assertEquals("\"abc\"", ResponseCompression.decodeEtag("\"abc\""));
+
+        req = new Request("GET", "http://localhost/test");
+        res = new Response().withJson(new JSMap("name", "value"));
+        res.withHeader("ETag", "\"abc\"");
+        assertNull(c.apply(req, res, 1000));
+        assertEquals("\"abc\"", res.getHeader("ETag"), "uncompressed bodies keep the original tag");
+    }
+
+    @Test
+    public void test_compress_roundtrip() throws Exception {
+        ResponseCompression c    = new ResponseCompression();
+        String              text = new JSMap("data", Utils.asList(new JSMap("a", 1), new JSMap("b", 2))).toString();
+
+        ByteArrayOutputStream out  = new ByteArrayOutputStream();
+        OutputStream          zout = c.compress(out, "gzip");
+        zout.write(text.getBytes());
+        zout.close();
+        assertEquals(text, Utils.read(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))));
+
+        assertEquals(text, Utils.read(new GZIPInputStream(c.compress(new ByteArrayInputStream(text.getBytes()), "gzip"))));
+    }
+}
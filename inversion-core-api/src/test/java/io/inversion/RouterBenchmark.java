@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.utils.Path;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares the cost of selecting an Op with the compiled {@link Router} vs a linear
+ * scan of every Op as the number of Ops grows.
+ * <p>
+ * This is not run as part of the test suite, run the main method directly.
+ */
+public class RouterBenchmark {
+
+    public static void main(String[] args) {
+        int lookups = 200_000;
+        System.out.println("collections, ops, linear ns/lookup, router ns/lookup");
+        for (int collections : new int[]{10, 50, 100, 250, 500, 1000}) {
+            Endpoint ep  = new Endpoint("*");
+            List<Op> ops = new ArrayList<>();
+            for (int i = 0; i < collections; i++) {
+                String name = "collection" + i;
+                ops.add(RouterTest.op(ep, "GET", name));
+                ops.add(RouterTest.op(ep, "GET", name + "/{id:[0-9]+}"));
+                ops.add(RouterTest.op(ep, "GET", name + "/{id:[0-9]+}/{relationship}"));
+                ops.add(RouterTest.op(ep, "POST", name));
+                ops.add(RouterTest.op(ep, "PUT", name + "/{id:[0-9]+}"));
+                ops.add(RouterTest.op(ep, "PATCH", name + "/{id:[0-9]+}"));
+                ops.add(RouterTest.op(ep, "DELETE", name + "/{id:[0-9]+}"));
+            }
+            Collections.sort(ops);
+            Router router = new Router(ops);
+
+            Request[] reqs  = new Request[1000];
+            Path[]    paths = new Path[reqs.length];
+            for (int i = 0; i < reqs.length; i++) {
+                String path = "collection" + ((i * 31) % collections) + "/" + i + "/related";
+                reqs[i] = new Request("GET", "http://127.0.0.1/" + path);
+                paths[i] = new Path(path);
+            }
+
+            long linear = time(lookups, i -> RouterTest.linearMatch(ops, reqs[i % reqs.length], paths[i % paths.length]));
+            long routed = time(lookups, i -> router.match(reqs[i % reqs.length], paths[i % paths.length]));
+
+            System.out.println(collections + ", " + ops.size() + ", " + (linear / lookups) + ", " + (routed / lookups));
+        }
+    }
+
+    interface Lookup {
+        Object lookup(int i);
+    }
+
+    static long time(int lookups, Lookup lookup) {
+        //-- warmup
+        for (int i = 0; i < lookups / 10; i++)
+            lookup.lookup(i);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            if (lookup.lookup(i) == null)
+                throw new IllegalStateException("Lookup failed");
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.utils.Path;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouterTest {
+
+    static Op op(Endpoint ep, String method, String path) {
+        return new Op().withMethod(method).withPath(new Path(path)).withEndpoint(ep);
+    }
+
+    static Op linearMatch(List<Op> ops, Request req, Path path) {
+        for (Op op : ops) {
+            if (op.matches(req, path))
+                return op;
+        }
+        return null;
+    }
+
+    @Test
+    public void test_router_selects_same_op_as_linear_scan() {
+        Endpoint ep  = new Endpoint("*");
+        List<Op> ops = new ArrayList<>();
+        ops.add(op(ep, "GET", "books"));
+        ops.add(op(ep, "GET", "books/{bookId:[0-9]+}"));
+        ops.add(op(ep, "GET", "books/{slug}"));
+        ops.add(op(ep, "GET", "books/{bookId}/author"));
+        ops.add(op(ep, "POST", "books"));
+        ops.add(op(ep, "GET", "authors/[{authorId}]"));
+        ops.add(op(ep, "GET", "files/*"));
+        ops.add(op(ep, "DELETE", "books/{bookId}"));
+
+        Router router = new Router(ops);
+
+        String[][] requests = new String[][]{
+                {"GET", "books"},
+                {"GET", "BOOKS"},
+                {"GET", "books/123"},
+                {"GET", "books/abc"},
+                {"GET", "books/123/author"},
+                {"GET", "books/123/publisher"},
+                {"POST", "books"},
+                {"POST", "books/123"},
+                {"GET", "authors"},
+                {"GET", "authors/1"},
+                {"GET", "files"},
+                {"GET", "files/a/b/c"},
+                {"DELETE", "books/1"},
+                {"PATCH", "books/1"},
+                {"GET", "nothing/here"}};
+
+        for (String[] r : requests) {
+            Request req  = new Request(r[0], "http://127.0.0.1/" + r[1]);
+            Path    path = new Path(r[1]);
+
+            Op           expected = linearMatch(ops, req, path);
+            Router.Route route    = router.match(req, path);
+            assertSame(expected, route == null ? null : route.getOp(), "Router disagrees with linear scan for " + r[0] + " " + r[1]);
+        }
+    }
+
+    @Test
+    public void test_router_prefers_earlier_ops() {
+        Endpoint ep  = new Endpoint("*");
+        List<Op> ops = new ArrayList<>();
+        ops.add(op(ep, "GET", "{collection}"));
+        ops.add(op(ep, "GET", "books"));
+
+        Router.Route route = new Router(ops).match(new Request("GET", "http://127.0.0.1/books"), new Path("books"));
+        assertSame(ops.get(0), route.getOp());
+    }
+
+    @Test
+    public void test_router_extracts_path_params() {
+        Endpoint ep  = new Endpoint("*");
+        List<Op> ops = new ArrayList<>();
+        ops.add(op(ep, "GET", "books/{bookId:[0-9]+}/{relationship}").withEndpointPathMatch(new Path("books/{bookId:[0-9]+}/{relationship}")));
+
+        Router.Route route = new Router(ops).match(new Request("GET", "http://127.0.0.1/books/123/author"), new Path("books/123/author"));
+        assertEquals("123", route.getPathParams().get("bookId"));
+        assertEquals("author", route.getPathParams().get("relationship"));
+
+        assertNull(new Router(ops).match(new Request("GET", "http://127.0.0.1/books/abc/author"), new Path("books/abc/author")));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.json.JSMap;
+import io.inversion.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowMapperTest {
+
+    Collection buildCollection() {
+        Collection books = new Collection("books")//
+                .withProperty("title", "varchar")//
+                .withProperty("id", "int")//
+                .withProperty("pages", "char");
+        books.getProperty("title").withColumnName("TITLE_COL");
+        books.withIndex("pk", Index.TYPE_RESOURCE_KEY, true, "id");
+        return books;
+    }
+
+    @Test
+    public void test_map_orders_and_renames_like_select() {
+        Collection   books   = buildCollection();
+        List<String> columns = Utils.asList("zeta", "pages", "TITLE_COL", "href", "alpha", "ID");
+        Object[]     values  = {"z", "12  ", "Moby Dick", "http://ignored", "a", 1};
+
+        RowMapper mapper = RowMapper.of(new Db(), books, columns);
+        JSMap     row    = mapper.map(column -> values[column]);
+
+        assertEquals(Utils.asList("id", "title", "pages", "alpha", "zeta"), new ArrayList<>(row.keySet()));
+        assertEquals(1, row.get("id"));
+        assertEquals("Moby Dick", row.get("title"));
+        assertEquals("12", row.get("pages"), "char values are trimmed by Db.castDbOutput");
+        assertFalse(row.containsKey("href"));
+    }
+
+    @Test
+    public void test_plans_are_cached_until_the_collection_changes() {
+        Collection   books   = buildCollection();
+        List<String> columns = Utils.asList("id", "TITLE_COL");
+        Db           db      = new Db();
+
+        RowMapper first = RowMapper.of(db, books, columns);
+        assertSame(first, RowMapper.of(db, books, columns));
+
+        books.getProperty("title").withJsonName("name");
+        RowMapper second = RowMapper.of(db, books, columns);
+        assertNotSame(first, second);
+        assertEquals(Utils.asList("id", "name"), second.getNames());
+    }
+
+    @Test
+    public void test_map_without_collection_copies_columns_in_order() {
+        List<String> columns = Utils.asList("b", "a");
+        JSMap        row     = RowMapper.of(null, null, columns).map(column -> column);
+        assertEquals(Utils.asList("b", "a"), new ArrayList<>(row.keySet()));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion;
+
+import io.inversion.action.misc.MockAction;
+import io.inversion.json.JSMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Load test harness comparing throughput of 10k concurrent slow requests served by a fixed platform
+ * thread pool, the way a servlet container typically runs EngineServlet, vs one virtual thread per request
+ * via {@link Engine#serviceAsync(Request, Response)}.
+ * <p>
+ * Each request blocks for <code>latencyMs</code> simulating time spent waiting on a JDBC or HTTP call.
+ * <p>
+ * This is not run as part of the test suite, run the main method directly on a Java 21+ runtime.
+ */
+public class VirtualThreadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int requests  = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int latencyMs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int poolSize  = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        System.out.println("mode, requests, latency ms, elapsed ms, requests/sec");
+
+        Engine platform = buildEngine(latencyMs);
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        try {
+            long elapsed = run(requests, i -> CompletableFuture.supplyAsync(() -> platform.service(request(i), new Response()), pool));
+            print("platform pool(" + poolSize + ")", requests, latencyMs, elapsed);
+        } finally {
+            pool.shutdown();
+            platform.shutdown();
+        }
+
+        Engine virtual = buildEngine(latencyMs).withVirtualThreads(true);
+        try {
+            long elapsed = run(requests, i -> virtual.serviceAsync(request(i), new Response()));
+            print("virtual threads", requests, latencyMs, elapsed);
+        } finally {
+            virtual.shutdown();
+        }
+    }
+
+    interface Submitter {
+        CompletableFuture<Chain> submit(int i);
+    }
+
+    static long run(int requests, Submitter submitter) {
+        long                           start   = System.nanoTime();
+        List<CompletableFuture<Chain>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++)
+            futures.add(submitter.submit(i));
+
+        for (CompletableFuture<Chain> future : futures) {
+            Response res = future.join().getResponse();
+            if (res.getStatusCode() != 200)
+                throw new IllegalStateException("Request failed: " + res.getStatus());
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    static void print(String mode, int requests, int latencyMs, long elapsedMs) {
+        System.out.println(mode + ", " + requests + ", " + latencyMs + ", " + elapsedMs + ", " + (requests * 1000L / Math.max(1, elapsedMs)));
+    }
+
+    static Request request(int i) {
+        return new Request("GET", "http://myhost/books/" + i);
+    }
+
+    static Engine buildEngine(int latencyMs) {
+        MockAction slow = new MockAction() {
+            public void run(Request req, Response res) throws ApiException {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                super.run(req, res);
+            }
+        }.withJson(new JSMap("title", "Inversion"));
+
+        Engine engine = new Engine().withApi(new Api().withEndpoint("books/*", slow));
+        engine.startup();
+        return engine;
+    }
+}
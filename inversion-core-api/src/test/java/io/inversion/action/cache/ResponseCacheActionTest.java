@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.action.cache;
+
+import io.inversion.*;
+import io.inversion.Collection;
+import io.inversion.action.db.DbAction;
+import io.inversion.json.JSMap;
+import io.inversion.query.Query;
+import io.inversion.rql.Term;
+import io.inversion.utils.ListMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheActionTest {
+
+    /**
+     * Serves one record per collection and counts the selects that reach it.
+     */
+    static class CountingDb extends MockDb {
+        final Map<String, Integer> selects = new HashMap<>();
+
+        @Override
+        public Results doSelect(Collection table, List<Term> columnMappedTerms) throws ApiException {
+            selects.merge(table.getName(), 1, Integer::sum);
+            return new Results(new Query(this, table, columnMappedTerms)).withRow(new JSMap("id", 1, "name", table.getName() + selects.get(table.getName())));
+        }
+
+        @Override
+        public List<String> doUpsert(Collection table, List<Map<String, Object>> rows) throws ApiException {
+            List<String> keys = new ArrayList<>();
+            for (Map<String, Object> row : rows)
+                keys.add(row.get("id") + "");
+            return keys;
+        }
+
+        int getSelects(String collection) {
+            return selects.getOrDefault(collection, 0);
+        }
+    }
+
+    static Collection buildCollection(String name) {
+        return new Collection(name).withProperty("id", "integer", false).withProperty("name", "string").withIndex("primaryIndex", "primary", true, "id");
+    }
+
+    static Engine buildEngine(CountingDb db) {
+        db.withCollections(buildCollection("books"), buildCollection("authors"));
+        Api api = new Api("api").withDb(db).withEndpoint(new Endpoint().withAction(new DbAction())).withAction(new ResponseCacheAction());
+        return new Engine(api);
+    }
+
+    static Response get(Engine engine, String url, String ifNoneMatch) {
+        ListMap<String, String> headers = new ListMap<>();
+        if (ifNoneMatch != null)
+            headers.put("If-None-Match", ifNoneMatch);
+        Response res = new Response();
+        engine.service(new Request("GET", url, null, headers), res);
+        return res;
+    }
+
+    @Test
+    public void test_hits_etags_and_not_modified() {
+        CountingDb db     = new CountingDb();
+        Engine     engine = buildEngine(db);
+
+        Response first = engine.get("books?limit=5&sort=name").assertOk();
+        String   etag  = first.getHeader("ETag");
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""), "a strong ETag is quoted with no W/ prefix");
+
+        Response second = engine.get("books?sort=name&limit=5").assertOk();
+        assertEquals(1, db.getSelects("books"), "params are normalized before the key is built");
+        assertEquals(etag, second.getHeader("ETag"));
+        assertEquals(first.getText(), second.getText());
+
+        Response notModified = get(engine, "books?limit=5&sort=name", "\"other\", " + etag);
+        assertEquals(304, notModified.getStatusCode());
+        assertNull(notModified.getText());
+        assertEquals(1, db.getSelects("books"));
+
+        String gzipEtag = ResponseCompression.encodeEtag(etag, ResponseCompression.GZIP);
+        assertEquals(304, get(engine, "books?limit=5&sort=name", gzipEtag).getStatusCode(), "the tag of a compressed body matches too");
+
+        engine.get("books?limit=5&sort=name&nocache").assertOk();
+        assertEquals(2, db.getSelects("books"), "the nocache param skips the lookup");
+    }
+
+    @Test
+    public void test_writes_evict_the_collection() {
+        CountingDb db     = new CountingDb();
+        Engine     engine = buildEngine(db);
+
+        engine.get("books").assertOk();
+        engine.get("authors").assertOk();
+
+        engine.post("books", new JSMap("id", 2, "name", "book2")).assertStatus(201);
+        int booksSelects = db.getSelects("books");
+
+        engine.get("books").assertOk();
+        engine.get("authors").assertOk();
+        assertEquals(booksSelects + 1, db.getSelects("books"), "the written collection is evicted");
+        assertEquals(1, db.getSelects("authors"), "other collections stay cached");
+    }
+
+    @Test
+    public void test_writes_evict_again_after_commit() {
+        CountingDb          db     = new CountingDb();
+        Engine              engine = buildEngine(db);
+        ResponseCacheAction action = (ResponseCacheAction) engine.getApi("api").getActions().get(0);
+
+        //-- stands in for a GET that cached the collection after the write evicted it but before the write committed
+        engine.getApi("api").withApiListener(new Api.ApiListener() {
+            @Override
+            public void onAfterRequest(Request req, Response res) {
+                if (req.isPost())
+                    action.getCache().put("stale", new ResponseCache.Entry(200, null, "\"stale\"", new byte[1]), Collections.singleton("books"), 0);
+            }
+        });
+
+        engine.post("books", new JSMap("id", 2, "name", "book2")).assertStatus(201);
+        assertNull(action.getCache().get("stale"), "entries cached before the commit are evicted after it");
+    }
+
+    @Test
+    public void test_in_memory_eviction_by_size_and_collection() {
+        InMemoryResponseCache cache = new InMemoryResponseCache(300);
+        ResponseCache.Entry   entry = new ResponseCache.Entry(200, "application/json", "\"etag\"", new byte[100]);
+
+        cache.put("a", entry, Collections.singleton("books"), 0);
+        cache.put("b", entry, Collections.singleton("authors"), 0);
+        cache.get("a");
+        cache.put("c", entry, new HashSet<>(Arrays.asList("books", "authors")), 0);
+
+        assertNull(cache.get("b"), "the least recently used entry makes room");
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.getBytes() <= 300);
+
+        cache.invalidate("books");
+        assertNull(cache.get("a"));
+        assertNull(cache.get("c"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+
+        cache.put("big", new ResponseCache.Entry(200, null, "\"etag\"", new byte[400]), Collections.singleton("books"), 0);
+        assertEquals(0, cache.size(), "entries larger than the cache are not stored");
+    }
+}
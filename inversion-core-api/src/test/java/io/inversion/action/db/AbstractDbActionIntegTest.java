@@ -17,9 +17,17 @@
 package io.inversion.action.db;
 
 import io.inversion.AbstractEngineTest;
+import io.inversion.Action;
+import io.inversion.Api;
 import io.inversion.Engine;
 import io.inversion.Response;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
 public abstract class AbstractDbActionIntegTest implements AbstractEngineTest {
 
     protected Engine engine = null;
@@ -55,6 +63,34 @@ public abstract class AbstractDbActionIntegTest implements AbstractEngineTest {
         this.type = type;
     }
 
+    /**
+     * Finds the Actions of <code>type</code> registered on the engine's Apis and Endpoints, including those wrapped by a DbAction.
+     *
+     * @param engine the engine to search
+     * @param type   the Action class to find
+     * @return the matching actions, never empty
+     */
+    static <A extends Action> List<A> findActions(Engine engine, Class<A> type) {
+        List<A> found = new ArrayList<>();
+        for (Api api : engine.getApis()) {
+            List<Action> actions = new ArrayList<>(api.getActions());
+            api.getEndpoints().forEach(endpoint -> actions.addAll(endpoint.getActions()));
+            for (Action action : actions) {
+                List<Action> candidates = new ArrayList<>(Arrays.asList(action));
+                if (action instanceof DbAction) {
+                    DbAction dbAction = (DbAction) action;
+                    candidates.addAll(Arrays.asList(dbAction.getGetAction(), dbAction.getPostAction(), dbAction.getPutAction(), dbAction.getPatchAction(), dbAction.getDeleteAction()));
+                }
+                for (Action candidate : candidates) {
+                    if (type.isInstance(candidate))
+                        found.add(type.cast(candidate));
+                }
+            }
+        }
+        assertFalse(found.isEmpty());
+        return found;
+    }
+
     /**
      * Returns the last response handled by the engine.
      * This is needed for subclasses to decorate test methods
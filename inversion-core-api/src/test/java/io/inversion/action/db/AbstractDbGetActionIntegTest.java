@@ -60,7 +60,41 @@ public abstract class AbstractDbGetActionIntegTest extends AbstractDbActionInteg
         assertEquals(7, res.findList("data.0.territories").size());
     }
 
+    @Test
+    public void testDirectExpandMatchesNestedRequestExpand() throws Exception {
+        Engine            engine     = engine();
+        String            url        = url("orders?limit=25&sort=orderId&expand=customer,employee.territories.region,orderdetails");
+        List<DbGetAction> getActions = findActions(engine, DbGetAction.class);
+
+        String direct = engine.get(url).assertOk().data().toString();
+        try {
+            getActions.forEach(action -> action.withDirectExpand(false));
+            String nested = engine.get(url).assertOk().data().toString();
+            assertEquals(nested, direct);
+        } finally {
+            getActions.forEach(action -> action.withDirectExpand(true));
+        }
+    }
 
+    @Test
+    public void testConcurrentExpandMatchesSequentialExpand() throws Exception {
+        Engine            engine     = engine();
+        String            url        = url("orders?limit=25&sort=orderId&expand=customer,employee.territories.region,orderdetails");
+        List<DbGetAction> getActions = findActions(engine, DbGetAction.class);
+
+        String sequential = engine.get(url).assertOk().data().toString();
+        try {
+            getActions.forEach(action -> action.withExpandThreads(4));
+            for (int i = 0; i < 3; i++)
+                assertEquals(sequential, engine.get(url).assertOk().data().toString());
+
+            //-- branches fall back to Engine.get and must not wait on the pool they are running on
+            getActions.forEach(action -> action.withExpandThreads(2).withDirectExpand(false));
+            assertEquals(sequential, engine.get(url).assertOk().data().toString());
+        } finally {
+            getActions.forEach(action -> action.withExpandThreads(1).withDirectExpand(true));
+        }
+    }
 
     @Test
     public void testIncludes0() throws Exception {
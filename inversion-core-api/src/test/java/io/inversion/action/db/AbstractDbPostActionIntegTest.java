@@ -25,6 +25,8 @@ import io.inversion.json.JSParser;
 import io.inversion.utils.Utils;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public abstract class AbstractDbPostActionIntegTest extends AbstractDbActionIntegTest {
@@ -147,6 +149,28 @@ public abstract class AbstractDbPostActionIntegTest extends AbstractDbActionInte
     }
 
 
+    @Test
+    public void test_graph_upsert_matches_engine_upsert() {
+        Engine             engine      = engine();
+        List<DbPostAction> postActions = findActions(engine, DbPostAction.class);
+
+        try {
+            for (boolean graphUpsert : new boolean[]{true, false}) {
+                postActions.forEach(postAction -> postAction.withGraphUpsert(graphUpsert));
+
+                String territoryId = graphUpsert ? "01581" : "01730";
+                String region      = graphUpsert ? "Graph" : "Engine";
+                engine.put(url("territories"), new JSMap("TerritoryID", territoryId, "region", new JSMap("RegionDescription", region))).assertOk();
+
+                Response res = engine.get(url("territories/" + territoryId + "?expands=region"));
+                res.dump();
+                assertEquals(region, res.findString("data.0.region.regionDescription"));
+                assertEquals(res.findInt("data.0.region.regionId"), res.findInt("data.0.regionId"), "the generated region key was set on the territory");
+            }
+        } finally {
+            postActions.forEach(postAction -> postAction.withGraphUpsert(true));
+        }
+    }
 
     @Test
     public void test_post_remove_many_to_many_relationships() {
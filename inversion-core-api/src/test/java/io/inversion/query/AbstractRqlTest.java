@@ -179,11 +179,12 @@ public abstract class AbstractRqlTest implements AbstractEngineTest {
 
             System.out.println("\r\nTESTING: " + testKey + " - " + queryString);
 
-            Results.LAST_QUERY = null;
+            Results.clearLastQuery();
 
             Response res = runTest(getEngine(), urlPrefix, testKey, queryString + "&explain=true");
 
-            String maybeMatch = !Utils.empty(Results.LAST_QUERY) ? Results.LAST_QUERY : res.findString("error");
+            String lastQuery  = Results.getLastQuery();
+            String maybeMatch = !Utils.empty(lastQuery) ? lastQuery : res.findString("error");
 
             if (Utils.empty(expected))
                 expected = "YOU NEED TO SUPPLY A MATCH FOR THIS TEST: " + maybeMatch;
@@ -192,7 +193,7 @@ public abstract class AbstractRqlTest implements AbstractEngineTest {
                 System.out.println("FAILED: " + testKey);
                 System.out.println(" - expected: " + expected);
 
-                String received = (Results.LAST_QUERY != null ? Results.LAST_QUERY : maybeMatch);
+                String received = (lastQuery != null ? lastQuery : maybeMatch);
                 if(received != null && received.indexOf(":") > 0)
                     received = received.substring(received.indexOf(":")+1).trim();
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.query;
+
+import io.inversion.rql.Rql;
+import io.inversion.rql.RqlParser;
+import io.inversion.rql.RqlTokenizer;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the throughput of {@link RqlTokenizer}, of the tokenizer based parser, of {@link RqlParser} and of {@link Rql#parse(String)} with the parsed term cache.
+ * <p>
+ * Each operation handles the params of a typical <code>?eq(x,1)&amp;sort=-y&amp;page=3</code> query.
+ * <p>
+ * This is not run as part of the test suite, run the main method directly.
+ */
+public class RqlBenchmark {
+
+    static final String[][] PARAMS = {{"eq(x,1)", ""}, {"sort", "-y"}, {"page", "3"}};
+
+    static final String[] CLAUSES = new String[PARAMS.length];
+
+    static {
+        for (int i = 0; i < PARAMS.length; i++)
+            CLAUSES[i] = Rql.parse(PARAMS[i][0], PARAMS[i][1]).toString();
+    }
+
+    public static void main(String[] args) {
+        int ops = 500_000;
+        System.out.println("benchmark, ns/op, ops/sec, bytes/op");
+        report("tokenizer", ops, time(ops, () -> {
+            int tokens = 0;
+            for (String clause : CLAUSES)
+                tokens += new RqlTokenizer(clause).asList().size();
+            return tokens;
+        }));
+        report("parse with tokenizer", ops, time(ops, () -> {
+            int terms = 0;
+            for (String clause : CLAUSES)
+                terms += Rql.parseWithTokenizer(clause).size();
+            return terms;
+        }));
+        report("parse with RqlParser", ops, time(ops, () -> {
+            int terms = 0;
+            for (String clause : CLAUSES)
+                terms += RqlParser.parse(clause).size();
+            return terms;
+        }));
+        report("parse cached", ops, time(ops, () -> {
+            int terms = 0;
+            for (String[] param : PARAMS)
+                terms += Rql.parse(param[0], param[1]).size();
+            return terms;
+        }));
+    }
+
+    interface Op {
+        int run();
+    }
+
+    /**
+     * @return the elapsed nanos and the bytes allocated by the current thread
+     */
+    static long[] time(int ops, Op op) {
+        //-- warmup
+        for (int i = 0; i < ops / 5; i++)
+            op.run();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long                           thread  = Thread.currentThread().getId();
+
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            if (op.run() == 0)
+                throw new IllegalStateException("Nothing was parsed");
+        }
+        long nanos = System.nanoTime() - start;
+        return new long[]{nanos, threads.getThreadAllocatedBytes(thread) - bytes};
+    }
+
+    static void report(String name, int ops, long[] result) {
+        System.out.println(name + ", " + (result[0] / ops) + ", " + (ops * 1_000_000_000L / result[0]) + ", " + (result[1] / ops));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.query;
+
+import io.inversion.rql.Rql;
+import io.inversion.rql.RqlParser;
+import io.inversion.rql.Term;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RqlParserCompatibilityTest {
+
+    static final String[] CLAUSES = {//
+            "eq(x,1)", "eq(sort,-y)", "eq(page,3)", "EQ(Column,String)", "column=String", "column=    string   ", "'column'='str ing'", //
+            "column='str\"ing'", "eq(column with spaces, string with spaces)", "eq(a'bc)", "a=func=b", "func(a  , b   )", "column=test\\'", //
+            "eq(column,Barb 1\\\\2 Pnt W 6 Tort)", "and(eq(a,1),or(in(b,1,2,3),sw(c,x*)),not(n(d)))", "eq(`name`,'it''s')", "eq(a,\"\")", //
+            "include(id,href)", "_key(primaryIndex,1,2)", "eq(include,a.b,c)", "a,b", "x", "eq(a,b)c", " \t eq( a , \\ b )", "sort(-a,+b)", //
+            "eq(a\\,b,c)", "eq(a,'b,c')", "eq(a,\"b)c\")", "(a)", "=", "eq(a)=b", "eq(a,b)=c", "IN(x,1)", "eq (x,1)", "eq(x,1", ")", "eq(x,'1)", "eq(x,1\\", ""};
+
+    @Test
+    public void test_known_clauses() {
+        for (String clause : CLAUSES)
+            assertEquals(describe(() -> Rql.parseWithTokenizer(clause)), describe(() -> RqlParser.parse(clause)), clause);
+    }
+
+    @Test
+    public void test_random_clauses() {
+        char[] alphabet = "ab1XeEqQ(),=,' \"`\\\t\n.-*_".toCharArray();
+        Random random   = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            char[] chars = new char[random.nextInt(16)];
+            for (int j = 0; j < chars.length; j++)
+                chars[j] = alphabet[random.nextInt(alphabet.length)];
+
+            String clause = new String(chars);
+            assertEquals(describe(() -> Rql.parseWithTokenizer(clause)), describe(() -> RqlParser.parse(clause)), clause);
+        }
+    }
+
+    @Test
+    public void test_char_sequence_input() {
+        StringBuilder clause = new StringBuilder("and(eq(a,'x y'),in(b,1,\\2))");
+        assertEquals(describe(() -> Rql.parseWithTokenizer(clause.toString())), describe(() -> RqlParser.parse(clause)));
+    }
+
+    interface Parse {
+        Term parse();
+    }
+
+    /**
+     * @return the parsed structure including quotes, tokens and parent links, or the exception thrown
+     */
+    static String describe(Parse parse) {
+        try {
+            StringBuilder buff = new StringBuilder();
+            describe(buff, parse.parse(), null);
+            return buff.toString();
+        } catch (NullPointerException ex) {
+            //-- the helpful message names implementation locals
+            return ex.getClass().getName();
+        } catch (Exception ex) {
+            return ex.getClass().getName() + ": " + ex.getMessage();
+        }
+    }
+
+    static void describe(StringBuilder buff, Term term, Term parent) {
+        buff.append(term.getParent() == parent ? "" : "!parent!").append(term.getQuote() == 0 ? "" : term.getQuote()).append('[').append(term.token).append(']');
+        if (!term.isLeaf()) {
+            buff.append('(');
+            for (Term child : term.getTerms()) {
+                describe(buff, child, term);
+                buff.append(',');
+            }
+            buff.append(')');
+        }
+    }
+}
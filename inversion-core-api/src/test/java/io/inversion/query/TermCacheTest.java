@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.query;
+
+import io.inversion.ApiException;
+import io.inversion.Collection;
+import io.inversion.Db;
+import io.inversion.MockDb;
+import io.inversion.Results;
+import io.inversion.rql.Rql;
+import io.inversion.rql.Term;
+import io.inversion.rql.TermCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TermCacheTest {
+
+    /**
+     * Records the column mapped terms passed to every select.
+     */
+    static class RecordingDb extends MockDb {
+        final List<String> selects = new ArrayList<>();
+
+        @Override
+        public Results doSelect(Collection table, List<Term> columnMappedTerms) throws ApiException {
+            selects.add(columnMappedTerms.toString());
+            columnMappedTerms.forEach(term -> term.withTerm(Term.term(term, "modified")));
+            return new Results(new Query(this, table, columnMappedTerms));
+        }
+    }
+
+    @Test
+    public void test_parse_returns_independent_copies() {
+        String clause = "and(eq(TermCacheTest,1),in(b,'x y',z))";
+        Term   first  = Rql.parse(clause);
+        first.getTerm(0).withToken("changed");
+        first.withTerm(Term.term(first, "added"));
+
+        long hits   = Rql.getCache().getHits();
+        Term second = Rql.parse(clause);
+        assertEquals(hits + 1, Rql.getCache().getHits());
+        assertNotSame(first, second);
+        assertEquals(Rql.parseUncached(clause).toString(), second.toString());
+        assertNull(second.getParent());
+    }
+
+    @Test
+    public void test_least_recently_used_is_evicted() {
+        TermCache<Term> cache = new TermCache<>(2);
+        cache.put("a", Rql.parseUncached("a"));
+        cache.put("b", Rql.parseUncached("b"));
+        cache.get("a");
+        cache.put("c", Rql.parseUncached("c"));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        TermCache<Term> disabled = new TermCache<>(0);
+        disabled.put("a", Rql.parseUncached("a"));
+        assertEquals(0, disabled.size());
+    }
+
+    @Test
+    public void test_select_caches_column_mapped_terms() {
+        Collection books = new Collection("books").withProperty("BOOK_TITLE", "string").withProperty("PRICE", "number");
+        books.getProperty("BOOK_TITLE").withJsonName("title");
+        books.getProperty("PRICE").withJsonName("price");
+
+        RecordingDb db = new RecordingDb();
+        db.withCollections(books);
+
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("sort", "-title");
+        params.put("eq(price,10)", null);
+        params.put("select", "x");
+
+        db.select(books, params);
+        db.select(books, params);
+
+        assertEquals(2, db.selects.size());
+        assertEquals(db.selects.get(0), db.selects.get(1), "cached terms are not affected by changes made to the terms a select received");
+        assertEquals("[eq(PRICE,10), eq(sort,-BOOK_TITLE)]", db.selects.get(0));
+
+        TermCache<Db.SelectTerm> cache = db.getSelectTermCache(books);
+        assertEquals(3, cache.size());
+        assertEquals(3, cache.getHits());
+
+        //-- params that parse to the same term are still cached separately
+        params.clear();
+        params.put("eq(price,1)", "");
+        params.put("price", "1");
+        db.select(books, params);
+        assertEquals("[eq(PRICE,1), eq(PRICE,1)]", db.selects.get(2));
+        assertEquals(5, cache.size());
+
+        //-- terms mapped before a collection changes are not reused after it
+        books.getProperty("PRICE").withJsonName("cost");
+        books.getProperty("BOOK_TITLE").withJsonName("price");
+        db.select(books, params);
+        assertEquals("[eq(BOOK_TITLE,1), eq(BOOK_TITLE,1)]", db.selects.get(3));
+
+        db.withSelectTermCacheSize(0);
+        assertNull(db.getSelectTermCache(books));
+        db.select(books, params);
+        assertEquals(db.selects.get(3), db.selects.get(4));
+    }
+}
@@ -20,6 +20,7 @@ package io.inversion.config;
 import io.inversion.utils.Utils;
 import org.apache.commons.configuration2.*;
 import org.apache.commons.configuration2.builder.fluent.Configurations;
+import org.apache.commons.configuration2.event.ConfigurationEvent;
 
 import java.io.File;
 import java.math.BigDecimal;
@@ -71,11 +72,19 @@ public class Config {
 
     }
 
-    Object                 root;
-    String                 configApp;
-    String                 configProfile;
-    String                 configPath;
-    CompositeConfiguration configuration = null;
+    Object                          root;
+    String                          configApp;
+    String                          configProfile;
+    String                          configPath;
+    volatile CompositeConfiguration configuration = null;
+
+    /**
+     * Immutable snapshot of the resolved String values of <code>configuration</code>.
+     * <p>
+     * Lookups read the snapshot without locking.  It is discarded when the configuration is replaced, cleared or reloaded,
+     * when a property is changed on the CompositeConfiguration, or when a Configuration is added to or removed from it.
+     */
+    volatile Values values = null;
 
 
     public static Config getConfig(String appName) {
@@ -147,7 +156,10 @@ public class Config {
      * @param configuration the configuration to use
      */
     public synchronized void setConfiguration(CompositeConfiguration configuration) {
+        if (configuration != null)
+            listen(configuration);
         this.configuration = configuration;
+        this.values = null;
     }
 
     /**
@@ -155,20 +167,81 @@ public class Config {
      */
     public synchronized void clearConfiguration() {
         this.configuration = null;
+        this.values = null;
+    }
+
+    /**
+     * Discards the cached resolved values so they are rebuilt from <code>configuration</code> on next access.
+     * <p>
+     * Changes made directly to the CompositeConfiguration are detected automatically.  Call this if you
+     * change one of the Configurations inside of the CompositeConfiguration.
+     */
+    public void reload() {
+        this.values = null;
     }
 
     /**
      * If <code>configuration</code> is null, <code>loadConfiguration</code> is called
      * to lazy load the default config.
+     * <p>
+     * Only the initial load is synchronized, after that this is a lock free volatile read.
      *
      * @return the system wide CompositeConfiguration
      */
-    public synchronized CompositeConfiguration getConfiguration() {
-        if (configuration == null)
-            configuration = loadConfiguration();
+    public CompositeConfiguration getConfiguration() {
+        CompositeConfiguration configuration = this.configuration;
+        if (configuration == null) {
+            synchronized (this) {
+                configuration = this.configuration;
+                if (configuration == null)
+                    configuration = loadConfiguration();
+            }
+        }
         return configuration;
     }
 
+    /**
+     * @return the current immutable snapshot of resolved String values, rebuilding it if necessary
+     */
+    Values getValues() {
+        CompositeConfiguration configuration = getConfiguration();
+        Values                 values        = this.values;
+        if (values == null || values.configuration != configuration || values.configurations != configuration.getNumberOfConfigurations()) {
+            values = new Values(configuration);
+            this.values = values;
+        }
+        return values;
+    }
+
+    void listen(CompositeConfiguration configuration) {
+        configuration.addEventListener(ConfigurationEvent.ANY, event -> {
+            if (!event.isBeforeUpdate())
+                values = null;
+        });
+    }
+
+    /**
+     * An immutable map of every key in a CompositeConfiguration to its resolved String value.
+     */
+    static final class Values {
+        final CompositeConfiguration configuration;
+        final int                    configurations;
+        final Map<String, String>    map;
+
+        Values(CompositeConfiguration configuration) {
+            this.configuration = configuration;
+            this.configurations = configuration.getNumberOfConfigurations();
+
+            Map<String, String> map  = new HashMap<>();
+            Iterator<String>    keys = configuration.getKeys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                map.put(key, configuration.getString(key));
+            }
+            this.map = Collections.unmodifiableMap(map);
+        }
+    }
+
 
     /**
      * Creates a new CompositeConfiguration with individual Configuration objects loaded with key/value pairs
@@ -244,7 +317,9 @@ public class Config {
             }
         }
 
+        listen(configuration);
         this.configuration = configuration;
+        this.values = null;
         return configuration;
     }
 
@@ -346,27 +421,11 @@ public class Config {
     }
 
     public TreeSet<String> getKeys() {
-        TreeSet<String>  set    = new TreeSet<>();
-        Configuration    config = getConfiguration();
-        Iterator<String> keys   = config.getKeys();
-        String           key;
-        while (keys.hasNext()) {
-            key = keys.next();
-            set.add(key);
-        }
-        return set;
+        return new TreeSet<>(getValues().map.keySet());
     }
 
     public TreeMap<String, String> getProperties() {
-        TreeMap<String, String> map    = new TreeMap<>();
-        Configuration           config = getConfiguration();
-        Iterator<String>        keys   = config.getKeys();
-        String                  key;
-        while (keys.hasNext()) {
-            key = keys.next();
-            map.put(key, config.getString(key));
-        }
-        return map;
+        return new TreeMap<>(getValues().map);
     }
 
     public Object getProperty(String key) {
@@ -500,13 +559,12 @@ public class Config {
     }
 
     public String getString(String key) {
-        getConfiguration();//lazy loads default config if necessary
-        return configuration.getString(key);
+        return getValues().map.get(key);
     }
 
     public String getString(String key, String defaultValue) {
-        getConfiguration();//lazy loads default config if necessary
-        return configuration.getString(key, defaultValue);
+        String value = getValues().map.get(key);
+        return value != null ? value : defaultValue;
     }
 
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.inversion.json;
+
+import io.inversion.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A one pass JSList whose elements are pulled lazily from an underlying source, such as an open database cursor,
+ * only while the list is being written out by {@link JSWriter}.
+ * <p>
+ * Elements are never stored so a JSCursor can stand in for a list of any size in constant memory.
+ * As far as the normal List methods are concerned a JSCursor is empty.  Use {@link #onEach(Consumer)}
+ * to register callbacks that can modify each element just before it is written.
+ * <p>
+ * The source can be iterated only once.  The close action runs when the source is exhausted or when
+ * {@link #close()} is called, whichever happens first, so whoever ends up not writing a JSCursor must close it.
+ */
+public class JSCursor extends JSList implements AutoCloseable {
+
+    final Iterator<?>            source;
+    final AutoCloseable          onClose;
+    final List<Consumer<Object>> visitors = new ArrayList<>();
+
+    boolean opened = false;
+    boolean closed = false;
+
+    /**
+     * @param source  supplies the elements
+     * @param onClose releases the resources behind <code>source</code>, may be null
+     */
+    public JSCursor(Iterator<?> source, AutoCloseable onClose) {
+        this.source = source;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Registers a callback that is passed each element, in registration order, as it is read from the source.
+     *
+     * @param visitor the callback
+     * @return this
+     */
+    public JSCursor onEach(Consumer<Object> visitor) {
+        visitors.add(visitor);
+        return this;
+    }
+
+    /**
+     * Starts the one and only pass over the elements.
+     *
+     * @return an iterator over the source elements
+     * @throws IllegalStateException if this cursor has already been opened
+     */
+    public Iterator<Object> open() {
+        if (opened)
+            throw new IllegalStateException("A JSCursor can only be iterated once");
+        opened = true;
+
+        return new Iterator<Object>() {
+            public boolean hasNext() {
+                if (closed)
+                    return false;
+                if (source.hasNext())
+                    return true;
+                close();
+                return false;
+            }
+
+            public Object next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                Object value = source.next();
+                for (Consumer<Object> visitor : visitors)
+                    visitor.accept(value);
+                return value;
+            }
+        };
+    }
+
+    public boolean isOpened() {
+        return opened;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Runs the close action if it has not already been run.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+
+        if (onClose != null) {
+            try {
+                onClose.close();
+            } catch (Exception ex) {
+                Utils.rethrow(ex);
+            }
+        }
+    }
+}
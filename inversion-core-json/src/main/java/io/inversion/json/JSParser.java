@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.inversion.utils.Utils;
 
 import java.io.InputStream;
+import java.util.function.Consumer;
 
 public class JSParser {
     public static JsonFactory  parserFactory = new JsonFactory();
@@ -69,7 +70,65 @@ public class JSParser {
             return parseJson(parser, null);
 
         } catch (Exception e) {
-            throw Utils.ex("Invalid JSON.");
+            throw Utils.ex("Invalid JSON.", e);
+        }
+    }
+
+    /**
+     * Incrementally parses a JSON document with a root array handing the elements to <code>consumer</code>
+     * in batches of up to <code>batchSize</code> without ever materializing the full array in memory.
+     * <p>
+     * If the root element is not an array, the document is parsed normally and returned and <code>consumer</code> is not called.
+     * <p>
+     * RuntimeExceptions thrown by <code>consumer</code> are propagated unchanged.
+     *
+     * @param json      the json stream to parse
+     * @param batchSize the maximum number of elements passed to each call to <code>consumer</code>
+     * @param consumer  receives each batch of parsed array elements
+     * @return null if the root element was an array or the stream was empty, otherwise the parsed JSNode
+     */
+    public static JSNode parseJsonArray(InputStream json, int batchSize, Consumer<JSList> consumer) {
+        try {
+            JsonParser parser = parserFactory.createParser(json);
+            JsonToken  token  = parser.nextToken();
+            if (token == null)
+                return null;
+
+            if (token != JsonToken.START_ARRAY)
+                return parseJson(parser, null);
+
+            JSList batch = new JSList();
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null)
+                    throw Utils.ex("Unexpected end of JSON array");
+
+                if (token == JsonToken.START_OBJECT)
+                    batch.add(parseJson(parser, new JSMap()));
+                else if (token == JsonToken.START_ARRAY)
+                    batch.add(parseJson(parser, new JSList()));
+                else if (token == JsonToken.VALUE_NULL)
+                    batch.add(null);
+                else if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE)
+                    batch.add(parser.getValueAsBoolean());
+                else if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT)
+                    batch.add(parser.getNumberValue());
+                else
+                    batch.add(parser.getValueAsString());
+
+                if (batch.size() >= batchSize) {
+                    consumer.accept(batch);
+                    batch = new JSList();
+                }
+            }
+            if (batch.size() > 0)
+                consumer.accept(batch);
+
+            return null;
+
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw Utils.ex("Invalid JSON.", e);
         }
     }
 
@@ -5,14 +5,22 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import io.inversion.utils.Utils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 
 public class JSWriter {
 
+    /**
+     * JsonFactory is thread safe and expensive enough to build that it is shared
+     */
+    static final JsonFactory jsonFactory = new JsonFactory();
+
 //    public static String toJson(Object obj){
 //        if(obj instanceof JSNode){
 //            return toJson((JSNode)obj);
@@ -47,20 +55,41 @@ public class JSWriter {
     static String toJson(JSNode node, boolean pretty, boolean lowercasePropertyNames) {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            JsonGenerator         json = new JsonFactory().createGenerator(baos);
-            if (pretty)
-                json.useDefaultPrettyPrinter();
-
-            private_writeObject(node, json, new IdentityHashMap<>(), lowercasePropertyNames, "#");
-            json.flush();
-            baos.flush();
-
+            writeJson(node, baos, pretty, lowercasePropertyNames);
             return new String(baos.toByteArray());
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
     }
 
+    /**
+     * Streams <code>node</code> as UTF-8 JSON directly to <code>out</code> without first building a String.
+     * <p>
+     * The output is byte for byte the same as <code>node.toString(pretty, lowercasePropertyNames)</code>.
+     * <code>out</code> is flushed but not closed.
+     *
+     * @param node                   the json to write
+     * @param out                    where to write it
+     * @param pretty                 should the output be pretty printed
+     * @param lowercasePropertyNames should property names be lower cased
+     * @throws IOException if writing to <code>out</code> fails
+     */
+    public static void writeJson(JSNode node, OutputStream out, boolean pretty, boolean lowercasePropertyNames) throws IOException {
+        JsonGenerator json = jsonFactory.createGenerator(out);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (pretty)
+            json.useDefaultPrettyPrinter();
+
+        try {
+            private_writeObject(node, json, new IdentityHashMap<>(), lowercasePropertyNames, "#");
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException(ex);
+        }
+        json.flush();
+    }
+
     static void private_writeObject(JSNode object, JsonGenerator json, IdentityHashMap<Object, String> visited, boolean lowercaseNames, String path) throws Exception {
 
         if (visited.containsKey(object)) {
@@ -126,44 +155,73 @@ public class JSWriter {
     }
 
     static void private_writeArrayNode(JSList array, JsonGenerator json, IdentityHashMap<Object, String> visited, boolean lowercaseNames, String path) throws Exception {
+        if (array instanceof JSCursor) {
+            private_writeCursor((JSCursor) array, json, visited, lowercaseNames, path);
+            return;
+        }
+
         json.writeStartArray();
         for (int i = 0; i < array.size(); i++) {
-            Object value = array.get(i);
-            if (value == null) {
-                json.writeNull();
-            } else if (value instanceof JSNode) {
-                private_writeObject((JSNode) value, json, visited, lowercaseNames, path + "/" + i );
+            private_writeArrayElement(array.get(i), json, visited, lowercaseNames, path + "/" + i);
+        }
+        json.writeEndArray();
+    }
+
+    /**
+     * Writes each element as it is pulled from the cursor.  Elements are dropped from <code>visited</code> once
+     * written so nothing holds on to them and memory use stays flat no matter how many rows the cursor produces.
+     */
+    static void private_writeCursor(JSCursor cursor, JsonGenerator json, IdentityHashMap<Object, String> visited, boolean lowercaseNames, String path) throws Exception {
+        try {
+            json.writeStartArray();
+            Iterator<Object> it = cursor.open();
+            for (int i = 0; it.hasNext(); i++) {
+                Object value = it.next();
+                boolean seen = value != null && visited.containsKey(value);
+                private_writeArrayElement(value, json, visited, lowercaseNames, path + "/" + i);
+                if (!seen && value instanceof JSNode)
+                    visited.remove(value);
+            }
+            json.writeEndArray();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    static void private_writeArrayElement(Object value, JsonGenerator json, IdentityHashMap<Object, String> visited, boolean lowercaseNames, String path) throws Exception {
+        if (value == null) {
+            json.writeNull();
+        } else if (value instanceof JSNode) {
+            private_writeObject((JSNode) value, json, visited, lowercaseNames, path);
+        } else {
+            if (value instanceof String) {
+                if (value.equals("null"))
+                    json.writeNull();
+                else
+                    json.writeString(value.toString());
+            } else if (value instanceof Boolean) {
+                json.writeBoolean((Boolean) value);
+            } else if (value instanceof Integer) {
+                json.writeNumber((Integer) value);
+            } else if (value instanceof Long) {
+                json.writeNumber((Long) value);
+            } else if (value instanceof Float) {
+                json.writeNumber((Float) value);
+            } else if (value instanceof Double) {
+                json.writeNumber((Double) value);
+            } else if (value instanceof BigInteger) {
+                json.writeNumber((BigInteger) value);
+            } else if (value instanceof BigDecimal) {
+                json.writeNumber((BigDecimal) value);
+            } else if (value instanceof Date) {
+                String dateFormat = "yyyy-MM-dd'T'HH:mmZ";
+                SimpleDateFormat f = new SimpleDateFormat(dateFormat);
+                String dateString = f.format((Date) value);
+                json.writeString(dateString);
             } else {
-                if (value instanceof String) {
-                    if (value.equals("null"))
-                        json.writeNull();
-                    else
-                        json.writeString(value.toString());
-                } else if (value instanceof Boolean) {
-                    json.writeBoolean((Boolean) value);
-                } else if (value instanceof Integer) {
-                    json.writeNumber((Integer) value);
-                } else if (value instanceof Long) {
-                    json.writeNumber((Long) value);
-                } else if (value instanceof Float) {
-                    json.writeNumber((Float) value);
-                } else if (value instanceof Double) {
-                    json.writeNumber((Double) value);
-                } else if (value instanceof BigInteger) {
-                    json.writeNumber((BigInteger) value);
-                } else if (value instanceof BigDecimal) {
-                    json.writeNumber((BigDecimal) value);
-                } else if (value instanceof Date) {
-                    String dateFormat = "yyyy-MM-dd'T'HH:mmZ";
-                    SimpleDateFormat f = new SimpleDateFormat(dateFormat);
-                    String dateString = f.format((Date) value);
-                    json.writeString(dateString);
-                } else {
-                    json.writeString(encodeStringValue(value.toString()));
-                }
+                json.writeString(encodeStringValue(value.toString()));
             }
         }
-        json.writeEndArray();
     }
 
     /**
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JSCursorTest {
+
+    @Test
+    public void test_cursor_writes_like_a_list_and_closes() throws Exception {
+        AtomicInteger closed = new AtomicInteger();
+        JSMap         row    = new JSMap("id", 2, "name", "b");
+        JSCursor cursor = new JSCursor(Arrays.asList(new JSMap("id", 1, "name", "a"), row, "text", null).iterator(), closed::incrementAndGet);
+        cursor.onEach(node -> {
+            if (node instanceof JSMap)
+                ((JSMap) node).remove("name");
+        });
+
+        JSMap  doc      = new JSMap("meta", new JSMap(), "data", cursor);
+        String expected = new JSMap("meta", new JSMap(), "data", new JSList(new JSMap("id", 1), new JSMap("id", 2), "text", null)).toString(false);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSWriter.writeJson(doc, out, false, false);
+
+        assertEquals(expected, out.toString());
+        assertEquals(1, closed.get());
+        assertTrue(cursor.isClosed());
+        assertEquals(0, cursor.size());
+        assertThrows(IllegalStateException.class, cursor::open);
+
+        cursor.close();
+        assertEquals(1, closed.get(), "the close action only runs once");
+    }
+
+    @Test
+    public void test_close_stops_iteration() {
+        AtomicInteger    closed = new AtomicInteger();
+        JSCursor         cursor = new JSCursor(Arrays.asList(1, 2, 3).iterator(), closed::incrementAndGet);
+        Iterator<Object> it     = cursor.open();
+
+        assertEquals(1, it.next());
+        cursor.close();
+        assertFalse(it.hasNext());
+        assertEquals(1, closed.get());
+    }
+}
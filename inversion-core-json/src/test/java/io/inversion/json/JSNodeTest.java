@@ -594,4 +594,37 @@ public class JSNodeTest {
         assertNotNull(found);
     }
 
+
+    @Test
+    public void test_writeJson_matches_toString() throws Exception {
+        JSMap doc = new JSMap("meta", new JSMap("foundRows", 2), "data", new JSList(new JSMap("name", "tester1", "age", 10, "ok", true), new JSMap("name", "t\u00e9ster2", "notes", "line1\nline2", "none", null)));
+
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        JSWriter.writeJson(doc, out, true, false);
+        assertEquals(doc.toString(), new String(out.toByteArray()));
+
+        out = new java.io.ByteArrayOutputStream();
+        JSWriter.writeJson(doc, out, false, true);
+        assertEquals(doc.toString(false, true), new String(out.toByteArray()));
+    }
+
+    @Test
+    public void test_parseJsonArray_in_batches() {
+        String json = "[{\"id\":1},{\"id\":2,\"tags\":[\"a\",\"b\"]},{\"id\":3},{\"id\":4},{\"id\":5}]";
+
+        List<JSList> batches = new ArrayList<>();
+        JSNode       result  = JSParser.parseJsonArray(new java.io.ByteArrayInputStream(json.getBytes()), 2, batches::add);
+
+        assertNull(result);
+        assertEquals(3, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(1, batches.get(2).size());
+        assertEquals("b", batches.get(0).getMap(1).getList("tags").get(1));
+        assertEquals(5, batches.get(2).getMap(0).get("id"));
+
+        batches.clear();
+        result = JSParser.parseJsonArray(new java.io.ByteArrayInputStream("{\"id\":1}".getBytes()), 2, batches::add);
+        assertEquals(1, result.get("id"));
+        assertTrue(batches.isEmpty());
+    }
 }
@@ -22,6 +22,23 @@ import java.util.List;
 
 public class Rql {
 
+    /**
+     * Clauses longer than this are parsed every time instead of being cached.
+     */
+    public static final int MAX_CACHED_LENGTH = 1024;
+
+    /**
+     * Parsed clauses keyed by their text.
+     * <p>
+     * The same params show up on request after request so most parses end up being a lookup and a {@link Term#copy()}.
+     * Every request thread parses through this one cache so it is split into segments that are locked independently.
+     */
+    static final TermCache<Term> cache = new TermCache<>(10000, 16);
+
+    public static TermCache<Term> getCache() {
+        return cache;
+    }
+
     public static Term parse(String paramName, String paramValue) {
         String termStr;
         if (empty(paramValue) && paramName.contains("(")) {
@@ -40,7 +57,44 @@ public class Rql {
         return str == null || str.length() == 0 || str.trim().length() == 0;
     }
 
+    /**
+     * Parses <code>clause</code> returning a new term tree the caller is free to modify.
+     *
+     * @param clause the RQL text
+     * @return the root term
+     */
     public static Term parse(String clause) {
+        if (clause == null || clause.length() > MAX_CACHED_LENGTH)
+            return parseUncached(clause);
+
+        Term template = cache.get(clause);
+        if (template == null) {
+            template = parseUncached(clause);
+            cache.put(clause, template);
+        }
+        return template.copy();
+    }
+
+    /**
+     * Parses <code>clause</code> without consulting or updating the cache.
+     *
+     * @param clause the RQL text
+     * @return the root term
+     * @see RqlParser
+     */
+    public static Term parseUncached(String clause) {
+        return RqlParser.parse(clause);
+    }
+
+    /**
+     * The original token by token parser built on {@link RqlTokenizer}.
+     * <p>
+     * {@link RqlParser} must produce exactly the same terms, this is kept as the reference implementation it is tested against.
+     *
+     * @param clause the RQL text
+     * @return the root term
+     */
+    public static Term parseWithTokenizer(String clause) {
         TermStack    tb = new TermStack();
         RqlTokenizer t  = new RqlTokenizer(clause);
 
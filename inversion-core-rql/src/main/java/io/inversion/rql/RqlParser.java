@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.rql;
+
+import java.util.List;
+
+/**
+ * A single pass RQL parser that builds the same terms as {@link Rql#parseWithTokenizer(String)} without creating intermediate token Strings.
+ * <p>
+ * The scanner follows the {@link RqlTokenizer} state machine char for char but tracks each token as offsets into the source.
+ * A String is only created for leaf values that are longer than a single ASCII char and for function names that are not one of the
+ * {@link #FUNCTIONS} known to the query builders.  Only tokens that contain an escape character are copied, into a buffer that is reused across tokens.
+ * <p>
+ * All scanner state lives in locals and the open functions are tracked through their parent links so,
+ * apart from the terms themselves, a parse allocates nothing for the common case of a clause without escapes.
+ */
+public class RqlParser {
+
+    /**
+     * Function names that are reused instead of being copied out of the source when they appear in lower case.
+     */
+    static final String[] FUNCTIONS = {"eq", "ne", "n", "nn", "lt", "le", "gt", "ge", "in", "out", "sw", "ew", "w", "wo", "if", "like", "emp", "nemp", "and", "or", "not", //
+            "sort", "order", "page", "pagenum", "size", "pagesize", "after", "offset", "limit", "include", "exclude", "as", "distinct", "count", "sum", "min", "max", "group", //
+            "_key", "_exists", "_notexists", "_table", "_query", "_subquery", "_alias"};
+
+    /**
+     * Single char ASCII leaf values, such as small ids and page numbers, are reused instead of being copied.
+     */
+    static final String[] CHARS = new String[128];
+
+    static {
+        for (char c = 0; c < CHARS.length; c++)
+            CHARS[c] = String.valueOf(c).intern();
+    }
+
+    /**
+     * Parses <code>chars</code> into a new term tree.
+     *
+     * @param chars the RQL text
+     * @return the root term
+     */
+    public static Term parse(CharSequence chars) {
+        final int length = chars.length();
+
+        int     head     = 0;
+        boolean escaped  = false;
+        char    quote    = 0;
+        int     function = 0;
+
+        //-- only allocated if a token contains an escape
+        StringBuilder buffer = null;
+
+        Term root = null;
+        //-- the innermost open term, null when nothing is open, its parents are the rest of the stack
+        Term top = null;
+
+        while (head < length) {
+
+            //-- scan the next token, this follows RqlTokenizer.next() exactly
+            //-- while unbuffered the token is chars[first, first + count)
+            int     count    = 0;
+            int     first    = 0;
+            boolean buffered = false;
+
+            while (head < length) {
+                char c = chars.charAt(head);
+                head += 1;
+
+                if ((c == ' ' || c == '\t') && count == 0)
+                    continue; //ignore leading whitespace
+
+                boolean append = true;
+                boolean stop   = false;
+
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                    append = false;
+                    if (!buffered) {
+                        //-- the token no longer matches the source so copy what has been scanned so far
+                        if (buffer == null)
+                            buffer = new StringBuilder();
+                        buffer.setLength(0);
+                        buffer.append(chars, first, first + count);
+                        buffered = true;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    if (c == quote) {
+                        //this has to be the closing quote
+                        quote = 0;
+                        stop = true;
+                    } else if (count == 0) {
+                        //this has to be the starting quote
+                        quote = c;
+                    }
+                } else if (quote == 0) {
+                    if (c == ',') {
+                        append = false;
+                        stop = count > 0;
+                    } else if (c == '(') {
+                        function += 1;
+                        stop = true;
+                    } else if ((function == 0 && c == '=') || (function > 0 && c == ')')) {
+                        stop = true;
+                        if (count > 0) {
+                            append = false;
+                            head--;
+                        } else if (c == ')') {
+                            function -= 1;
+                        }
+                    } else if (c == ')') {
+                        throw new RuntimeException("Found ')' as the start of a token but no starting '(' was ever parsed: -> '" + chars + "'");
+                    }
+                }
+
+                if (append) {
+                    if (buffered)
+                        buffer.append(c);
+                    else if (count == 0)
+                        first = head - 1;
+                    count += 1;
+                }
+
+                if (stop)
+                    break;
+            }
+
+            if (quote != 0)
+                throw new RuntimeException("Unable to parse unterminated quoted string: \"" + chars + "\": -> '" + chars + "'");
+
+            if (escaped)
+                throw new RuntimeException("Unable to parse hanging escape character: \"" + chars + "\": -> '" + chars + "'");
+
+            if (function > 0 && head == length)
+                throw new RuntimeException("Looks like you are missing a closing ')'");
+
+            CharSequence source = buffered ? buffer : chars;
+            int          start  = buffered || count == 0 ? 0 : first;
+            int          end    = start + count;
+
+            while (start < end && source.charAt(start) <= ' ')
+                start++;
+            while (end > start && source.charAt(end - 1) <= ' ')
+                end--;
+
+            //-- now build the term, this follows Rql.parseWithTokenizer() exactly
+            int  size = end - start;
+            char last = size > 0 ? source.charAt(end - 1) : 0;
+
+            if (last == '(') {
+                Term term = function(source, start, end - 1);
+                if (root == null) {
+                    root = term;
+                } else {
+                    if (top == null)
+                        top = root;
+                    add(top, term);
+                }
+                top = term;
+            } else if (size == 1 && last == ')') {
+                if (top != null)
+                    top = top.parent;
+            } else {
+                if (top == null) {
+                    if (root == null)
+                        root = new Term();
+                    top = root;
+                }
+
+                if (size == 1 && last == '=') {
+                    List<Term> children = top.getTerms();
+
+                    if ("eq".equalsIgnoreCase(top.getToken()) && children.size() == 2) {
+                        top.withToken(children.get(1).getToken());
+                        top.removeTerm(children.get(1));
+                    } else {
+                        top.withToken("eq");
+                    }
+                } else {
+                    add(top, leaf(source, start, end));
+                }
+            }
+        }
+
+        if ("NULL".equals(root.getToken())) {
+            Term child = root.getTerm(0);
+            child.withParent(null);
+            root = child;
+        }
+
+        return root;
+    }
+
+    /**
+     * @return a new function term named by source[start, end), the name has already had its '(' removed
+     */
+    static Term function(CharSequence source, int start, int end) {
+        int size = end - start;
+        for (String name : FUNCTIONS) {
+            if (name.length() == size && matches(source, start, name)) {
+                Term term = new Term();
+                term.token = name;
+                return term;
+            }
+        }
+
+        String lc = source.subSequence(start, end + 1).toString().toLowerCase();
+        return new Term(lc.substring(0, lc.length() - 1));
+    }
+
+    static boolean matches(CharSequence source, int start, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (source.charAt(start + i) != name.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return a new leaf term for source[start, end) with any surrounding quotes removed
+     */
+    static Term leaf(CharSequence source, int start, int end) {
+        char quote = 0;
+
+        if (end - start > 1) {
+            char c = source.charAt(start);
+            if (source.charAt(end - 1) == c && (c == '\'' || c == '"' || c == '`')) {
+                quote = c;
+                start += 1;
+                end -= 1;
+            }
+        }
+
+        Term term = new Term();
+        term.quote = quote == '`' ? '"' : quote; //replace mysql style with ansi sql style
+        char only = end - start == 1 ? source.charAt(start) : Character.MAX_VALUE;
+        term.token = only < CHARS.length ? CHARS[only] : source.subSequence(start, end).toString();
+        return term;
+    }
+
+    /**
+     * Appends a newly created child, skipping the duplicate check {@link Term#withTerm(Term)} does.
+     */
+    static void add(Term parent, Term child) {
+        parent.terms.add(child);
+        child.parent = parent;
+    }
+}
@@ -80,7 +80,12 @@ public class Term implements Comparable<Term> {
         copy.quote = quote;
         copy.token = token;
 
-        terms.forEach(child -> copy.withTerm(child.copy()));
+        for (Term child : terms) {
+            //-- the child copy is new so the duplicate check in withTerm() is not needed
+            Term childCopy = child.copy();
+            copy.terms.add(childCopy);
+            childCopy.parent = copy;
+        }
 
         return copy;
     }
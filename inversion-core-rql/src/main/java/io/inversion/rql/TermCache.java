@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.rql;
+
+import io.inversion.utils.LruCache;
+
+/**
+ * A bounded, least recently used, cache of parsed RQL keyed by the source text.
+ * <p>
+ * Terms are mutable and are routinely rewritten by whoever receives them so values stored here must be
+ * treated as templates that are never handed out.  Callers {@link Term#copy()} a cached template before
+ * returning it.  Copies share the template's token strings so repeated params do not allocate new token text.
+ *
+ * @param <V> the cached value type
+ */
+public class TermCache<V> extends LruCache<String, V> {
+
+    /**
+     * @param maxSize the maximum number of cached values, less than 1 disables the cache
+     */
+    public TermCache(int maxSize) {
+        super(maxSize);
+    }
+
+    /**
+     * @param maxSize  the maximum number of cached values, less than 1 disables the cache
+     * @param segments the number of independently locked segments the values are spread across
+     */
+    public TermCache(int maxSize, int segments) {
+        super(maxSize, segments);
+    }
+
+    public int getMaxSize() {
+        return (int) getMaxWeight();
+    }
+}
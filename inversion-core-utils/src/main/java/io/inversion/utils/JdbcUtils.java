@@ -23,6 +23,7 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.sql.*;
 import java.util.*;
+import java.util.function.IntFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,6 +51,16 @@ public class JdbcUtils {
         void afterStmt(String method, String sql, Object args, Exception ex, Object result);
     }
 
+    /**
+     * Consumes an open ResultSet producing a result, used by {@link #select(Connection, String, ResultSetHandler, Object...)}.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface ResultSetHandler<T> {
+        T handle(ResultSet rs) throws Exception;
+    }
+
     public static String getDbType(Connection conn) {
         String connstr = conn.toString().toLowerCase();
         if (connstr.contains("mysql"))
@@ -406,22 +417,7 @@ public class JdbcUtils {
                     for (int i = 0; i < cols; i++) {
                         Object o = null;
                         try {
-                            o = rs.getObject(i + 1);
-
-                            if (o instanceof Clob) {
-                                Reader        reader = ((Clob) o).getCharacterStream();
-                                char[]        arr    = new char[8 * 1024];
-                                StringBuilder buffer = new StringBuilder();
-                                int           numCharsRead;
-                                while ((numCharsRead = reader.read(arr, 0, arr.length)) != -1) {
-                                    buffer.append(arr, 0, numCharsRead);
-                                }
-                                reader.close();
-                                o = buffer.toString();
-                            } else if (o != null && o.getClass().isArray() && Array.getLength(o) == 0) {
-                                o = null;
-                            }
-
+                            o = getObject(rs, i + 1);
                         } catch (Exception e) {
                             if (ex != null)
                                 ex = e;
@@ -447,6 +443,129 @@ public class JdbcUtils {
         return rows;
     }
 
+    /**
+     * Reads a column value normalizing Clobs to Strings and empty arrays to null.
+     *
+     * @param rs     the ResultSet positioned on a row
+     * @param column the one based column index
+     * @return the column value
+     * @throws SQLException if the value can not be read
+     */
+    public static Object getObject(ResultSet rs, int column) throws SQLException {
+        Object o = rs.getObject(column);
+
+        if (o instanceof Clob) {
+            try (Reader reader = ((Clob) o).getCharacterStream()) {
+                char[]        arr    = new char[8 * 1024];
+                StringBuilder buffer = new StringBuilder();
+                int           numCharsRead;
+                while ((numCharsRead = reader.read(arr, 0, arr.length)) != -1) {
+                    buffer.append(arr, 0, numCharsRead);
+                }
+                o = buffer.toString();
+            } catch (IOException ex) {
+                throw new SQLException(ex);
+            }
+        } else if (o != null && o.getClass().isArray() && Array.getLength(o) == 0) {
+            o = null;
+        }
+        return o;
+    }
+
+    /**
+     * Runs a query handing the open ResultSet to <code>handler</code> instead of copying it into {@code Rows}.
+     * <p>
+     * This lets callers build their own output directly from the cursor.  The statement and ResultSet are closed
+     * when <code>handler</code> returns.
+     *
+     * @param conn    the connection to use
+     * @param sql     the select statement
+     * @param handler consumes the ResultSet
+     * @param vals    prepared statement arguments
+     * @param <T>     the result type
+     * @return the value returned by <code>handler</code>
+     * @throws SQLException if the query or handler fails
+     */
+    public static <T> T select(Connection conn, String sql, ResultSetHandler<T> handler, Object... vals) throws SQLException {
+        if (vals != null && vals.length == 1 && vals[0] instanceof List)
+            vals = ((List) vals[0]).toArray();
+
+        notifyBefore("select", sql, vals);
+
+        Exception ex     = null;
+        Statement stmt   = null;
+        ResultSet rs     = null;
+        T         result = null;
+
+        try {
+            if (vals != null && vals.length > 0) {
+                stmt = conn.prepareStatement(sql);
+                for (int i = 0; i < vals.length; i++) {
+                    ((PreparedStatement) stmt).setObject(i + 1, vals[i]);
+                }
+                rs = ((PreparedStatement) stmt).executeQuery();
+            } else {
+                stmt = conn.createStatement();
+                rs = stmt.executeQuery(sql);
+            }
+            result = handler.handle(rs);
+        } catch (Exception e) {
+            notifyError("select", sql, vals, e);
+            ex = new SQLException(e.getMessage() + " SQL=" + sql + " ERROR=" + e.getMessage(), Utils.getCause(e));
+            throw (SQLException) ex;
+        } finally {
+            close(stmt, rs);
+            notifyAfter("select", sql, vals, ex, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs a query on a forward only, read only statement and returns the open ResultSet without reading it.
+     * <p>
+     * This lets callers stream very large results row by row.  The caller is responsible for closing the
+     * ResultSet and its Statement.
+     * <p>
+     * <code>fetchSize</code> is handed to the driver as the number of rows to buffer per round trip.  Some drivers
+     * need more than that to actually stream, for example MySQL requires <code>Integer.MIN_VALUE</code> and
+     * Postgres requires that the connection is not in autoCommit mode.
+     *
+     * @param conn      the connection to use
+     * @param sql       the select statement
+     * @param fetchSize the fetch size hint for the driver
+     * @param vals      prepared statement arguments
+     * @return the open ResultSet
+     * @throws SQLException if the query fails
+     */
+    public static ResultSet openCursor(Connection conn, String sql, int fetchSize, Object... vals) throws SQLException {
+        if (vals != null && vals.length == 1 && vals[0] instanceof List)
+            vals = ((List) vals[0]).toArray();
+
+        notifyBefore("select", sql, vals);
+
+        Exception         ex   = null;
+        PreparedStatement stmt = null;
+        ResultSet         rs   = null;
+
+        try {
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            for (int i = 0; vals != null && i < vals.length; i++) {
+                stmt.setObject(i + 1, vals[i]);
+            }
+            rs = stmt.executeQuery();
+            return rs;
+        } catch (Exception e) {
+            notifyError("select", sql, vals, e);
+            close(rs, stmt);
+            ex = new SQLException(e.getMessage() + " SQL=" + sql + " ERROR=" + e.getMessage(), Utils.getCause(e));
+            throw (SQLException) ex;
+        } finally {
+            notifyAfter("select", sql, vals, ex, null);
+        }
+    }
+
     public static Row selectRow(Connection conn, String sql, Object... vals) throws SQLException {
         Rows rows = selectRows(conn, sql, vals);
         if (rows.size() > 0)
@@ -502,6 +621,20 @@ public class JdbcUtils {
     }
 
     public static List insertMaps(Connection conn, String tableName, List maps) throws SQLException {
+        return insertMaps(conn, tableName, maps, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Inserts <code>maps</code> using multi row INSERT statements of at most <code>batchSize</code> rows.
+     *
+     * @param conn      the jdbc connection
+     * @param tableName the table to insert into
+     * @param maps      the rows to insert, columns missing from some rows are inserted as null
+     * @param batchSize the maximum number of rows per statement
+     * @return the generated key of each row, in row order, or nulls if the table does not generate keys
+     * @throws SQLException when the insert fails
+     */
+    public static List insertMaps(Connection conn, String tableName, List maps, int batchSize) throws SQLException {
         if ("sqlserver".equalsIgnoreCase(getDbType(conn)) && maps.size() > 0) {
             //-- as of 2020 sqlserver does not seem to support getGeneratedKeys for multiple rows.
             //--
@@ -513,10 +646,23 @@ public class JdbcUtils {
             }
             return returnKeys;
         } else {
-            return insertMaps0(conn, tableName, maps);
+            //-- each chunk is its own statement because getGeneratedKeys after executeBatch is not reliable across drivers
+            List returnKeys = new ArrayList<>();
+            int  chunk      = getRowsPerStatement(conn, columnCount(maps), batchSize);
+            for (int i = 0; i < maps.size(); i += chunk) {
+                returnKeys.addAll(insertMaps0(conn, tableName, maps.subList(i, Math.min(maps.size(), i + chunk))));
+            }
+            return returnKeys;
         }
     }
 
+    static int columnCount(List maps) {
+        Set<Object> cols = new HashSet<>();
+        for (Object map : maps)
+            cols.addAll(((Map) map).keySet());
+        return cols.size();
+    }
+
     static List insertMaps0(Connection conn, String tableName, List maps) throws SQLException {
         List<Map<String, Object>> rows = (List<Map<String, Object>>) maps;
 
@@ -558,11 +704,13 @@ public class JdbcUtils {
                 Object key = rs.getObject(1);
                 returnKeys.add(key);
             }
+            rs.close();
         } catch (Exception e) {
             ex = e;
             notifyError("insertMaps", sql, rows, ex);
             throw e;
         } finally {
+            close(stmt);
             notifyAfter("insertMap", sql, rows, ex, null);
         }
 
@@ -668,10 +816,12 @@ public class JdbcUtils {
     }
 
     /**
-     * Batches <code>rows</code> into groups containing identical keys and then
-     * inserts rows that are missing indexCols key values or attempts an upsert
-     * for rows that have the key values...the row could have the key but still
-     * not exist in the db in cases where the key is not an autoincrement number.
+     * The number of rows written by each multi row statement when a batch size is not supplied.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Upserts <code>rows</code> using statements of at most {@link #DEFAULT_BATCH_SIZE} rows.
      *
      * @param conn           the jdbc connection
      * @param tableName      the table to upsert into
@@ -679,59 +829,69 @@ public class JdbcUtils {
      * @param rows           the data to upsert
      * @return the primaryKeyCols values for all rows upserted
      * @throws SQLException when the upsert fails
+     * @see #upsert(Connection, String, List, List, int)
      */
     public static List<Row> upsert(Connection conn, String tableName, List<String> primaryKeyCols, List<Map<String, Object>> rows) throws SQLException {
-        List<Row> generatedKeys = new ArrayList<>();
+        return upsert(conn, tableName, primaryKeyCols, rows, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Groups <code>rows</code> by column set and then inserts rows that are missing indexCols key values or attempts an upsert
+     * for rows that have the key values...the row could have the key but still
+     * not exist in the db in cases where the key is not an autoincrement number.
+     * <p>
+     * Rows are grouped across the whole list, not just consecutive runs, so rows with different columns don't fragment the batches.
+     * Each group is written with dialect specific multi row statements of at most <code>batchSize</code> rows.
+     * If a key value repeats, everything before it is written first so that later rows win.
+     *
+     * @param conn           the jdbc connection
+     * @param tableName      the table to upsert into
+     * @param primaryKeyCols a unique key for the table that will constrain the upsert
+     * @param rows           the data to upsert
+     * @param batchSize      the maximum number of rows per statement
+     * @return the primaryKeyCols values for all rows upserted, in the same order as <code>rows</code>
+     * @throws SQLException when the upsert fails
+     */
+    public static List<Row> upsert(Connection conn, String tableName, List<String> primaryKeyCols, List<Map<String, Object>> rows, int batchSize) throws SQLException {
         if (rows.isEmpty())
             return Collections.EMPTY_LIST;
 
-        Set                       cols   = null;
-        int                       hadKey = -1;
-        List<Map<String, Object>> batch  = new ArrayList<>();
-        for (Map row : rows) {
-            int hasKey = 1;
+        Object[]                         generatedKeys = new Object[rows.size()];
+        Map<List<Object>, List<Integer>> groups        = new LinkedHashMap<>();
+        Set<List<Object>>                pendingKeys   = new HashSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> row = rows.get(i);
+
+            List<Object> key = new ArrayList<>();
             for (String indexCol : primaryKeyCols) {
-                if (Utils.empty(row.get(indexCol))) {
-                    hasKey = 0;
+                Object value = row.get(indexCol);
+                if (Utils.empty(value)) {
+                    key = null;
                     break;
                 }
+                key.add(value);
             }
-            if (hadKey == -1)
-                hadKey = hasKey;
-
-            if (cols == null) {
-                cols = row.keySet();
-            }
-
-            if (batch.size() > 0 && (hadKey != hasKey) || Utils.disjunction(cols, row.keySet()).size() > 0) {
-                if (hadKey == 0)
-                    generatedKeys.addAll(insertBatch(conn, tableName, primaryKeyCols, batch));
-                else {
-                    generatedKeys.addAll(upsertBatch(conn, tableName, primaryKeyCols, batch));
-                }
 
-                batch.clear();
+            //-- a statement can't write the same row twice
+            if (key != null && !pendingKeys.add(key)) {
+                writeGroups(conn, tableName, primaryKeyCols, rows, groups, generatedKeys, batchSize);
+                pendingKeys.clear();
+                pendingKeys.add(key);
             }
 
-            hadKey = hasKey;
-            cols = row.keySet();
-            batch.add(row);
-        }
-
-        if (batch.size() > 0) {
-            if (hadKey == 0)
-                generatedKeys.addAll(insertBatch(conn, tableName, primaryKeyCols, batch));
-            else
-                generatedKeys.addAll(upsertBatch(conn, tableName, primaryKeyCols, batch));
+            List<Object> group = Arrays.asList(key != null, new HashSet<>(row.keySet()));
+            groups.computeIfAbsent(group, k -> new ArrayList<>()).add(i);
         }
+        writeGroups(conn, tableName, primaryKeyCols, rows, groups, generatedKeys, batchSize);
 
-        for (int i = 0; i < generatedKeys.size(); i++) {
+        List<Row> keys = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
             Row row = new Row();
             for (String col : primaryKeyCols) {
                 Object val = rows.get(i).get(col);
                 if (val == null) {
-                    val = generatedKeys.get(i);
-                    generatedKeys.set(i, null);
+                    val = generatedKeys[i];
+                    generatedKeys[i] = null;
                 }
 
                 if (val == null)
@@ -739,10 +899,25 @@ public class JdbcUtils {
 
                 row.put(col, val);
             }
-            generatedKeys.set(i, row);
+            keys.add(row);
         }
 
-        return generatedKeys;
+        return keys;
+    }
+
+    static void writeGroups(Connection conn, String tableName, List<String> primaryKeyCols, List<Map<String, Object>> rows, Map<List<Object>, List<Integer>> groups, Object[] generatedKeys, int batchSize) throws SQLException {
+        for (Map.Entry<List<Object>, List<Integer>> group : groups.entrySet()) {
+            List<Integer>             indexes = group.getValue();
+            List<Map<String, Object>> batch   = new ArrayList<>();
+            for (int idx : indexes)
+                batch.add(rows.get(idx));
+
+            boolean hasKey = (Boolean) group.getKey().get(0);
+            List    keys   = hasKey ? upsertBatch(conn, tableName, primaryKeyCols, batch, batchSize) : insertBatch(conn, tableName, primaryKeyCols, batch, batchSize);
+            for (int i = 0; i < keys.size(); i++)
+                generatedKeys[indexes.get(i)] = keys.get(i);
+        }
+        groups.clear();
     }
 
    /*
@@ -751,8 +926,8 @@ public class JdbcUtils {
    +------------------------------------------------------------------------------+
     */
 
-    static List insertBatch(Connection conn, String tableName, List<String> indexCols, List<Map<String, Object>> rows) throws SQLException {
-        List returnKeys = insertMaps(conn, tableName, rows);
+    static List insertBatch(Connection conn, String tableName, List<String> indexCols, List<Map<String, Object>> rows, int batchSize) throws SQLException {
+        List returnKeys = insertMaps(conn, tableName, rows, batchSize);
         for (int i = 0; i < returnKeys.size(); i++) {
             Object key = returnKeys.get(i);
             if (key == null) {
@@ -766,25 +941,29 @@ public class JdbcUtils {
         return returnKeys;
     }
 
-    static List upsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows) throws SQLException {
-        List   returnKeys = new ArrayList<>();
-        String type       = getDbType(conn);
+    /**
+     * Upserts rows that all have the same columns using the db's native multi row upsert syntax.
+     */
+    static List upsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows, int batchSize) throws SQLException {
+        List         returnKeys = new ArrayList<>();
+        List<String> cols       = new ArrayList<>(rows.get(0).keySet());
+        String       type       = getDbType(conn);
 
         switch (type) {
             case "mysql":
-                mysqlUpsertBatch(conn, tableName, idxCols, rows);
+                writeRows(conn, rows, cols, batchSize, numRows -> mysqlBuildInsertOnDuplicateKeySQL(conn, tableName, cols.toArray(), numRows));
                 break;
 
             case "postgres":
-                postgresUpsertBatch(conn, tableName, idxCols, rows);
+                writeRows(conn, rows, cols, batchSize, numRows -> postgresBuildUpsertSQL(conn, tableName, idxCols, cols, numRows));
                 break;
 
             case "sqlserver":
-                sqlserverUpsertBatch(conn, tableName, idxCols, rows);
+                writeRows(conn, rows, cols, batchSize, numRows -> sqlserverBuildMergeSQL(conn, tableName, idxCols, cols, numRows));
                 break;
 
             default:
-                h2UpsertBatch(conn, tableName, idxCols, rows);
+                writeRows(conn, rows, cols, batchSize, numRows -> h2BuildMergeSQL(conn, tableName, idxCols, cols, numRows));
                 break;
         }
 
@@ -799,67 +978,55 @@ public class JdbcUtils {
 
     }
 
-    static List h2UpsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows) throws SQLException {
-        List returnKeys = new ArrayList<>();
-        for (Map row : rows) {
-            returnKeys.add(h2UpsertBatch(conn, tableName, idxCols, row));
-        }
-        return returnKeys;
+    /**
+     * The most rows that should be written by one statement.
+     * <p>
+     * SQL Server allows at most 2100 bind parameters per statement, the other supported dbs allow over 30000.
+     *
+     * @param conn      the jdbc connection
+     * @param numCols   the number of bind parameters per row
+     * @param batchSize the requested maximum
+     * @return the number of rows to write per statement
+     */
+    static int getRowsPerStatement(Connection conn, int numCols, int batchSize) {
+        int maxParams = "sqlserver".equalsIgnoreCase(getDbType(conn)) ? 2000 : 30000;
+        return Math.max(1, Math.min(batchSize, maxParams / Math.max(1, numCols)));
     }
 
-    static Object h2UpsertBatch(Connection conn, String tableName, List<String> idxCols, Map<String, Object> row) throws SQLException {
-        String sql = "";
-
-        List<String> cols = new ArrayList<>();
-        List<Object> vals = new ArrayList<>();
-        for (String col : row.keySet()) {
-            cols.add(col);
-            vals.add(row.get(col));
-        }
-
-        StringBuilder keyCols = new StringBuilder();
-        for (int i = 0; i < idxCols.size(); i++) {
-            keyCols.append(quoteCol(conn, idxCols.get(i)));
-            if (i < idxCols.size() - 1)
-                keyCols.append(", ");
-        }
+    /**
+     * Binds each row's <code>cols</code>, in order, to multi row statements built by <code>sqlBuilder</code>.
+     * <p>
+     * Full size statements share one PreparedStatement via addBatch/executeBatch and any
+     * remaining rows are written by a second, shorter, statement.
+     */
+    static void writeRows(Connection conn, List<Map<String, Object>> rows, List<String> cols, int batchSize, IntFunction<String> sqlBuilder) throws SQLException {
+        int perStmt = getRowsPerStatement(conn, cols.size(), batchSize);
+        int full    = rows.size() - rows.size() % perStmt;
 
-        sql += " MERGE INTO " + quoteCol(conn, tableName) + " (" + JdbcUtils.getColumnStr(conn, cols) + ")  KEY(" + keyCols + ") VALUES (" + getQuestionMarkStr(vals.size()) + ")";
+        if (full > 0)
+            writeRows(conn, rows.subList(0, full), cols, perStmt, sqlBuilder.apply(perStmt));
 
-        Exception ex = null;
-        try {
-            notifyBefore("upsert", sql, row);
-            return execute(conn, sql, vals);
-        } catch (Exception e) {
-            ex = e;
-            notifyError("upsert", sql, row, ex);
-            throw e;
-        } finally {
-            notifyAfter("upsert", sql, row, ex, null);
-        }
+        if (full < rows.size())
+            writeRows(conn, rows.subList(full, rows.size()), cols, rows.size() - full, sqlBuilder.apply(rows.size() - full));
     }
 
-    static void mysqlUpsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows) throws SQLException {
-
-        LinkedHashSet<String> keySet = new LinkedHashSet<>();
-        for (Map row : rows) {
-            keySet.addAll(row.keySet());
-        }
-        ArrayList<String> keys = new ArrayList<>(keySet);
-
-        String sql = mysqlBuildInsertOnDuplicateKeySQL(conn, tableName, keys.toArray());
-
+    static void writeRows(Connection conn, List<Map<String, Object>> rows, List<String> cols, int perStmt, String sql) throws SQLException {
         Exception         ex   = null;
-        PreparedStatement stmt = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
+        PreparedStatement stmt = conn.prepareStatement(sql);
         try {
             notifyBefore("upsert", sql, rows);
 
-            for (Map<String, Object> row : rows) {
-                for (int i = 0; i < keys.size(); i++) {
-                    Object value = row.get(keys.get(i));
-                    stmt.setObject(i + 1, value);
+            int idx = 1;
+            for (int i = 0; i < rows.size(); i++) {
+                Map<String, Object> row = rows.get(i);
+                for (String col : cols) {
+                    stmt.setObject(idx++, row.get(col));
+                }
+
+                if ((i + 1) % perStmt == 0) {
+                    stmt.addBatch();
+                    idx = 1;
                 }
-                stmt.addBatch();
             }
             stmt.executeBatch();
         } catch (Exception e) {
@@ -870,11 +1037,38 @@ public class JdbcUtils {
             close(stmt);
             notifyAfter("upsert", sql, rows, ex, null);
         }
+    }
+
+    /**
+     * @return "(?,?),(?,?)..." for <code>numRows</code> rows of <code>numCols</code> columns
+     */
+    static String getValuesStr(int numCols, int numRows) {
+        String        row  = "(" + getQuestionMarkStr(numCols) + ")";
+        StringBuilder buff = new StringBuilder();
+        for (int i = 0; i < numRows; i++) {
+            buff.append(row);
+            if (i < numRows - 1)
+                buff.append(",\r\n");
+        }
+        return buff.toString();
+    }
 
+    /*
+     * MERGE INTO "orders" ("OrderID", "ShipCity") KEY("OrderID") VALUES (?,?), (?,?)
+     */
+    static String h2BuildMergeSQL(Connection conn, String tableName, List<String> idxCols, List<String> cols, int numRows) {
+        return "MERGE INTO " + quoteCol(conn, tableName) + " (" + getColumnStr(conn, cols) + ") KEY(" + getColumnStr(conn, idxCols) + ") VALUES \r\n" + getValuesStr(cols.size(), numRows);
     }
 
     static String mysqlBuildInsertOnDuplicateKeySQL(Connection conn, String tableName, Object[] columnNameArray) {
-        StringBuilder sql = new StringBuilder(buildInsertSQL(conn, tableName, columnNameArray));
+        return mysqlBuildInsertOnDuplicateKeySQL(conn, tableName, columnNameArray, 1);
+    }
+
+    static String mysqlBuildInsertOnDuplicateKeySQL(Connection conn, String tableName, Object[] columnNameArray, int numRows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ");
+        sql.append(quoteCol(conn, tableName)).append(" (");
+        sql.append(getColumnStr(conn, columnNameArray)).append(") VALUES \r\n");
+        sql.append(getValuesStr(columnNameArray.length, numRows));
         sql.append(" ON DUPLICATE KEY UPDATE ");
         for (int i = 0; i < columnNameArray.length; i++) {
             Object col = columnNameArray[i];
@@ -887,120 +1081,63 @@ public class JdbcUtils {
 
     /**
      * https://stackoverflow.com/questions/17267417/how-to-upsert-merge-insert-on-duplicate-update-in-postgresql
-     *
-     * @param conn      the connection
-     * @param tableName the table
-     * @param rows      the values to upsert
-     * @return ids of the modified rows
-     * @throws SQLException when the upsert fails
      */
-    static List postgresUpsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows) throws SQLException {
-        List<Object> returnKeys = new ArrayList<>();
-        List<String> cols       = new ArrayList<>(rows.get(0).keySet());
-
-        StringBuilder buff = new StringBuilder(buildInsertSQL(conn, tableName, cols.toArray()));
-        buff.append("\r\n ON CONFLICT (");
-        for (int i = 0; i < idxCols.size(); i++) {
-            buff.append(quoteCol(conn, idxCols.get(i)));
-            if (i < idxCols.size() - 1)
-                buff.append(", ");
-        }
-        buff.append(") DO UPDATE SET ");
+    static String postgresBuildUpsertSQL(Connection conn, String tableName, List<String> idxCols, List<String> cols, int numRows) {
+        StringBuilder buff = new StringBuilder("INSERT INTO ");
+        buff.append(quoteCol(conn, tableName)).append(" (");
+        buff.append(getColumnStr(conn, cols)).append(") VALUES \r\n");
+        buff.append(getValuesStr(cols.size(), numRows));
+        buff.append("\r\n ON CONFLICT (").append(getColumnStr(conn, idxCols)).append(") DO UPDATE SET ");
         for (int i = 0; i < cols.size(); i++) {
             buff.append("\r\n ").append(quoteCol(conn, cols.get(i))).append(" = EXCLUDED.").append(quoteCol(conn, cols.get(i)));
             if (i < cols.size() - 1)
                 buff.append(", ");
         }
-
-        Exception         ex   = null;
-        String            sql  = buff.toString();
-        PreparedStatement stmt = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
-        try {
-            notifyBefore("upsert", sql, rows);
-
-            for (Map<String, Object> row : rows) {
-                for (int i = 0; i < cols.size(); i++) {
-                    Object value = row.get(cols.get(i));
-                    stmt.setObject(i + 1, value);
-                }
-                stmt.addBatch();
-            }
-            stmt.executeBatch();
-        } catch (Exception e) {
-            ex = e;
-            notifyError("upsert", sql, rows, ex);
-            throw e;
-        } finally {
-            ResultSet rs = stmt.getGeneratedKeys();
-            while (rs.next()) {
-
-                String key = rs.getString(1);
-                returnKeys.add(key);
-            }
-            close(stmt);
-            notifyAfter("upsert", sql, rows, ex, null);
-        }
-        return returnKeys;
+        return buff.toString();
     }
 
     /*
-     * https://stackoverflow.com/questions/108403/solutions-for-insert-or-update-on-sql-server
+     * https://docs.microsoft.com/en-us/sql/t-sql/statements/merge-transact-sql
+     *
+     * MERGE INTO "orders" AS "target" USING (VALUES (?,?), (?,?)) AS "source" ("OrderID", "ShipCity") ON "target"."OrderID" = "source"."OrderID"
+     * WHEN MATCHED THEN UPDATE SET "ShipCity" = "source"."ShipCity"
+     * WHEN NOT MATCHED THEN INSERT ("OrderID", "ShipCity") VALUES ("source"."OrderID", "source"."ShipCity");
      */
-    static List sqlserverUpsertBatch(Connection conn, String tableName, List<String> idxCols, List<Map<String, Object>> rows) throws SQLException {
-        List<Object> returnKeys = new ArrayList<>();
-        for (Map row : rows) {
-            sqlserverUpsertBatch(conn, tableName, idxCols, row);
-            returnKeys.add(row.get(idxCols.get(0)));
+    static String sqlserverBuildMergeSQL(Connection conn, String tableName, List<String> idxCols, List<String> cols, int numRows) {
+        String target = quoteCol(conn, "target");
+        String source = quoteCol(conn, "source");
+
+        StringBuilder buff = new StringBuilder("MERGE INTO ");
+        buff.append(quoteCol(conn, tableName)).append(" AS ").append(target);
+        buff.append(" USING (VALUES \r\n").append(getValuesStr(cols.size(), numRows)).append(") AS ").append(source);
+        buff.append(" (").append(getColumnStr(conn, cols)).append(") \r\n ON ");
+        for (int i = 0; i < idxCols.size(); i++) {
+            String col = quoteCol(conn, idxCols.get(i));
+            buff.append(target).append(".").append(col).append(" = ").append(source).append(".").append(col);
+            if (i < idxCols.size() - 1)
+                buff.append(" AND ");
         }
-        return returnKeys;
-    }
-
-    /*
-     * UPDATE "orders" SET "CustomerID" = ? , "ShipCity" = ? , "ShipCountry" = ?  WHERE "OrderID" = ?
-     * IF @@ROWCOUNT = 0
-     * INSERT INTO "orders" ("OrderID", "CustomerID", "ShipCity", "ShipCountry") VALUES (?,?,?,?)
-     */
-    static void sqlserverUpsertBatch(Connection conn, String tableName, List<String> indexCols, Map<String, Object> row) throws SQLException {
-        List<String> updateCols = new ArrayList<>(row.keySet());
-        List<String> insertCols = new ArrayList<>(row.keySet());
-
-        if (indexCols.size() < updateCols.size())
-            updateCols.removeAll(indexCols);
-
-        String sql = buildUpdateSQL(conn, tableName, updateCols.toArray(), indexCols.toArray());
-
-        sql += "\r\n IF @@ROWCOUNT = 0 ";
-        sql += "\r\n " + buildInsertSQL(conn, tableName, insertCols.toArray());
-
-        Exception ex = null;
-
-        PreparedStatement stmt = conn.prepareStatement(sql);
-        try {
-            notifyBefore("upsert", sql, row);
 
-            int colNum = 1;
-            for (String col : updateCols) {
-                Object value = row.get(col);
-                stmt.setObject(colNum++, value);
-            }
-            for (String key : indexCols) {
-                Object value = row.get(key);
-                stmt.setObject(colNum++, value);
-            }
-            for (String col : insertCols) {
-                Object value = row.get(col);
-                stmt.setObject(colNum++, value);
+        List<String> updateCols = new ArrayList<>(cols);
+        updateCols.removeAll(idxCols);
+        if (updateCols.size() > 0) {
+            buff.append("\r\n WHEN MATCHED THEN UPDATE SET ");
+            for (int i = 0; i < updateCols.size(); i++) {
+                String col = quoteCol(conn, updateCols.get(i));
+                buff.append(col).append(" = ").append(source).append(".").append(col);
+                if (i < updateCols.size() - 1)
+                    buff.append(", ");
             }
+        }
 
-            stmt.execute();
-        } catch (Exception e) {
-            ex = e;
-            notifyError("upsert", sql, row, ex);
-            throw e;
-        } finally {
-            close(stmt);
-            notifyAfter("upsert", sql, row, ex, null);
+        buff.append("\r\n WHEN NOT MATCHED THEN INSERT (").append(getColumnStr(conn, cols)).append(") VALUES (");
+        for (int i = 0; i < cols.size(); i++) {
+            buff.append(source).append(".").append(quoteCol(conn, cols.get(i)));
+            if (i < cols.size() - 1)
+                buff.append(", ");
         }
+        buff.append(");");
+        return buff.toString();
     }
 
     public static void runSql(Connection conn, String sqlString) throws SQLException {
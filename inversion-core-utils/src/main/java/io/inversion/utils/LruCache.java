@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, least recently used, thread safe cache that counts hits, misses and evictions.
+ * <p>
+ * The cache is bounded by the total weight of its entries.  Without a {@link Weigher} every entry weighs 1 so
+ * <code>maxWeight</code> is simply the maximum number of entries.  Entries may also be given a time to live.
+ * <p>
+ * With more than one segment, keys are spread across independently locked segments that each hold an equal share of
+ * <code>maxWeight</code> so lookups of different keys rarely wait on each other.  Recency is tracked per segment which
+ * approximates a single LRU closely enough for caching.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LruCache<K, V> {
+
+    /**
+     * Computes the weight of an entry, for example its approximate size in bytes.
+     */
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    /**
+     * Notified, while the entry's segment is locked, each time an entry is evicted, expires, is replaced or is removed.
+     * <p>
+     * Not notified by {@link #clear()}.
+     */
+    public interface RemovalListener<K, V> {
+        void onRemoval(K key, V value);
+    }
+
+    static final class Entry<V> {
+        final V    value;
+        final long weight;
+        final long expiresAt;
+
+        Entry(V value, long weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    static final class Segment<K, V> {
+        final ReentrantLock    lock    = new ReentrantLock();
+        final Map<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        long weight = 0;
+    }
+
+    final long                  maxWeight;
+    final long                  segmentMaxWeight;
+    final Segment<K, V>[]       segments;
+    final Weigher<K, V>         weigher;
+    final RemovalListener<K, V> listener;
+    final AtomicLong            hits      = new AtomicLong();
+    final AtomicLong            misses    = new AtomicLong();
+    final AtomicLong            evictions = new AtomicLong();
+
+    public LruCache(long maxWeight) {
+        this(maxWeight, 1, null, null);
+    }
+
+    public LruCache(long maxWeight, int segments) {
+        this(maxWeight, segments, null, null);
+    }
+
+    /**
+     * @param maxWeight the maximum total weight of the entries, less than 1 disables the cache
+     * @param segments  the number of independently locked segments, rounded up to a power of 2
+     * @param weigher   computes entry weights, null to weigh every entry as 1
+     * @param listener  notified of removals, may be null
+     */
+    public LruCache(long maxWeight, int segments, Weigher<K, V> weigher, RemovalListener<K, V> listener) {
+        int count = 1;
+        while (count < segments)
+            count <<= 1;
+
+        this.maxWeight = maxWeight;
+        this.segmentMaxWeight = (maxWeight + count - 1) / count;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+            this.segments[i] = new Segment<>();
+        this.weigher = weigher;
+        this.listener = listener;
+    }
+
+    Segment<K, V> segment(Object key) {
+        if (segments.length == 1)
+            return segments[0];
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * Looks up the value for <code>key</code>, recording a hit or a miss.
+     * <p>
+     * An expired entry is removed and counts as a miss.
+     *
+     * @param key the key
+     * @return the cached value or null
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segment(key);
+        V             value   = null;
+
+        segment.lock.lock();
+        try {
+            Entry<V> entry = segment.entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > 0 && entry.expiresAt <= System.currentTimeMillis())
+                    remove(segment, key);
+                else
+                    value = entry.value;
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+
+        if (isHit(key, value))
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+
+        return value;
+    }
+
+    /**
+     * Subclasses may override to decide which found values count as a hit.
+     *
+     * @param key   the key that was looked up
+     * @param value the value found, null if there was none
+     * @return true if the lookup should be counted as a hit
+     */
+    protected boolean isHit(K key, V value) {
+        return value != null;
+    }
+
+    public boolean put(K key, V value) {
+        return put(key, value, 0);
+    }
+
+    /**
+     * Caches <code>value</code> and then evicts the least recently used entries until the segment fits in its share of <code>maxWeight</code>.
+     * <p>
+     * A value heavier than its segment's share by itself is not cached.
+     *
+     * @param key   the key
+     * @param value the value
+     * @param ttl   milliseconds until the entry expires, 0 means never
+     * @return true if the value was cached
+     */
+    public boolean put(K key, V value, long ttl) {
+        long weight = weigher == null ? 1 : weigher.weigh(key, value);
+        if (weight > segmentMaxWeight)
+            return false;
+
+        Entry<V>      entry   = new Entry<>(value, weight, ttl > 0 ? System.currentTimeMillis() + ttl : 0);
+        Segment<K, V> segment = segment(key);
+
+        segment.lock.lock();
+        try {
+            remove(segment, key);
+            segment.entries.put(key, entry);
+            segment.weight += weight;
+
+            Iterator<Map.Entry<K, Entry<V>>> it = segment.entries.entrySet().iterator();
+            while (segment.weight > segmentMaxWeight && it.hasNext()) {
+                Map.Entry<K, Entry<V>> eldest = it.next();
+                it.remove();
+                removed(segment, eldest.getKey(), eldest.getValue());
+                evictions.incrementAndGet();
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * @param key the key
+     * @return the removed value or null
+     */
+    public V remove(K key) {
+        Segment<K, V> segment = segment(key);
+        segment.lock.lock();
+        try {
+            return remove(segment, key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    V remove(Segment<K, V> segment, K key) {
+        Entry<V> entry = segment.entries.remove(key);
+        if (entry == null)
+            return null;
+        removed(segment, key, entry);
+        return entry.value;
+    }
+
+    void removed(Segment<K, V> segment, K key, Entry<V> entry) {
+        segment.weight -= entry.weight;
+        if (listener != null)
+            listener.onRemoval(key, entry.value);
+    }
+
+    /**
+     * Removes every entry without notifying the RemovalListener.
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.entries.clear();
+                segment.weight = 0;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the total weight of the cached entries
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                weight += segment.weight;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public int getSegments() {
+        return segments.length;
+    }
+
+    /**
+     * @return the number of lookups that found a value
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that did not find a value
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of entries removed to stay under <code>maxWeight</code>
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
@@ -17,6 +17,7 @@
 package io.inversion.utils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -66,9 +67,21 @@ import java.util.regex.Pattern;
  */
 
 public class Path implements Comparable<Path> {
+
+    /**
+     * The maximum number of distinct regexes that will be held by {@link #compileRegex(String)}.
+     */
+    static final int                  MAX_CACHED_PATTERNS = 1024;
+    static final Map<String, Pattern> patterns            = new ConcurrentHashMap<>();
+
     List<String> parts = new ArrayList<>();
     List<String> lc    = new ArrayList<>();
 
+    /**
+     * Lazily built by {@link #compile()} and discarded whenever the parts are modified.
+     */
+    transient Compiled compiled = null;
+
     public String getTemplate(){
         StringBuilder b = new StringBuilder();
         for(int i=0; i<size(); i++){
@@ -221,6 +234,7 @@ public class Path implements Comparable<Path> {
         lc.clear();
         parts.addAll(path.parts);
         lc.addAll(path.lc);
+        compiled = path.compiled;
         return this;
     }
 
@@ -233,6 +247,7 @@ public class Path implements Comparable<Path> {
         Path copy = new Path();
         copy.parts.addAll(parts);
         copy.lc.addAll(lc);
+        copy.compiled = compiled;
         return copy;
     }
 
@@ -340,6 +355,7 @@ public class Path implements Comparable<Path> {
 
                 this.parts.add(part);
                 lc.add(part.toLowerCase());
+                compiled = null;
             }
         }
         return this;
@@ -348,6 +364,7 @@ public class Path implements Comparable<Path> {
     public Path set(int index, String part) {
         parts.set(index, part);
         lc.set(index, part.toLowerCase());
+        compiled = null;
         return this;
     }
 
@@ -367,6 +384,7 @@ public class Path implements Comparable<Path> {
     public String remove(int index) {
         if (index < parts.size()) {
             lc.remove(index);
+            compiled = null;
             return parts.remove(index);
         }
         return null;
@@ -650,54 +668,7 @@ public class Path implements Comparable<Path> {
     }
 
     public boolean matches(Path toMatch, boolean bidirectional) {
-
-        int  len = Math.max(size(), toMatch.size());
-        Path a   = this;
-        Path b   = toMatch;
-
-        boolean aOptional = false;
-        boolean bOptional = false;
-        for (int i = 0; i < len; i++) {
-            String aVal = a.get(i);
-            String bVal = b.get(i);
-
-            if ("*".equals(aVal) || "*".equals(bVal))
-                return true;
-
-            aOptional = aOptional || (aVal != null && aVal.startsWith("["));
-            bOptional = bOptional || (bVal != null && bVal.startsWith("["));
-
-            if (aVal == null || bVal == null)
-                return aOptional || bOptional;
-
-            if (a.isVar(i) && b.isVar(i)) {
-                continue;
-            } else if (a.isVar(i)) {
-                String regex = a.getRegex(i);
-                if (regex != null) {
-                    String value = b.get(i);
-                    value = !value.startsWith("[") ? value : value.substring(1, value.length() - 1);
-                    Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                    if (!pattern.matcher(value).matches())
-                        return false;
-                }
-            } else if (bidirectional && b.isVar(i)) {
-                String regex = b.getRegex(i);
-                if (regex != null) {
-                    String value = a.get(i);
-                    value = !value.startsWith("[") ? value : value.substring(1, value.length() - 1);
-                    Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                    if (!pattern.matcher(value).matches())
-                        return false;
-                }
-            } else {
-                aVal = !aVal.startsWith("[") ? aVal : aVal.substring(1, aVal.length() - 1);
-                bVal = !bVal.startsWith("[") ? bVal : bVal.substring(1, bVal.length() - 1);
-                if (!aVal.equalsIgnoreCase(bVal))
-                    return false;
-            }
-        }
-        return true;
+        return compile().matches(toMatch.compile(), bidirectional);
     }
 
 
@@ -752,21 +723,17 @@ public class Path implements Comparable<Path> {
      * @return the same Path object that was passed in but potentially now shorter as matching segments may have been consumed
      */
     public Path extract(Map params, Path matchingConcretePath, boolean greedy) {
-        Path matchedPath = new Path();
+        Path     matchedPath = new Path();
+        Compiled c           = compile();
 
         boolean restOptional = false;
         int     i;
         int     nextOptional = 0;
-        for (i = 0; i < size() && matchingConcretePath.size() > 0; i++) {
-            String myPart = get(i);
-
-            boolean partOptional = myPart.startsWith("[") && myPart.endsWith("]");
-
-            if (partOptional) {
+        for (i = 0; i < c.size && matchingConcretePath.size() > 0; i++) {
+            if (c.optionals[i])
                 restOptional = true;
-                myPart = myPart.substring(1, myPart.length() - 1);
-            }
 
+            String myPart = c.values[i];
             if (myPart.equals("*"))
                 break;
 
@@ -779,16 +746,12 @@ public class Path implements Comparable<Path> {
                 theirPart = matchingConcretePath.get(nextOptional++);
             }
 
-            if (isVar(i)) {
-                String name  = getVarName(i);
-                String regex = getRegex(i);
-                if (regex != null) {
-                    Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-                    if (!pattern.matcher(theirPart).matches()) {
-                        throw Utils.ex("Attempting to extract values from an unmatched path: '{}', '{}'", this, matchingConcretePath.toString());
-                    }
+            if (c.vars[i]) {
+                Pattern pattern = c.patterns[i];
+                if (pattern != null && !pattern.matcher(theirPart).matches()) {
+                    throw Utils.ex("Attempting to extract values from an unmatched path: '{}', '{}'", this, matchingConcretePath.toString());
                 }
-                params.put(name, theirPart);
+                params.put(c.varNames[i], theirPart);
 
             } else if (!myPart.equalsIgnoreCase(theirPart)) {
                 throw Utils.ex("Attempting to extract values from an unmatched path: '{}', '{}'", this, matchingConcretePath.toString());
@@ -796,8 +759,8 @@ public class Path implements Comparable<Path> {
         }
 
         //null out any trailing vars
-        for (; i < size(); i++) {
-            String var = getVarName(i);
+        for (; i < c.size; i++) {
+            String var = c.varNames[i];
             if (var != null)
                 params.put(var, null);
         }
@@ -891,6 +854,175 @@ public class Path implements Comparable<Path> {
         return paths;
     }
 
+    /**
+     * Gets the immutable pre-parsed form of this Path used for matching.
+     * <p>
+     * The compiled form is built on first use and reused until this Path is modified so repeated calls to
+     * {@link #matches(Path, boolean)} and {@link #extract(Map, Path, boolean)} do not re-parse
+     * segments or recompile regexes.
+     *
+     * @return the compiled form of this Path
+     */
+    public Compiled compile() {
+        Compiled c = compiled;
+        if (c == null) {
+            c = new Compiled(parts, lc);
+            compiled = c;
+        }
+        return c;
+    }
 
+    /**
+     * Compiles <code>regex</code> with Pattern.CASE_INSENSITIVE caching the result so that the
+     * same regex used by many Paths is only compiled once.
+     *
+     * @param regex the regular expression to compile
+     * @return the compiled case insensitive Pattern
+     */
+    public static Pattern compileRegex(String regex) {
+        Pattern pattern = patterns.get(regex);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+            if (patterns.size() < MAX_CACHED_PATTERNS)
+                patterns.put(regex, pattern);
+        }
+        return pattern;
+    }
 
+    /**
+     * An immutable snapshot of a Path with each segment pre-classified so that matching can be performed
+     * with array lookups and without allocating substrings.
+     * <p>
+     * For each segment index the compiled form records if the segment is a variable, optional, or a wildcard,
+     * the segment value with any optional brackets removed, the lower cased value, the variable name binding,
+     * and the precompiled regex.
+     */
+    public static final class Compiled {
+        final int       size;
+        final String[]  values;
+        final String[]  lowercase;
+        final String[]  varNames;
+        final Pattern[] patterns;
+        final boolean[] vars;
+        final boolean[] optionals;
+        final boolean[] wildcards;
+
+        Compiled(List<String> parts, List<String> lc) {
+            size = parts.size();
+            values = new String[size];
+            lowercase = new String[size];
+            varNames = new String[size];
+            patterns = new Pattern[size];
+            vars = new boolean[size];
+            optionals = new boolean[size];
+            wildcards = new boolean[size];
+
+            for (int i = 0; i < size; i++) {
+                String part = parts.get(i);
+                String low  = lc.get(i);
+
+                wildcards[i] = Path.isWildcard(part);
+                optionals[i] = part.startsWith("[");
+                if (optionals[i]) {
+                    values[i] = part.substring(1, part.length() - 1);
+                    lowercase[i] = low.substring(1, low.length() - 1);
+                } else {
+                    values[i] = part;
+                    lowercase[i] = low;
+                }
+
+                vars[i] = Path.isVar(part);
+                if (vars[i]) {
+                    String var = values[i];
+                    if (var.startsWith("{")) {
+                        int colon = var.indexOf(":");
+                        varNames[i] = colon > 0 ? var.substring(1, colon).trim() : var.substring(1, var.lastIndexOf("}"));
+                    }
+                    String regex = getRegex(part);
+                    if (regex != null)
+                        patterns[i] = compileRegex(regex);
+                }
+            }
+        }
+
+        boolean matches(Compiled b, boolean bidirectional) {
+            Compiled a   = this;
+            int      len = Math.max(a.size, b.size);
+
+            boolean aOptional = false;
+            boolean bOptional = false;
+            for (int i = 0; i < len; i++) {
+                boolean aHas = i < a.size;
+                boolean bHas = i < b.size;
+
+                if ((aHas && a.wildcards[i]) || (bHas && b.wildcards[i]))
+                    return true;
+
+                aOptional = aOptional || (aHas && a.optionals[i]);
+                bOptional = bOptional || (bHas && b.optionals[i]);
+
+                if (!aHas || !bHas)
+                    return aOptional || bOptional;
+
+                if (a.vars[i] && b.vars[i]) {
+                    continue;
+                } else if (a.vars[i]) {
+                    Pattern pattern = a.patterns[i];
+                    if (pattern != null && !pattern.matcher(b.values[i]).matches())
+                        return false;
+                } else if (bidirectional && b.vars[i]) {
+                    Pattern pattern = b.patterns[i];
+                    if (pattern != null && !pattern.matcher(a.values[i]).matches())
+                        return false;
+                } else if (!a.values[i].equalsIgnoreCase(b.values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param index the segment index
+         * @return the segment with any optional brackets removed
+         */
+        public String getValue(int index) {
+            return values[index];
+        }
+
+        /**
+         * @param index the segment index
+         * @return the lower cased segment with any optional brackets removed
+         */
+        public String getLowercase(int index) {
+            return lowercase[index];
+        }
+
+        public String getVarName(int index) {
+            return varNames[index];
+        }
+
+        /**
+         * @param index the segment index
+         * @return the precompiled case insensitive regex for a variable segment or null if the segment has no regex
+         */
+        public Pattern getPattern(int index) {
+            return patterns[index];
+        }
+
+        public boolean isVar(int index) {
+            return vars[index];
+        }
+
+        public boolean isOptional(int index) {
+            return optionals[index];
+        }
+
+        public boolean isWildcard(int index) {
+            return wildcards[index];
+        }
+    }
 }
@@ -1123,6 +1123,34 @@ public class Utils {
         return buffer.toString();
     }
 
+    /**
+     * Removes carriage returns, converts newlines to spaces and collapses runs of spaces into a single space.
+     * <p>
+     * Equivalent to <code>str.replaceAll("\r", "").replaceAll("\n", " ").replaceAll(" +", " ")</code> in a single pass without regexes.
+     *
+     * @param str the string to collapse
+     * @return the collapsed string or null if <code>str</code> is null
+     */
+    public static String collapseWhitespace(String str) {
+        if (str == null)
+            return null;
+
+        StringBuilder buff = new StringBuilder(str.length());
+        char          prev = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '\r')
+                continue;
+            if (c == '\n')
+                c = ' ';
+            if (c == ' ' && prev == ' ')
+                continue;
+            buff.append(c);
+            prev = c;
+        }
+        return buff.toString();
+    }
+
     public static boolean checkSame(String str1, String str2) {
         if (str1.equals(str2)) {
             System.out.println("SAME");
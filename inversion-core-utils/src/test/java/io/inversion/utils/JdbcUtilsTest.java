@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcUtilsTest {
+
+    /**
+     * Records each prepared statement's sql followed by the number of parameters bound in each of its batches.
+     */
+    static Connection recordingConnection(String dbType, List<String> log) {
+        return (Connection) Proxy.newProxyInstance(JdbcUtilsTest.class.getClassLoader(), new Class[]{Connection.class}, (conn, connMethod, connArgs) -> {
+            switch (connMethod.getName()) {
+                case "toString":
+                    return dbType + " connection";
+                case "prepareStatement":
+                    log.add((String) connArgs[0]);
+                    int[] params = {0};
+                    return Proxy.newProxyInstance(JdbcUtilsTest.class.getClassLoader(), new Class[]{PreparedStatement.class}, (stmt, method, args) -> {
+                        switch (method.getName()) {
+                            case "setObject":
+                                params[0] = Math.max(params[0], (Integer) args[0]);
+                                return null;
+                            case "addBatch":
+                                log.add("batch " + params[0]);
+                                params[0] = 0;
+                                return null;
+                            case "executeBatch":
+                                if (params[0] > 0)
+                                    log.add("batch " + params[0]);
+                                return new int[0];
+                            default:
+                                return null;
+                        }
+                    });
+                default:
+                    return null;
+            }
+        });
+    }
+
+    static Map<String, Object> row(Object... keyValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length - 1; i += 2)
+            row.put((String) keyValues[i], keyValues[i + 1]);
+        return row;
+    }
+
+    @Test
+    public void test_upsert_writes_multi_row_statements() throws Exception {
+        List<String> log  = new ArrayList<>();
+        Connection   conn = recordingConnection("postgres", log);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            rows.add(row("id", i, "name", "name" + i));
+        rows.add(2, row("id", 10, "city", "Paris"));
+
+        List<Rows.Row> keys = JdbcUtils.upsert(conn, "orders", Utils.asList("id"), rows, 2);
+
+        assertEquals(6, keys.size());
+        assertEquals(10, keys.get(2).get("id"), "keys are returned in row order");
+        assertEquals(4, keys.get(5).get("id"));
+
+        assertEquals(7, log.size(), log.toString());
+        assertTrue(log.get(0).contains("ON CONFLICT (\"id\") DO UPDATE SET"), log.get(0));
+        assertTrue(log.get(0).contains("(?,?),\r\n(?,?)"), "full chunks share one two row statement");
+        assertEquals("batch 4", log.get(1));
+        assertEquals("batch 4", log.get(2));
+        assertFalse(log.get(3).contains("),"), "the remainder is written by a one row statement");
+        assertEquals("batch 2", log.get(4));
+        assertTrue(log.get(5).contains("\"city\""), "rows with other columns are grouped separately");
+    }
+
+    @Test
+    public void test_upsert_flushes_before_a_repeated_key() throws Exception {
+        List<String> log  = new ArrayList<>();
+        Connection   conn = recordingConnection("h2", log);
+
+        List<Map<String, Object>> rows = Utils.asList(row("id", 1, "name", "a"), row("id", 2, "name", "b"), row("id", 1, "name", "c"));
+        JdbcUtils.upsert(conn, "orders", Utils.asList("id"), rows, 100);
+
+        assertEquals(Utils.asList("batch 4", "batch 2"), Utils.asList(log.get(1), log.get(3)));
+        assertTrue(log.get(0).startsWith("MERGE INTO \"orders\" (\"id\", \"name\") KEY(\"id\") VALUES"), log.get(0));
+    }
+
+    @Test
+    public void test_sqlserver_merge() {
+        Connection conn = recordingConnection("sqlserver", new ArrayList<>());
+        String     sql  = JdbcUtils.sqlserverBuildMergeSQL(conn, "orders", Utils.asList("id"), Utils.asList("id", "name"), 2);
+
+        assertTrue(sql.contains("USING (VALUES \r\n(?,?),\r\n(?,?)) AS \"source\""), sql);
+        assertTrue(sql.contains("WHEN MATCHED THEN UPDATE SET \"name\" = \"source\".\"name\""), sql);
+        assertTrue(sql.endsWith("VALUES (\"source\".\"id\", \"source\".\"name\");"), sql);
+        assertEquals(100, JdbcUtils.getRowsPerStatement(conn, 20, 500), "sqlserver is limited to 2100 parameters");
+
+        sql = JdbcUtils.sqlserverBuildMergeSQL(conn, "orders", Utils.asList("id"), Utils.asList("id"), 1);
+        assertFalse(sql.contains("WHEN MATCHED"), sql);
+    }
+}
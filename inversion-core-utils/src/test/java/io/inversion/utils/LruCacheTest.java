@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LruCacheTest {
+
+    @Test
+    public void test_least_recently_used_is_evicted() {
+        List<String>             removed = new ArrayList<>();
+        LruCache<String, String> cache   = new LruCache<>(2, 1, null, (key, value) -> removed.add(key));
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");
+        cache.put("c", "C");
+
+        assertEquals(2, cache.size());
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+
+        cache.put("a", "A2");
+        assertEquals("C", cache.remove("c"));
+        assertEquals(List.of("b", "a", "c"), removed, "evicted, replaced and removed entries are reported");
+
+        LruCache<String, String> disabled = new LruCache<>(0);
+        assertFalse(disabled.put("a", "A"));
+        assertEquals(0, disabled.size());
+    }
+
+    @Test
+    public void test_weight_and_ttl() throws Exception {
+        LruCache<String, String> cache = new LruCache<>(10, 1, (key, value) -> value.length(), null);
+        assertFalse(cache.put("big", "12345678901"), "an entry heavier than the cache is not cached");
+        cache.put("a", "12345");
+        cache.put("b", "1234");
+        cache.put("c", "12");
+        assertNull(cache.get("a"));
+        assertEquals(6, cache.getWeight());
+
+        cache.put("d", "1", 1);
+        Thread.sleep(5);
+        assertNull(cache.get("d"));
+        assertEquals(6, cache.getWeight());
+    }
+
+    @Test
+    public void test_segments() {
+        LruCache<Integer, Integer> cache = new LruCache<>(1000, 6);
+        assertEquals(8, cache.getSegments());
+
+        for (int i = 0; i < 2000; i++)
+            cache.put(i, i);
+
+        assertTrue(cache.size() <= 1000);
+        assertEquals(Integer.valueOf(1999), cache.get(1999));
+        assertEquals(2000 - cache.size(), cache.getEvictions());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+}
@@ -19,17 +19,42 @@ package io.inversion.redis;
 import io.inversion.ApiException;
 import io.inversion.Collection;
 import io.inversion.Db;
+import io.inversion.Index;
+import io.inversion.Property;
 import io.inversion.Results;
 import io.inversion.rql.Term;
+import io.inversion.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
-
-import java.util.List;
-import java.util.Map;
-
+import redis.clients.jedis.Pipeline;
+
+import java.util.*;
+
+/**
+ * Stores each record as a Redis hash and answers queries with the help of per column index sets.
+ * <p>
+ * For a collection with table name <code>orders</code> the keys are:
+ * <ul>
+ *  <li><code>orders:{resourceKey}</code> - a hash of column name to value for each record, see {@link Collection#encodeKeyFromColumnNames(Map)}
+ *  <li><code>orders:$keys</code> - a set of the resource keys of every record
+ *  <li><code>orders:$idx:{column}:{value}</code> - a set of the resource keys of the records with that value, for every column of every Index except a single column resource index
+ *  <li><code>orders:$seq</code> - the counter used to generate keys for records posted without one
+ * </ul>
+ * All keys start with <code>prefix</code>.
+ * <p>
+ * Upserts and deletes are batched into two pipelined round trips, one to read the indexed values being replaced
+ * and one to write the records and move their keys between index sets.  The two steps are not atomic so
+ * concurrent writes to the same record can leave a stale key in an index set.  Stale keys only cost a wasted read
+ * because every filter is also evaluated against the records themselves, see {@link RedisQuery}.
+ * <p>
+ * Only resource key and indexed column <code>eq</code>/<code>in</code> filters narrow what is read.  Any other
+ * select, including an unfiltered paged GET, does an SMEMBERS of <code>{table}:$keys</code> and pipelined HGETALLs of
+ * every record in the collection before sorting and paging in process, so its cost grows with the size of the
+ * collection on every page.  Add an Index on the columns you filter on for anything but small collections.
+ */
 public class RedisDb extends Db<RedisDb> {
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -49,26 +74,286 @@ public class RedisDb extends Db<RedisDb> {
     protected int     numTestsPerEvictionRun        = 3;
     protected boolean blockWhenExhausted            = true;
 
-    protected String nocacheParam      = "nocache";
-    protected int    readSocketTimeout = 2500;                               // time in milliseconds
-    protected int    ttl               = 15552000;                           // time to live 15,552,000s == 180 days
+    /**
+     * Prepended to every key this Db reads or writes.
+     */
+    protected String prefix = "";
+
+    protected int readSocketTimeout = 2500; // time in milliseconds
 
     @Override
-    public Results doSelect(Collection table, List<Term> queryTerms) throws ApiException {
-        // TODO Auto-generated method stub
-        return null;
+    public Results doSelect(Collection table, List<Term> columnMappedTerms) throws ApiException {
+        return new RedisQuery(this, table, columnMappedTerms).doSelect();
     }
 
     @Override
     public List<String> doUpsert(Collection table, List<Map<String, Object>> rows) throws ApiException {
-        // TODO Auto-generated method stub
-        return null;
+        List<String> keys    = new ArrayList<>();
+        List<String> indexed = getIndexedColumns(table);
+
+        try (Jedis jedis = getRedisClient()) {
+            assignKeys(jedis, table, rows);
+
+            for (Map<String, Object> row : rows) {
+                String key = table.encodeKeyFromColumnNames(row);
+                if (key == null)
+                    throw ApiException.new400BadRequest("A record for '{}' is missing its resource key: {}", table.getName(), row);
+                keys.add(key);
+            }
+
+            List<List<String>> previous = getIndexedValues(jedis, table, keys, indexed);
+
+            Pipeline pipe = jedis.pipelined();
+            for (int i = 0; i < rows.size(); i++) {
+                Map<String, Object> row       = rows.get(i);
+                String              key       = keys.get(i);
+                String              recordKey = getRecordKey(table, key);
+
+                Map<String, String> values = new LinkedHashMap<>();
+                List<String>        nulls  = new ArrayList<>();
+                for (Map.Entry<String, Object> entry : row.entrySet()) {
+                    String value = toString(entry.getValue());
+                    if (value == null)
+                        nulls.add(entry.getKey());
+                    else
+                        values.put(entry.getKey(), value);
+                }
+
+                if (values.size() > 0)
+                    pipe.hset(recordKey, values);
+                if (nulls.size() > 0)
+                    pipe.hdel(recordKey, nulls.toArray(new String[0]));
+                pipe.sadd(getKeysKey(table), key);
+
+                for (int j = 0; j < indexed.size(); j++) {
+                    String column = indexed.get(j);
+                    if (!row.containsKey(column))
+                        continue;
+
+                    String before = previous.get(i).get(j);
+                    String after  = toString(row.get(column));
+                    if (Objects.equals(before, after))
+                        continue;
+
+                    if (before != null)
+                        pipe.srem(getIndexKey(table, column, before), key);
+                    if (after != null)
+                        pipe.sadd(getIndexKey(table, column, after), key);
+                }
+            }
+            pipe.sync();
+        }
+        return keys;
     }
 
+    /**
+     * Deletes the records and removes their keys from the index sets.
+     * <p>
+     * Rows identified by a unique index other than the resource index are looked up first.
+     */
     @Override
     public void doDelete(Collection table, List<Map<String, Object>> indexValues) throws ApiException {
-        // TODO Auto-generated method stub
+        Set<String> keys = new LinkedHashSet<>();
+        for (Map<String, Object> values : indexValues) {
+            String key = table.encodeKeyFromColumnNames(values);
+            if (key != null) {
+                keys.add(key);
+            } else {
+                List<Term> terms = new ArrayList<>();
+                for (String column : values.keySet()) {
+                    if (values.get(column) != null)
+                        terms.add(Term.term(null, "eq", column, toString(values.get(column))));
+                }
+                for (Object row : new RedisQuery(this, table, terms).doSelect().getRows())
+                    keys.add(table.encodeKeyFromColumnNames((Map<String, Object>) row));
+            }
+        }
+
+        if (keys.isEmpty())
+            return;
+
+        List<String> keyList = new ArrayList<>(keys);
+        List<String> indexed = getIndexedColumns(table);
+
+        try (Jedis jedis = getRedisClient()) {
+            List<List<String>> previous = getIndexedValues(jedis, table, keyList, indexed);
+
+            Pipeline pipe = jedis.pipelined();
+            for (int i = 0; i < keyList.size(); i++) {
+                String key = keyList.get(i);
+                pipe.del(getRecordKey(table, key));
+                pipe.srem(getKeysKey(table), key);
+
+                for (int j = 0; j < indexed.size(); j++) {
+                    String before = previous.get(i).get(j);
+                    if (before != null)
+                        pipe.srem(getIndexKey(table, indexed.get(j), before), key);
+                }
+            }
+            pipe.sync();
+        }
+    }
+
+    /**
+     * Generates resource keys, from the <code>$seq</code> counter, for rows that do not have one.
+     * <p>
+     * A single INCRBY reserves keys for the whole batch.
+     */
+    protected void assignKeys(Jedis jedis, Collection table, List<Map<String, Object>> rows) {
+        List<Map<String, Object>> missing = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            if (table.encodeKeyFromColumnNames(row) == null)
+                missing.add(row);
+        }
+
+        if (missing.isEmpty())
+            return;
+
+        Index index = table.getResourceIndex();
+        if (index == null || index.size() != 1)
+            throw ApiException.new400BadRequest("Keys can only be generated for '{}' if it has a single column resource index.", table.getName());
+
+        Property property = index.getProperty(0);
+        long     next     = jedis.incrBy(getSequenceKey(table), missing.size()) - missing.size() + 1;
+        for (Map<String, Object> row : missing)
+            row.put(property.getColumnName(), castJsonInput(property, next++));
+    }
+
+    /**
+     * Reads the current values of the <code>indexed</code> columns of each record with one pipelined HMGET per record.
+     *
+     * @return a list of values, in <code>indexed</code> order, for each key, missing records have all null values
+     */
+    protected List<List<String>> getIndexedValues(Jedis jedis, Collection table, List<String> keys, List<String> indexed) {
+        List<List<String>> values = new ArrayList<>();
+        if (indexed.isEmpty()) {
+            for (int i = 0; i < keys.size(); i++)
+                values.add(Collections.emptyList());
+            return values;
+        }
+
+        String[]                                         fields    = indexed.toArray(new String[0]);
+        List<redis.clients.jedis.Response<List<String>>> responses = new ArrayList<>();
+        Pipeline                                         pipe      = jedis.pipelined();
+        for (String key : keys)
+            responses.add(pipe.hmget(getRecordKey(table, key), fields));
+        pipe.sync();
+
+        for (redis.clients.jedis.Response<List<String>> response : responses)
+            values.add(response.get());
+        return values;
+    }
+
+    /**
+     * Reads records with one pipelined HGETALL per key, casting each value to the type of its Property.
+     *
+     * @param table the collection
+     * @param keys  the resource keys to read
+     * @return the records that exist, in <code>keys</code> order
+     */
+    public List<Map<String, Object>> getRows(Collection table, List<String> keys) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        if (keys.isEmpty())
+            return rows;
+
+        List<redis.clients.jedis.Response<Map<String, String>>> responses = new ArrayList<>();
+        try (Jedis jedis = getRedisClient()) {
+            Pipeline pipe = jedis.pipelined();
+            for (String key : keys)
+                responses.add(pipe.hgetAll(getRecordKey(table, key)));
+            pipe.sync();
+        }
+
+        for (redis.clients.jedis.Response<Map<String, String>> response : responses) {
+            Map<String, String> hash = response.get();
+            if (hash == null || hash.isEmpty())
+                continue;
 
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (Map.Entry<String, String> field : hash.entrySet()) {
+                Property property = table.getPropertyByColumnName(field.getKey());
+                row.put(field.getKey(), property == null ? field.getValue() : castJsonInput(property, field.getValue()));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the resource keys of every record in <code>table</code>
+     */
+    public Set<String> getKeys(Collection table) {
+        try (Jedis jedis = getRedisClient()) {
+            return new LinkedHashSet<>(jedis.smembers(getKeysKey(table)));
+        }
+    }
+
+    public Set<String> sinter(List<String> setKeys) {
+        try (Jedis jedis = getRedisClient()) {
+            return new LinkedHashSet<>(jedis.sinter(setKeys.toArray(new String[0])));
+        }
+    }
+
+    public Set<String> sunion(List<String> setKeys) {
+        try (Jedis jedis = getRedisClient()) {
+            return new LinkedHashSet<>(jedis.sunion(setKeys.toArray(new String[0])));
+        }
+    }
+
+    /**
+     * Every column of every Index gets index sets except the column of a single column resource index,
+     * those records are found directly by key.
+     *
+     * @param table the collection
+     * @return the columns with index sets
+     */
+    public List<String> getIndexedColumns(Collection table) {
+        Index        resourceIndex = table.getResourceIndex();
+        List<String> columns       = new ArrayList<>();
+        for (Index index : table.getIndexes()) {
+            if (index == resourceIndex && index.size() == 1)
+                continue;
+            for (String column : index.getColumnNames()) {
+                if (!columns.contains(column))
+                    columns.add(column);
+            }
+        }
+        return columns;
+    }
+
+    public boolean isIndexed(Collection table, String column) {
+        return getIndexedColumns(table).contains(column);
+    }
+
+    public String getRecordKey(Collection table, String resourceKey) {
+        return prefix + table.getTableName() + ":" + resourceKey;
+    }
+
+    public String getKeysKey(Collection table) {
+        return prefix + table.getTableName() + ":$keys";
+    }
+
+    public String getIndexKey(Collection table, String column, Object value) {
+        return prefix + table.getTableName() + ":$idx:" + column + ":" + toString(value);
+    }
+
+    public String getSequenceKey(Collection table) {
+        return prefix + table.getTableName() + ":$seq";
+    }
+
+    /**
+     * Converts a value to the string stored in a hash field or index set name.
+     * <p>
+     * Reading a value back through {@link #castJsonInput(Property, Object)} restores its type.
+     */
+    protected String toString(Object value) {
+        if (value == null)
+            return null;
+        if (value instanceof Date)
+            return Utils.formatIso8601((Date) value);
+        if (value instanceof byte[])
+            return Utils.bytesToHex((byte[]) value);
+        return value.toString();
     }
 
     protected Jedis getRedisClient() {
@@ -194,12 +479,12 @@ public class RedisDb extends Db<RedisDb> {
         return this;
     }
 
-    public String getNocacheParam() {
-        return nocacheParam;
+    public String getPrefix() {
+        return prefix;
     }
 
-    public RedisDb withNocacheParam(String nocacheParam) {
-        this.nocacheParam = nocacheParam;
+    public RedisDb withPrefix(String prefix) {
+        this.prefix = prefix;
         return this;
     }
 
@@ -212,13 +497,4 @@ public class RedisDb extends Db<RedisDb> {
         return this;
     }
 
-    public int getTtl() {
-        return ttl;
-    }
-
-    public RedisDb withTtl(int ttl) {
-        this.ttl = ttl;
-        return this;
-    }
-
 }
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.redis;
+
+import io.inversion.*;
+import io.inversion.Collection;
+import io.inversion.query.*;
+import io.inversion.query.Order.Sort;
+import io.inversion.rql.Term;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Selects records stored by a {@link RedisDb}.
+ * <p>
+ * Redis can only look records up by key, so the filters are used in two passes.  First the candidate keys are
+ * narrowed down as far as Redis can: resource key <code>eq</code> and <code>in</code> filters are turned straight into
+ * record keys and <code>eq</code> and <code>in</code> filters on indexed columns become SINTER/SUNION calls on the
+ * index sets.  When no filter narrows the search every key of the collection is a candidate.  The candidates are then
+ * read with pipelined HGETALLs and every filter, sort and page term is applied in process.
+ */
+public class RedisQuery extends Query<RedisQuery, RedisDb, Select<Select<Select, RedisQuery>, RedisQuery>, From<From<From, RedisQuery>, RedisQuery>, Where<Where<Where, RedisQuery>, RedisQuery>, Group<Group<Group, RedisQuery>, RedisQuery>, Order<Order<Order, RedisQuery>, RedisQuery>, Page<Page<Page, RedisQuery>, RedisQuery>> {
+
+    public RedisQuery() {
+    }
+
+    public RedisQuery(RedisDb db, Collection table, List<Term> terms) {
+        super(db, table, terms);
+    }
+
+    @Override
+    public Results doSelect() throws ApiException {
+        Results    results = new Results(this);
+        List<Term> filters = getWhere().getFilters();
+
+        Term and = Term.term(null, "and");
+        for (Term filter : filters)
+            and.withTerm(filter.copy());
+
+        Set<String>   keys  = isDryRun() ? null : findKeys(and);
+        StringBuilder debug = new StringBuilder("RedisDb: ").append(collection.getTableName());
+        debug.append(keys == null ? " scan" : " keys=" + keys.size());
+        if (filters.size() > 0)
+            debug.append(" filters=").append(filters);
+        results.withTestQuery(debug.toString());
+        Chain.debug(debug.toString());
+
+        if (isDryRun())
+            return results;
+
+        if (keys == null)
+            keys = db.getKeys(collection);
+
+        List<Map<String, Object>> rows = db.getRows(collection, new ArrayList<>(keys));
+        rows.removeIf(row -> !matches(and, row));
+        rows.sort(this::compareRows);
+
+        results.withFoundRows(rows.size());
+
+        int offset = Math.min(getPage().getOffset(), rows.size());
+        int limit  = getPage().getLimit();
+        int end    = limit > 0 ? Math.min(offset + limit, rows.size()) : rows.size();
+        results.withRows(new ArrayList<>(rows.subList(offset, end)));
+
+        return results;
+    }
+
+    /**
+     * Finds the keys of the records that could match <code>term</code> using only record keys and index sets.
+     *
+     * @param term the filter
+     * @return the candidate keys or null if the term can not be answered from keys and every key is a candidate
+     */
+    protected Set<String> findKeys(Term term) {
+        if (term.hasToken("and")) {
+            Set<String>         keys    = null;
+            Map<String, Object> eqs     = new LinkedHashMap<>();
+            List<String>        indexes = new ArrayList<>();
+
+            for (Term child : term.getTerms()) {
+                if (child.hasToken("eq") && child.size() == 2 && child.isLeaf(0) && !isNull(child.getTerm(1))) {
+                    String column = child.getToken(0);
+                    Object value  = cast(column, child.getToken(1));
+                    eqs.put(column, value);
+                    if (db.isIndexed(collection, column))
+                        indexes.add(db.getIndexKey(collection, column, value));
+                } else {
+                    keys = intersect(keys, findKeys(child));
+                }
+            }
+
+            //-- all of the resource key columns have an eq filter
+            String resourceKey = collection.encodeKeyFromColumnNames(eqs);
+            if (resourceKey != null)
+                keys = intersect(keys, new LinkedHashSet<>(Collections.singletonList(resourceKey)));
+            else if (indexes.size() > 0)
+                keys = intersect(keys, db.sinter(indexes));
+
+            return keys;
+        }
+
+        if (term.hasToken("or")) {
+            Set<String> keys = new LinkedHashSet<>();
+            for (Term child : term.getTerms()) {
+                Set<String> childKeys = findKeys(child);
+                if (childKeys == null)
+                    return null;
+                keys.addAll(childKeys);
+            }
+            return keys;
+        }
+
+        if (term.hasToken("eq"))
+            return findKeys(Term.term(null, "and", term.copy()));
+
+        if (term.hasToken("in") && term.size() > 1 && term.isLeaf(0)) {
+            String column = term.getToken(0);
+            Index  index  = collection.getResourceIndex();
+
+            if (index != null && index.size() == 1 && index.getColumnNames().get(0).equalsIgnoreCase(column)) {
+                Set<String> keys = new LinkedHashSet<>();
+                for (int i = 1; i < term.size(); i++) {
+                    String key = collection.encodeKeyFromColumnNames(Collections.singletonMap(index.getColumnNames().get(0), cast(column, term.getToken(i))));
+                    if (key != null)
+                        keys.add(key);
+                }
+                return keys;
+            }
+
+            if (db.isIndexed(collection, column)) {
+                List<String> indexes = new ArrayList<>();
+                for (int i = 1; i < term.size(); i++)
+                    indexes.add(db.getIndexKey(collection, column, cast(column, term.getToken(i))));
+                return db.sunion(indexes);
+            }
+        }
+
+        return null;
+    }
+
+    static Set<String> intersect(Set<String> keys, Set<String> more) {
+        if (keys == null)
+            return more;
+        if (more != null)
+            keys.retainAll(more);
+        return keys;
+    }
+
+    /**
+     * Evaluates the filter <code>term</code> against a record.
+     *
+     * @param term the filter
+     * @param row  the record
+     * @return true if the record passes the filter
+     */
+    protected boolean matches(Term term, Map<String, Object> row) {
+        String token = term.getToken().toLowerCase();
+
+        switch (token) {
+            case "and":
+                for (Term child : term.getTerms())
+                    if (!matches(child, row))
+                        return false;
+                return true;
+            case "or":
+                for (Term child : term.getTerms())
+                    if (matches(child, row))
+                        return true;
+                return term.size() == 0;
+            case "not":
+                return !matches(term.getTerm(0), row);
+        }
+
+        String column = term.getToken(0);
+        Object value  = row.get(column);
+
+        switch (token) {
+            case "n":
+                return value == null;
+            case "nn":
+                return value != null;
+            case "emp":
+                return value == null || value.toString().trim().length() == 0;
+            case "nemp":
+                return value != null && value.toString().trim().length() > 0;
+            case "eq":
+            case "ne": {
+                boolean eq = isNull(term.getTerm(1)) ? value == null : compare(value, cast(column, term.getToken(1))) == 0;
+                return token.equals("eq") == eq;
+            }
+            case "gt":
+                return value != null && compare(value, cast(column, term.getToken(1))) > 0;
+            case "ge":
+                return value != null && compare(value, cast(column, term.getToken(1))) >= 0;
+            case "lt":
+                return value != null && compare(value, cast(column, term.getToken(1))) < 0;
+            case "le":
+                return value != null && compare(value, cast(column, term.getToken(1))) <= 0;
+            case "in":
+            case "out": {
+                boolean in = false;
+                for (int i = 1; !in && i < term.size(); i++)
+                    in = value != null && compare(value, cast(column, term.getToken(i))) == 0;
+                return token.equals("in") == in;
+            }
+            case "sw":
+                return value != null && value.toString().startsWith(term.getToken(1));
+            case "ew":
+                return value != null && value.toString().endsWith(term.getToken(1));
+            case "w":
+                return value != null && value.toString().contains(term.getToken(1));
+            case "wo":
+                return value == null || !value.toString().contains(term.getToken(1));
+            case "like":
+                return value != null && value.toString().matches(toRegex(term.getToken(1)));
+            default:
+                throw ApiException.new400BadRequest("RedisDb does not support the '{}' filter: {}", term.getToken(), term);
+        }
+    }
+
+    static boolean isNull(Term term) {
+        return term.isLeaf() && !term.isQuoted() && "null".equalsIgnoreCase(term.getToken());
+    }
+
+    static String toRegex(String like) {
+        return Arrays.stream(like.split("\\*", -1)).map(Pattern::quote).collect(Collectors.joining(".*"));
+    }
+
+    Object cast(String column, String value) {
+        return db.castJsonInput(collection.getPropertyByColumnName(column), value);
+    }
+
+    /**
+     * Orders by the sort terms and then by the resource key columns so that pages are stable.
+     */
+    int compareRows(Map<String, Object> row1, Map<String, Object> row2) {
+        for (Sort sort : getOrder().getSorts()) {
+            int cmp = compare(row1.get(sort.getProperty()), row2.get(sort.getProperty()));
+            if (cmp != 0)
+                return sort.isAsc() ? cmp : -cmp;
+        }
+        Index index = collection.getResourceIndex();
+        for (int i = 0; index != null && i < index.size(); i++) {
+            String column = index.getColumnNames().get(i);
+            int    cmp    = compare(row1.get(column), row2.get(column));
+            if (cmp != 0)
+                return cmp;
+        }
+        return 0;
+    }
+
+    /**
+     * Nulls sort first and values of different types are compared as strings.
+     */
+    static int compare(Object value1, Object value2) {
+        if (value1 == value2)
+            return 0;
+        if (value1 == null)
+            return -1;
+        if (value2 == null)
+            return 1;
+
+        if (isIntegral(value1) && isIntegral(value2))
+            return Long.compare(((Number) value1).longValue(), ((Number) value2).longValue());
+
+        if (value1 instanceof Number && value2 instanceof Number)
+            return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue());
+
+        if (value1 instanceof Comparable && value1.getClass().equals(value2.getClass()))
+            return ((Comparable) value1).compareTo(value2);
+
+        return value1.toString().compareTo(value2.toString());
+    }
+
+    static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.redis;
+
+import io.inversion.action.cache.ResponseCache;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link ResponseCache} shared by every node of a cluster through Redis.
+ * <p>
+ * Each entry is a hash at <code>prefix + key</code> and each collection name is a set at
+ * <code>prefix + "collection:" + name</code> holding the keys of the entries tagged with it.
+ * Invalidating a collection deletes the set and its entries atomically with a Lua script, so
+ * the keys must all live on one node when Redis Cluster is used, for example by giving the
+ * prefix a hash tag like <code>{responses}:</code>.
+ * <p>
+ * Redis does its own memory bounded eviction, configure <code>maxmemory-policy allkeys-lru</code>
+ * on the server to keep the cache from growing without limit.
+ */
+public class RedisResponseCache implements ResponseCache {
+
+    static final byte[] STATUS       = bytes("status");
+    static final byte[] CONTENT_TYPE = bytes("contentType");
+    static final byte[] ETAG         = bytes("etag");
+    static final byte[] BODY         = bytes("body");
+
+    static final String INVALIDATE_SCRIPT = ""//
+            + "local keys = redis.call('SMEMBERS', KEYS[1]) "//
+            + "for i, key in ipairs(keys) do redis.call('DEL', ARGV[1] .. key) end "//
+            + "redis.call('DEL', KEYS[1]) "//
+            + "return #keys";
+
+    protected final RedisDb db;
+    protected       String  prefix = "inversion:response:";
+
+    public RedisResponseCache(RedisDb db) {
+        this.db = db;
+    }
+
+    @Override
+    public Entry get(String key) {
+        try (Jedis jedis = db.getRedisClient()) {
+            List<byte[]> values = jedis.hmget(bytes(prefix + key), STATUS, CONTENT_TYPE, ETAG, BODY);
+            if (values == null || values.size() < 4 || values.get(0) == null || values.get(2) == null || values.get(3) == null)
+                return null;
+
+            int    statusCode  = Integer.parseInt(string(values.get(0)));
+            String contentType = values.get(1) == null ? null : string(values.get(1));
+            return new Entry(statusCode, contentType, string(values.get(2)), values.get(3));
+        }
+    }
+
+    @Override
+    public void put(String key, Entry entry, Set<String> collections, long ttl) {
+        Map<byte[], byte[]> hash = new LinkedHashMap<>();
+        hash.put(STATUS, bytes(entry.getStatusCode() + ""));
+        if (entry.getContentType() != null)
+            hash.put(CONTENT_TYPE, bytes(entry.getContentType()));
+        hash.put(ETAG, bytes(entry.getEtag()));
+        hash.put(BODY, entry.getBody());
+
+        byte[] entryKey = bytes(prefix + key);
+        try (Jedis jedis = db.getRedisClient()) {
+            Pipeline pipe = jedis.pipelined();
+            pipe.del(entryKey);
+            pipe.hset(entryKey, hash);
+            if (ttl > 0)
+                pipe.pexpire(entryKey, ttl);
+
+            for (String collection : collections) {
+                String tagKey = getTagKey(collection);
+                pipe.sadd(tagKey, key);
+                //-- keys of expired entries are dropped with the set once the newest entry tagged with it expires
+                if (ttl > 0)
+                    pipe.pexpire(tagKey, ttl);
+            }
+            pipe.sync();
+        }
+    }
+
+    @Override
+    public void invalidate(String collection) {
+        try (Jedis jedis = db.getRedisClient()) {
+            jedis.eval(INVALIDATE_SCRIPT, 1, getTagKey(collection), prefix);
+        }
+    }
+
+    /**
+     * Deletes every key starting with <code>prefix</code>.
+     */
+    @Override
+    public void clear() {
+        try (Jedis jedis = db.getRedisClient()) {
+            ScanParams params = new ScanParams().match(prefix + "*").count(1000);
+            String     cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                ScanResult<String> scan = jedis.scan(cursor, params);
+                List<String>       keys = scan.getResult();
+                if (keys.size() > 0)
+                    jedis.del(keys.toArray(new String[0]));
+                cursor = scan.getCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        }
+    }
+
+    protected String getTagKey(String collection) {
+        return prefix + "collection:" + collection;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public RedisResponseCache withPrefix(String prefix) {
+        this.prefix = prefix;
+        return this;
+    }
+
+    static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.redis;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * An in process stand in for a Redis server that speaks just enough RESP for RedisDb.
+ * <p>
+ * Supports the hash, set and counter commands RedisDb uses.  Every other command is answered with +OK.
+ */
+public class MockRedisServer implements Closeable {
+
+    final ServerSocket                     server;
+    final Map<String, Map<String, String>> hashes   = new HashMap<>();
+    final Map<String, Set<String>>         sets     = new HashMap<>();
+    final Map<String, Long>                counters = new HashMap<>();
+
+    public MockRedisServer() throws IOException {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread handler = new Thread(() -> handle(socket));
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException ex) {
+                    //-- closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public synchronized Set<String> getSet(String key) {
+        return new HashSet<>(sets.getOrDefault(key, Collections.emptySet()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    void handle(Socket socket) {
+        try (Socket s = socket) {
+            InputStream  in  = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            while (true) {
+                List<String> command = read(in);
+                if (command == null)
+                    return;
+                write(out, execute(command));
+                if (in.available() == 0)
+                    out.flush();
+            }
+        } catch (IOException ex) {
+            //-- client went away
+        }
+    }
+
+    synchronized Object execute(List<String> command) {
+        String       name = command.get(0).toUpperCase();
+        List<String> args = command.subList(1, command.size());
+
+        switch (name) {
+            case "PING":
+                return new Status("PONG");
+            case "HSET": {
+                Map<String, String> hash  = hashes.computeIfAbsent(args.get(0), k -> new LinkedHashMap<>());
+                long                added = 0;
+                for (int i = 1; i < args.size(); i += 2)
+                    added += hash.put(args.get(i), args.get(i + 1)) == null ? 1 : 0;
+                return added;
+            }
+            case "HDEL": {
+                Map<String, String> hash    = hashes.getOrDefault(args.get(0), new HashMap<>());
+                long                removed = 0;
+                for (String field : args.subList(1, args.size()))
+                    removed += hash.remove(field) != null ? 1 : 0;
+                if (hash.isEmpty())
+                    hashes.remove(args.get(0));
+                return removed;
+            }
+            case "HGETALL": {
+                List<String> values = new ArrayList<>();
+                hashes.getOrDefault(args.get(0), Collections.emptyMap()).forEach((k, v) -> {
+                    values.add(k);
+                    values.add(v);
+                });
+                return values;
+            }
+            case "HMGET": {
+                Map<String, String> hash   = hashes.getOrDefault(args.get(0), Collections.emptyMap());
+                List<String>        values = new ArrayList<>();
+                for (String field : args.subList(1, args.size()))
+                    values.add(hash.get(field));
+                return values;
+            }
+            case "DEL": {
+                long removed = 0;
+                for (String key : args)
+                    removed += (hashes.remove(key) != null | sets.remove(key) != null | counters.remove(key) != null) ? 1 : 0;
+                return removed;
+            }
+            case "SADD": {
+                Set<String> set = sets.computeIfAbsent(args.get(0), k -> new LinkedHashSet<>());
+                long        added = 0;
+                for (String member : args.subList(1, args.size()))
+                    added += set.add(member) ? 1 : 0;
+                return added;
+            }
+            case "SREM": {
+                Set<String> set     = sets.getOrDefault(args.get(0), new HashSet<>());
+                long        removed = 0;
+                for (String member : args.subList(1, args.size()))
+                    removed += set.remove(member) ? 1 : 0;
+                if (set.isEmpty())
+                    sets.remove(args.get(0));
+                return removed;
+            }
+            case "SMEMBERS":
+                return new ArrayList<>(sets.getOrDefault(args.get(0), Collections.emptySet()));
+            case "SINTER": {
+                Set<String> result = new LinkedHashSet<>(sets.getOrDefault(args.get(0), Collections.emptySet()));
+                for (String key : args.subList(1, args.size()))
+                    result.retainAll(sets.getOrDefault(key, Collections.emptySet()));
+                return new ArrayList<>(result);
+            }
+            case "SUNION": {
+                Set<String> result = new LinkedHashSet<>();
+                for (String key : args)
+                    result.addAll(sets.getOrDefault(key, Collections.emptySet()));
+                return new ArrayList<>(result);
+            }
+            case "INCRBY":
+                return counters.merge(args.get(0), Long.parseLong(args.get(1)), Long::sum);
+            default:
+                return new Status("OK");
+        }
+    }
+
+    static class Status {
+        final String message;
+
+        Status(String message) {
+            this.message = message;
+        }
+    }
+
+    static List<String> read(InputStream in) throws IOException {
+        String line = readLine(in);
+        if (line == null)
+            return null;
+        if (!line.startsWith("*"))
+            return new ArrayList<>(Arrays.asList(line.trim().split("\\s+")));
+
+        int          count   = Integer.parseInt(line.substring(1));
+        List<String> command = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int    length = Integer.parseInt(readLine(in).substring(1));
+            byte[] bytes  = new byte[length];
+            int    read   = 0;
+            while (read < length) {
+                int n = in.read(bytes, read, length - read);
+                if (n < 0)
+                    throw new EOFException();
+                read += n;
+            }
+            readLine(in);
+            command.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return command;
+    }
+
+    static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int           c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0)
+                return line.length() == 0 ? null : line.toString();
+            if (c != '\r')
+                line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    static void write(OutputStream out, Object reply) throws IOException {
+        if (reply instanceof Status) {
+            out.write(("+" + ((Status) reply).message + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Long) {
+            out.write((":" + reply + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof List) {
+            List<String> values = (List<String>) reply;
+            out.write(("*" + values.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            for (String value : values) {
+                if (value == null) {
+                    out.write("$-1\r\n".getBytes(StandardCharsets.UTF_8));
+                } else {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+                    out.write(bytes);
+                    out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.redis;
+
+import io.inversion.*;
+import io.inversion.Collection;
+import io.inversion.action.db.DbAction;
+import io.inversion.json.JSList;
+import io.inversion.json.JSMap;
+import io.inversion.json.JSNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RedisDbTest {
+
+    MockRedisServer server;
+    RedisDb         db;
+    Engine          engine;
+
+    @BeforeEach
+    public void before() throws Exception {
+        server = new MockRedisServer();
+
+        Collection books = new Collection("books")//
+                .withProperty("id", "integer", false)//
+                .withProperty("author", "string")//
+                .withProperty("price", "integer")//
+                .withIndex("primaryIndex", "primary", true, "id")//
+                .withIndex("authorIndex", "index", false, "author");
+
+        db = new RedisDb().withHost("localhost").withPort(server.getPort()).withCollections(books);
+        engine = new Engine(new Api("api").withDb(db).withEndpoint(new Endpoint().withAction(new DbAction())));
+
+        JSList rows = new JSList();
+        rows.add(new JSMap("author", "austen", "price", 30));
+        rows.add(new JSMap("author", "tolkien", "price", 10));
+        rows.add(new JSMap("author", "austen", "price", 20));
+        engine.post("books", rows).assertStatus(201);
+    }
+
+    @AfterEach
+    public void after() throws Exception {
+        server.close();
+    }
+
+    static List<Object> values(Response res, String property) {
+        List<Object> values = new ArrayList<>();
+        for (Object row : res.data())
+            values.add(((JSNode) row).get(property));
+        return values;
+    }
+
+    @Test
+    public void test_keys_are_generated_and_indexed() {
+        assertEquals(new HashSet<>(Arrays.asList("1", "2", "3")), server.getSet("books:$keys"));
+        assertEquals(new HashSet<>(Arrays.asList("1", "3")), server.getSet("books:$idx:author:austen"));
+        assertEquals(new HashSet<>(Collections.singletonList("2")), server.getSet("books:$idx:author:tolkien"));
+    }
+
+    @Test
+    public void test_filters_use_keys_and_indexes() {
+        Response res = engine.get("books/2").assertOk();
+        assertEquals(Arrays.asList("tolkien"), values(res, "author"));
+
+        res = engine.get("books?in(id,1,3)&sort=id").assertOk();
+        assertEquals(Arrays.asList(1, 3), values(res, "id"));
+
+        res = engine.get("books?eq(author,austen)&sort=price").assertOk();
+        assertEquals(Arrays.asList(20, 30), values(res, "price"));
+
+        res = engine.get("books?eq(author,austen)&gt(price,25)").assertOk();
+        assertEquals(Arrays.asList(1), values(res, "id"));
+
+        res = engine.get("books?sort=-price&limit=2&offset=1").assertOk();
+        assertEquals(Arrays.asList(20, 10), values(res, "price"));
+        assertEquals(3, res.getFoundRows());
+    }
+
+    @Test
+    public void test_updates_move_index_entries() {
+        engine.patch("books/3", new JSMap("id", 3, "author", "tolkien")).assertStatus(201, 204);
+
+        assertEquals(new HashSet<>(Collections.singletonList("1")), server.getSet("books:$idx:author:austen"));
+        assertEquals(new HashSet<>(Arrays.asList("2", "3")), server.getSet("books:$idx:author:tolkien"));
+
+        Response res = engine.get("books?eq(author,tolkien)&sort=id").assertOk();
+        assertEquals(Arrays.asList(2, 3), values(res, "id"));
+        assertEquals(Arrays.asList(10, 20), values(res, "price"));
+    }
+
+    @Test
+    public void test_delete_removes_records_and_index_entries() {
+        engine.delete("books/1").assertStatus(204);
+
+        assertEquals(new HashSet<>(Arrays.asList("2", "3")), server.getSet("books:$keys"));
+        assertEquals(new HashSet<>(Collections.singletonList("3")), server.getSet("books:$idx:author:austen"));
+        engine.get("books/1").assertStatus(404);
+
+        Response res = engine.get("books?eq(author,austen)").assertOk();
+        assertEquals(Arrays.asList(3), values(res, "id"));
+    }
+}
@@ -188,12 +188,13 @@ public class DynamoDbQuery extends Query<DynamoDbQuery, DynamoDb, Select<Select<
     }
 
     public Results doSelect() throws ApiException {
-        Results.LAST_QUERY = null;
+        Results.clearLastQuery();
         try {
             return doSelect0();
         } catch (Exception ex) {
-            if (Results.LAST_QUERY != null) {
-                System.out.println("Error after query: " + Results.LAST_QUERY);
+            String lastQuery = Results.getLastQuery();
+            if (lastQuery != null) {
+                System.out.println("Error after query: " + lastQuery);
                 System.out.println(ex.getMessage());
             }
 
@@ -25,12 +25,14 @@ import io.inversion.Response;
 import io.inversion.json.JSMap;
 import io.inversion.json.JSNode;
 import io.inversion.json.JSParser;
+import io.inversion.json.JSWriter;
 import io.inversion.Url;
 import io.inversion.utils.Utils;
 import io.inversion.utils.ListMap;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -111,7 +113,7 @@ public class AwsApiGatewayLambdaRequestStreamHandler implements RequestStreamHan
             engine.service(req, res);
 
             if (outputStream != null) {
-                writeResponse(res, outputStream);
+                writeResponse(req, res, outputStream);
             }
 
         } catch (Exception e1) {
@@ -185,32 +187,56 @@ public class AwsApiGatewayLambdaRequestStreamHandler implements RequestStreamHan
         return null;
     }
 
+    /**
+     * Writes <code>res</code> as an ApiGateway proxy integration response.
+     * <p>
+     * ApiGateway requires the body to be a string inside of the response envelope so the body itself can not be
+     * streamed, but the envelope is streamed straight to <code>outputStream</code> instead of being built as a String first.
+     *
+     * @param res          the Response to write
+     * @param outputStream the Lambda output
+     * @throws IOException if writing fails
+     */
     protected void writeResponse(Response res, OutputStream outputStream) throws IOException {
-//        JSNode responseJson = new JSMap();
-//
-//        responseJson.put("isBase64Encoded", false);
-//        responseJson.put("statusCode", res.getStatusCode());
-//        JSNode headers = new JSMap();
-//        responseJson.put("headers", headers);
-//
-//        asdfasdf
-//        for (String key : res.getHeaders().keySet()) {
-//            List          values = res.getHeaders().get(key);
-//            StringBuilder buff   = new StringBuilder();
-//            for (int i = 0; i < values.size(); i++) {
-//                buff.append(values.get(i));
-//                if (i < values.size() - 1)
-//                    buff.append(",");
-//            }
-//            headers.put(key, buff.toString());
-//        }
-//
-//        String output = res.getOutput();
-//
-//        responseJson.put("body", output);
-//        OutputStreamWriter writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
-//        writer.write(responseJson.toString());
-//        writer.close();
+        writeResponse(null, res, outputStream);
+    }
+
+    /**
+     * Writes the ApiGateway proxy integration response envelope.
+     * <p>
+     * When the Engine's {@link io.inversion.ResponseCompression} selects an encoding, the compressed body
+     * is base64 encoded as required by ApiGateway for binary bodies.
+     *
+     * @param req          the request that was serviced, may be null in which case the response is not compressed
+     * @param res          the response to write
+     * @param outputStream the lambda output stream
+     * @throws IOException if the response can not be written
+     */
+    protected void writeResponse(Request req, Response res, OutputStream outputStream) throws IOException {
+        ByteArrayOutputStream bodyOut = new ByteArrayOutputStream();
+        res.writeBody(bodyOut);
+        byte[] bytes = bodyOut.toByteArray();
+
+        String encoding = req == null || engine == null ? null : engine.getCompression().apply(req, res, bytes.length);
+        String body;
+        if (encoding != null) {
+            ByteArrayOutputStream out  = new ByteArrayOutputStream();
+            OutputStream          zout = engine.getCompression().compress(out, encoding);
+            zout.write(bytes);
+            zout.close();
+            body = Base64.getEncoder().encodeToString(out.toByteArray());
+        } else {
+            body = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        JSMap headers = new JSMap();
+        for (String key : res.getHeaders().keySet()) {
+            headers.put(key, Utils.implode(",", res.getHeaders().get(key)));
+        }
+
+        JSMap responseJson = new JSMap("isBase64Encoded", encoding != null, "statusCode", res.getStatusCode(), "headers", headers, "body", body);
+        JSWriter.writeJson(responseJson, outputStream, false, false);
+        outputStream.close();
     }
 
     public void debug(String msg) {
@@ -26,7 +26,10 @@ import io.inversion.Engine;
 import io.inversion.Request;
 import io.inversion.Response;
 import io.inversion.utils.ListMap;
+import io.inversion.utils.Utils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -84,33 +87,35 @@ public class AzureFunctionHttpTriggerHandler {
     }
 
     protected HttpResponseMessage buildHttpResponseMessage(HttpRequestMessage<Optional<String>> azReq, Request req, Response res) throws Exception {
-//        Builder builder = azReq.createResponseBuilder(HttpStatus.valueOf(res.getStatusCode()));
-//
-//        asdasdf
-//        for (String key : res.getHeaders().keySet()) {
-//            List          values = res.getHeaders().get(key);
-//            StringBuilder buff   = new StringBuilder();
-//            for (int i = 0; i < values.size(); i++) {
-//                buff.append(values.get(i));
-//                if (i < values.size() - 1)
-//                    buff.append(",");
-//            }
-//            builder.header(key, buff.toString());
-//            res.debug(key + " " + buff);
-//        }
-//        if ("OPTIONS".equals(req.getMethod())) {
-//            //
-//        } else {
-//            String contentType = res.getContentType();
-//            builder.header("Content-Type", contentType);
-//
-//            String output = res.getOutput();
-//            builder.body(output);
-//        }
-//
-//        return builder.build();
+        Builder builder = azReq.createResponseBuilder(HttpStatus.valueOf(res.getStatusCode()));
+
+        byte[] body = null;
+        if (!"OPTIONS".equals(req.getMethod())) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            res.writeBody(out);
+            body = out.toByteArray();
+
+            String encoding = engine.getCompression().apply(req, res, body.length);
+            if (encoding != null) {
+                out = new ByteArrayOutputStream();
+                OutputStream zout = engine.getCompression().compress(out, encoding);
+                zout.write(body);
+                zout.close();
+                body = out.toByteArray();
+            }
+            if (res.getHeader("Content-Type") == null && res.getContentType() != null)
+                builder.header("Content-Type", res.getContentType());
+        }
 
-        return null;
+        for (String key : res.getHeaders().keySet()) {
+            List<String> values = res.getHeaders().get(key);
+            builder.header(key, Utils.implode(",", values));
+        }
+
+        if (body != null)
+            builder.body(body);
+
+        return builder.build();
     }
 
     /**
@@ -1468,7 +1468,8 @@ public class ApiClient {
         final List<Consumer<Response>> failureListeners  = new ArrayList<>();
         final List<Consumer<Response>> responseListeners = new ArrayList<>();
         final Request                  request;
-        Response response = null;
+        final CountDownLatch           done              = new CountDownLatch(1);
+        volatile Response response = null;
 
         FutureResponse(Request request) {
             this.request = request;
@@ -1593,8 +1594,8 @@ public class ApiClient {
                     }
                 }
 
-                notifyAll();
             }
+            done.countDown();
         }
 
         /**
@@ -1604,15 +1605,13 @@ public class ApiClient {
          */
         @Override
         public Response get() {
+            //-- parks on a latch instead of Object.wait() so a
+            //-- waiting virtual thread does not pin its carrier
             while (response == null) {
-                synchronized (this) {
-                    if (response == null) {
-                        try {
-                            wait();
-                        } catch (InterruptedException ex) {
-                            //ignore
-                        }
-                    }
+                try {
+                    done.await();
+                } catch (InterruptedException ex) {
+                    //ignore
                 }
             }
 
@@ -1627,23 +1626,10 @@ public class ApiClient {
          */
         @Override
         public Response get(long timeout, TimeUnit unit) throws TimeoutException {
-            long start = System.currentTimeMillis();
-            while (response == null) {
-                synchronized (this) {
-                    if (response == null) {
-                        try {
-                            timeout = TimeUnit.MILLISECONDS.convert(timeout, unit);
-                            timeout -= System.currentTimeMillis() - start;
-
-                            if (timeout < 1)
-                                break;
-
-                            wait(timeout);
-                        } catch (InterruptedException e) {
-                            //ignore
-                        }
-                    }
-                }
+            try {
+                done.await(timeout, unit);
+            } catch (InterruptedException e) {
+                //ignore
             }
 
             return response;
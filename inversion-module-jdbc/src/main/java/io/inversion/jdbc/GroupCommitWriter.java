@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc;
+
+import io.inversion.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies writes from concurrent requests to a {@link JdbcDb} together in one transaction so they share the cost of a single commit.
+ * <p>
+ * The first caller to arrive when no group is forming becomes the group's leader.  It waits <code>window</code> milliseconds,
+ * or until <code>maxGroupSize</code> writes have queued up, then runs every queued write on its own managed Connection,
+ * each inside its own savepoint, and commits once.  Every caller blocks until the shared commit completes.
+ * <p>
+ * Running the group on the leader's managed Connection means a group never needs a pool Connection in addition to
+ * the ones requests already hold, so a full pool can not deadlock waiting on a leader.
+ * <p>
+ * A write that fails is rolled back to its savepoint and only its caller sees the error, the rest of the group
+ * still commits.  If the commit itself fails, every caller in the group sees the error.
+ * <p>
+ * No background thread is used, the leader does the work on its own thread, and a ReentrantLock is used instead
+ * of synchronized, so the writer is friendly to one virtual thread per request.
+ *
+ * @see JdbcDb#withGroupCommitWindow(long)
+ */
+public class GroupCommitWriter {
+
+    static final Logger log = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+    /**
+     * A unit of work that writes through the supplied Connection.
+     * <p>
+     * Implementations must not commit, rollback or close the Connection.
+     *
+     * @param <T> the result type
+     */
+    public interface Write<T> {
+        T apply(Connection conn) throws Exception;
+    }
+
+    static class Pending {
+        final Write                     write;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Pending(Write write) {
+            this.write = write;
+        }
+    }
+
+    final JdbcDb        db;
+    final long          window;
+    final int           maxGroupSize;
+    final ReentrantLock lock = new ReentrantLock();
+
+    List<Pending> group = null;
+
+    long groups = 0;
+    long writes = 0;
+
+    public GroupCommitWriter(JdbcDb db, long window, int maxGroupSize) {
+        this.db = db;
+        this.window = window;
+        this.maxGroupSize = maxGroupSize;
+    }
+
+    /**
+     * Queues <code>write</code> with the group currently forming and waits for the group to commit.
+     *
+     * @param write the work to do
+     * @param <T>   the result type
+     * @return the result of <code>write</code> once it has been committed
+     * @throws Exception the exception thrown by <code>write</code> or by the shared commit
+     */
+    public <T> T write(Write<T> write) throws Exception {
+        Pending       pending = new Pending(write);
+        List<Pending> toRun   = null;
+
+        lock.lock();
+        try {
+            if (group == null) {
+                group = new ArrayList<>();
+                toRun = group;
+            }
+            group.add(pending);
+        } finally {
+            lock.unlock();
+        }
+
+        if (toRun != null)
+            lead(toRun);
+
+        try {
+            return (T) pending.result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            Utils.rethrow(cause);
+            return null;
+        }
+    }
+
+    /**
+     * Waits for the window to close, or the group to fill up, then runs the group.
+     */
+    void lead(List<Pending> toRun) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(window);
+        try {
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    break;
+
+                lock.lock();
+                try {
+                    if (toRun.size() >= maxGroupSize)
+                        break;
+                } finally {
+                    lock.unlock();
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(1)));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        //-- close the group, anyone arriving from now on starts a new one
+        lock.lock();
+        try {
+            if (group == toRun)
+                group = null;
+            groups += 1;
+            writes += toRun.size();
+        } finally {
+            lock.unlock();
+        }
+
+        run(toRun);
+    }
+
+    /**
+     * Runs each write in its own savepoint and commits once.
+     *
+     * @param toRun the group
+     */
+    protected void run(List<Pending> toRun) {
+        Connection conn       = null;
+        boolean    autoCommit = false;
+        try {
+            conn = db.getConnection();
+            autoCommit = conn.getAutoCommit();
+            if (autoCommit)
+                conn.setAutoCommit(false);
+
+            List<Pending> applied = new ArrayList<>();
+            List<Object>  results = new ArrayList<>();
+            for (Pending pending : toRun) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    Object result = pending.write.apply(conn);
+                    applied.add(pending);
+                    results.add(result);
+                } catch (Exception ex) {
+                    conn.rollback(savepoint);
+                    pending.result.completeExceptionally(ex);
+                    continue;
+                }
+                try {
+                    conn.releaseSavepoint(savepoint);
+                } catch (Exception ex) {
+                    //-- some drivers, for example SQL Server, do not support releasing savepoints
+                }
+            }
+
+            conn.commit();
+
+            for (int i = 0; i < applied.size(); i++)
+                applied.get(i).result.complete(results.get(i));
+        } catch (Throwable ex) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (Exception ex2) {
+                    log.warn("Error rolling back group commit.", ex2);
+                }
+            }
+            for (Pending pending : toRun)
+                pending.result.completeExceptionally(ex);
+        } finally {
+            //-- the managed Connection is closed when the leader's request ends
+            if (conn != null && autoCommit) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (Exception ex) {
+                    log.warn("Error restoring autoCommit on group commit connection.", ex);
+                }
+            }
+        }
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public int getMaxGroupSize() {
+        return maxGroupSize;
+    }
+
+    /**
+     * @return the number of groups that have been committed, or attempted
+     */
+    public long getGroups() {
+        lock.lock();
+        try {
+            return groups;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of writes across all groups
+     */
+    public long getWrites() {
+        lock.lock();
+        try {
+            return writes;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
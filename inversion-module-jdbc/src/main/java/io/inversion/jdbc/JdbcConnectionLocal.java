@@ -17,59 +17,75 @@
 package io.inversion.jdbc;
 
 import io.inversion.Db;
+import io.inversion.RequestScope;
 
 import java.sql.Connection;
 import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the managed Connections opened while servicing a request so they can be committed, rolled back and closed together.
+ * <p>
+ * Connections are owned by the {@link RequestScope} bound to the current thread so a request that hops threads keeps
+ * its connections.  When no scope is bound, for example when a Db is used outside of an Engine request, the current
+ * Thread is the owner, which was the original behavior.
+ */
 public class JdbcConnectionLocal {
 
-    static final Map<Db, Map<Thread, Connection>> dbToThreadMap = new Hashtable();
-    static final Map<Thread, Map<Db, Connection>> threadToDbMap = new Hashtable();
+    static final Map<Db, Map<Object, Connection>> dbToOwnerMap = new ConcurrentHashMap<>();
+    static final Map<Object, Map<Db, Connection>> ownerToDbMap = new ConcurrentHashMap<>();
 
     public static void closeAll() {
-        for (Thread thread : threadToDbMap.keySet()) {
+        for (Object owner : new ArrayList<>(ownerToDbMap.keySet())) {
             try {
-                close(thread);
+                close(owner);
             } catch (Exception ex) {
                 //ex.printStackTrace();
             }
         }
 
-        //System.out.println(dbToThreadMap);
-        //System.out.println(threadToDbMap);
+        //System.out.println(dbToOwnerMap);
+        //System.out.println(ownerToDbMap);
+    }
+
+    /**
+     * @return the RequestScope bound to the current thread, or the current Thread if there is no bound scope
+     */
+    static Object currentOwner() {
+        RequestScope scope = RequestScope.peek();
+        return scope != null ? scope : Thread.currentThread();
     }
 
     public static Connection getConnection(Db db) {
-        return getConnection(db, Thread.currentThread());
+        return getConnection(db, currentOwner());
     }
 
-    static Connection getConnection(Db db, Thread thread) {
-        Map<Thread, Connection> threadToConnMap = dbToThreadMap.get(db);
-        if (threadToConnMap == null)
+    static Connection getConnection(Db db, Object owner) {
+        Map<Object, Connection> ownerToConnMap = dbToOwnerMap.get(db);
+        if (ownerToConnMap == null)
             return null;
 
-        return threadToConnMap.get(thread);
+        return ownerToConnMap.get(owner);
     }
 
     public static void putConnection(Db db, Connection connection) {
-        putConnection(db, Thread.currentThread(), connection);
+        putConnection(db, currentOwner(), connection);
     }
 
-    static void putConnection(Db db, Thread thread, Connection connection) {
-        Map<Thread, Connection> threadToConnMap = dbToThreadMap.computeIfAbsent(db, k -> new Hashtable());
-        threadToConnMap.put(thread, connection);
+    static void putConnection(Db db, Object owner, Connection connection) {
+        Map<Object, Connection> ownerToConnMap = dbToOwnerMap.computeIfAbsent(db, k -> new ConcurrentHashMap<>());
+        ownerToConnMap.put(owner, connection);
 
-        Map<Db, Connection> dbToConnMap = threadToDbMap.computeIfAbsent(thread, k -> new Hashtable());
+        Map<Db, Connection> dbToConnMap = ownerToDbMap.computeIfAbsent(owner, k -> new ConcurrentHashMap<>());
         dbToConnMap.put(db, connection);
     }
 
     public static void commit() throws Exception {
         Exception toThrow = null;
 
-        Map<Db, Connection> dbToConnMap = threadToDbMap.get(Thread.currentThread());
+        Map<Db, Connection> dbToConnMap = ownerToDbMap.get(currentOwner());
         if (dbToConnMap != null) {
             java.util.Collection<Connection> connections = dbToConnMap.values();
             for (Connection conn : connections) {
@@ -91,7 +107,7 @@ public class JdbcConnectionLocal {
     public static void rollback() throws Exception {
         Exception toThrow = null;
 
-        Map<Db, Connection> dbToConnMap = threadToDbMap.get(Thread.currentThread());
+        Map<Db, Connection> dbToConnMap = ownerToDbMap.get(currentOwner());
         if (dbToConnMap != null) {
             for (Connection conn : dbToConnMap.values()) {
                 try {
@@ -110,13 +126,13 @@ public class JdbcConnectionLocal {
     }
 
     public static void close() throws Exception {
-        close(Thread.currentThread());
+        close(currentOwner());
     }
 
-    static void close(Thread thread) throws Exception {
+    static void close(Object owner) throws Exception {
         Exception toThrow = null;
 
-        Map<Db, Connection> dbToConnMap = threadToDbMap.remove(thread);
+        Map<Db, Connection> dbToConnMap = ownerToDbMap.remove(owner);
 
         if (dbToConnMap != null) {
             List<Db> dbs = new ArrayList(dbToConnMap.keySet());
@@ -125,11 +141,11 @@ public class JdbcConnectionLocal {
             {
                 //--
                 //-- cleanup the reverse mapping first
-                Map<Thread, Connection> threadToConnMap = dbToThreadMap.get(db);
-                threadToConnMap.remove(thread);
+                Map<Object, Connection> ownerToConnMap = dbToOwnerMap.get(db);
+                ownerToConnMap.remove(owner);
 
-                if (threadToConnMap.size() == 0)
-                    dbToThreadMap.remove(db);
+                if (ownerToConnMap.size() == 0)
+                    dbToOwnerMap.remove(db);
                 //--
                 //--
 
@@ -145,7 +161,7 @@ public class JdbcConnectionLocal {
             }
 
             if (dbToConnMap.size() == 0)
-                threadToDbMap.remove(thread);
+                ownerToDbMap.remove(owner);
         }
 
         if (toThrow != null)
@@ -24,6 +24,7 @@ import io.inversion.Api.ApiListener;
 import io.inversion.config.Config;
 import io.inversion.utils.JdbcUtils;
 import io.inversion.utils.JdbcUtils.SqlListener;
+import io.inversion.utils.LruCache;
 import io.inversion.rql.Term;
 import io.inversion.utils.Rows.Row;
 import io.inversion.utils.Utils;
@@ -35,6 +36,8 @@ import java.lang.reflect.Field;
 import java.net.URL;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
@@ -42,8 +45,44 @@ import java.util.stream.Collectors;
  */
 public class JdbcDb extends Db<JdbcDb> {
 
+    /**
+     * How {@link SqlQuery} computes the total "foundRows" for a paged listing.
+     */
+    public enum CountStrategy {
+        /**
+         * Runs a second "SELECT count(1)" over the query, or SELECT FOUND_ROWS() on MySQL.  Always accurate but can
+         * cost as much as the query itself on large tables.
+         */
+        EXACT,
+        /**
+         * Adds "COUNT(*) OVER()" to the select so the total comes back with the rows in one round trip.
+         * Falls back to EXACT for DISTINCT queries and pages past the end of the results.
+         */
+        WINDOW,
+        /**
+         * Uses the query planner's row estimate: Postgres "EXPLAIN" or "pg_class.reltuples", MySQL "information_schema.tables"
+         * for unfiltered queries.  Cheap but approximate.  Falls back to EXACT when no estimate is available.
+         */
+        ESTIMATE,
+        /**
+         * An EXACT count cached for <code>countCacheTtl</code> milliseconds per distinct query and parameters.
+         */
+        CACHED,
+        /**
+         * Never counts.  Clients page with the "next" link, which uses keyset pagination when the results are
+         * ordered by a single column primary key.
+         */
+        NONE
+    }
+
+    /**
+     * Cached counts are keyed by query text and parameters which are client controlled so the cache is bounded,
+     * evicting the least recently used counts first.
+     */
+    static final int MAX_CACHED_COUNTS = 1000;
+
     static final Map<String, String> DEFAULT_DRIVERS = new HashMap<>();
-    static final Map<Db, DataSource> pools           = new Hashtable<>();
+    static final Map<Db, DataSource> pools           = new ConcurrentHashMap<>();
 
     static {
         DEFAULT_DRIVERS.put("h2", "org.h2.Driver");
@@ -72,6 +111,9 @@ public class JdbcDb extends Db<JdbcDb> {
 
             @Override
             public void afterStmt(String method, String sql, Object args, Exception ex, Object result) {
+                if (!Chain.isDebugEnabled())
+                    return;
+
                 String debugPrefix = "JdbcDb: ";
 
                 String debugType = "unknown";
@@ -87,9 +129,7 @@ public class JdbcDb extends Db<JdbcDb> {
 
                 args = (args != null && args.getClass().isArray() ? Arrays.asList((Object[]) args) : args);
 
-                sql = sql.replaceAll("\r", "");
-                sql = sql.replaceAll("\n", " ");
-                sql = sql.trim().replaceAll(" +", " ");
+                sql = Utils.collapseWhitespace(sql.trim());
                 StringBuilder buff = new StringBuilder();
                 buff.append(debugPrefix).append(" -> '").append(sql).append("'").append(" args=").append(args).append(" error='").append(ex != null ? ex.getMessage() : "").append("'");
                 String msg = buff.toString();
@@ -154,6 +194,57 @@ public class JdbcDb extends Db<JdbcDb> {
      * For MySQL only, set this to false to turn off SQL_CALC_FOUND_ROWS and SELECT FOUND_ROWS()
      */
     protected       boolean      calcRowsFound            = true;
+    /**
+     * The number of rows the driver should buffer per round trip when a select is streamed.
+     *
+     * @see io.inversion.Results#STREAM_THRESHOLD
+     */
+    protected       int          fetchSize                = 1000;
+    /**
+     * The default way foundRows are computed for paged listings.
+     */
+    protected       CountStrategy countStrategy           = CountStrategy.EXACT;
+    /**
+     * Per collection name overrides of <code>countStrategy</code>.
+     */
+    protected final Map<String, CountStrategy> countStrategies = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    /**
+     * How long, in milliseconds, counts are reused by {@link CountStrategy#CACHED}.
+     */
+    protected       long         countCacheTtl            = 60000;
+    /**
+     * The maximum number of query shapes whose generated SQL is cached, set to 0 to generate SQL for every query.
+     *
+     * @see SqlCache
+     */
+    protected       int          sqlCacheSize             = 1000;
+    /**
+     * The maximum number of rows written by each multi row upsert statement.
+     *
+     * @see JdbcUtils#upsert(Connection, String, List, List, int)
+     */
+    protected       int          batchSize                = JdbcUtils.DEFAULT_BATCH_SIZE;
+    /**
+     * When greater than zero, upserts, patches and deletes from concurrent requests are queued for up to this many
+     * milliseconds and committed together in one transaction by a {@link GroupCommitWriter}.
+     * <p>
+     * Each write is committed, in its own savepoint, before the Db call returns instead of when the request ends so
+     * a request that makes several writes is no longer atomic.  Reads still run on the request's managed Connection.
+     * The group runs on the managed Connection of the request that leads it, so anything else pending on that Connection is committed with the group.
+     */
+    protected       long         groupCommitWindow        = 0;
+    /**
+     * The maximum number of writes committed together when <code>groupCommitWindow</code> is greater than zero.
+     */
+    protected       int          groupCommitMaxSize       = 100;
+
+    transient volatile LruCache<String, Long> countCache = null;
+
+    transient volatile SqlCache sqlCache = null;
+
+    transient volatile GroupCommitWriter groupCommitWriter = null;
+
+    transient final ReentrantLock poolLock = new ReentrantLock();
 
     public JdbcDb() {
         //System.out.println("JdbcDb() <init>");
@@ -291,7 +382,7 @@ public class JdbcDb extends Db<JdbcDb> {
                 }
             }
 
-            List<Row> upserted = JdbcUtils.upsert(getConnection(), table.getTableName(), table.getResourceIndex().getColumnNames(), rows);
+            List<Row> upserted = write(conn -> JdbcUtils.upsert(conn, table.getTableName(), table.getResourceIndex().getColumnNames(), rows, batchSize));
             return upserted.stream().map(table::encodeKeyFromColumnNames).collect(Collectors.toList());
         } catch (Exception ex) {
             throw ApiException.new500InternalServerError(ex);
@@ -309,7 +400,7 @@ public class JdbcDb extends Db<JdbcDb> {
             }
 
             List<String>  resourceKeys = new ArrayList<>();
-            List<Integer> updateCounts = JdbcUtils.update(getConnection(), table.getTableName(), table.getResourceIndex().getColumnNames(), rows);
+            List<Integer> updateCounts = write(conn -> JdbcUtils.update(conn, table.getTableName(), table.getResourceIndex().getColumnNames(), rows));
             for (int i = 0; i < rows.size(); i++) {
                 Integer count = updateCounts.get(i);
                 if (count == null)
@@ -349,7 +440,8 @@ public class JdbcDb extends Db<JdbcDb> {
                 String sql = "";
                 sql += " DELETE FROM " + quoteCol(table.getTableName());
                 sql += " WHERE " + quoteCol(keyCol) + " IN (" + JdbcUtils.getQuestionMarkStr(columnMappedIndexValues.size()) + ")";
-                JdbcUtils.execute(getConnection(), sql, values.toArray());
+                String deleteSql = sql;
+                write(conn -> JdbcUtils.execute(conn, deleteSql, values.toArray()));
             } else {
                 StringBuilder sql = new StringBuilder();
                 sql.append(" DELETE FROM ").append(quoteCol(table.getTableName()));
@@ -371,13 +463,49 @@ public class JdbcDb extends Db<JdbcDb> {
                     }
                     sql.append(")");
                 }
-                JdbcUtils.execute(getConnection(), sql.toString(), values.toArray());
+                write(conn -> JdbcUtils.execute(conn, sql.toString(), values.toArray()));
             }
         } catch (Exception ex) {
             throw ApiException.new500InternalServerError(ex);
         }
     }
 
+    /**
+     * Runs <code>write</code> on the request's managed Connection or, when <code>groupCommitWindow</code> is
+     * greater than zero, through the {@link GroupCommitWriter} so it is committed along with writes from other requests.
+     *
+     * @param write the work to do
+     * @param <T>   the result type
+     * @return the result of <code>write</code>
+     * @throws Exception if the write, or the group commit, fails
+     */
+    protected <T> T write(GroupCommitWriter.Write<T> write) throws Exception {
+        if (groupCommitWindow <= 0)
+            return write.apply(getConnection());
+
+        return getGroupCommitWriter().write(write);
+    }
+
+    /**
+     * @return the GroupCommitWriter used when <code>groupCommitWindow</code> is greater than zero
+     */
+    public GroupCommitWriter getGroupCommitWriter() {
+        GroupCommitWriter writer = groupCommitWriter;
+        if (writer == null && groupCommitWindow > 0) {
+            poolLock.lock();
+            try {
+                writer = groupCommitWriter;
+                if (writer == null) {
+                    writer = new GroupCommitWriter(this, groupCommitWindow, groupCommitMaxSize);
+                    groupCommitWriter = writer;
+                }
+            } finally {
+                poolLock.unlock();
+            }
+        }
+        return writer;
+    }
+
     /**
      * Shortcut for getConnection(true);
      *
@@ -390,9 +518,9 @@ public class JdbcDb extends Db<JdbcDb> {
     /**
      * Returns a JDBC connection to the underlying JDBC db.
      * <p>
-     * If managed is true the Connection is shared on the ThreadLocal with autoCommit managed by this Db and an EngineListener.
+     * If managed is true the Connection is shared on the current RequestScope with autoCommit managed by this Db and an EngineListener.
      * Callers should NOT close this connection.  It will not create a connection pool leak.  All managed connections attached
-     * to the ThreadLocal are closed/returned to the pool when the Engine finishes serving a s Request.
+     * to the RequestScope are closed/returned to the pool when the Engine finishes serving a s Request.
      * <p>
      * If managed is false, a completely new Connection is returned.
      *
@@ -410,12 +538,17 @@ public class JdbcDb extends Db<JdbcDb> {
                 DataSource pool = pools.get(this);
 
                 if (pool == null) {
-                    synchronized (this) {
+                    //-- a lock instead of synchronized so virtual threads waiting
+                    //-- on pool creation, which does blocking I/O, don't pin their carrier
+                    poolLock.lock();
+                    try {
                         pool = pools.get(this);
                         if (pool == null) {
                             pool = createConnectionPool();
                         }
                         pools.put(this, pool);
+                    } finally {
+                        poolLock.unlock();
                     }
                 }
 
@@ -821,4 +954,130 @@ public class JdbcDb extends Db<JdbcDb> {
         return this;
     }
 
+    public boolean isCalcRowsFound() {
+        return calcRowsFound;
+    }
+
+    public JdbcDb withCalcRowsFound(boolean calcRowsFound) {
+        this.calcRowsFound = calcRowsFound;
+        return this;
+    }
+
+    /**
+     * @param collection the collection being queried, may be null
+     * @return the strategy configured for <code>collection</code> or the Db default
+     */
+    public CountStrategy getCountStrategy(Collection collection) {
+        CountStrategy strategy = collection == null ? null : countStrategies.get(collection.getName());
+        return strategy != null ? strategy : countStrategy;
+    }
+
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+
+    public JdbcDb withCountStrategy(CountStrategy countStrategy) {
+        this.countStrategy = countStrategy == null ? CountStrategy.EXACT : countStrategy;
+        return this;
+    }
+
+    public JdbcDb withCountStrategy(String collectionName, CountStrategy countStrategy) {
+        if (countStrategy == null)
+            countStrategies.remove(collectionName);
+        else
+            countStrategies.put(collectionName, countStrategy);
+        return this;
+    }
+
+    public long getCountCacheTtl() {
+        return countCacheTtl;
+    }
+
+    public JdbcDb withCountCacheTtl(long countCacheTtl) {
+        this.countCacheTtl = countCacheTtl;
+        return this;
+    }
+
+    /**
+     * @param key the normalized count query
+     * @return the cached count or -1 if there is no unexpired count for <code>key</code>
+     */
+    protected long getCachedCount(String key) {
+        LruCache<String, Long> cache = countCache;
+        Long                   count = cache == null ? null : cache.get(key);
+        return count == null ? -1 : count;
+    }
+
+    protected void putCachedCount(String key, long count) {
+        if (countCacheTtl <= 0)
+            return;
+
+        LruCache<String, Long> cache = countCache;
+        if (cache == null) {
+            cache = new LruCache<>(MAX_CACHED_COUNTS, 8);
+            countCache = cache;
+        }
+        cache.put(key, count, countCacheTtl);
+    }
+
+    public int getSqlCacheSize() {
+        return sqlCacheSize;
+    }
+
+    public JdbcDb withSqlCacheSize(int sqlCacheSize) {
+        this.sqlCacheSize = sqlCacheSize;
+        this.sqlCache = null;
+        return this;
+    }
+
+    /**
+     * @return the cache of generated SQL, with its hit and miss counts, or null if <code>sqlCacheSize</code> is less than 1
+     */
+    public SqlCache getSqlCache() {
+        SqlCache cache = sqlCache;
+        if (cache == null && sqlCacheSize > 0) {
+            cache = new SqlCache(sqlCacheSize);
+            sqlCache = cache;
+        }
+        return cache;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public JdbcDb withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public long getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    public JdbcDb withGroupCommitWindow(long groupCommitWindow) {
+        this.groupCommitWindow = groupCommitWindow;
+        this.groupCommitWriter = null;
+        return this;
+    }
+
+    public int getGroupCommitMaxSize() {
+        return groupCommitMaxSize;
+    }
+
+    public JdbcDb withGroupCommitMaxSize(int groupCommitMaxSize) {
+        this.groupCommitMaxSize = groupCommitMaxSize;
+        this.groupCommitWriter = null;
+        return this;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public JdbcDb withFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
 }
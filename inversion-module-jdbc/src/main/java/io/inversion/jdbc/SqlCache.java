@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc;
+
+import io.inversion.query.Order.Sort;
+import io.inversion.utils.LruCache;
+
+import java.util.List;
+
+/**
+ * A bounded, least recently used, cache of prepared SQL statements keyed by query shape.
+ * <p>
+ * A query shape is the query's terms with filter literals replaced by placeholders so
+ * <code>eq(orderId,10248)</code> and <code>eq(orderId,10249)</code> share the same generated
+ * SQL and only differ in the values bound to it.  See {@link SqlQuery#getShapeKey(List, java.util.Set)}.
+ * <p>
+ * Finding an uncacheable plan counts as a miss so {@link #getHits()} is the number of lookups that found a cacheable plan.
+ */
+public class SqlCache extends LruCache<String, SqlCache.Plan> {
+
+    /**
+     * The generated SQL for a query shape along with the instructions for binding a new query's values to it.
+     * <p>
+     * Each bound value comes either from the <code>leaves[i]</code>th placeholder of the new query's shape
+     * or, when <code>leaves[i]</code> is -1, is the constant <code>constants[i]</code>.
+     */
+    public static class Plan {
+        final String     sql;
+        final String[]   columns;
+        final int[]      leaves;
+        final String[]   constants;
+        final List<Sort> defaultSorts;
+
+        Plan(String sql, String[] columns, int[] leaves, String[] constants, List<Sort> defaultSorts) {
+            this.sql = sql;
+            this.columns = columns;
+            this.leaves = leaves;
+            this.constants = constants;
+            this.defaultSorts = defaultSorts;
+        }
+
+        /**
+         * @return the prepared statement or null if queries of this shape can not be cached
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        public boolean isCacheable() {
+            return sql != null;
+        }
+    }
+
+    /**
+     * Marks a shape that was found to be uncacheable so it is not analyzed again.
+     */
+    static final Plan UNCACHEABLE = new Plan(null, null, null, null, null);
+
+    public SqlCache(int maxSize) {
+        super(maxSize);
+    }
+
+    @Override
+    protected boolean isHit(String shapeKey, Plan plan) {
+        return plan != null && plan.isCacheable();
+    }
+
+    public int getMaxSize() {
+        return (int) getMaxWeight();
+    }
+}
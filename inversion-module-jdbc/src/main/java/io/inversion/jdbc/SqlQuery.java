@@ -20,15 +20,27 @@ import io.inversion.*;
 import io.inversion.query.*;
 import io.inversion.query.Projection;
 import io.inversion.query.Order.Sort;
+import io.inversion.json.JSCursor;
+import io.inversion.json.JSMap;
 import io.inversion.rql.Term;
 import io.inversion.utils.JdbcUtils;
-import io.inversion.utils.Rows;
 import io.inversion.utils.Utils;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.Map.Entry;
 
 /**
@@ -39,8 +51,33 @@ public class SqlQuery<D extends Db> extends io.inversion.query.Query<SqlQuery, D
     protected char stringQuote = '\'';
     protected char columnQuote = '"';
 
+    /**
+     * Column alias for the "COUNT(*) OVER()" total added by {@link JdbcDb.CountStrategy#WINDOW}.
+     */
+    static final String FOUND_ROWS_COL = "inversion_found_rows";
+
+    /**
+     * Finds the top level row estimate in Postgres "EXPLAIN (FORMAT JSON)" output.
+     */
+    static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\"\\s*:\\s*(\\d+)");
+
+    /**
+     * Filter functions whose literal arguments are replaced by placeholders in the {@link #getShapeKey(List, Set)}.
+     */
+    static final Set<String> SHAPE_FUNCTIONS = Utils.asSet("eq", "ne", "gt", "ge", "lt", "le", "in", "out", "and", "or", "not");
+
     String type = null;
 
+    /**
+     * The total read from the {@link #FOUND_ROWS_COL} column of the first row or -1.
+     */
+    int windowFoundRows = -1;
+
+    /**
+     * The leaf of each value bound by {@link #replace(Term, Term, int, String, String)}, in order, while a {@link SqlCache.Plan} is being recorded.
+     */
+    List<Term> boundLeaves = null;
+
     LinkedHashMap<String, Term> joins;
 
 //    public SqlQuery() {
@@ -99,23 +136,27 @@ public class SqlQuery<D extends Db> extends io.inversion.query.Query<SqlQuery, D
         Results results = new Results(this);
         List    values  = getColValues();
 
-        //-- for test cases and query explain
-        String debug = getClass().getSimpleName() + " " + getType() + ": " + sql + " args=" + getOriginalValues();
-        //String debug = sql + " args=" + values;
-        debug = debug.replaceAll("\r", "");
-        debug = debug.replaceAll("\n", " ");
-        debug = debug.replaceAll(" +", " ");
-        Chain.debug(debug);
-        results.withTestQuery(debug);
+        //-- for test cases and query explain, the string is only built if it is read
+        List args = getOriginalValues();
+        results.withTestQuery(() -> Utils.collapseWhitespace(getClass().getSimpleName() + " " + getType() + ": " + sql + " args=" + args));
+        if (Chain.isDebugEnabled())
+            Chain.debug(results.getTestQuery());
 
-        if (!isDryRun()) {
+        if (!isDryRun() && isStreaming()) {
+            try {
+                results.withCursor(openCursor(db, sql, values));
+            } catch (Exception ex) {
+                throw ApiException.new500InternalServerError(ex);
+            }
+        } else if (!isDryRun()) {
             Connection conn = db.getConnection();
             //-- prepared statement variables are computing during the
             //-- generation of the prepared statement above
 
             try {
-                Rows rows = JdbcUtils.selectRows(conn, sql, values);
+                List<JSMap> rows = JdbcUtils.select(conn, sql, rs -> mapRows(db, rs), values);
                 results.withRows(rows);
+                results.withMapped(true);
 
                 boolean usesAfter = false;
 
@@ -129,7 +170,7 @@ public class SqlQuery<D extends Db> extends io.inversion.query.Query<SqlQuery, D
                                 String pkCol = pk.getColumnName(0);
                                 Sort   last  = sorts.get(sorts.size() - 1);
                                 if (last.getProperty().equalsIgnoreCase(pk.getColumnName(0))) {
-                                    String lastPk = collection.encodeKeyFromColumnNames(rows.get(rows.size() - 1));
+                                    String lastPk = collection.encodeKeyFromJsonNames(rows.get(rows.size() - 1));
                                     if (lastPk != null) {
                                         usesAfter = true;
                                         if (last.isAsc())
@@ -177,8 +218,293 @@ public class SqlQuery<D extends Db> extends io.inversion.query.Query<SqlQuery, D
         return results;
     }
 
+    /**
+     * Builds json named, type cast rows straight from the ResultSet using a {@link RowMapper} plan.
+     *
+     * @param db the db used to cast column values
+     * @param rs the query results
+     * @return the mapped rows
+     * @throws SQLException if the ResultSet can not be read
+     */
+    protected List<JSMap> mapRows(Db db, ResultSet rs) throws SQLException {
+        List<String> columns  = getColumnLabels(rs);
+        int          countCol = columns.size() - 1;
+        if (countCol < 0 || !FOUND_ROWS_COL.equalsIgnoreCase(columns.get(countCol)))
+            countCol = -1;
+        else
+            columns.remove(countCol); //-- it is always last so the other column positions are unchanged
+
+        RowMapper                            mapper = RowMapper.of(db, collection, columns);
+        RowMapper.ColumnReader<SQLException> reader = column -> JdbcUtils.getObject(rs, column + 1);
+
+        List<JSMap> rows = new ArrayList<>();
+        while (rs.next()) {
+            if (countCol >= 0 && rows.isEmpty())
+                windowFoundRows = rs.getInt(countCol + 1);
+            rows.add(mapper.map(reader));
+        }
+        return rows;
+    }
+
+    /**
+     * @return true if the calling Action asked for a streaming Results and this query's page limit meets its threshold
+     * @see Results#STREAM_THRESHOLD
+     */
+    protected boolean isStreaming() {
+        RequestScope scope     = RequestScope.peek();
+        Object       threshold = scope != null ? scope.getAttribute(Results.STREAM_THRESHOLD) : null;
+        return threshold instanceof Integer && (Integer) threshold > 0 && getPage().getLimit() >= (Integer) threshold;
+    }
+
+    /**
+     * Runs the select on its own unmanaged Connection through a forward only cursor and maps each row only as it is read.
+     * <p>
+     * The rows are read while the response is being written, which is after the request transaction has been
+     * committed and its pooled Connection released, so the cursor owns its Connection and returns it to the pool when
+     * the rows are exhausted or the cursor is closed.
+     *
+     * @param db     the db to query
+     * @param sql    the prepared statement sql
+     * @param values the prepared statement args
+     * @return a one pass cursor of json named, type cast rows
+     * @throws SQLException if the query fails
+     */
+    protected JSCursor openCursor(JdbcDb db, String sql, List values) throws SQLException {
+        Connection conn = db.getConnection(false);
+        ResultSet  rs   = null;
+        try {
+            int fetchSize = db.getFetchSize();
+            if (db.isType("mysql"))
+                fetchSize = Integer.MIN_VALUE; //-- the MySQL driver only streams rows when given this exact value
+            else if (db.isType("postgres"))
+                conn.setAutoCommit(false); //-- the Postgres driver ignores the fetch size in autoCommit mode
+
+            rs = JdbcUtils.openCursor(conn, sql, fetchSize, values);
+
+            ResultSet                            cursor = rs;
+            RowMapper                            mapper = RowMapper.of(db, collection, getColumnLabels(rs));
+            RowMapper.ColumnReader<SQLException> reader = column -> JdbcUtils.getObject(cursor, column + 1);
+
+            Iterator<JSMap> rows = new Iterator<JSMap>() {
+                Boolean hasNext = null;
+
+                public boolean hasNext() {
+                    if (hasNext == null) {
+                        try {
+                            hasNext = cursor.next();
+                        } catch (SQLException ex) {
+                            throw ApiException.new500InternalServerError(ex);
+                        }
+                    }
+                    return hasNext;
+                }
+
+                public JSMap next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    hasNext = null;
+                    try {
+                        return mapper.map(reader);
+                    } catch (SQLException ex) {
+                        throw ApiException.new500InternalServerError(ex);
+                    }
+                }
+            };
+            return new JSCursor(rows, () -> JdbcUtils.close(cursor, cursor.getStatement(), conn));
+        } catch (SQLException | RuntimeException ex) {
+            JdbcUtils.close(rs, conn);
+            throw ex;
+        }
+    }
+
+    protected List<String> getColumnLabels(ResultSet rs) throws SQLException {
+        ResultSetMetaData rsmd    = rs.getMetaData();
+        int               cols    = rsmd.getColumnCount();
+        List<String>      columns = new ArrayList<>(cols);
+        for (int i = 1; i <= cols; i++)
+            columns.add(rsmd.getColumnLabel(i));
+        return columns;
+    }
+
+    /**
+     * Generates the prepared statement, or reuses the SQL generated for a previous query with the same shape, and binds this query's values.
+     *
+     * @return the prepared statement
+     * @see JdbcDb#getSqlCache()
+     */
     public String getPreparedStmt() {
-        return toSql(true);
+        SqlCache cache = db instanceof JdbcDb ? ((JdbcDb) db).getSqlCache() : null;
+        if (cache == null)
+            return toSql(true);
+
+        List<Term> placeholders = new ArrayList<>();
+        Set<Term>  leaves       = Collections.newSetFromMap(new IdentityHashMap<>());
+        String     key          = getShapeKey(placeholders, leaves);
+
+        SqlCache.Plan plan = cache.get(key);
+        if (plan != null) {
+            if (plan.isCacheable())
+                return bind(plan, placeholders);
+            return toSql(true);
+        }
+
+        boolean sorted = !getOrder().getSorts().isEmpty();
+        String  sql;
+        boundLeaves = new ArrayList<>();
+        try {
+            sql = toSql(true);
+            cache.put(key, record(sql, placeholders, leaves, sorted ? null : getOrder().getSorts()));
+        } finally {
+            boundLeaves = null;
+        }
+        return sql;
+    }
+
+    /**
+     * Describes everything about this query that affects the generated prepared statement.
+     * <p>
+     * Literal arguments of {@link #SHAPE_FUNCTIONS} in the where clause, for example the "10248" in <code>eq(orderId,10248)</code>,
+     * are written as placeholders when printing them could not change the SQL.  All other terms are written as is.
+     *
+     * @param placeholders collects the leaves that were written as placeholders, in order
+     * @param leaves       collects every leaf written to the key
+     * @return the query shape
+     */
+    protected String getShapeKey(List<Term> placeholders, Set<Term> leaves) {
+        StringBuilder key = new StringBuilder(getClass().getName()).append('|').append(getType()).append('|');
+        if (collection != null)
+            key.append(collection.getName()).append('@').append(System.identityHashCode(collection)).append('v').append(collection.getVersion());
+
+        Chain chain = Chain.peek();
+        key.append('|').append(isStreaming()).append(',').append(isWindowCount()).append(',').append(isCalcFoundRows())//
+                .append(',').append(chain != null && chain.get("foundRows") == null)//
+                .append('|').append(getPage().getOffset()).append(',').append(getPage().getLimit()).append('|');
+
+        appendShape(key, this, placeholders, leaves);
+        return key.toString();
+    }
+
+    void appendShape(StringBuilder key, Builder builder, List<Term> placeholders, Set<Term> leaves) {
+        boolean filters = builder == getWhere();
+        key.append(builder.getClass().getName()).append('[');
+        for (Term term : (List<Term>) builder.getTerms())
+            appendShape(key, term, filters, placeholders, leaves);
+        for (Builder child : (List<Builder>) builder.getBuilders())
+            appendShape(key, child, placeholders, leaves);
+        key.append(']');
+    }
+
+    void appendShape(StringBuilder key, Term term, boolean normalize, List<Term> placeholders, Set<Term> leaves) {
+        String token = term.getToken() == null ? "" : term.getToken();
+        if (term.isLeaf()) {
+            leaves.add(term);
+            if (normalize && isPlaceholder(term)) {
+                placeholders.add(term);
+                key.append(term.getQuote()).append(isNum(term) ? '#' : '?');
+            } else {
+                key.append(term.getQuote()).append(token.length()).append(':').append(token);
+            }
+        } else {
+            normalize = normalize && SHAPE_FUNCTIONS.contains(token.toLowerCase());
+            key.append(token.length()).append(':').append(token).append('(');
+            for (Term child : term.getTerms())
+                appendShape(key, child, normalize, placeholders, leaves);
+            key.append(')');
+        }
+    }
+
+    /**
+     * A leaf can be a placeholder if it will be bound as a prepared statement value exactly as tokenized,
+     * no matter its value, so that any other value of the same kind produces identical SQL.
+     *
+     * @param leaf the literal to check
+     * @return true if <code>leaf</code> is a plain string or number value
+     */
+    protected boolean isPlaceholder(Term leaf) {
+        String token = leaf.getToken();
+        if (Utils.empty(token) || "null".equalsIgnoreCase(token) || isBool(leaf) || isCol(leaf))
+            return false;
+
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '*' || c == '%' || c == '\\' || c == '\'' || c == '"' || c == '`' || c == stringQuote || c == columnQuote)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Turns the values bound while generating <code>sql</code> into a plan for binding the values of future queries with the same shape.
+     *
+     * @return the plan or {@link SqlCache#UNCACHEABLE} if a value can not be traced back to a leaf of the query shape
+     */
+    SqlCache.Plan record(String sql, List<Term> placeholders, Set<Term> leaves, List<Sort> defaultSorts) {
+        if (boundLeaves.size() != originalValues.size())
+            return SqlCache.UNCACHEABLE;
+
+        Map<Term, Integer> ordinals = new IdentityHashMap<>();
+        for (int i = 0; i < placeholders.size(); i++)
+            ordinals.put(placeholders.get(i), i);
+
+        int       size      = originalValues.size();
+        String[]  columns   = new String[size];
+        int[]     ordinal   = new int[size];
+        String[]  constants = new String[size];
+        boolean[] bound     = new boolean[placeholders.size()];
+        for (int i = 0; i < size; i++) {
+            Term    leaf  = boundLeaves.get(i);
+            Object  value = originalValues.get(i).getValue();
+            Integer idx   = ordinals.get(leaf);
+
+            columns[i] = (String) originalValues.get(i).getKey();
+            ordinal[i] = -1;
+            if (idx != null) {
+                if (!leaf.getToken().equals(value))
+                    return SqlCache.UNCACHEABLE;
+                ordinal[i] = idx;
+                bound[idx] = true;
+            } else if (leaves.contains(leaf) && value instanceof String) {
+                constants[i] = (String) value;
+            } else {
+                return SqlCache.UNCACHEABLE;
+            }
+        }
+
+        //-- a placeholder that was printed inline instead of bound would leave its value in the sql
+        for (boolean b : bound) {
+            if (!b)
+                return SqlCache.UNCACHEABLE;
+        }
+
+        List<Sort> sorts = null;
+        if (defaultSorts != null) {
+            sorts = new ArrayList<>();
+            for (Sort sort : defaultSorts)
+                sorts.add(new Sort(sort.getProperty(), sort.isAsc()));
+        }
+        return new SqlCache.Plan(sql, columns, ordinal, constants, sorts);
+    }
+
+    /**
+     * Binds this query's values to a cached plan and applies the side effects generating the SQL would have had.
+     *
+     * @return the cached sql
+     */
+    String bind(SqlCache.Plan plan, List<Term> placeholders) {
+        clearValues();
+        for (int i = 0; i < plan.columns.length; i++) {
+            int    idx   = plan.leaves[i];
+            String value = idx < 0 ? plan.constants[i] : placeholders.get(idx).getToken();
+            withColValue(plan.columns[i], value);
+        }
+
+        if (plan.defaultSorts != null && getOrder().getSorts().isEmpty()) {
+            List<Sort> sorts = new ArrayList<>();
+            for (Sort sort : plan.defaultSorts)
+                sorts.add(new Sort(sort.getProperty(), sort.isAsc()));
+            getOrder().withSorts(sorts);
+        }
+        return plan.sql;
     }
 
     public String getDynamicStmt() {
@@ -316,7 +642,7 @@ public class SqlQuery<D extends Db> extends io.inversion.query.Query<SqlQuery, D
             parts.select = parts.select.substring(0, idx) + " DISTINCT " + parts.select.substring(idx);
         }
 
-        if (getPage().isPaginated() && Chain.peek() != null && Chain.peek().get("foundRows") == null && "mysql".equalsIgnoreCase(getType()) && parts.select.toLowerCase().trim().startsWith("select")) {
+        if (getPage().isPaginated() && Chain.peek() != null && Chain.peek().get("foundRows") == null && "mysql".equalsIgnoreCase(getType()) && isCalcFoundRows() && parts.select.toLowerCase().trim().startsWith("select")) {
             int idx = parts.select.toLowerCase().indexOf("select") + 6;
             parts.select = parts.select.substring(0, idx) + " SQL_CALC_FOUND_ROWS " + parts.select.substring(idx);
         }
@@ -326,6 +652,10 @@ public class SqlQuery<D extends Db> extends io.inversion.query.Query<SqlQuery, D
             parts.select = parts.select.substring(0, parts.select.length()-1) + " ";
         }
 
+        if (isWindowCount()) {
+            parts.select = parts.select.trim() + ", COUNT(*) OVER() AS " + quoteCol(FOUND_ROWS_COL) + " ";
+        }
+
 
         return parts.select;
     }
@@ -556,26 +886,131 @@ public class SqlQuery<D extends Db> extends io.inversion.query.Query<SqlQuery, D
         return s;
     }
 
+    /**
+     * @return the count strategy for this query's collection
+     */
+    protected JdbcDb.CountStrategy getCountStrategy() {
+        if (db instanceof JdbcDb)
+            return ((JdbcDb) db).getCountStrategy(collection);
+        return JdbcDb.CountStrategy.EXACT;
+    }
+
+    /**
+     * @return true if the MySQL SQL_CALC_FOUND_ROWS hint should be added so FOUND_ROWS() can be used for an EXACT count
+     */
+    protected boolean isCalcFoundRows() {
+        return getCountStrategy() == JdbcDb.CountStrategy.EXACT && (!(db instanceof JdbcDb) || ((JdbcDb) db).isCalcRowsFound());
+    }
+
+    /**
+     * A window count is computed before DISTINCT is applied so it would overcount DISTINCT queries.
+     *
+     * @return true if "COUNT(*) OVER()" should be added to the select
+     */
+    protected boolean isWindowCount() {
+        return getCountStrategy() == JdbcDb.CountStrategy.WINDOW //
+                && !getSelect().isDistinct() //
+                && !isStreaming() //
+                && Chain.peek() != null && Chain.peek().get("foundRows") == null;
+    }
+
+    /**
+     * Computes the total number of rows matching the query, ignoring paging, using the configured {@link JdbcDb.CountStrategy}.
+     *
+     * @param conn   the connection the query ran on
+     * @param sql    the query that was run
+     * @param values the query args
+     * @return the number of matching rows or -1 if the strategy is NONE
+     * @throws Exception if the count query fails
+     */
     protected int queryFoundRows(Connection conn, String sql, List values) throws Exception {
+        switch (getCountStrategy()) {
+            case NONE:
+                return -1;
+            case WINDOW:
+                if (windowFoundRows >= 0)
+                    return windowFoundRows;
+                break;
+            case ESTIMATE:
+                long estimate = queryEstimatedRows(conn, stripPaging(sql), values);
+                if (estimate >= 0)
+                    return (int) Math.min(estimate, Integer.MAX_VALUE);
+                break;
+            case CACHED:
+                String key = stripPaging(sql) + " args=" + values;
+                long cached = ((JdbcDb) db).getCachedCount(key);
+                if (cached < 0) {
+                    cached = queryExactRows(conn, sql, values);
+                    ((JdbcDb) db).putCachedCount(key, cached);
+                }
+                return (int) Math.min(cached, Integer.MAX_VALUE);
+        }
+        return queryExactRows(conn, sql, values);
+    }
+
+    protected int queryExactRows(Connection conn, String sql, List values) throws Exception {
         int foundRows;
-        if (db.isType("mysql")) {
+        if (db.isType("mysql") && isCalcFoundRows()) {
             sql = "SELECT FOUND_ROWS()";
             foundRows = (int)JdbcUtils.selectLong(conn, sql);
         } else {
-            if (sql.indexOf("LIMIT ") > 0)
-                sql = sql.substring(0, sql.lastIndexOf("LIMIT "));
+            sql = "SELECT count(1) FROM ( " + stripPaging(sql) + " ) as q";
+            foundRows = (int)JdbcUtils.selectLong(conn, sql, values);
+        }
+        return foundRows;
+    }
 
-            if (sql.indexOf("OFFSET ") > 0)
-                sql = sql.substring(0, sql.lastIndexOf("OFFSET "));
+    /**
+     * Asks the database for its planner estimate of the number of rows <code>sql</code> would return.
+     *
+     * @param conn   the connection to use
+     * @param sql    the query without order or paging
+     * @param values the query args
+     * @return the estimate or -1 if one is not available for this database or query
+     * @throws Exception if the estimate query fails
+     */
+    protected long queryEstimatedRows(Connection conn, String sql, List values) throws Exception {
+        String  lower    = sql.toLowerCase();
+        boolean filtered = lower.contains(" where ") || lower.contains(" group by ") || lower.contains(" distinct ") || lower.contains(" join ");
+        String  table    = collection != null ? collection.getTableName() : null;
+
+        if (db.isType("postgres")) {
+            if (!filtered && table != null) {
+                long estimate = JdbcUtils.selectLong(conn, "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)", quoteCol(table));
+                if (estimate >= 0)
+                    return estimate;
+            }
+            Object plan = JdbcUtils.selectValue(conn, "EXPLAIN (FORMAT JSON) " + sql, values);
+            if (plan != null) {
+                Matcher m = PLAN_ROWS.matcher(plan.toString());
+                if (m.find())
+                    return Long.parseLong(m.group(1));
+            }
+        } else if (db.isType("mysql")) {
+            if (!filtered && table != null) {
+                Object estimate = JdbcUtils.selectValue(conn, "SELECT table_rows FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?", table);
+                if (estimate != null)
+                    return Long.parseLong(estimate.toString());
+            }
+        }
+        return -1;
+    }
 
-            if (sql.indexOf("ORDER BY ") > 0)
-                sql = sql.substring(0, sql.lastIndexOf("ORDER BY "));
+    /**
+     * @param sql the query
+     * @return <code>sql</code> without its ORDER BY, LIMIT and OFFSET clauses
+     */
+    protected String stripPaging(String sql) {
+        if (sql.indexOf("LIMIT ") > 0)
+            sql = sql.substring(0, sql.lastIndexOf("LIMIT "));
 
-            sql = "SELECT count(1) FROM ( " + sql + " ) as q";
+        if (sql.indexOf("OFFSET ") > 0)
+            sql = sql.substring(0, sql.lastIndexOf("OFFSET "));
 
-            foundRows = (int)JdbcUtils.selectLong(conn, sql, values);
-        }
-        return foundRows;
+        if (sql.indexOf("ORDER BY ") > 0)
+            sql = sql.substring(0, sql.lastIndexOf("ORDER BY "));
+
+        return sql;
     }
 
     protected String printTerm(Term term, String col, boolean preparedStmt) {
@@ -866,6 +1301,9 @@ public class SqlQuery<D extends Db> extends io.inversion.query.Query<SqlQuery, D
                 return val;
         }
 
+        if (boundLeaves != null)
+            boundLeaves.add(leaf);
+
         withColValue(col, val);
         return asVariableName(castValues.size() - 1);
     }
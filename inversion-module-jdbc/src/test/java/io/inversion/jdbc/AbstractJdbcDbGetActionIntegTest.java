@@ -57,6 +57,36 @@ public abstract class AbstractJdbcDbGetActionIntegTest extends AbstractDbGetActi
 
     }
 
+    @Test
+    public void testCountStrategies() throws Exception {
+        Engine engine = engine();
+        JdbcDb db     = (JdbcDb) engine.getApi("northwind").getDbs().get(0);
+        String url    = url("orders?pageNum=2&pageSize=10");
+
+        int exact = engine.get(url).assertOk().getFoundRows();
+        assertTrue(exact > 10);
+
+        try {
+            for (JdbcDb.CountStrategy strategy : Arrays.asList(JdbcDb.CountStrategy.WINDOW, JdbcDb.CountStrategy.ESTIMATE, JdbcDb.CountStrategy.CACHED)) {
+                db.withCountStrategy(strategy);
+                Response res = engine.get(url).assertOk();
+                assertEquals(10, res.data().size(), strategy + "");
+                assertNull(res.find("data.0." + SqlQuery.FOUND_ROWS_COL), strategy + "");
+                if (strategy != JdbcDb.CountStrategy.ESTIMATE || db.isType("h2"))
+                    assertEquals(exact, res.getFoundRows(), strategy + "");
+            }
+
+            db.withCountStrategy(JdbcDb.CountStrategy.EXACT);
+            db.withCountStrategy("orders", JdbcDb.CountStrategy.NONE);
+            Response res = engine.get(url).assertOk();
+            assertNull(res.find("meta.foundRows"));
+            assertNotNull(res.getNext());
+        } finally {
+            db.withCountStrategy(JdbcDb.CountStrategy.EXACT);
+            db.withCountStrategy("orders", null);
+        }
+    }
+
     @Test
     public void testNegativeOneToManyFilters() throws Exception {
         Response resp;
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc;
+
+import io.inversion.*;
+import io.inversion.action.db.DbAction;
+import io.inversion.rql.Term;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the latency of <code>orders?expand=customer,employee,orderdetails</code> against the H2 Northwind
+ * database with {@link io.inversion.action.db.DbGetAction#withExpandThreads(int)} set to 1 and to 4.
+ * <p>
+ * An in memory H2 select returns in microseconds so the optional first argument adds that many milliseconds
+ * to every select to stand in for the network round trip to a real database server.
+ * <p>
+ * This is not run as part of the test suite, run the main method directly.
+ */
+public class ExpandBenchmark {
+
+    static final String URL = "northwind/orders?limit=100&sort=orderId&expand=customer,employee,orderdetails";
+
+    public static void main(String[] args) {
+        int  requests = 200;
+        long latency  = args.length > 0 ? Long.parseLong(args[0]) : 0;
+
+        JdbcDb db = new JdbcDb("h2", "org.h2.Driver", "jdbc:h2:mem:expandbenchmark;IGNORECASE=TRUE;DB_CLOSE_DELAY=-1", "sa", "", JdbcDb.class.getResource("northwind-h2.ddl").toString()) {
+            @Override
+            public Results doSelect(Collection coll, List<Term> columnMappedTerms) throws ApiException {
+                if (latency > 0) {
+                    try {
+                        Thread.sleep(latency);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.doSelect(coll, columnMappedTerms);
+            }
+        };
+        DbAction action = new DbAction();
+        Engine   engine = new Engine(new Api("northwind").withDb(db).withEndpoint("GET,PUT,POST,*", action));
+        try {
+            engine.startup();
+            String expected = engine.get(URL).assertOk().data().toString();
+
+            System.out.println("select latency ms, expandThreads, mean ms, p50 ms, p99 ms");
+            for (int round = 0; round < 2; round++) {
+                for (int threads : new int[]{1, 4}) {
+                    action.getGetAction().withExpandThreads(threads);
+                    long[] nanos = time(engine, requests, expected);
+                    System.out.println(latency + ", " + threads + ", " + ms(mean(nanos)) + ", " + ms(nanos[nanos.length / 2]) + ", " + ms(nanos[nanos.length * 99 / 100]));
+                }
+            }
+        } finally {
+            engine.shutdown();
+            db.shutdown();
+        }
+    }
+
+    /**
+     * @return the sorted nanos taken by each request
+     */
+    static long[] time(Engine engine, int requests, String expected) {
+        //-- warmup
+        for (int i = 0; i < requests / 5; i++)
+            engine.get(URL).assertOk();
+
+        long[] nanos = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            long     start = System.nanoTime();
+            Response res   = engine.get(URL).assertOk();
+            nanos[i] = System.nanoTime() - start;
+
+            if (!expected.equals(res.data().toString()))
+                throw new IllegalStateException("The expanded document changed");
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    static long mean(long[] nanos) {
+        long total = 0;
+        for (long n : nanos)
+            total += n;
+        return total / nanos.length;
+    }
+
+    static String ms(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000d);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc;
+
+import io.inversion.Collection;
+
+/**
+ * Compares the cost of generating a prepared statement with and without the {@link SqlCache}.
+ * <p>
+ * This is not run as part of the test suite, run the main method directly.
+ */
+public class SqlCacheBenchmark {
+
+    public static void main(String[] args) {
+        int        queries = 200_000;
+        Collection orders  = TestSqlCache.buildOrders();
+        System.out.println("cache, ns/query");
+        for (int round = 0; round < 2; round++) {
+            for (int cacheSize : new int[]{0, 1000}) {
+                JdbcDb db = new JdbcDb().withType("h2").withSqlCacheSize(cacheSize);
+
+                //-- warmup
+                for (int i = 0; i < queries / 10; i++)
+                    generate(db, orders, i);
+
+                long start = System.nanoTime();
+                for (int i = 0; i < queries; i++)
+                    generate(db, orders, i);
+                long elapsed = System.nanoTime() - start;
+
+                String hits = db.getSqlCache() == null ? "" : " (hits=" + db.getSqlCache().getHits() + ", misses=" + db.getSqlCache().getMisses() + ")";
+                System.out.println((cacheSize > 0 ? "on" : "off") + ", " + (elapsed / queries) + hits);
+            }
+        }
+    }
+
+    static void generate(JdbcDb db, Collection orders, int i) {
+        SqlQuery query = TestSqlCache.query(db, orders, "in(orderId," + i + "," + (i + 1) + ")", "eq(shipCountry,France)", "gt(freight," + (i % 100) + ")", "sort(-freight)", "limit(25)");
+        if (query.getPreparedStmt() == null || query.getNumValues() != 4)
+            throw new IllegalStateException("Unexpected query: " + query.getColValues());
+    }
+}
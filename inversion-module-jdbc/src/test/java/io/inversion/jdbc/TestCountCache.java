@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCountCache {
+
+    @Test
+    public void test_full_cache_evicts_least_recently_used_counts() {
+        JdbcDb db = new JdbcDb();
+        for (int i = 0; i <= JdbcDb.MAX_CACHED_COUNTS * 2; i++)
+            db.putCachedCount("query" + i, i);
+
+        int cached = 0;
+        for (int i = 0; i <= JdbcDb.MAX_CACHED_COUNTS * 2; i++) {
+            if (db.getCachedCount("query" + i) >= 0)
+                cached++;
+        }
+        assertTrue(cached > JdbcDb.MAX_CACHED_COUNTS * 3 / 4 && cached <= JdbcDb.MAX_CACHED_COUNTS, "a full cache is not emptied: " + cached);
+        assertEquals(JdbcDb.MAX_CACHED_COUNTS * 2, db.getCachedCount("query" + JdbcDb.MAX_CACHED_COUNTS * 2));
+    }
+
+    @Test
+    public void test_counts_expire() throws Exception {
+        JdbcDb db = new JdbcDb().withCountCacheTtl(1);
+        db.putCachedCount("query", 10);
+        Thread.sleep(5);
+        assertEquals(-1, db.getCachedCount("query"));
+
+        db.withCountCacheTtl(0);
+        db.putCachedCount("query", 10);
+        assertEquals(-1, db.getCachedCount("query"), "a ttl of 0 disables the cache");
+    }
+}
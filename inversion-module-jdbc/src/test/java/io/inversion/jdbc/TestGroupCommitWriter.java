@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc;
+
+import io.inversion.ApiException;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestGroupCommitWriter {
+
+    /**
+     * A JdbcDb whose connections record their transaction calls.
+     */
+    static JdbcDb recordingDb(List<String> calls) {
+        return new JdbcDb() {
+            @Override
+            public Connection getConnection(boolean managed) throws ApiException {
+                calls.add("open");
+                Savepoint savepoint = (Savepoint) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Savepoint.class}, (sp, method, args) -> null);
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, (conn, method, args) -> {
+                    switch (method.getName()) {
+                        case "setSavepoint":
+                            return savepoint;
+                        case "getAutoCommit":
+                            return false;
+                        case "rollback":
+                            calls.add(args == null ? "rollback" : "rollback savepoint");
+                            return null;
+                        case "commit":
+                        case "close":
+                            calls.add(method.getName());
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+            }
+        };
+    }
+
+    @Test
+    public void test_concurrent_writes_share_one_commit() throws Exception {
+        List<String>      calls  = Collections.synchronizedList(new ArrayList<>());
+        JdbcDb            db     = recordingDb(calls).withGroupCommitWindow(500).withGroupCommitMaxSize(3);
+        GroupCommitWriter writer = db.getGroupCommitWriter();
+
+        ExecutorService       executor = Executors.newFixedThreadPool(3);
+        List<Future<Integer>> futures  = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                int write = i;
+                futures.add(executor.submit(() -> writer.write(conn -> {
+                    if (write == 1)
+                        throw new IllegalStateException("write 1 failed");
+                    return write;
+                })));
+            }
+
+            assertEquals(0, (int) futures.get(0).get());
+            assertEquals(2, (int) futures.get(2).get());
+            try {
+                futures.get(1).get();
+                fail("the failed write should have been reported to its caller");
+            } catch (Exception ex) {
+                assertEquals("write 1 failed", ex.getCause().getMessage());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, writer.getGroups(), "the writes should have been grouped, " + calls);
+        assertEquals(3, writer.getWrites());
+        assertEquals(List.of("open", "rollback savepoint", "commit"), calls, "the leader's managed connection is used and left open");
+    }
+
+    @Test
+    public void test_writes_bypass_the_writer_by_default() {
+        JdbcDb db = new JdbcDb();
+        assertNull(db.getGroupCommitWriter());
+
+        db.withGroupCommitWindow(2);
+        assertEquals(2, db.getGroupCommitWriter().getWindow());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc;
+
+import io.inversion.Collection;
+import io.inversion.Index;
+import io.inversion.rql.Rql;
+import io.inversion.rql.Term;
+import io.inversion.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSqlCache {
+
+    static Collection buildOrders() {
+        Collection orders = new Collection("orders")//
+                .withProperty("orderId", "integer")//
+                .withProperty("shipCountry", "varchar")//
+                .withProperty("freight", "decimal");
+        orders.withIndex("pk", Index.TYPE_RESOURCE_KEY, true, "orderId");
+        return orders;
+    }
+
+    static SqlQuery query(JdbcDb db, Collection orders, String... rql) {
+        List<Term> terms = new ArrayList<>();
+        for (String clause : rql)
+            terms.add(Rql.parse(clause));
+        return new SqlQuery<>(db, orders, terms);
+    }
+
+    /**
+     * Generates the SQL with and without the cache and checks both produce the same statement and args.
+     */
+    static String assertSameSql(JdbcDb db, Collection orders, String... rql) {
+        SqlQuery cached = query(db, orders, rql);
+        String   sql    = cached.getPreparedStmt();
+
+        SqlQuery uncached = query(new JdbcDb().withType(db.getType()).withSqlCacheSize(0), orders, rql);
+        assertEquals(uncached.getPreparedStmt() + " args=" + uncached.getColValues(), sql + " args=" + cached.getColValues());
+        assertEquals(uncached.getOrder().getSorts().size(), cached.getOrder().getSorts().size());
+        return sql;
+    }
+
+    @Test
+    public void test_literals_share_cached_sql() {
+        JdbcDb     db     = new JdbcDb().withType("h2");
+        Collection orders = buildOrders();
+
+        String first = assertSameSql(db, orders, "eq(orderId,10248)", "eq(shipCountry,France)");
+        assertEquals(0, db.getSqlCache().getHits());
+        assertEquals(1, db.getSqlCache().getMisses());
+
+        String second = assertSameSql(db, orders, "eq(orderId,10249)", "eq(shipCountry,Germany)");
+        assertSame(first, second, "the generated sql should have been reused");
+        assertEquals(1, db.getSqlCache().getHits());
+
+        SqlQuery query = query(db, orders, "eq(orderId,10250)", "eq(shipCountry,Spain)");
+        query.getPreparedStmt();
+        assertEquals(Utils.asList(10250, "Spain"), query.getColValues());
+        assertEquals("orderId", query.getOrder().getProperty(0), "default sorts are applied on a cache hit");
+        assertEquals(2, db.getSqlCache().getHits());
+        assertEquals(1, db.getSqlCache().size());
+    }
+
+    @Test
+    public void test_values_that_change_the_sql_are_part_of_the_shape() {
+        JdbcDb     db     = new JdbcDb().withType("h2");
+        Collection orders = buildOrders();
+
+        assertSameSql(db, orders, "eq(shipCountry,France)");
+        assertSameSql(db, orders, "eq(shipCountry,Fr*)");
+        assertSameSql(db, orders, "eq(shipCountry,null)");
+        assertSameSql(db, orders, "in(orderId,1,2)");
+        assertSameSql(db, orders, "in(orderId,1,2,3)");
+        assertSameSql(db, orders, "eq(shipCountry,France)", "limit(10)");
+        assertSameSql(db, orders, "eq(shipCountry,France)", "sort(-freight)");
+        assertSameSql(db, orders, "sw(shipCountry,Fr)");
+        assertSameSql(db, orders, "sw(shipCountry,Ge)");
+        assertEquals(0, db.getSqlCache().getHits());
+        assertEquals(9, db.getSqlCache().size());
+
+        assertSameSql(db, orders, "in(orderId,4,5,6)");
+        assertSameSql(db, orders, "sw(shipCountry,Fr)");
+        assertEquals(2, db.getSqlCache().getHits());
+    }
+
+    @Test
+    public void test_collection_changes_and_eviction() {
+        JdbcDb     db     = new JdbcDb().withType("h2").withSqlCacheSize(2);
+        Collection orders = buildOrders();
+
+        assertSameSql(db, orders, "eq(shipCountry,France)");
+        orders.getProperty("shipCountry").withColumnName("ShipCountry");
+        assertSameSql(db, orders, "eq(shipCountry,France)");
+        assertEquals(0, db.getSqlCache().getHits());
+
+        assertSameSql(db, orders, "gt(freight,10)");
+        assertEquals(2, db.getSqlCache().size());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.*;
+import io.inversion.action.db.DbAction;
+import io.inversion.jdbc.JdbcDb;
+import io.inversion.rql.Term;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class H2EntityCacheTest {
+
+    @Test
+    public void test_misses_are_selected_once_and_cached() {
+        List<String> selects = new ArrayList<>();
+        JdbcDb db = new JdbcDb("h2", "org.h2.Driver", "jdbc:h2:mem:h2entitycachetest;IGNORECASE=TRUE;DB_CLOSE_DELAY=-1", "sa", "", JdbcDb.class.getResource("northwind-h2.ddl").toString()) {
+            @Override
+            public Results doSelect(Collection coll, List<Term> columnMappedTerms) throws ApiException {
+                selects.add(coll.getName() + " " + columnMappedTerms);
+                return super.doSelect(coll, columnMappedTerms);
+            }
+        };
+        EntityCache cache = new EntityCache();
+        db.withEntityCache(cache);
+
+        Engine engine = new Engine(new Api("northwind").withDb(db).withEndpoint("GET,PUT,POST,*", new DbAction()));
+        try {
+            Response first = engine.get("northwind/orders/10248").assertOk();
+            assertEquals(1, first.data().size());
+            assertEquals(1, selects.size(), "a miss runs exactly one doSelect");
+            assertEquals(0, cache.getHits());
+            assertEquals(1, cache.getMisses());
+
+            Response second = engine.get("northwind/orders/10248").assertOk();
+            assertEquals(1, selects.size(), "the second lookup is answered from the cache");
+            assertEquals(1, cache.getHits());
+            assertEquals(first.data().toString(), second.data().toString());
+
+            engine.get("northwind/orders?in(orderId,10248,10249)").assertOk();
+            assertEquals(2, selects.size());
+            assertTrue(selects.get(1).contains("10249") && !selects.get(1).contains("10248"), "only the miss is selected: " + selects.get(1));
+            assertEquals(2, cache.getHits());
+        } finally {
+            db.shutdown();
+        }
+    }
+}
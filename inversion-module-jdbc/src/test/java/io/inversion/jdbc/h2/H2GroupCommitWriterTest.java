@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015-2022 Rocket Partners, LLC
+ * https://github.com/inversion-api
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inversion.jdbc.h2;
+
+import io.inversion.jdbc.GroupCommitWriter;
+import io.inversion.jdbc.JdbcConnectionLocal;
+import io.inversion.jdbc.JdbcDb;
+import io.inversion.jdbc.JdbcDbFactory;
+import io.inversion.utils.JdbcUtils;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class H2GroupCommitWriterTest {
+
+    @Test
+    public void test_group_commits_with_an_exhausted_pool() throws Exception {
+        int    threads = 3;
+        JdbcDb db      = JdbcDbFactory.bootstrapH2(getClass().getName() + System.currentTimeMillis(), JdbcDb.class.getResource("person-h2.ddl").toString());
+        db.setPoolMax(threads);
+        db.withGroupCommitWindow(500).withGroupCommitMaxSize(threads);
+        GroupCommitWriter writer = db.getGroupCommitWriter();
+
+        Connection setup = db.getConnection(false);
+        try {
+            JdbcUtils.execute(setup, "CREATE TABLE GROUP_COMMIT (ID INTEGER PRIMARY KEY, NAME VARCHAR(20))");
+            if (!setup.getAutoCommit())
+                setup.commit();
+        } finally {
+            setup.close();
+        }
+
+        ExecutorService      executor = Executors.newFixedThreadPool(threads);
+        List<Future<Object>> futures  = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                int write = i;
+                futures.add(executor.submit(() -> {
+                    //-- every caller holds a managed connection, like a request that has already read, so the pool is exhausted
+                    db.getConnection();
+                    try {
+                        return writer.write(conn -> {
+                            if (write == 1)
+                                return JdbcUtils.execute(conn, "INSERT INTO MISSING_TABLE (ID) VALUES (?)", write);
+                            return JdbcUtils.execute(conn, "INSERT INTO GROUP_COMMIT (ID, NAME) VALUES (?, ?)", write, "write" + write);
+                        });
+                    } finally {
+                        JdbcConnectionLocal.close();
+                    }
+                }));
+            }
+
+            futures.get(0).get(10, TimeUnit.SECONDS);
+            futures.get(2).get(10, TimeUnit.SECONDS);
+            try {
+                futures.get(1).get(10, TimeUnit.SECONDS);
+                fail("the failed write should have been reported to its caller");
+            } catch (ExecutionException ex) {
+                //-- expected
+            }
+
+            assertEquals(1, writer.getGroups());
+            assertEquals(threads, writer.getWrites());
+
+            Connection check = db.getConnection(false);
+            try {
+                assertEquals(2, ((Number) JdbcUtils.selectValue(check, "SELECT COUNT(*) FROM GROUP_COMMIT")).intValue(), "the other writes were committed");
+            } finally {
+                check.close();
+            }
+        } finally {
+            executor.shutdownNow();
+            db.shutdown();
+        }
+    }
+}
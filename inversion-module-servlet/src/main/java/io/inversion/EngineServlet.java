@@ -16,11 +16,13 @@
  */
 package io.inversion;
 
+import io.inversion.json.JSCursor;
 import io.inversion.json.JSNode;
 import io.inversion.utils.StreamBuffer;
 import io.inversion.utils.Utils;
 import io.inversion.utils.ListMap;
 
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -37,6 +39,36 @@ import java.util.zip.GZIPInputStream;
 public class EngineServlet extends HttpServlet {
     Engine engine = null;//new Engine();
 
+    /**
+     * When true, JSON response bodies are streamed directly to the servlet OutputStream
+     * with chunked transfer encoding instead of being fully buffered to compute a Content-Length.
+     * <p>
+     * This is off by default.  A streamed response has already committed its status and headers, so an
+     * error part way through, such as a failed cursor read, can only truncate the body instead of becoming an error response.
+     */
+    boolean streaming = false;
+
+    /**
+     * When true, JSON request bodies are not read into a String.  The (optionally gunzipped) InputStream
+     * is handed to the Request via {@link Request#withBodyStream(InputStream)} and parsed directly to JSON
+     * the first time it is needed, or consumed incrementally via {@link Request#streamData(int, java.util.function.Consumer)}.
+     */
+    boolean streamingRequests = false;
+
+    /**
+     * Opens the request body, transparently decompressing it if the Content-Encoding is gzip.
+     *
+     * @param request the request to read
+     * @return the body stream or null
+     * @throws IOException if the stream can not be opened
+     */
+    public static InputStream openBody(HttpServletRequest request) throws IOException {
+        InputStream inputStream = request.getInputStream();
+        if (inputStream != null && "gzip".equalsIgnoreCase(request.getHeader("Content-Encoding")))
+            inputStream = new GZIPInputStream(inputStream, 1024);
+        return inputStream;
+    }
+
     public static String readBody(HttpServletRequest request) throws ApiException {
         if (request == null)
             return null;
@@ -45,10 +77,8 @@ public class EngineServlet extends HttpServlet {
         BufferedReader bufferedReader = null;
 
         try {
-            InputStream inputStream = request.getInputStream();
+            InputStream inputStream = openBody(request);
             if (inputStream != null) {
-                if ("gzip".equalsIgnoreCase(request.getHeader("Content-Encoding")))
-                    inputStream = new GZIPInputStream(inputStream, 1024);
                 bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
                 char[] charBuffer = new char[128];
                 int    bytesRead;
@@ -87,9 +117,57 @@ public class EngineServlet extends HttpServlet {
         this.engine = engine;
     }
 
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isStreamingRequests() {
+        return streamingRequests;
+    }
+
+    public void setStreamingRequests(boolean streamingRequests) {
+        this.streamingRequests = streamingRequests;
+    }
+
     @Override
     public void service(HttpServletRequest httpReq, HttpServletResponse httpResp) throws ServletException, IOException {
-        EngineServletLocal.set(httpReq, httpResp);
+        RequestScope scope = new RequestScope();
+
+        //-- hands the request off to a virtual thread releasing the container thread
+        //-- until the response has been written.
+        if (engine.isVirtualThreads() && httpReq.isAsyncSupported()) {
+            AsyncContext async = httpReq.startAsync();
+            async.setTimeout(0);
+            engine.getExecutor().execute(() -> {
+                try {
+                    service(scope, httpReq, httpResp);
+                } catch (Exception ex) {
+                    log("Error servicing request", ex);
+                } finally {
+                    async.complete();
+                }
+            });
+            return;
+        }
+
+        service(scope, httpReq, httpResp);
+    }
+
+    void service(RequestScope scope, HttpServletRequest httpReq, HttpServletResponse httpResp) throws ServletException, IOException {
+        RequestScope previous = scope.bind();
+        try {
+            EngineServletLocal.set(httpReq, httpResp);
+            service0(scope, httpReq, httpResp);
+        } finally {
+            RequestScope.restore(previous);
+        }
+    }
+
+    void service0(RequestScope scope, HttpServletRequest httpReq, HttpServletResponse httpResp) throws ServletException, IOException {
 
         Response res;
         Request  req;
@@ -141,7 +219,10 @@ public class EngineServlet extends HttpServlet {
                 params.put(key, value);
             }
 
-            String body = readBody(httpReq);
+            String  contentType = httpReq.getContentType();
+            boolean streamBody  = streamingRequests && contentType != null && contentType.toLowerCase().contains("json");
+
+            String body = streamBody ? null : readBody(httpReq);
 
             if (body != null && body.startsWith("--") && body.indexOf("Content-Disposition") > 0) {
                 throw ApiException.new400BadRequest("Received invalid multipart content.");
@@ -149,7 +230,10 @@ public class EngineServlet extends HttpServlet {
 
 
             req = new Request(method, urlstr, body, params, headers);
+            if (streamBody)
+                req.withBodyStream(openBody(httpReq));
             req.withRemoteAddr(httpReq.getRemoteAddr());
+            req.withScope(scope);
 
             req.withUploader(() -> {
                 try {
@@ -176,7 +260,14 @@ public class EngineServlet extends HttpServlet {
 
             res = new Response();
             engine.service(req, res);
-            writeResponse(req, res, httpResp);
+            try {
+                writeResponse(req, res, httpResp);
+            } finally {
+                //-- releases the db cursor behind a streamed response if writing failed part way
+                JSCursor cursor = res.getCursor();
+                if (cursor != null)
+                    cursor.close();
+            }
         } catch (Throwable ex) {
             JSNode       json  = Engine.buildErrorJson(ex);
             OutputStream out   = httpResp.getOutputStream();
@@ -192,6 +283,15 @@ public class EngineServlet extends HttpServlet {
         http.setStatus(res.getStatusCode());
         OutputStream out = http.getOutputStream();
 
+        boolean      stream   = streaming && res.isStreamable();
+        StreamBuffer buffer   = null;
+        String       encoding = null;
+        if (!req.isMethod("OPTIONS")) {
+            if (!stream)
+                buffer = res.getBody();
+            encoding = engine.getCompression().apply(req, res, stream ? -1 : (buffer == null ? 0 : buffer.getLength()));
+        }
+
         ListMap<String, String> headers = res.getHeaders();
         headers.keySet().forEach(key -> http.setHeader(key, Utils.implode(",", res.getHeaders().get(key))));
 
@@ -201,39 +301,68 @@ public class EngineServlet extends HttpServlet {
             String contentType = res.getContentType();
             http.setContentType(contentType);
 
-            StreamBuffer buffer = res.getBody();
-            if (buffer != null) {
-                http.setContentLength(buffer.getLength());
-                Utils.pipe(buffer.getInputStream(), out, true, false);
+            if (stream) {
+                //-- no Content-Length so the container uses chunked transfer encoding
+                out = engine.getCompression().compress(out, encoding);
+                res.writeBody(out);
+            } else if (buffer != null) {
+                //-- the compressed length is not known up front so compressed
+                //-- bodies are also sent with chunked transfer encoding
+                if (encoding == null)
+                    http.setContentLength(buffer.getLength());
+                Utils.pipe(engine.getCompression().compress(buffer.getInputStream(), encoding), out, true, false);
             }
         }
         out.flush();
         out.close();
     }
 
+    /**
+     * Exposes the servlet request and response being serviced to code that does not have a reference to them.
+     * <p>
+     * The values are stored on the {@link RequestScope} bound to the current thread so they follow the request
+     * if it changes threads.  The ThreadLocals are kept as a fallback for callers outside of a request scope.
+     */
     static class EngineServletLocal {
+        static final String REQUEST_KEY  = EngineServletLocal.class.getName() + ".request";
+        static final String RESPONSE_KEY = EngineServletLocal.class.getName() + ".response";
+
         static final ThreadLocal<HttpServletRequest>  request  = new ThreadLocal();
         static final ThreadLocal<HttpServletResponse> response = new ThreadLocal();
 
         public static void set(HttpServletRequest req, HttpServletResponse res) {
-            request.set(req);
-            response.set(res);
+            setRequest(req);
+            setResponse(res);
         }
 
         public static HttpServletRequest getRequest() {
+            RequestScope scope = RequestScope.peek();
+            if (scope != null && scope.getAttribute(REQUEST_KEY) != null)
+                return (HttpServletRequest) scope.getAttribute(REQUEST_KEY);
             return request.get();
         }
 
         public static void setRequest(HttpServletRequest req) {
-            request.set(req);
+            RequestScope scope = RequestScope.peek();
+            if (scope != null)
+                scope.withAttribute(REQUEST_KEY, req);
+            else
+                request.set(req);
         }
 
         public static HttpServletResponse getResponse() {
+            RequestScope scope = RequestScope.peek();
+            if (scope != null && scope.getAttribute(RESPONSE_KEY) != null)
+                return (HttpServletResponse) scope.getAttribute(RESPONSE_KEY);
             return response.get();
         }
 
         public static void setResponse(HttpServletResponse res) {
-            response.set(res);
+            RequestScope scope = RequestScope.peek();
+            if (scope != null)
+                scope.withAttribute(RESPONSE_KEY, res);
+            else
+                response.set(res);
         }
     }
 }